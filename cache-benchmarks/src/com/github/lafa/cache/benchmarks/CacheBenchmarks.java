@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2018 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.lafa.cache.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks of this module at each of {@link #THREADS} threads, with the GC profiler to
+ * report allocation per operation, writing the results of each thread count to {@code
+ * jmh-threads-<n>.json}. Accepts the usual JMH command line; for example
+ *
+ * <pre>{@code
+ * java -jar cache-benchmarks/target/benchmarks.jar GetPutBenchmark.mixed -p distribution=ZIPFIAN
+ * }</pre>
+ *
+ * <p>runs only the mixed workload over Zipfian keys. If the number of threads is given with {@code
+ * -t}, only that number is run.
+ */
+public final class CacheBenchmarks {
+  private CacheBenchmarks() {}
+
+  /** The numbers of threads at which each benchmark is run by default. */
+  static final int[] THREADS = {1, 2, 4, 8, 16, 32, 64};
+
+  public static void main(String[] args) throws CommandLineOptionException, RunnerException {
+    CommandLineOptions options = new CommandLineOptions(args);
+    if (options.getThreads().hasValue()) {
+      new Runner(withDefaults(options, options.getThreads().get()).build()).run();
+      return;
+    }
+    for (int threads : THREADS) {
+      new Runner(withDefaults(options, threads).threads(threads).build()).run();
+    }
+  }
+
+  private static ChainedOptionsBuilder withDefaults(CommandLineOptions options, int threads) {
+    ChainedOptionsBuilder builder =
+        new OptionsBuilder().parent(options).addProfiler(GCProfiler.class);
+    if (!options.getResult().hasValue()) {
+      builder.result("jmh-threads-" + threads + ".json").resultFormat(ResultFormatType.JSON);
+    }
+    return builder;
+  }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2018 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.lafa.cache.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.github.lafa.cache.lrucache.CacheBuilder;
+import com.github.lafa.cache.lrucache.RemovalListener;
+
+/**
+ * The cache configurations that benchmarks compare. Each cache is bounded to about {@code
+ * maximumSize} entries, so that a key space larger than that causes evictions, and adds one
+ * feature to the plain {@link #SIZE_BOUNDED} cache. Expiration times are long enough that entries
+ * are evicted before they expire; what is measured is the cost of recording the times.
+ */
+public enum CacheConfiguration {
+  SIZE_BOUNDED {
+    @Override
+    CacheBuilder<Object, Object> newBuilder(int maximumSize) {
+      return bounded(maximumSize);
+    }
+  },
+
+  /** Bounded by a maximum weight, with entries weighing from 1 to 8. */
+  WEIGHTED {
+    @Override
+    CacheBuilder<Object, Object> newBuilder(int maximumSize) {
+      return CacheBuilder.newBuilder()
+          .maximumWeight(4L * maximumSize)
+          .weigher((Object key, Object value) -> 1 + ((Integer) key & 7));
+    }
+  },
+
+  EXPIRE_AFTER_ACCESS {
+    @Override
+    CacheBuilder<Object, Object> newBuilder(int maximumSize) {
+      return bounded(maximumSize).expireAfterAccess(1, TimeUnit.HOURS);
+    }
+  },
+
+  EXPIRE_AFTER_WRITE {
+    @Override
+    CacheBuilder<Object, Object> newBuilder(int maximumSize) {
+      return bounded(maximumSize).expireAfterWrite(1, TimeUnit.HOURS);
+    }
+  },
+
+  WEAK_KEYS {
+    @Override
+    CacheBuilder<Object, Object> newBuilder(int maximumSize) {
+      return bounded(maximumSize).weakKeys();
+    }
+  },
+
+  WEAK_VALUES {
+    @Override
+    CacheBuilder<Object, Object> newBuilder(int maximumSize) {
+      return bounded(maximumSize).weakValues();
+    }
+  },
+
+  SOFT_VALUES {
+    @Override
+    CacheBuilder<Object, Object> newBuilder(int maximumSize) {
+      return bounded(maximumSize).softValues();
+    }
+  },
+
+  /** Notifies a listener which counts removals. */
+  REMOVAL_LISTENER {
+    @Override
+    CacheBuilder<Object, Object> newBuilder(int maximumSize) {
+      LongAdder removals = new LongAdder();
+      RemovalListener<Object, Object> listener = notification -> removals.increment();
+      return bounded(maximumSize).removalListener(listener);
+    }
+  },
+
+  /** Answers reads of hot keys from a per-thread front cache. */
+  FRONT_CACHE {
+    @Override
+    CacheBuilder<Object, Object> newBuilder(int maximumSize) {
+      return bounded(maximumSize).frontCacheSize(256);
+    }
+  };
+
+  /** Returns a builder of a cache of this configuration holding about {@code maximumSize} keys. */
+  abstract CacheBuilder<Object, Object> newBuilder(int maximumSize);
+
+  private static CacheBuilder<Object, Object> bounded(int maximumSize) {
+    return CacheBuilder.newBuilder().maximumSize(maximumSize);
+  }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2018 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.lafa.cache.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.lafa.cache.lrucache.Cache;
+
+/**
+ * Measures {@link Cache#getIfPresent}, {@link Cache#put} and a mix of the two, for each {@link
+ * CacheConfiguration} and {@link KeyDistribution}. The key space is twice the size of the cache, so
+ * reads miss and writes evict at a rate that depends on the distribution. Both throughput and the
+ * distribution of the latency of single operations are reported.
+ *
+ * <p>Each thread walks the shared precomputed keys from its own random offset. Run with {@code -t}
+ * to choose the number of threads, or through {@link CacheBenchmarks} to run at each of 1 to 64.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GetPutBenchmark {
+
+  /** The number of precomputed keys, a power of two. */
+  static final int SAMPLES = 1 << 20;
+
+  static final int MASK = SAMPLES - 1;
+
+  /** One write for every {@code WRITE_RATIO - 1} reads in {@link #mixed}; a power of two. */
+  static final int WRITE_RATIO = 4;
+
+  @Param({
+    "SIZE_BOUNDED",
+    "WEIGHTED",
+    "EXPIRE_AFTER_ACCESS",
+    "EXPIRE_AFTER_WRITE",
+    "WEAK_KEYS",
+    "WEAK_VALUES",
+    "SOFT_VALUES",
+    "REMOVAL_LISTENER",
+    "FRONT_CACHE"
+  })
+  CacheConfiguration configuration;
+
+  @Param({"UNIFORM", "ZIPFIAN", "SCAN"})
+  KeyDistribution distribution;
+
+  @Param({"65536"})
+  int maximumSize;
+
+  private Cache<Integer, Integer> cache;
+
+  /**
+   * The keys to access. They are shared instances, and are also used as values, so that weak keys
+   * and values stay reachable and are found by identity.
+   */
+  private Integer[] keys;
+
+  /** The index in {@link #keys} from which each thread continues. */
+  @State(Scope.Thread)
+  public static class ThreadState {
+    int index;
+
+    @Setup
+    public void setUp() {
+      index = ThreadLocalRandom.current().nextInt(SAMPLES);
+    }
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    int keySpace = 2 * maximumSize;
+    Integer[] boxed = new Integer[keySpace];
+    for (int k = 0; k < keySpace; k++) {
+      boxed[k] = k;
+    }
+    keys = new Integer[SAMPLES];
+    int[] drawn = distribution.keys(SAMPLES, keySpace, new Random(42));
+    for (int i = 0; i < SAMPLES; i++) {
+      keys[i] = boxed[drawn[i]];
+    }
+    cache = configuration.newBuilder(maximumSize).build();
+    // the hottest Zipfian keys are the lowest, so write them last
+    for (int k = keySpace - 1; k >= 0; k--) {
+      cache.put(boxed[k], boxed[k]);
+    }
+  }
+
+  @Benchmark
+  public Integer getIfPresent(ThreadState state) {
+    return cache.getIfPresent(keys[state.index++ & MASK]);
+  }
+
+  @Benchmark
+  public void put(ThreadState state) {
+    Integer key = keys[state.index++ & MASK];
+    cache.put(key, key);
+  }
+
+  @Benchmark
+  public Integer mixed(ThreadState state) {
+    int i = state.index++;
+    Integer key = keys[i & MASK];
+    if ((i & (WRITE_RATIO - 1)) == 0) {
+      cache.put(key, key);
+      return key;
+    }
+    return cache.getIfPresent(key);
+  }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2018 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.lafa.cache.benchmarks;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * The distributions from which benchmarks draw the keys they access. Keys are precomputed, so that
+ * generating them costs nothing while measuring, and are drawn with a fixed seed, so that runs are
+ * comparable.
+ */
+public enum KeyDistribution {
+
+  /** Every key is equally likely to be accessed. */
+  UNIFORM {
+    @Override
+    int[] keys(int count, int keySpace, Random random) {
+      int[] keys = new int[count];
+      for (int i = 0; i < count; i++) {
+        keys[i] = random.nextInt(keySpace);
+      }
+      return keys;
+    }
+  },
+
+  /**
+   * Key {@code k} is accessed with probability proportional to {@code 1 / (k + 1)^0.99}, as in the
+   * YCSB workloads, so that a few keys are hot and most are rarely accessed.
+   */
+  ZIPFIAN {
+    @Override
+    int[] keys(int count, int keySpace, Random random) {
+      double[] cumulative = new double[keySpace];
+      double total = 0;
+      for (int k = 0; k < keySpace; k++) {
+        total += 1 / Math.pow(k + 1, ZIPF_EXPONENT);
+        cumulative[k] = total;
+      }
+      int[] keys = new int[count];
+      for (int i = 0; i < count; i++) {
+        int k = Arrays.binarySearch(cumulative, random.nextDouble() * total);
+        keys[i] = (k >= 0) ? k : Math.min(-k - 1, keySpace - 1);
+      }
+      return keys;
+    }
+  },
+
+  /**
+   * Keys are accessed in order, cycling through the whole key space, which defeats any policy
+   * based on recency when the key space is larger than the cache.
+   */
+  SCAN {
+    @Override
+    int[] keys(int count, int keySpace, Random random) {
+      int[] keys = new int[count];
+      for (int i = 0; i < count; i++) {
+        keys[i] = i % keySpace;
+      }
+      return keys;
+    }
+  };
+
+  static final double ZIPF_EXPONENT = 0.99;
+
+  /** Returns {@code count} keys from 0 to {@code keySpace - 1}, drawn using {@code random}. */
+  abstract int[] keys(int count, int keySpace, Random random);
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2018 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.lafa.cache.simulator;
+
+import static com.github.lafa.cache.base.Preconditions.checkArgument;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * The textbook eviction policies that a {@link LocalCachePolicy} is compared against. Each is
+ * bounded either by a number of entries or, if {@code weighted}, by the total size of its objects,
+ * and evicts until it is within its bound after admitting an object. Objects larger than a weighted
+ * bound are not admitted.
+ */
+abstract class BoundedPolicy implements Policy {
+  private final String name;
+  final long capacity;
+  final boolean weighted;
+  long weight;
+
+  BoundedPolicy(String name, long capacity, boolean weighted) {
+    checkArgument(capacity > 0, "capacity must be positive: %s", capacity);
+    this.name = name;
+    this.capacity = capacity;
+    this.weighted = weighted;
+  }
+
+  final long weigh(int size) {
+    return weighted ? size : 1;
+  }
+
+  @Override
+  public String toString() {
+    return name + ":" + (weighted ? "maximumWeight=" : "maximumSize=") + capacity;
+  }
+
+  /** Evicts the least recently inserted ({@code fifo}) or accessed ({@code lru}) object. */
+  static final class LinkedPolicy extends BoundedPolicy {
+    private final LinkedHashMap<Long, Integer> map;
+
+    LinkedPolicy(String name, long capacity, boolean weighted, boolean accessOrder) {
+      super(name, capacity, weighted);
+      this.map = new LinkedHashMap<Long, Integer>(16, 0.75f, accessOrder);
+    }
+
+    @Override
+    public boolean access(long key, int size, long timeNanos) {
+      Long boxed = key;
+      if (map.get(boxed) != null) {
+        return true;
+      }
+      if (weigh(size) <= capacity) {
+        map.put(boxed, size);
+        weight += weigh(size);
+        Iterator<Map.Entry<Long, Integer>> eldest = map.entrySet().iterator();
+        while (weight > capacity) {
+          weight -= weigh(eldest.next().getValue());
+          eldest.remove();
+        }
+      }
+      return false;
+    }
+  }
+
+  /** Evicts a uniformly random object, with a fixed seed so that runs are repeatable. */
+  static final class RandomPolicy extends BoundedPolicy {
+    private final Random random = new Random(0);
+    private final Map<Long, Integer> indexes = new HashMap<Long, Integer>();
+    private long[] keys = new long[16];
+    private int[] sizes = new int[16];
+    private int count;
+
+    RandomPolicy(long capacity, boolean weighted) {
+      super("random", capacity, weighted);
+    }
+
+    @Override
+    public boolean access(long key, int size, long timeNanos) {
+      if (indexes.containsKey(key)) {
+        return true;
+      }
+      if (weigh(size) <= capacity) {
+        if (count == keys.length) {
+          keys = Arrays.copyOf(keys, 2 * count);
+          sizes = Arrays.copyOf(sizes, 2 * count);
+        }
+        keys[count] = key;
+        sizes[count] = size;
+        indexes.put(key, count++);
+        weight += weigh(size);
+        while (weight > capacity) {
+          evict(random.nextInt(count));
+        }
+      }
+      return false;
+    }
+
+    private void evict(int index) {
+      indexes.remove(keys[index]);
+      weight -= weigh(sizes[index]);
+      count--;
+      if (index != count) {
+        keys[index] = keys[count];
+        sizes[index] = sizes[count];
+        indexes.put(keys[index], index);
+      }
+    }
+  }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2018 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.lafa.cache.simulator;
+
+import com.github.lafa.cache.lrucache.Cache;
+import com.github.lafa.cache.lrucache.CacheBuilder;
+import com.github.lafa.cache.lrucache.CacheBuilderSpec;
+
+/**
+ * Simulates a cache built by {@link CacheBuilder} from a {@link CacheBuilderSpec}. Time is driven
+ * by a {@link SimulatedTicker} that is advanced to the time of each access, so that expiration and
+ * refresh behave as they would have when the trace was recorded. If the spec sets a {@code
+ * maximumWeight}, each entry weighs the size of its object.
+ */
+final class LocalCachePolicy implements Policy {
+  private final String spec;
+  private final SimulatedTicker ticker = new SimulatedTicker();
+  private final Cache<Long, Integer> cache;
+  private long now;
+
+  LocalCachePolicy(String spec) {
+    this.spec = spec;
+    CacheBuilder<Object, Object> builder =
+        CacheBuilder.from(CacheBuilderSpec.parse(spec)).ticker(ticker);
+    this.cache =
+        spec.contains("maximumWeight")
+            ? builder.weigher((Long key, Integer size) -> size).build()
+            : builder.build();
+  }
+
+  @Override
+  public boolean access(long key, int size, long timeNanos) {
+    if (timeNanos > now) {
+      ticker.advance(timeNanos - now);
+      now = timeNanos;
+    }
+    Long boxed = key;
+    if (cache.getIfPresent(boxed) != null) {
+      return true;
+    }
+    cache.put(boxed, size);
+    return false;
+  }
+
+  @Override
+  public String toString() {
+    return "localcache:" + spec;
+  }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2018 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.lafa.cache.simulator;
+
+import static com.github.lafa.cache.base.Preconditions.checkArgument;
+
+/**
+ * Creates {@link Policy policies} from their descriptions, in the form {@code name:configuration}:
+ *
+ * <ul>
+ *   <li>{@code localcache:<spec>} for a cache built by {@code CacheBuilder} from a {@code
+ *       CacheBuilderSpec}, such as {@code localcache:maximumSize=1000,concurrencyLevel=1}
+ *   <li>{@code lru:maximumSize=<n>}, {@code fifo:maximumSize=<n>} and {@code
+ *       random:maximumSize=<n>} for the textbook policies, which may instead be bounded by {@code
+ *       maximumWeight=<bytes>}
+ * </ul>
+ *
+ * <p>A policy for replaying a sampled {@link Trace} may be created with its {@code maximumSize}
+ * and {@code maximumWeight} scaled by the trace's {@linkplain Trace#samplingRate sampling rate}, so
+ * that it holds the same fraction of the sampled working set as the configured cache would of the
+ * whole one.
+ */
+public final class Policies {
+  private Policies() {}
+
+  /** Returns a new policy for {@code description}. */
+  public static Policy create(String description) {
+    return create(description, 1.0);
+  }
+
+  /**
+   * Returns a new policy for {@code description}, with its size or weight bound multiplied by
+   * {@code scale} and rounded, but to no less than 1.
+   */
+  public static Policy create(String description, double scale) {
+    checkArgument(scale > 0 && scale <= 1, "scale must be in (0, 1]: %s", scale);
+    int colon = description.indexOf(':');
+    checkArgument(colon > 0, "policy must be of the form name:configuration: %s", description);
+    String name = description.substring(0, colon);
+    String configuration = scaleBounds(description.substring(colon + 1).trim(), scale);
+    if (name.equals("localcache")) {
+      return new LocalCachePolicy(configuration);
+    }
+    boolean weighted;
+    long capacity;
+    if (configuration.startsWith("maximumSize=")) {
+      weighted = false;
+      capacity = Long.parseLong(configuration.substring("maximumSize=".length()));
+    } else if (configuration.startsWith("maximumWeight=")) {
+      weighted = true;
+      capacity = Long.parseLong(configuration.substring("maximumWeight=".length()));
+    } else {
+      throw new IllegalArgumentException(
+          "policy must be bounded by maximumSize or maximumWeight: " + description);
+    }
+    switch (name) {
+      case "lru":
+        return new BoundedPolicy.LinkedPolicy(name, capacity, weighted, true);
+      case "fifo":
+        return new BoundedPolicy.LinkedPolicy(name, capacity, weighted, false);
+      case "random":
+        return new BoundedPolicy.RandomPolicy(capacity, weighted);
+      default:
+        throw new IllegalArgumentException("unknown policy: " + name);
+    }
+  }
+
+  private static String scaleBounds(String configuration, double scale) {
+    if (scale == 1.0) {
+      return configuration;
+    }
+    StringBuilder scaled = new StringBuilder();
+    for (String option : configuration.split(",")) {
+      String trimmed = option.trim();
+      for (String bound : new String[] {"maximumSize=", "maximumWeight="}) {
+        if (trimmed.startsWith(bound)) {
+          long value = Long.parseLong(trimmed.substring(bound.length()).trim());
+          trimmed = bound + Math.max(1, Math.round(value * scale));
+        }
+      }
+      scaled.append((scaled.length() == 0) ? "" : ",").append(trimmed);
+    }
+    return scaled.toString();
+  }
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright (C) 2018 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.lafa.cache.simulator;
+
+/**
+ * A cache under simulation. The simulator presents each access of a trace in order, from a single
+ * thread; on a miss the policy is expected to admit the object as a cache would after loading it.
+ */
+public interface Policy {
+
+  /**
+   * Records an access of the object {@code key} of {@code size} bytes at {@code timeNanos}, and
+   * returns whether it was a hit.
+   */
+  boolean access(long key, int size, long timeNanos);
+
+  /** Returns a description of this policy and its configuration, for reports. */
+  @Override
+  String toString();
+}
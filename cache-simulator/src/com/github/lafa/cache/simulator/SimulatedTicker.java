@@ -0,0 +1,34 @@
+/*
+ * Copyright (C) 2018 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.lafa.cache.simulator;
+
+import com.github.lafa.cache.base.Ticker;
+
+/**
+ * A {@link Ticker} that reads the simulated time, which only moves when it is advanced. It is
+ * advanced by a single thread, but may be read by others, such as a cache's cleanup.
+ */
+final class SimulatedTicker extends Ticker {
+  private volatile long nanos;
+
+  /** Advances the time by {@code nanos}. */
+  void advance(long nanos) {
+    this.nanos += nanos;
+  }
+
+  @Override
+  public long read() {
+    return nanos;
+  }
+}
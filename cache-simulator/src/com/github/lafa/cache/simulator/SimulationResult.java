@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2018 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.lafa.cache.simulator;
+
+/** The outcome of replaying a {@link Trace} against one {@link Policy}. */
+public final class SimulationResult {
+  private final String policy;
+  private final long hits;
+  private final long misses;
+  private final long hitBytes;
+  private final long missBytes;
+  private final long elapsedNanos;
+
+  SimulationResult(
+      String policy, long hits, long misses, long hitBytes, long missBytes, long elapsedNanos) {
+    this.policy = policy;
+    this.hits = hits;
+    this.misses = misses;
+    this.hitBytes = hitBytes;
+    this.missBytes = missBytes;
+    this.elapsedNanos = elapsedNanos;
+  }
+
+  /** Returns the description of the simulated policy. */
+  public String policy() {
+    return policy;
+  }
+
+  public long hitCount() {
+    return hits;
+  }
+
+  public long missCount() {
+    return misses;
+  }
+
+  /** Returns the fraction of accesses that hit, or 1.0 if the trace was empty. */
+  public double hitRate() {
+    long requests = hits + misses;
+    return (requests == 0) ? 1.0 : (double) hits / requests;
+  }
+
+  /** Returns the fraction of the bytes accessed that hit, or 1.0 if none were. */
+  public double byteHitRate() {
+    long bytes = hitBytes + missBytes;
+    return (bytes == 0) ? 1.0 : (double) hitBytes / bytes;
+  }
+
+  /**
+   * Returns the wall-clock time the replay took, including the policy's own bookkeeping but not
+   * reading the trace.
+   */
+  public long elapsedNanos() {
+    return elapsedNanos;
+  }
+
+  /** Returns the number of accesses replayed per second. */
+  public double throughput() {
+    return (elapsedNanos == 0) ? 0.0 : (hits + misses) * 1e9 / elapsedNanos;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "%-48s %8.2f%% %8.2f%% %12.0f/s",
+        policy, 100 * hitRate(), 100 * byteHitRate(), throughput());
+  }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2018 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.lafa.cache.simulator;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Replays an access {@link Trace} against cache {@link Policy policies} and reports their hit
+ * rates, byte hit rates and throughput. Run as
+ *
+ * <pre>{@code
+ * java com.github.lafa.cache.simulator.Simulator <trace> <format> <policy>...
+ * }</pre>
+ *
+ * <p>where {@code format} is one of the {@link TraceFormat} names and each {@code policy} is a
+ * description accepted by {@link Policies#create}. Each policy replays the whole trace in turn from
+ * a single thread, so the reported throughput is a rough single-threaded figure rather than a
+ * benchmark. The bounds of the policies replaying a sampled trace are scaled by its {@linkplain
+ * Trace#samplingRate sampling rate}; see {@link Policies#create(String, double)}.
+ */
+public final class Simulator {
+  private Simulator() {}
+
+  /**
+   * Replays {@code trace} against a new policy for each description, in order, with its bounds
+   * scaled by the trace's sampling rate.
+   */
+  public static List<SimulationResult> run(Trace trace, List<String> policies) {
+    List<SimulationResult> results = new ArrayList<SimulationResult>(policies.size());
+    for (String description : policies) {
+      results.add(run(trace, Policies.create(description, trace.samplingRate())));
+    }
+    return results;
+  }
+
+  /** Replays {@code trace} against {@code policy}. */
+  public static SimulationResult run(Trace trace, Policy policy) {
+    long hits = 0;
+    long misses = 0;
+    long hitBytes = 0;
+    long missBytes = 0;
+    long start = System.nanoTime();
+    for (int i = 0; i < trace.length(); i++) {
+      int size = trace.size(i);
+      if (policy.access(trace.key(i), size, trace.time(i))) {
+        hits++;
+        hitBytes += size;
+      } else {
+        misses++;
+        missBytes += size;
+      }
+    }
+    long elapsed = System.nanoTime() - start;
+    return new SimulationResult(policy.toString(), hits, misses, hitBytes, missBytes, elapsed);
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length < 3) {
+      System.err.println("usage: Simulator <trace> <format> <policy>...");
+      System.err.println("formats: " + Arrays.toString(TraceFormat.values()));
+      System.exit(2);
+    }
+    Trace trace =
+        Trace.read(Paths.get(args[0]), TraceFormat.valueOf(args[1].toUpperCase(Locale.ROOT)));
+    PrintStream out = System.out;
+    out.printf(
+        "%s: %d accesses of %d keys%s%n",
+        args[0], trace.length(), trace.distinctKeys(), trace.hasTimes() ? ", timed" : "");
+    if (trace.samplingRate() < 1) {
+      out.printf(
+          "keys sampled at a rate of %s; size and weight bounds are scaled by it%n",
+          trace.samplingRate());
+    }
+    out.printf("%-48s %9s %9s %14s%n", "policy", "hit rate", "byte hit", "throughput");
+    for (SimulationResult result : run(trace, Arrays.asList(args).subList(2, args.length))) {
+      out.println(result);
+    }
+  }
+}
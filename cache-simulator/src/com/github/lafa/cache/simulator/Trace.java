@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2018 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.lafa.cache.simulator;
+
+import static com.github.lafa.cache.base.Preconditions.checkArgument;
+import static com.github.lafa.cache.base.Preconditions.checkElementIndex;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * An access trace held in memory: for each access, the key, the size in bytes of the accessed
+ * object, and optionally the time at which it was accessed. Keys that are not numbers in the
+ * original trace are hashed to {@code long}s.
+ *
+ * <p>A trace may hold only a sample of the keys of the original workload, such as the traces
+ * written by an {@code AccessTraceRecorder}; its {@link #samplingRate} is then below 1.
+ */
+public final class Trace {
+  private final long[] keys;
+  private final int[] sizes;
+  private final long[] times;
+  private final int length;
+  private final double samplingRate;
+
+  private Trace(long[] keys, int[] sizes, long[] times, int length, double samplingRate) {
+    this.keys = keys;
+    this.sizes = sizes;
+    this.times = times;
+    this.length = length;
+    this.samplingRate = samplingRate;
+  }
+
+  /**
+   * Reads the trace stored in {@code file} in the given format. Files whose names end in {@code
+   * .gz} are decompressed.
+   */
+  public static Trace read(Path file, TraceFormat format) throws IOException {
+    try (InputStream in = Files.newInputStream(file)) {
+      InputStream buffered = new BufferedInputStream(in, 1 << 16);
+      return read(
+          file.getFileName().toString().endsWith(".gz")
+              ? new GZIPInputStream(buffered, 1 << 16)
+              : buffered,
+          format);
+    }
+  }
+
+  /** Reads a trace from {@code in} in the given format. The stream is not closed. */
+  public static Trace read(InputStream in, TraceFormat format) throws IOException {
+    Builder builder = new Builder();
+    format.read(in, builder);
+    return builder.build();
+  }
+
+  /** Returns the number of accesses in this trace. */
+  public int length() {
+    return length;
+  }
+
+  /** Returns the key of access {@code i}. */
+  public long key(int i) {
+    checkElementIndex(i, length);
+    return keys[i];
+  }
+
+  /** Returns the size in bytes of the object read by access {@code i}, 1 if the trace has none. */
+  public int size(int i) {
+    checkElementIndex(i, length);
+    return sizes[i];
+  }
+
+  /**
+   * Returns the fraction of the keys of the original workload whose accesses this trace holds, 1
+   * if it holds all of them. A cache holding a sampled trace's working set is smaller than one
+   * holding the whole workload's by about this factor, so the {@link Simulator} scales the size
+   * and weight bounds of the policies it replays a sampled trace against by it.
+   */
+  public double samplingRate() {
+    return samplingRate;
+  }
+
+  /** Returns whether the accesses of this trace are timestamped. */
+  public boolean hasTimes() {
+    return times != null;
+  }
+
+  /**
+   * Returns the time of access {@code i} in nanoseconds, relative to an arbitrary origin, or 0 if
+   * the trace is not timestamped.
+   */
+  public long time(int i) {
+    checkElementIndex(i, length);
+    return (times == null) ? 0 : times[i];
+  }
+
+  /** Returns the number of distinct keys accessed. */
+  public int distinctKeys() {
+    long[] sorted = Arrays.copyOf(keys, length);
+    Arrays.sort(sorted);
+    int distinct = 0;
+    for (int i = 0; i < length; i++) {
+      if (i == 0 || sorted[i] != sorted[i - 1]) {
+        distinct++;
+      }
+    }
+    return distinct;
+  }
+
+  /** Accumulates the accesses of a trace as it is read. */
+  public static final class Builder {
+    private long[] keys = new long[1024];
+    private int[] sizes = new int[1024];
+    private long[] times;
+    private int length;
+    private double samplingRate = 1.0;
+
+    /** Sets the fraction of the keys of the original workload which the trace holds. */
+    public Builder samplingRate(double samplingRate) {
+      checkArgument(
+          samplingRate > 0 && samplingRate <= 1,
+          "sampling rate must be in (0, 1]: %s",
+          samplingRate);
+      this.samplingRate = samplingRate;
+      return this;
+    }
+
+    /** Appends an access of an object of {@code size} bytes, without a time. */
+    public Builder add(long key, int size) {
+      checkArgument(times == null, "accesses of a timestamped trace must have times");
+      grow();
+      keys[length] = key;
+      sizes[length] = size;
+      length++;
+      return this;
+    }
+
+    /** Appends an access of an object of {@code size} bytes at {@code timeNanos}. */
+    public Builder add(long key, int size, long timeNanos) {
+      if (times == null) {
+        checkArgument(length == 0, "accesses of an untimed trace cannot have times");
+        times = new long[keys.length];
+      }
+      grow();
+      keys[length] = key;
+      sizes[length] = size;
+      times[length] = timeNanos;
+      length++;
+      return this;
+    }
+
+    private void grow() {
+      checkArgument(length < Integer.MAX_VALUE - 8, "trace too long");
+      if (length == keys.length) {
+        int capacity = (int) Math.min(Integer.MAX_VALUE - 8, 2L * length);
+        keys = Arrays.copyOf(keys, capacity);
+        sizes = Arrays.copyOf(sizes, capacity);
+        if (times != null) {
+          times = Arrays.copyOf(times, capacity);
+        }
+      }
+    }
+
+    /** Returns the trace of the accesses added; it is untimed if all of their times are 0. */
+    public Trace build() {
+      boolean timed = false;
+      for (int i = 0; times != null && i < length && !timed; i++) {
+        timed = (times[i] != 0);
+      }
+      return new Trace(keys, sizes, timed ? times : null, length, samplingRate);
+    }
+  }
+}
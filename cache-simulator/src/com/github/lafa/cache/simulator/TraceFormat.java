@@ -0,0 +1,247 @@
+/*
+ * Copyright (C) 2018 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.github.lafa.cache.simulator;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.github.lafa.cache.lrucache.AccessTraceRecorder;
+
+/**
+ * The formats of trace files that can be replayed by the {@link Simulator}. Text formats are read
+ * as UTF-8, one access or run of accesses per line; blank lines and lines starting with {@code #}
+ * are skipped.
+ */
+public enum TraceFormat {
+
+  /**
+   * One access per line: a key, and optionally the size of the object in bytes and the time of the
+   * access in milliseconds, separated by whitespace. Keys which are not decimal integers are
+   * hashed. Either every line or no line has a time.
+   */
+  TEXT {
+    @Override
+    void read(InputStream in, Trace.Builder trace) throws IOException {
+      BufferedReader reader = reader(in);
+      for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+        String[] fields = fields(line);
+        if (fields == null) {
+          continue;
+        }
+        long key = parseKey(fields[0]);
+        int size = (fields.length > 1) ? Integer.parseInt(fields[1]) : 1;
+        if (fields.length > 2) {
+          trace.add(key, size, TimeUnit.MILLISECONDS.toNanos(Long.parseLong(fields[2])));
+        } else {
+          trace.add(key, size);
+        }
+      }
+    }
+  },
+
+  /**
+   * Fixed-size big-endian records of a {@code long} key, an {@code int} size in bytes, and a {@code
+   * long} time in nanoseconds, as written by {@link #writeBinary}. Untimed traces are written with
+   * times of 0.
+   */
+  BINARY {
+    @Override
+    void read(InputStream in, Trace.Builder trace) throws IOException {
+      DataInputStream data = new DataInputStream(in);
+      while (true) {
+        long key;
+        try {
+          key = data.readLong();
+        } catch (EOFException e) {
+          break;
+        }
+        int size = data.readInt();
+        trace.add(key, size, data.readLong());
+      }
+    }
+  },
+
+  /**
+   * The sampled traces written by an {@link AccessTraceRecorder}. Hits and misses are replayed,
+   * keyed by the recorded hash, and writes only supply the sizes of the objects missed: a miss
+   * takes the size last seen for its key, or 1 if there is none. Times are taken relative to the
+   * first access, and the trace's {@linkplain Trace#samplingRate sampling rate} is the recorder's.
+   */
+  RECORDED {
+    @Override
+    void read(InputStream in, Trace.Builder trace) throws IOException {
+      DataInputStream data = new DataInputStream(in);
+      if (data.readInt() != AccessTraceRecorder.MAGIC
+          || data.readInt() != AccessTraceRecorder.VERSION) {
+        throw new IOException("not a version " + AccessTraceRecorder.VERSION + " recorded trace");
+      }
+      trace.samplingRate(data.readDouble());
+      List<long[]> accesses = new ArrayList<long[]>();
+      Map<Long, Integer> sizes = new HashMap<Long, Integer>();
+      while (true) {
+        long key;
+        try {
+          key = data.readInt();
+        } catch (EOFException e) {
+          break;
+        }
+        byte operation = data.readByte();
+        int weight = data.readInt();
+        long time = data.readLong();
+        if (weight != 0) {
+          sizes.put(key, weight);
+        }
+        if (operation != AccessTraceRecorder.PUT) {
+          accesses.add(new long[] {key, weight, time});
+        }
+      }
+      long origin = accesses.isEmpty() ? 0 : accesses.get(0)[2];
+      for (long[] access : accesses) {
+        int size = (access[1] != 0) ? (int) access[1] : sizes.getOrDefault(access[0], 1);
+        trace.add(access[0], size, Math.max(0, access[2] - origin));
+      }
+    }
+  },
+
+  /**
+   * The traces published with the ARC policy (Megiddo and Modha): each line holds a starting block
+   * number, a number of consecutive blocks accessed from it, and two ignored fields.
+   */
+  ARC {
+    @Override
+    void read(InputStream in, Trace.Builder trace) throws IOException {
+      BufferedReader reader = reader(in);
+      for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+        String[] fields = fields(line);
+        if (fields == null) {
+          continue;
+        }
+        long start = Long.parseLong(fields[0]);
+        int count = Integer.parseInt(fields[1]);
+        for (int i = 0; i < count; i++) {
+          trace.add(start + i, 1);
+        }
+      }
+    }
+  },
+
+  /**
+   * The traces published with the LIRS policy (Jiang and Zhang): one block number per line, with
+   * lines of {@code *} marking the end of the trace.
+   */
+  LIRS {
+    @Override
+    void read(InputStream in, Trace.Builder trace) throws IOException {
+      BufferedReader reader = reader(in);
+      for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+        String[] fields = fields(line);
+        if (fields == null) {
+          continue;
+        } else if (fields[0].equals("*")) {
+          break;
+        }
+        trace.add(Long.parseLong(fields[0]), 1);
+      }
+    }
+  },
+
+  /**
+   * The Twitter in-memory cache cluster traces (Yang et al., OSDI 2020): comma-separated lines of a
+   * time in seconds, an anonymized key, the key size, the value size, a client id, an operation and
+   * a TTL. Only {@code get} and {@code gets} operations are replayed; the size of an access is the
+   * sum of the key and value sizes.
+   */
+  TWITTER {
+    @Override
+    void read(InputStream in, Trace.Builder trace) throws IOException {
+      BufferedReader reader = reader(in);
+      for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+        if (line.isEmpty() || line.startsWith("#")) {
+          continue;
+        }
+        String[] fields = line.split(",", -1);
+        if (fields.length < 6) {
+          throw new IOException("malformed Twitter trace line: " + line);
+        }
+        String operation = fields[5];
+        if (!operation.equals("get") && !operation.equals("gets")) {
+          continue;
+        }
+        long time = TimeUnit.SECONDS.toNanos(Long.parseLong(fields[0]));
+        int size = Integer.parseInt(fields[2]) + Integer.parseInt(fields[3]);
+        trace.add(parseKey(fields[1]), size, time);
+      }
+    }
+  };
+
+  /** Appends the accesses read from {@code in} to {@code trace}. */
+  abstract void read(InputStream in, Trace.Builder trace) throws IOException;
+
+  /** Writes an access to {@code out} in the {@link #BINARY} format. */
+  public static void writeBinary(DataOutputStream out, long key, int size, long timeNanos)
+      throws IOException {
+    out.writeLong(key);
+    out.writeInt(size);
+    out.writeLong(timeNanos);
+  }
+
+  /** Writes {@code trace} to {@code out} in the {@link #BINARY} format. */
+  public static void writeBinary(Trace trace, OutputStream out) throws IOException {
+    DataOutputStream data = new DataOutputStream(out);
+    for (int i = 0; i < trace.length(); i++) {
+      writeBinary(data, trace.key(i), trace.size(i), trace.time(i));
+    }
+    data.flush();
+  }
+
+  private static BufferedReader reader(InputStream in) {
+    return new BufferedReader(new InputStreamReader(in, UTF_8));
+  }
+
+  /** Splits a line at whitespace, returning null if it is blank or a comment. */
+  private static String[] fields(String line) {
+    String trimmed = line.trim();
+    if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+      return null;
+    }
+    return trimmed.split("\\s+");
+  }
+
+  /** Parses a decimal key, or hashes any other key with 64-bit FNV-1a. */
+  static long parseKey(String key) {
+    try {
+      return Long.parseLong(key);
+    } catch (NumberFormatException e) {
+      long hash = 0xcbf29ce484222325L;
+      for (int i = 0; i < key.length(); i++) {
+        hash ^= key.charAt(i);
+        hash *= 0x100000001b3L;
+      }
+      return hash;
+    }
+  }
+}
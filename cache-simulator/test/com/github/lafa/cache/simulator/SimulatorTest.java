@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2018 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lafa.cache.simulator;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+/** Tests for {@link Simulator} and the {@link Policies}. */
+public class SimulatorTest extends TestCase {
+
+	public void testLocalCacheMatchesLru() {
+		Trace trace = zipfianTrace(20000, 1000);
+		List<SimulationResult> results = Simulator.run(trace,
+				Arrays.asList("localcache:maximumSize=100,concurrencyLevel=1", "lru:maximumSize=100"));
+		assertEquals(results.get(1).hitCount(), results.get(0).hitCount());
+		assertEquals(20000, results.get(0).hitCount() + results.get(0).missCount());
+		assertTrue(results.get(0).hitRate() > 0.1);
+	}
+
+	public void testPoliciesDiffer() {
+		Trace trace = zipfianTrace(20000, 1000);
+		List<SimulationResult> results = Simulator.run(trace,
+				Arrays.asList("lru:maximumSize=100", "fifo:maximumSize=100", "random:maximumSize=100"));
+		for (SimulationResult result : results) {
+			assertTrue(result.toString(), result.hitRate() > 0.1 && result.hitRate() < 1.0);
+		}
+		assertTrue(results.get(0).hitCount() > results.get(1).hitCount());
+	}
+
+	public void testWeighted() {
+		Trace.Builder builder = new Trace.Builder();
+		for (int i = 0; i < 10; i++) {
+			builder.add(3, 10).add(1, 60).add(3, 10).add(2, 60).add(3, 10);
+		}
+		Trace trace = builder.build();
+		for (String policy : Arrays.asList("lru:maximumWeight=100",
+				"localcache:maximumWeight=100,concurrencyLevel=1")) {
+			SimulationResult result = Simulator.run(trace, Policies.create(policy));
+			// 1 and 2 evict each other; 3 always hits after its first access
+			assertEquals(policy, 29, result.hitCount());
+			assertEquals(290.0 / 1500, result.byteHitRate(), 1e-9);
+		}
+	}
+
+	public void testOversized() {
+		Trace trace = new Trace.Builder().add(1, 200).add(1, 200).build();
+		assertEquals(0, Simulator.run(trace, Policies.create("fifo:maximumWeight=100")).hitCount());
+	}
+
+	public void testExpiration() {
+		long second = TimeUnit.SECONDS.toNanos(1);
+		Trace trace = new Trace.Builder().add(1, 1, second).add(1, 1, 2 * second)
+				.add(1, 1, 10 * second).add(1, 1, 11 * second).build();
+		SimulationResult result =
+				Simulator.run(trace, Policies.create("localcache:expireAfterWrite=5s"));
+		assertEquals(2, result.hitCount());
+		assertEquals(0.5, result.hitRate(), 0.0);
+	}
+
+	public void testSampledTraceScalesBounds() {
+		Trace full = zipfianTrace(20000, 1000);
+		Trace.Builder builder = new Trace.Builder().samplingRate(0.1);
+		for (int i = 0; i < full.length(); i++) {
+			builder.add(full.key(i), full.size(i));
+		}
+		Trace sampled = builder.build();
+		assertEquals(0.1, sampled.samplingRate(), 0.0);
+
+		List<SimulationResult> results = Simulator.run(sampled,
+				Arrays.asList("lru:maximumSize=1000", "localcache:concurrencyLevel=1, maximumSize=1000"));
+		assertEquals("lru:maximumSize=100", results.get(0).policy());
+		assertEquals("localcache:concurrencyLevel=1,maximumSize=100", results.get(1).policy());
+		assertEquals(Simulator.run(full, Policies.create("lru:maximumSize=100")).hitCount(),
+				results.get(0).hitCount());
+		assertEquals(results.get(0).hitCount(), results.get(1).hitCount());
+
+		assertEquals("fifo:maximumWeight=1", Policies.create("fifo:maximumWeight=3", 0.1).toString());
+		try {
+			new Trace.Builder().samplingRate(0);
+			fail();
+		} catch (IllegalArgumentException expected) {
+		}
+	}
+
+	public void testInvalidPolicies() {
+		for (String policy : Arrays.asList("lru", "lru:", "lru:maximumSize=0", "lfu:maximumSize=1",
+				"localcache:unknownKey=1")) {
+			try {
+				Policies.create(policy);
+				fail(policy);
+			} catch (IllegalArgumentException expected) {
+			}
+		}
+	}
+
+	/** Returns a trace of keys drawn from a Zipf-like distribution with exponent 1. */
+	private static Trace zipfianTrace(int length, int keys) {
+		double[] cumulative = new double[keys];
+		double total = 0;
+		for (int i = 0; i < keys; i++) {
+			total += 1.0 / (i + 1);
+			cumulative[i] = total;
+		}
+		Random random = new Random(42);
+		Trace.Builder builder = new Trace.Builder();
+		for (int i = 0; i < length; i++) {
+			int index = Arrays.binarySearch(cumulative, random.nextDouble() * total);
+			builder.add((index >= 0) ? index : -index - 1, 1);
+		}
+		return builder.build();
+	}
+}
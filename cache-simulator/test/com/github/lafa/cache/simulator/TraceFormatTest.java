@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2018 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lafa.cache.simulator;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import com.github.lafa.cache.lrucache.AccessTraceRecorder;
+import com.github.lafa.cache.lrucache.Cache;
+import com.github.lafa.cache.lrucache.CacheBuilder;
+
+import junit.framework.TestCase;
+
+/** Tests for {@link TraceFormat} and {@link Trace}. */
+public class TraceFormatTest extends TestCase {
+
+	public void testText() throws IOException {
+		Trace trace = read(TraceFormat.TEXT, "# comment\n1\n\n2 100\nkey 7\n1\n");
+		assertEquals(4, trace.length());
+		assertFalse(trace.hasTimes());
+		assertEquals(1, trace.key(0));
+		assertEquals(1, trace.size(0));
+		assertEquals(2, trace.key(1));
+		assertEquals(100, trace.size(1));
+		assertEquals(TraceFormat.parseKey("key"), trace.key(2));
+		assertEquals(7, trace.size(2));
+		assertEquals(3, trace.distinctKeys());
+	}
+
+	public void testTextTimed() throws IOException {
+		Trace trace = read(TraceFormat.TEXT, "1 10 0\n2 10 5\n");
+		assertTrue(trace.hasTimes());
+		assertEquals(0, trace.time(0));
+		assertEquals(TimeUnit.MILLISECONDS.toNanos(5), trace.time(1));
+	}
+
+	public void testTextMixedTimes() throws IOException {
+		try {
+			read(TraceFormat.TEXT, "1 10 5\n2 10\n");
+			fail();
+		} catch (IllegalArgumentException expected) {
+		}
+	}
+
+	public void testArc() throws IOException {
+		Trace trace = read(TraceFormat.ARC, "10 3 0 0\n5 1 0 0\n");
+		assertEquals(4, trace.length());
+		assertEquals(10, trace.key(0));
+		assertEquals(12, trace.key(2));
+		assertEquals(5, trace.key(3));
+	}
+
+	public void testLirs() throws IOException {
+		Trace trace = read(TraceFormat.LIRS, "3\n4\n*\n5\n");
+		assertEquals(2, trace.length());
+		assertEquals(4, trace.key(1));
+	}
+
+	public void testTwitter() throws IOException {
+		Trace trace = read(TraceFormat.TWITTER,
+				"0,aaa,3,100,1,get,0\n1,bbb,3,50,1,set,0\n2,aaa,3,100,2,gets,0\n");
+		assertEquals(2, trace.length());
+		assertEquals(trace.key(0), trace.key(1));
+		assertEquals(103, trace.size(0));
+		assertEquals(TimeUnit.SECONDS.toNanos(2), trace.time(1));
+	}
+
+	public void testBinaryRoundTrip() throws IOException {
+		Trace trace = read(TraceFormat.TEXT, "1 10 1\n-2 20 2\n" + Long.MAX_VALUE + " 30 3\n");
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		TraceFormat.writeBinary(trace, out);
+		assertEquals(60, out.size());
+		Trace copy = Trace.read(new ByteArrayInputStream(out.toByteArray()), TraceFormat.BINARY);
+		assertEquals(trace.length(), copy.length());
+		assertTrue(copy.hasTimes());
+		for (int i = 0; i < trace.length(); i++) {
+			assertEquals(trace.key(i), copy.key(i));
+			assertEquals(trace.size(i), copy.size(i));
+			assertEquals(trace.time(i), copy.time(i));
+		}
+	}
+
+	public void testBinaryUntimed() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		TraceFormat.writeBinary(read(TraceFormat.LIRS, "1\n2\n"), out);
+		assertFalse(Trace.read(new ByteArrayInputStream(out.toByteArray()), TraceFormat.BINARY).hasTimes());
+	}
+
+	public void testRecorded() throws IOException {
+		Path file = Files.createTempFile("trace", ".bin");
+		try {
+			SimulatedTicker ticker = new SimulatedTicker();
+			AccessTraceRecorder recorder = AccessTraceRecorder.newBuilder(file).samplingRate(1).ticker(ticker)
+					.build();
+			Cache<String, String> cache = CacheBuilder.newBuilder().maximumWeight(100)
+					.weigher((String k, String v) -> v.length()).traceRecorder(recorder).build();
+			ticker.advance(TimeUnit.SECONDS.toNanos(1));
+			cache.getIfPresent("a");
+			cache.put("a", "abc");
+			ticker.advance(TimeUnit.SECONDS.toNanos(1));
+			cache.getIfPresent("a");
+			cache.getIfPresent("b");
+			recorder.close();
+
+			Trace trace = Trace.read(file, TraceFormat.RECORDED);
+			assertEquals(3, trace.length());
+			assertEquals(trace.key(0), trace.key(1));
+			assertFalse(trace.key(0) == trace.key(2));
+			assertEquals(3, trace.size(0));
+			assertEquals(3, trace.size(1));
+			assertEquals(1, trace.size(2));
+			assertEquals(0, trace.time(0));
+			assertEquals(TimeUnit.SECONDS.toNanos(1), trace.time(2));
+			assertEquals(1.0, trace.samplingRate(), 0.0);
+
+			AccessTraceRecorder.newBuilder(file).samplingRate(0.25).build().close();
+			assertEquals(0.25, Trace.read(file, TraceFormat.RECORDED).samplingRate(), 0.0);
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	private static Trace read(TraceFormat format, String text) throws IOException {
+		return Trace.read(new ByteArrayInputStream(text.getBytes(UTF_8)), format);
+	}
+}
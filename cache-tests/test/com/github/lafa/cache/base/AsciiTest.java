@@ -17,6 +17,7 @@
 package com.github.lafa.cache.base;
 
 import com.github.lafa.cache.base.Ascii;
+import com.github.lafa.cache.base.Equivalence;
 import junit.framework.TestCase;
 
 /**
@@ -153,4 +154,15 @@ public class AsciiTest extends TestCase {
 		assertFalse("pa\u00dfword".equalsIgnoreCase("PASSWORD")); // [*]
 		assertFalse(Ascii.equalsIgnoreCase("pa\u00dfword", "PASSWORD"));
 	}
+
+	public void testCaseInsensitiveEquivalence() {
+		Equivalence<CharSequence> equivalence = Ascii.caseInsensitiveEquivalence();
+		assertTrue(equivalence.equivalent("Content-Type", "content-type"));
+		assertTrue(equivalence.equivalent("Content-Type", new StringBuilder("CONTENT-TYPE")));
+		assertFalse(equivalence.equivalent("Content-Type", "Content_Type"));
+		assertFalse(equivalence.equivalent("pa\u00dfword", "PASSWORD"));
+		assertEquals("content-type".hashCode(), equivalence.hash("Content-Type"));
+		assertEquals(equivalence.hash("example.COM"), equivalence.hash(new StringBuilder("Example.com")));
+		assertEquals(IGNORED.hashCode(), equivalence.hash(IGNORED));
+	}
 }
@@ -19,14 +19,19 @@ package com.github.lafa.cache.base;
 import static com.github.lafa.cache.common.testing.SerializableTester.reserialize;
 
 import java.io.Serializable;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
+import com.github.lafa.cache.base.Suppliers.RefreshingMemoizingSupplier;
 import com.github.lafa.cache.common.testing.EqualsTester;
+import com.github.lafa.cache.common.testing.FakeTicker;
 
 import junit.framework.TestCase;
 
@@ -242,6 +247,129 @@ public class SuppliersTest extends TestCase {
 		assertEquals(2, countingSupplier.calls);
 	}
 
+	public void testMemoizeWithRefresh() {
+		CountingSupplier countingSupplier = new CountingSupplier();
+		Queue<Runnable> refreshes = new ArrayDeque<>();
+		FakeTicker ticker = new FakeTicker();
+		Supplier<Integer> memoizedSupplier = new RefreshingMemoizingSupplier<Integer>(countingSupplier, 10,
+				TimeUnit.SECONDS, 0, refreshes::add, ticker);
+
+		// the first value is loaded by the calling thread
+		assertEquals(10, (int) memoizedSupplier.get());
+		assertEquals(1, countingSupplier.calls);
+		ticker.advance(9, TimeUnit.SECONDS);
+		assertEquals(10, (int) memoizedSupplier.get());
+		assertTrue(refreshes.isEmpty());
+
+		// stale values are served while a single refresh is pending
+		ticker.advance(1, TimeUnit.SECONDS);
+		assertEquals(10, (int) memoizedSupplier.get());
+		assertEquals(10, (int) memoizedSupplier.get());
+		assertEquals(1, refreshes.size());
+		assertEquals(1, countingSupplier.calls);
+
+		refreshes.remove().run();
+		assertEquals(2, countingSupplier.calls);
+		assertEquals(20, (int) memoizedSupplier.get());
+		assertTrue(refreshes.isEmpty());
+	}
+
+	public void testMemoizeWithRefresh_failureKeepsStaleValue() {
+		AtomicInteger calls = new AtomicInteger();
+		Supplier<Integer> failsAfterFirst = () -> {
+			if (calls.incrementAndGet() > 1) {
+				throw new IllegalStateException();
+			}
+			return 1;
+		};
+		Queue<Runnable> refreshes = new ArrayDeque<>();
+		FakeTicker ticker = new FakeTicker();
+		Supplier<Integer> memoizedSupplier = new RefreshingMemoizingSupplier<Integer>(failsAfterFirst, 1,
+				TimeUnit.SECONDS, 0, refreshes::add, ticker);
+
+		assertEquals(1, (int) memoizedSupplier.get());
+		ticker.advance(1, TimeUnit.SECONDS);
+		assertEquals(1, (int) memoizedSupplier.get());
+		refreshes.remove().run();
+		assertEquals(2, calls.get());
+
+		// the failed refresh is retried by the next call
+		assertEquals(1, (int) memoizedSupplier.get());
+		assertEquals(1, refreshes.size());
+	}
+
+	public void testMemoizeWithRefresh_errorPropagates() {
+		AtomicInteger calls = new AtomicInteger();
+		Supplier<Integer> errsAfterFirst = () -> {
+			if (calls.incrementAndGet() > 1) {
+				throw new StackOverflowError();
+			}
+			return 1;
+		};
+		Queue<Runnable> refreshes = new ArrayDeque<>();
+		FakeTicker ticker = new FakeTicker();
+		Supplier<Integer> memoizedSupplier = new RefreshingMemoizingSupplier<Integer>(errsAfterFirst, 1,
+				TimeUnit.SECONDS, 0, refreshes::add, ticker);
+		assertFalse(memoizedSupplier instanceof Runnable);
+
+		assertEquals(1, (int) memoizedSupplier.get());
+		ticker.advance(1, TimeUnit.SECONDS);
+		assertEquals(1, (int) memoizedSupplier.get());
+		try {
+			refreshes.remove().run();
+			fail();
+		} catch (StackOverflowError expected) {
+		}
+
+		// errors are not swallowed, but the refresh is still retried
+		assertEquals(1, (int) memoizedSupplier.get());
+		assertEquals(1, refreshes.size());
+	}
+
+	public void testMemoizeWithRefresh_rejectedRefreshIsRetried() {
+		CountingSupplier countingSupplier = new CountingSupplier();
+		AtomicInteger rejections = new AtomicInteger();
+		FakeTicker ticker = new FakeTicker();
+		Supplier<Integer> memoizedSupplier = new RefreshingMemoizingSupplier<Integer>(countingSupplier, 1,
+				TimeUnit.SECONDS, 0, command -> {
+					if (rejections.getAndIncrement() == 0) {
+						throw new RejectedExecutionException();
+					}
+					command.run();
+				}, ticker);
+
+		assertEquals(10, (int) memoizedSupplier.get());
+		ticker.advance(1, TimeUnit.SECONDS);
+		assertEquals(10, (int) memoizedSupplier.get());
+		assertEquals(10, (int) memoizedSupplier.get());
+		assertEquals(20, (int) memoizedSupplier.get());
+		assertEquals(2, rejections.get());
+	}
+
+	public void testMemoizeWithRefresh_jitter() {
+		FakeTicker ticker = new FakeTicker();
+		for (int i = 0; i < 100; i++) {
+			RefreshingMemoizingSupplier<Integer> memoizedSupplier = new RefreshingMemoizingSupplier<Integer>(
+					new CountingSupplier(), 100, TimeUnit.NANOSECONDS, 0.5, Runnable::run, ticker);
+			memoizedSupplier.get();
+			long delay = memoizedSupplier.snapshot.refreshNanos - ticker.read();
+			assertTrue(Long.toString(delay), delay > 50 && delay <= 100);
+		}
+	}
+
+	public void testMemoizeWithRefresh_invalidArguments() {
+		try {
+			Suppliers.memoizeWithRefresh(new CountingSupplier(), 0, TimeUnit.SECONDS, Runnable::run);
+			fail();
+		} catch (IllegalArgumentException expected) {
+		}
+		try {
+			Suppliers.memoizeWithRefresh(new CountingSupplier(), 1, TimeUnit.SECONDS, 1.0, Runnable::run);
+			fail();
+		} catch (IllegalArgumentException expected) {
+		}
+	}
+
 	public void testOfInstanceSuppliesSameInstance() {
 		Object toBeSupplied = new Object();
 		Supplier<Object> objectSupplier = Suppliers.ofInstance(toBeSupplied);
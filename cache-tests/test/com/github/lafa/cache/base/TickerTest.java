@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2018 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.lafa.cache.base;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import junit.framework.TestCase;
+
+/** Unit test for {@link Ticker}. */
+public class TickerTest extends TestCase {
+
+	public void testCoarseTickerIsShared() {
+		assertSame(Ticker.coarseTicker(2, MILLISECONDS), Ticker.coarseTicker(2000, MICROSECONDS));
+		assertNotSame(Ticker.coarseTicker(2, MILLISECONDS), Ticker.coarseTicker(3, MILLISECONDS));
+	}
+
+	public void testCoarseTickerAdvances() throws InterruptedException {
+		Ticker ticker = Ticker.coarseTicker(1, MILLISECONDS);
+		long first = ticker.read();
+		long previous = first;
+		long deadline = System.nanoTime() + MILLISECONDS.toNanos(5000);
+		while (ticker.read() == first && System.nanoTime() < deadline) {
+			long now = ticker.read();
+			assertTrue(now >= previous);
+			previous = now;
+			Thread.sleep(1);
+		}
+		long read = ticker.read();
+		assertTrue(read > first);
+		// the ticker lags, but never leads, the system time
+		assertTrue(read <= System.nanoTime());
+	}
+
+	public void testCoarseTickerRejectsNonPositiveResolution() {
+		try {
+			Ticker.coarseTicker(0, MILLISECONDS);
+			fail();
+		} catch (IllegalArgumentException expected) {
+		}
+	}
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2018 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.lafa.cache.lrucache;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.google.caliper.AfterExperiment;
+import com.google.caliper.BeforeExperiment;
+import com.google.caliper.Benchmark;
+import com.google.caliper.Param;
+
+/**
+ * Measures {@link Cache#getIfPresent} and {@link Cache#put} of a size-bounded cache, without a
+ * {@linkplain CacheBuilder#traceRecorder trace recorder} and with one sampling a given fraction
+ * of keys, flushed every 100 ms.
+ */
+public class AccessTraceRecorderBenchmark {
+
+	@Param({ "0", "0.01", "0.1" })
+	double samplingRate;
+
+	@Param({ "100000" })
+	int size;
+
+	private Cache<Integer, Integer> cache;
+	private Integer[] keys;
+	private Path file;
+	private AccessTraceRecorder recorder;
+	private ScheduledExecutorService executor;
+
+	@BeforeExperiment
+	void setUp() throws IOException {
+		CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder().maximumSize(size);
+		if (samplingRate > 0) {
+			file = Files.createTempFile("trace", ".bin");
+			executor = Executors.newSingleThreadScheduledExecutor();
+			recorder = AccessTraceRecorder.newBuilder(file).samplingRate(samplingRate)
+					.flushEvery(executor, 100, TimeUnit.MILLISECONDS).build();
+			builder.traceRecorder(recorder);
+		}
+		cache = builder.build();
+		keys = new Integer[2 * size];
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = i;
+		}
+		for (int i = 0; i < size; i++) {
+			cache.put(keys[i], i);
+		}
+	}
+
+	@AfterExperiment
+	void tearDown() throws IOException {
+		if (recorder != null) {
+			recorder.close();
+			executor.shutdown();
+			Files.delete(file);
+		}
+	}
+
+	@Benchmark
+	int get(int reps) {
+		int dummy = 0;
+		for (int i = 0; i < reps; i++) {
+			Integer value = cache.getIfPresent(keys[i * 7 % keys.length]);
+			dummy += (value == null) ? 0 : value;
+		}
+		return dummy;
+	}
+
+	@Benchmark
+	void put(int reps) {
+		for (int i = 0; i < reps; i++) {
+			cache.put(keys[i % size], i);
+		}
+	}
+}
@@ -0,0 +1,262 @@
+/*
+ * Copyright (C) 2018 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.lafa.cache.lrucache;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.github.lafa.cache.common.testing.FakeTicker;
+
+import junit.framework.TestCase;
+
+/** Tests for {@link AccessTraceRecorder}. */
+public class AccessTraceRecorderTest extends TestCase {
+
+	private Path file;
+
+	@Override
+	protected void setUp() throws IOException {
+		file = Files.createTempFile("trace", ".bin");
+	}
+
+	@Override
+	protected void tearDown() throws IOException {
+		Files.deleteIfExists(file);
+	}
+
+	public void testRecordsEveryAccess() throws IOException {
+		FakeTicker ticker = new FakeTicker();
+		AccessTraceRecorder recorder = AccessTraceRecorder.newBuilder(file).samplingRate(1).ticker(ticker).build();
+		Cache<String, String> cache = CacheBuilder.newBuilder().maximumWeight(100)
+				.weigher((String k, String v) -> v.length()).traceRecorder(recorder).build();
+		assertNull(cache.getIfPresent("a"));
+		ticker.advance(1, SECONDS);
+		cache.put("a", "abc");
+		ticker.advance(1, SECONDS);
+		assertEquals("abc", cache.getIfPresent("a"));
+		recorder.close();
+
+		List<long[]> records = read(file, 1.0);
+		assertEquals(3, records.size());
+		assertEquals(3, recorder.recordCount());
+		int hash = ((LocalCache.LocalManualCache<String, String>) cache).localCache.hash("a");
+		for (long[] record : records) {
+			assertEquals(hash, record[0]);
+		}
+		assertRecord(records.get(0), AccessTraceRecorder.MISS, 0, 0);
+		assertRecord(records.get(1), AccessTraceRecorder.PUT, 3, SECONDS.toNanos(1));
+		assertRecord(records.get(2), AccessTraceRecorder.HIT, 3, SECONDS.toNanos(2));
+		assertEquals(AccessTraceRecorder.HEADER_BYTES + 3 * AccessTraceRecorder.RECORD_BYTES, Files.size(file));
+	}
+
+	public void testRecordsWrites() throws IOException {
+		AccessTraceRecorder recorder = AccessTraceRecorder.newBuilder(file).samplingRate(1).build();
+		AtomicInteger weighs = new AtomicInteger();
+		Cache<String, String> cache = CacheBuilder.newBuilder().maximumWeight(100).weigher((String k, String v) -> {
+			weighs.incrementAndGet();
+			return v.length();
+		}).traceRecorder(recorder).build();
+		Map<String, String> batch = new LinkedHashMap<>();
+		batch.put("a", "a");
+		batch.put("b", "bb");
+		cache.putAll(batch);
+		assertEquals("a", cache.asMap().putIfAbsent("a", "other"));
+		assertNull(cache.asMap().putIfAbsent("c", "ccc"));
+		cache.put("a", "aaaa");
+		assertEquals(4, weighs.get());
+		recorder.close();
+
+		// putAll writes segment by segment, so its records may be in either order
+		List<Long> weights = new ArrayList<Long>();
+		for (long[] record : read(file, 1.0)) {
+			assertEquals(AccessTraceRecorder.PUT, record[1]);
+			weights.add(record[2]);
+		}
+		Collections.sort(weights);
+		assertEquals(Arrays.asList(1L, 2L, 3L, 4L), weights);
+	}
+
+	public void testSamplesByKey() throws IOException {
+		AccessTraceRecorder recorder = AccessTraceRecorder.newBuilder(file).samplingRate(0.1)
+				.bufferSize(1 << 16).build();
+		Cache<Integer, Integer> cache = CacheBuilder.newBuilder().traceRecorder(recorder).build();
+		for (int i = 0; i < 10000; i++) {
+			cache.put(i, i);
+		}
+		for (int i = 0; i < 10000; i++) {
+			cache.getIfPresent(i);
+			cache.getIfPresent(-i - 1);
+		}
+		recorder.close();
+		assertEquals(0, recorder.droppedCount());
+
+		Set<Long> puts = new HashSet<Long>();
+		Set<Long> hits = new HashSet<Long>();
+		int misses = 0;
+		for (long[] record : read(file, 0.1)) {
+			if (record[1] == AccessTraceRecorder.PUT) {
+				puts.add(record[0]);
+			} else if (record[1] == AccessTraceRecorder.HIT) {
+				hits.add(record[0]);
+			} else {
+				misses++;
+			}
+		}
+		assertTrue(String.valueOf(puts.size()), puts.size() > 800 && puts.size() < 1200);
+		assertEquals(puts, hits);
+		assertTrue(String.valueOf(misses), misses > 800 && misses < 1200);
+	}
+
+	public void testMaxFileSize() throws IOException {
+		long max = AccessTraceRecorder.HEADER_BYTES + 10 * AccessTraceRecorder.RECORD_BYTES + 5;
+		AccessTraceRecorder recorder = AccessTraceRecorder.newBuilder(file).samplingRate(1)
+				.maxFileSize(max).build();
+		Cache<Integer, Integer> cache = CacheBuilder.newBuilder().traceRecorder(recorder).build();
+		for (int i = 0; i < 100; i++) {
+			cache.getIfPresent(i);
+		}
+		assertTrue(recorder.isRecording());
+		recorder.flush();
+		assertFalse(recorder.isRecording());
+		assertEquals(10, recorder.recordCount());
+		cache.getIfPresent(0);
+		recorder.close();
+		assertEquals(10, read(file, 1.0).size());
+	}
+
+	public void testDropsWhenBufferIsFull() throws IOException {
+		AccessTraceRecorder recorder = AccessTraceRecorder.newBuilder(file).samplingRate(1).bufferSize(4).build();
+		Cache<Integer, Integer> cache = CacheBuilder.newBuilder().traceRecorder(recorder).build();
+		for (int i = 0; i < 10; i++) {
+			cache.getIfPresent(i);
+		}
+		assertEquals(6, recorder.droppedCount());
+		recorder.flush();
+		for (int i = 0; i < 10; i++) {
+			cache.getIfPresent(i);
+		}
+		recorder.close();
+		assertEquals(12, recorder.droppedCount());
+		assertEquals(8, read(file, 1.0).size());
+	}
+
+	public void testFrontCacheHits() throws IOException {
+		AccessTraceRecorder recorder = AccessTraceRecorder.newBuilder(file).samplingRate(1)
+				.bufferSize(1024).build();
+		Cache<Integer, Integer> cache = CacheBuilder.newBuilder().frontCacheSize(16).traceRecorder(recorder)
+				.build();
+		cache.put(1, 1);
+		for (int i = 0; i < 200; i++) {
+			assertEquals(Integer.valueOf(1), cache.getIfPresent(1));
+		}
+		recorder.close();
+		List<long[]> records = read(file, 1.0);
+		assertEquals(201, records.size());
+		for (long[] record : records.subList(1, 201)) {
+			assertEquals(AccessTraceRecorder.HIT, record[1]);
+		}
+	}
+
+	public void testFlushEvery() throws Exception {
+		ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+		try {
+			AccessTraceRecorder recorder = AccessTraceRecorder.newBuilder(file).samplingRate(1)
+					.flushEvery(executor, 10, MILLISECONDS).build();
+			Cache<Integer, Integer> cache = CacheBuilder.newBuilder().traceRecorder(recorder).build();
+			cache.put(1, 1);
+			for (int i = 0; i < 500 && recorder.recordCount() == 0; i++) {
+				Thread.sleep(10);
+			}
+			assertEquals(1, recorder.recordCount());
+			recorder.close();
+			recorder.close();
+			assertFalse(recorder.isRecording());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	public void testBuilderValidation() throws IOException {
+		AccessTraceRecorder.Builder builder = AccessTraceRecorder.newBuilder(file);
+		try {
+			builder.samplingRate(0);
+			fail();
+		} catch (IllegalArgumentException expected) {
+		}
+		try {
+			builder.samplingRate(1.5);
+			fail();
+		} catch (IllegalArgumentException expected) {
+		}
+		try {
+			builder.maxFileSize(AccessTraceRecorder.HEADER_BYTES - 1);
+			fail();
+		} catch (IllegalArgumentException expected) {
+		}
+		try {
+			builder.bufferSize(0);
+			fail();
+		} catch (IllegalArgumentException expected) {
+		}
+
+		AccessTraceRecorder recorder = builder.build();
+		CacheBuilder<Object, Object> cacheBuilder = CacheBuilder.newBuilder().traceRecorder(recorder);
+		try {
+			cacheBuilder.traceRecorder(recorder);
+			fail();
+		} catch (IllegalStateException expected) {
+		}
+		assertTrue(cacheBuilder.toString().contains("traceRecorder"));
+		recorder.close();
+	}
+
+	private static void assertRecord(long[] record, byte operation, int weight, long time) {
+		assertEquals(operation, record[1]);
+		assertEquals(weight, record[2]);
+		assertEquals(time, record[3]);
+	}
+
+	/** Reads the records of a trace file as arrays of hash, operation, weight and time. */
+	private static List<long[]> read(Path file, double samplingRate) throws IOException {
+		try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+			assertEquals(AccessTraceRecorder.MAGIC, in.readInt());
+			assertEquals(AccessTraceRecorder.VERSION, in.readInt());
+			assertEquals(samplingRate, in.readDouble(), 0.0);
+			List<long[]> records = new ArrayList<long[]>();
+			while (in.available() > 0) {
+				records.add(new long[] {in.readInt(), in.readByte(), in.readInt(), in.readLong()});
+			}
+			return records;
+		}
+	}
+}
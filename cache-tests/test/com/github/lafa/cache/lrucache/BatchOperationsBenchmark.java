@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2018 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.lafa.cache.lrucache;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.caliper.BeforeExperiment;
+import com.google.caliper.Benchmark;
+import com.google.caliper.Param;
+
+/**
+ * Measures {@link Cache#putAll}, {@link Cache#getAllPresent} and {@link Cache#invalidateAll(Iterable)},
+ * which take each segment's lock once per batch, against the equivalent loops of single-key calls.
+ */
+public class BatchOperationsBenchmark {
+
+	@Param({ "1000", "100000" })
+	int batchSize;
+
+	@Param({ "4", "16" })
+	int concurrencyLevel;
+
+	private Cache<Integer, Integer> cache;
+	private Map<Integer, Integer> batch;
+	private List<Integer> keys;
+
+	@BeforeExperiment
+	void setUp() {
+		cache = CacheBuilder.newBuilder().concurrencyLevel(concurrencyLevel).maximumSize(2 * batchSize).build();
+		batch = new HashMap<>();
+		keys = new ArrayList<>();
+		for (int i = 0; i < batchSize; i++) {
+			batch.put(i, i);
+			keys.add(i);
+		}
+	}
+
+	@Benchmark
+	long batchPutAndInvalidate(int reps) {
+		long dummy = 0;
+		for (int i = 0; i < reps; i++) {
+			cache.putAll(batch);
+			dummy += cache.size();
+			cache.invalidateAll(keys);
+		}
+		return dummy;
+	}
+
+	@Benchmark
+	long loopPutAndInvalidate(int reps) {
+		long dummy = 0;
+		for (int i = 0; i < reps; i++) {
+			for (Map.Entry<Integer, Integer> entry : batch.entrySet()) {
+				cache.put(entry.getKey(), entry.getValue());
+			}
+			dummy += cache.size();
+			for (Integer key : keys) {
+				cache.invalidate(key);
+			}
+		}
+		return dummy;
+	}
+
+	@Benchmark
+	int batchGet(int reps) {
+		cache.putAll(batch);
+		int dummy = 0;
+		for (int i = 0; i < reps; i++) {
+			dummy += cache.getAllPresent(keys).size();
+		}
+		return dummy;
+	}
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2018 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.lafa.cache.lrucache;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+
+import java.nio.ByteBuffer;
+
+import com.google.caliper.BeforeExperiment;
+import com.google.caliper.Benchmark;
+import com.google.caliper.Param;
+
+/**
+ * Compares looking up keys held in a shared buffer by copying each one into a {@code String} key
+ * with looking them up in place in a {@link ByteKeyCache}, as a range of an array or as a direct
+ * buffer. The in-place lookups should report no allocation; caches that record accesses, for
+ * size-based eviction or expiration after access, still queue a node per read.
+ */
+public class ByteKeyCacheBenchmark {
+
+	@Param({ "16", "64" })
+	int keyLength;
+
+	@Param({ "1024" })
+	int keys;
+
+	private byte[] buf;
+	private ByteBuffer direct;
+	private Cache<String, Object> stringCache;
+	private ByteKeyCache<Object> byteCache;
+
+	@BeforeExperiment
+	void setUp() {
+		buf = new byte[keys * keyLength];
+		for (int i = 0; i < buf.length; i++) {
+			buf[i] = (byte) ('a' + (i * 7 + i / keyLength) % 26);
+		}
+		direct = ByteBuffer.allocateDirect(buf.length);
+		direct.put(buf).clear();
+		stringCache = CacheBuilder.newBuilder().build();
+		byteCache = CacheBuilder.newBuilder().buildByteKeyCache();
+		for (int i = 0; i < keys; i++) {
+			stringCache.put(new String(buf, i * keyLength, keyLength, ISO_8859_1), i);
+			byteCache.put(buf, i * keyLength, keyLength, i);
+		}
+	}
+
+	@Benchmark
+	int copyToString(int reps) {
+		int dummy = 0;
+		for (int i = 0; i < reps; i++) {
+			int off = (i % keys) * keyLength;
+			if (stringCache.getIfPresent(new String(buf, off, keyLength, ISO_8859_1)) != null) {
+				dummy++;
+			}
+		}
+		return dummy;
+	}
+
+	@Benchmark
+	int arraySlice(int reps) {
+		int dummy = 0;
+		for (int i = 0; i < reps; i++) {
+			if (byteCache.getIfPresent(buf, (i % keys) * keyLength, keyLength) != null) {
+				dummy++;
+			}
+		}
+		return dummy;
+	}
+
+	@Benchmark
+	int directBuffer(int reps) {
+		int dummy = 0;
+		for (int i = 0; i < reps; i++) {
+			int off = (i % keys) * keyLength;
+			direct.limit(off + keyLength).position(off);
+			if (byteCache.getIfPresent(direct) != null) {
+				dummy++;
+			}
+			direct.clear();
+		}
+		return dummy;
+	}
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2018 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.lafa.cache.lrucache;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import com.github.lafa.cache.base.ByteArrayEquivalence;
+import com.github.lafa.cache.base.Equivalence;
+
+import junit.framework.TestCase;
+
+/** Tests for {@link ByteKeyCache}. */
+public class ByteKeyCacheTest extends TestCase {
+
+	private static byte[] bytes(String s) {
+		return s.getBytes(US_ASCII);
+	}
+
+	public void testEquivalence() {
+		ByteArrayEquivalence equivalence = Equivalence.byteArrays();
+		byte[] buf = bytes("xxkeyxx");
+		assertTrue(equivalence.equivalent(bytes("key"), bytes("key")));
+		assertFalse(equivalence.equivalent(bytes("key"), bytes("kez")));
+		assertTrue(equivalence.equivalent(bytes("key"), buf, 2, 3));
+		assertFalse(equivalence.equivalent(bytes("key"), buf, 2, 4));
+		assertEquals(Arrays.hashCode(bytes("key")), equivalence.hash(bytes("key")));
+		assertEquals(equivalence.hash(bytes("key")), equivalence.hash(buf, 2, 3));
+		assertEquals(Arrays.hashCode(new byte[0]), equivalence.hash(buf, 7, 0));
+
+		ByteBuffer buffer = ByteBuffer.wrap(buf, 2, 3);
+		assertTrue(equivalence.equivalent(bytes("key"), buffer));
+		assertEquals(equivalence.hash(bytes("key")), equivalence.hash(buffer));
+		assertEquals(2, buffer.position());
+
+		try {
+			equivalence.hash(buf, 5, 3);
+			fail();
+		} catch (IndexOutOfBoundsException expected) {
+		}
+	}
+
+	public void testSliceLookups() {
+		ByteKeyCache<String> cache = CacheBuilder.newBuilder().recordStats().buildByteKeyCache();
+		cache.put(bytes("alpha"), "a");
+		cache.put(bytes("beta"), "b");
+
+		byte[] packet = bytes("GET alpha beta");
+		assertEquals("a", cache.getIfPresent(packet, 4, 5));
+		assertEquals("b", cache.getIfPresent(packet, 10, 4));
+		assertNull(cache.getIfPresent(packet, 4, 4));
+		assertEquals("a", cache.getIfPresent((Object) bytes("alpha")));
+
+		ByteBuffer direct = ByteBuffer.allocateDirect(packet.length);
+		direct.put(packet);
+		direct.position(10);
+		assertEquals("b", cache.getIfPresent(direct));
+		assertEquals(10, direct.position());
+		direct.position(4).limit(9);
+		assertEquals("a", cache.getIfPresent(direct.slice()));
+		direct.limit(8);
+		assertNull(cache.getIfPresent(direct));
+
+		assertEquals(5, cache.stats().hitCount());
+		assertEquals(2, cache.stats().missCount());
+		CacheTesting.checkValidState(cache);
+	}
+
+	public void testPutCopiesKey() {
+		ByteKeyCache<String> cache = CacheBuilder.newBuilder().buildByteKeyCache();
+		byte[] buf = bytes("xxkeyxx");
+		cache.put(buf, 2, 3, "v");
+		byte[] whole = bytes("whole");
+		cache.put(whole, "w");
+		Arrays.fill(buf, (byte) 0);
+		Arrays.fill(whole, (byte) 0);
+
+		assertEquals(2, cache.size());
+		assertEquals("v", cache.getIfPresent(bytes("key"), 0, 3));
+		assertEquals("w", cache.getIfPresent(ByteBuffer.wrap(bytes("whole"))));
+		for (byte[] key : cache.asMap().keySet()) {
+			assertNotSame(buf, key);
+			assertNotSame(whole, key);
+		}
+	}
+
+	public void testInvalidate() {
+		ByteKeyCache<String> cache = CacheBuilder.newBuilder().buildByteKeyCache();
+		cache.put(bytes("one"), "1");
+		cache.put(bytes("two"), "2");
+		cache.invalidate(bytes("[one]"), 1, 3);
+		assertNull(cache.getIfPresent(bytes("one"), 0, 3));
+		assertEquals(1, cache.size());
+		cache.invalidate(bytes("[two]"), 1, 2);
+		cache.invalidate(bytes("three"), 0, 5);
+		assertEquals("2", cache.getIfPresent(bytes("two"), 0, 3));
+		cache.invalidate((Object) bytes("two"));
+		assertEquals(0, cache.size());
+	}
+
+	public void testBuildRejectsWeakKeys() {
+		try {
+			CacheBuilder.newBuilder().weakKeys().buildByteKeyCache();
+			fail();
+		} catch (IllegalStateException expected) {
+		}
+	}
+}
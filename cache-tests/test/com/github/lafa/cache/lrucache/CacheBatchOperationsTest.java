@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2018 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.lafa.cache.lrucache;
+
+import static com.github.lafa.cache.lrucache.TestingRemovalListeners.countingRemovalListener;
+import static java.util.concurrent.TimeUnit.HOURS;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.github.lafa.cache.base.Ticker;
+import com.github.lafa.cache.lrucache.TestingRemovalListeners.CountingRemovalListener;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for the segment-grouped {@link Cache#putAll}, {@link Cache#getAllPresent} and
+ * {@link Cache#invalidateAll(Iterable)}, below and above
+ * {@link LocalCache#PARALLEL_BATCH_THRESHOLD}, and for the {@code getAllPresent} overloads which
+ * fill caller-supplied containers.
+ */
+public class CacheBatchOperationsTest extends TestCase {
+
+	public void testSmallBatches() {
+		checkBatches(100);
+	}
+
+	public void testParallelBatches() {
+		checkBatches(LocalCache.PARALLEL_BATCH_THRESHOLD * 2);
+	}
+
+	private static void checkBatches(int size) {
+		CountingRemovalListener<Integer, Integer> listener = countingRemovalListener();
+		Cache<Integer, Integer> cache = CacheBuilder.newBuilder().concurrencyLevel(16).recordStats()
+				.removalListener(listener).build();
+		Map<Integer, Integer> batch = new LinkedHashMap<>();
+		for (int i = 0; i < size; i++) {
+			batch.put(i, -i);
+		}
+		cache.putAll(batch);
+		assertEquals(size, cache.size());
+		assertEquals(Integer.valueOf(-7), cache.getIfPresent(7));
+
+		// keys are returned in request order, absent keys are misses
+		List<Integer> keys = new ArrayList<>();
+		for (int i = size * 2 - 1; i >= 0; i -= 2) {
+			keys.add(i);
+		}
+		Map<Integer, Integer> present = cache.getAllPresent(keys);
+		assertEquals(size / 2, present.size());
+		List<Integer> expected = new ArrayList<>();
+		for (Integer key : keys) {
+			if (key < size) {
+				expected.add(key);
+			}
+		}
+		assertEquals(expected, new ArrayList<>(present.keySet()));
+		assertEquals(1 + size / 2, cache.stats().hitCount());
+		assertEquals(size - size / 2, cache.stats().missCount());
+
+		cache.invalidateAll(keys);
+		assertEquals(size - size / 2, cache.size());
+		assertEquals(size / 2, listener.getCount());
+		assertEquals(RemovalCause.EXPLICIT, listener.getLastNotification().getCause());
+		assertNull(cache.getIfPresent(1));
+		assertEquals(Integer.valueOf(-2), cache.getIfPresent(2));
+	}
+
+	public void testReplaceAndDuplicates() {
+		CountingRemovalListener<Integer, String> listener = countingRemovalListener();
+		Cache<Integer, String> cache = CacheBuilder.newBuilder().removalListener(listener).build();
+		cache.put(1, "a");
+		Map<Integer, String> batch = new LinkedHashMap<>();
+		batch.put(1, "b");
+		batch.put(2, "c");
+		cache.putAll(batch);
+		assertEquals("b", cache.getIfPresent(1));
+		assertEquals(RemovalCause.REPLACED, listener.getLastNotification().getCause());
+
+		cache.invalidateAll(Arrays.asList(1, 1, 2, 3));
+		assertEquals(0, cache.size());
+		assertEquals(3, listener.getCount());
+	}
+
+	public void testNullKeys() {
+		Cache<Integer, String> cache = CacheBuilder.newBuilder().recordStats().build();
+		cache.put(1, "a");
+		assertEquals(1, cache.getAllPresent(Arrays.asList(null, 1)).size());
+		assertEquals(1, cache.stats().missCount());
+		cache.invalidateAll(Arrays.asList(null, 1));
+		assertEquals(0, cache.size());
+
+		Map<Integer, String> batch = new LinkedHashMap<>();
+		batch.put(2, "b");
+		batch.put(null, "c");
+		try {
+			cache.putAll(batch);
+			fail();
+		} catch (NullPointerException expected) {
+		}
+	}
+
+	public void testEvictionDuringBatch() {
+		Cache<Integer, Integer> cache = CacheBuilder.newBuilder().concurrencyLevel(1).maximumSize(10).build();
+		Map<Integer, Integer> batch = new LinkedHashMap<>();
+		for (int i = 0; i < 100; i++) {
+			batch.put(i, i);
+		}
+		cache.putAll(batch);
+		assertEquals(10, cache.size());
+	}
+
+	public void testGetAllPresentIntoMap() {
+		CountingTicker ticker = new CountingTicker();
+		Cache<Integer, String> cache = CacheBuilder.newBuilder().expireAfterWrite(1, HOURS)
+				.ticker(ticker).recordStats().build();
+		cache.put(1, "a");
+		cache.put(3, "c");
+		Map<Integer, String> results = new HashMap<>();
+		results.put(9, "stale");
+		ticker.reads = 0;
+		assertEquals(2, cache.getAllPresent(Arrays.asList(1, 2, 3, null), results));
+		assertEquals(1, ticker.reads);
+		assertEquals(3, results.size());
+		assertEquals("c", results.get(3));
+		assertEquals(2, cache.stats().hitCount());
+		assertEquals(2, cache.stats().missCount());
+	}
+
+	public void testGetAllPresentIntoArrays() {
+		CountingTicker ticker = new CountingTicker();
+		Cache<Integer, String> cache = CacheBuilder.newBuilder().expireAfterAccess(1, HOURS)
+				.ticker(ticker).recordStats().build();
+		cache.put(1, "a");
+		cache.put(3, "c");
+		Object[] keys = { 1, 2, 3, null };
+		String[] values = { "x", "x", "x", "x", "x" };
+		BitSet present = new BitSet();
+		present.set(1);
+		ticker.reads = 0;
+		assertEquals(2, cache.getAllPresent(keys, values, present));
+		assertEquals(1, ticker.reads);
+		assertEquals(Arrays.asList("a", null, "c", null, "x"), Arrays.asList(values));
+		assertEquals("{0, 2}", present.toString());
+		assertEquals(2, cache.stats().hitCount());
+		assertEquals(2, cache.stats().missCount());
+
+		try {
+			cache.getAllPresent(keys, new String[3], present);
+			fail();
+		} catch (IllegalArgumentException expected) {
+		}
+	}
+
+	public void testGetAllPresentDefaults() {
+		NamespacedCache<String, Integer, String> namespaced = CacheBuilder.newBuilder().buildNamespacedCache();
+		Cache<Integer, String> cache = namespaced.namespace("n");
+		cache.put(1, "a");
+		Map<Integer, String> results = new HashMap<>();
+		assertEquals(1, cache.getAllPresent(Arrays.asList(1, 2), results));
+		assertEquals("a", results.get(1));
+		String[] values = new String[2];
+		BitSet present = new BitSet();
+		assertEquals(1, cache.getAllPresent(new Object[] { 2, 1 }, values, present));
+		assertEquals("{1}", present.toString());
+	}
+
+	/** Counts how often the cache reads the time. */
+	static final class CountingTicker extends Ticker {
+		int reads;
+
+		@Override
+		public long read() {
+			reads++;
+			return 0;
+		}
+	}
+}
@@ -20,6 +20,7 @@ import static com.github.lafa.cache.lrucache.CacheBuilderSpec.parse;
 
 import java.util.concurrent.TimeUnit;
 
+import com.github.lafa.cache.base.Ticker;
 import com.github.lafa.cache.common.testing.EqualsTester;
 import com.github.lafa.cache.lrucache.LocalCache.Strength;
 
@@ -255,6 +256,38 @@ public class CacheBuilderSpecTest extends TestCase {
 				CacheBuilder.from(spec));
 	}
 
+	public void testParse_writeExpirationMilliseconds() {
+		CacheBuilderSpec spec = parse("expireAfterWrite=250ms");
+		assertEquals(TimeUnit.MILLISECONDS, spec.writeExpirationTimeUnit);
+		assertEquals(250L, spec.writeExpirationDuration);
+		assertCacheBuilderEquivalence(CacheBuilder.newBuilder().expireAfterWrite(250L, TimeUnit.MILLISECONDS),
+				CacheBuilder.from(spec));
+	}
+
+	public void testParse_tickerResolution() {
+		CacheBuilderSpec spec = parse("tickerResolution=5ms");
+		assertEquals(TimeUnit.MILLISECONDS, spec.tickerResolutionTimeUnit);
+		assertEquals(5L, spec.tickerResolution);
+		assertCacheBuilderEquivalence(
+				CacheBuilder.newBuilder().ticker(Ticker.coarseTicker(5, TimeUnit.MILLISECONDS)),
+				CacheBuilder.from(spec));
+		assertEquals(spec, parse("tickerResolution=5ms"));
+		assertFalse(spec.equals(parse("tickerResolution=5s")));
+	}
+
+	public void testParse_tickerResolutionInvalid() {
+		try {
+			parse("tickerResolution=0ms");
+			fail("Expected exception");
+		} catch (IllegalArgumentException expected) {
+		}
+		try {
+			parse("tickerResolution=1ms,tickerResolution=2ms");
+			fail("Expected exception");
+		} catch (IllegalArgumentException expected) {
+		}
+	}
+
 	public void testParse_writeExpirationMinutes() {
 		CacheBuilderSpec spec = parse("expireAfterWrite=10m");
 		assertEquals(TimeUnit.MINUTES, spec.writeExpirationTimeUnit);
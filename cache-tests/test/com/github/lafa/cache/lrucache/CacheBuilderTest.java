@@ -21,6 +21,8 @@ import static java.util.concurrent.TimeUnit.SECONDS;
 
 import java.util.Set;
 
+import com.github.lafa.cache.base.Ascii;
+import com.github.lafa.cache.base.Equivalence;
 import com.github.lafa.cache.base.Ticker;
 import com.github.lafa.cache.common.testing.NullPointerTester;
 
@@ -158,6 +160,29 @@ public class CacheBuilderTest extends TestCase {
 	}
 
 	// weakValues
+	public void testKeyEquivalence_setTwice() {
+		CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder().keyEquivalence(Equivalence.identity());
+		try {
+			builder.keyEquivalence(Equivalence.equals());
+			fail();
+		} catch (IllegalStateException expected) {
+		}
+	}
+
+	public void testKeyEquivalence_caseInsensitive() {
+		Cache<String, Integer> cache = CacheBuilder.newBuilder().keyEquivalence(Ascii.caseInsensitiveEquivalence())
+				.build();
+		cache.put("Content-Length", 1);
+		cache.put("CONTENT-LENGTH", 2);
+		assertEquals(1, cache.size());
+		assertEquals(Integer.valueOf(2), cache.getIfPresent("content-length"));
+		assertEquals(Integer.valueOf(2), cache.getIfPresent(new StringBuilder("Content-length")));
+		assertEquals("Content-Length", cache.asMap().keySet().iterator().next());
+		assertTrue(cache.asMap().containsKey("content-LENGTH"));
+		cache.invalidate("CONTENT-length");
+		assertEquals(0, cache.size());
+	}
+
 	public void testValueStrengthSetTwice() {
 		CacheBuilder<Object, Object> builder1 = CacheBuilder.newBuilder().weakValues();
 		try {
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2018 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.lafa.cache.lrucache;
+
+import static com.github.lafa.cache.lrucache.TestingRemovalListeners.countingRemovalListener;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.github.lafa.cache.common.testing.FakeTicker;
+import com.github.lafa.cache.lrucache.TestingRemovalListeners.CountingRemovalListener;
+
+import junit.framework.TestCase;
+
+/** Tests for {@link CacheBulkOperations}. */
+public class CacheBulkOperationsTest extends TestCase {
+
+	private static final int SIZE = 10_000;
+	private static final long[] THRESHOLDS = { 1, 1000, Long.MAX_VALUE };
+
+	private static Cache<Integer, Integer> populate(int concurrencyLevel) {
+		Cache<Integer, Integer> cache = CacheBuilder.newBuilder().concurrencyLevel(concurrencyLevel).build();
+		for (int i = 0; i < SIZE; i++) {
+			cache.put(i, i * 2);
+		}
+		return cache;
+	}
+
+	public void testForEach() {
+		for (int concurrencyLevel : new int[] { 1, 16 }) {
+			Cache<Integer, Integer> cache = populate(concurrencyLevel);
+			for (long threshold : THRESHOLDS) {
+				Set<Integer> seen = ConcurrentHashMap.newKeySet();
+				AtomicLong sum = new AtomicLong();
+				CacheBulkOperations.forEach(cache, threshold, (k, v) -> {
+					assertTrue(seen.add(k));
+					sum.addAndGet(v);
+				});
+				assertEquals(SIZE, seen.size());
+				assertEquals((long) SIZE * (SIZE - 1), sum.get());
+			}
+		}
+	}
+
+	public void testSearch() {
+		Cache<Integer, Integer> cache = populate(16);
+		for (long threshold : THRESHOLDS) {
+			assertEquals("found 1234",
+					CacheBulkOperations.search(cache, threshold, (k, v) -> (v == 2468) ? "found " + k : null));
+			assertNull(CacheBulkOperations.search(cache, threshold, (k, v) -> (v < 0) ? k : null));
+		}
+	}
+
+	public void testReduce() {
+		Cache<Integer, Integer> cache = populate(16);
+		for (long threshold : THRESHOLDS) {
+			assertEquals(Long.valueOf((long) SIZE * (SIZE - 1) / 2),
+					CacheBulkOperations.reduce(cache, threshold, (k, v) -> (long) k, Long::sum));
+			assertEquals(Integer.valueOf(2 * (SIZE - 1)),
+					CacheBulkOperations.reduce(cache, threshold, (k, v) -> v, Math::max));
+			assertNull(CacheBulkOperations.<Integer, Integer, Integer> reduce(cache, threshold, (k, v) -> null, Math::max));
+		}
+	}
+
+	public void testRemoveIf() {
+		for (long threshold : THRESHOLDS) {
+			CountingRemovalListener<Integer, Integer> listener = countingRemovalListener();
+			Cache<Integer, Integer> cache = CacheBuilder.newBuilder().removalListener(listener).build();
+			for (int i = 0; i < SIZE; i++) {
+				cache.put(i, i);
+			}
+			assertEquals(SIZE / 2, CacheBulkOperations.removeIf(cache, threshold, (k, v) -> (k & 1) == 0));
+			assertEquals(SIZE / 2, cache.size());
+			assertEquals(SIZE / 2, listener.getCount());
+			assertEquals(RemovalCause.EXPLICIT, listener.getLastNotification().getCause());
+			assertNull(cache.getIfPresent(0));
+			assertEquals(Integer.valueOf(1), cache.getIfPresent(1));
+			CacheTesting.checkValidState(cache);
+		}
+	}
+
+	public void testSkipsExpired() {
+		FakeTicker ticker = new FakeTicker();
+		Cache<Integer, Integer> cache = CacheBuilder.newBuilder().expireAfterWrite(10, SECONDS).ticker(ticker)
+				.build();
+		for (int i = 0; i < 100; i++) {
+			cache.put(i, i);
+		}
+		ticker.advance(6, SECONDS);
+		cache.put(1000, 1000);
+		ticker.advance(6, SECONDS);
+		for (long threshold : THRESHOLDS) {
+			assertEquals(Long.valueOf(1), CacheBulkOperations.reduce(cache, threshold, (k, v) -> 1L, Long::sum));
+		}
+	}
+
+	public void testInvalidThreshold() {
+		try {
+			CacheBulkOperations.forEach(populate(1), 0, (k, v) -> {
+			});
+			fail();
+		} catch (IllegalArgumentException expected) {
+		}
+	}
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2018 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.lafa.cache.lrucache;
+
+import static com.github.lafa.cache.lrucache.TestingRemovalListeners.countingRemovalListener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import com.github.lafa.cache.lrucache.LocalCache.LocalManualCache;
+import com.github.lafa.cache.lrucache.LocalCache.Segment;
+import com.github.lafa.cache.lrucache.TestingRemovalListeners.CountingRemovalListener;
+
+import junit.framework.TestCase;
+
+/** Tests for {@link CacheBuilder#fastClear}. */
+public class CacheFastClearTest extends TestCase {
+
+	/** Runs tasks when asked to. */
+	static final class QueuedExecutor implements Executor {
+		final List<Runnable> tasks = new ArrayList<>();
+
+		@Override
+		public void execute(Runnable task) {
+			tasks.add(task);
+		}
+
+		void runAll() {
+			for (Runnable task : tasks) {
+				task.run();
+			}
+			tasks.clear();
+		}
+	}
+
+	public void testInvalidateAll() {
+		QueuedExecutor executor = new QueuedExecutor();
+		CountingRemovalListener<Integer, Integer> listener = countingRemovalListener();
+		Cache<Integer, Integer> cache = CacheBuilder.newBuilder().concurrencyLevel(4).maximumSize(10000)
+				.fastClear(executor).removalListener(listener).build();
+		for (int i = 0; i < 1000; i++) {
+			cache.put(i, i);
+		}
+		cache.invalidateAll();
+		assertEquals(0, cache.size());
+		assertNull(cache.getIfPresent(1));
+		assertTrue(cache.asMap().isEmpty());
+
+		// notifications are left to the executor, one task per segment
+		assertEquals(0, listener.getCount());
+		assertEquals(4, executor.tasks.size());
+		executor.runAll();
+		assertEquals(1000, listener.getCount());
+		assertEquals(RemovalCause.EXPLICIT, listener.getLastNotification().getCause());
+
+		cache.put(1, 1);
+		assertEquals(Integer.valueOf(1), cache.getIfPresent(1));
+		assertEquals(1, cache.size());
+		cache.asMap().clear();
+		assertEquals(0, cache.size());
+	}
+
+	public void testNoListener() {
+		QueuedExecutor executor = new QueuedExecutor();
+		Cache<Integer, Integer> cache = CacheBuilder.newBuilder().fastClear(executor).build();
+		cache.put(1, 1);
+		cache.invalidateAll();
+		assertEquals(0, cache.size());
+		assertTrue(executor.tasks.isEmpty());
+	}
+
+	public void testConcurrentReadOfClearedEntry() {
+		Cache<Integer, Integer> cache = CacheBuilder.newBuilder().concurrencyLevel(1).maximumSize(10)
+				.fastClear(new QueuedExecutor()).build();
+		LocalCache<Integer, Integer> map = ((LocalManualCache<Integer, Integer>) cache).localCache;
+		Segment<Integer, Integer> segment = map.segments[0];
+		cache.put(0, 0);
+		ReferenceEntry<Integer, Integer> cleared = segment.getEntry(0, map.hash(0));
+		cache.invalidateAll();
+
+		// a read which found the entry before the clear records it afterwards
+		segment.recencyQueue.add(cleared);
+		for (int i = 1; i <= 20; i++) {
+			cache.put(i, i);
+		}
+		assertEquals(10, cache.size());
+		for (ReferenceEntry<Integer, Integer> e : segment.accessQueue) {
+			assertNotSame(cleared, e);
+		}
+		assertNull(cache.getIfPresent(0));
+	}
+
+	public void testTaggedCacheRejected() {
+		try {
+			CacheBuilder.newBuilder().fastClear(new QueuedExecutor()).buildTaggedCache();
+			fail();
+		} catch (IllegalStateException expected) {
+		}
+	}
+}
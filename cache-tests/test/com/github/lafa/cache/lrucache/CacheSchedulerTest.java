@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2018 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.lafa.cache.lrucache;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import junit.framework.TestCase;
+
+/** Tests for {@link CacheBuilder#scheduler}. */
+public class CacheSchedulerTest extends TestCase {
+
+	private ScheduledExecutorService scheduler;
+
+	@Override
+	protected void setUp() {
+		scheduler = Executors.newSingleThreadScheduledExecutor();
+	}
+
+	@Override
+	protected void tearDown() {
+		scheduler.shutdownNow();
+	}
+
+	public void testExpireIdleCaches() throws InterruptedException {
+		final CountDownLatch expired = new CountDownLatch(6);
+		RemovalListener<Integer, String> listener = new RemovalListener<Integer, String>() {
+			@Override
+			public void onRemoval(RemovalNotification<Integer, String> notification) {
+				assertEquals(RemovalCause.EXPIRED, notification.getCause());
+				expired.countDown();
+			}
+		};
+		Cache<Integer, String> afterWrite = CacheBuilder.newBuilder().expireAfterWrite(50, MILLISECONDS)
+				.scheduler(scheduler).removalListener(listener).build();
+		Cache<Integer, String> afterAccess = CacheBuilder.newBuilder().expireAfterAccess(100, MILLISECONDS)
+				.scheduler(scheduler).removalListener(listener).build();
+		for (int i = 0; i < 3; i++) {
+			afterWrite.put(i, "v" + i);
+			afterAccess.put(i, "v" + i);
+		}
+
+		// neither cache is touched again
+		assertTrue(expired.await(10, SECONDS));
+		assertEquals(0, afterWrite.size());
+		assertEquals(0, afterAccess.size());
+	}
+
+	public void testStaggeredExpiration() throws InterruptedException {
+		final CountDownLatch first = new CountDownLatch(1);
+		final CountDownLatch second = new CountDownLatch(2);
+		Cache<Integer, String> cache = CacheBuilder.newBuilder().expireAfterWrite(100, MILLISECONDS)
+				.scheduler(scheduler).removalListener(new RemovalListener<Integer, String>() {
+					@Override
+					public void onRemoval(RemovalNotification<Integer, String> notification) {
+						first.countDown();
+						second.countDown();
+					}
+				}).build();
+		cache.put(1, "one");
+		Thread.sleep(60);
+		cache.put(2, "two");
+		assertTrue(first.await(10, SECONDS));
+		assertTrue(second.await(10, SECONDS));
+		assertEquals(0, cache.size());
+	}
+
+	public void testNotScheduledWithoutExpiration() {
+		LocalCache<Integer, String> cache = new LocalCache<>(CacheBuilder.newBuilder().scheduler(scheduler));
+		assertNull(cache.cleanupPacer);
+		cache = new LocalCache<>(CacheBuilder.newBuilder().expireAfterWrite(1, SECONDS));
+		assertNull(cache.cleanupPacer);
+		cache = new LocalCache<>(CacheBuilder.newBuilder().weakValues().scheduler(scheduler));
+		assertNotNull(cache.cleanupPacer);
+	}
+
+	public void testShutdownScheduler() {
+		scheduler.shutdown();
+		Cache<Integer, String> cache = CacheBuilder.newBuilder().expireAfterWrite(1, SECONDS).scheduler(scheduler)
+				.build();
+		cache.put(1, "one");
+		cache.put(2, "two");
+		assertEquals(2, cache.size());
+	}
+
+	public void testSchedulerAlreadySet() {
+		try {
+			CacheBuilder.newBuilder().scheduler(scheduler).scheduler(scheduler);
+			fail();
+		} catch (IllegalStateException expected) {
+		}
+	}
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2018 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.lafa.cache.lrucache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import com.google.caliper.BeforeExperiment;
+import com.google.caliper.Benchmark;
+import com.google.caliper.Param;
+
+/**
+ * Benchmark for restoring a {@link CacheSnapshots snapshot} into an empty cache, measured per
+ * restored snapshot.
+ */
+public class CacheSnapshotBenchmark {
+
+	@Param({ "1000000", "4000000" })
+	int size;
+
+	@Param({ "4", "16", "64" })
+	int concurrencyLevel;
+
+	private byte[] snapshot;
+
+	@BeforeExperiment
+	void setUp() throws IOException {
+		Cache<Integer, String> cache = CacheBuilder.newBuilder().concurrencyLevel(concurrencyLevel)
+				.maximumSize(size).build();
+		for (int i = 0; i < size; i++) {
+			cache.put(i, Integer.toString(i));
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		CacheSnapshots.write(cache, out, CacheSnapshotsTest.CODEC);
+		snapshot = out.toByteArray();
+	}
+
+	@Benchmark
+	long restore(int reps) throws IOException {
+		long dummy = 0;
+		for (int i = 0; i < reps; i++) {
+			Cache<Integer, String> cache = CacheBuilder.newBuilder().concurrencyLevel(concurrencyLevel)
+					.initialCapacity(size).maximumSize(size).build();
+			dummy += CacheSnapshots.read(cache, new ByteArrayInputStream(snapshot), CacheSnapshotsTest.CODEC);
+		}
+		return dummy;
+	}
+
+	@Benchmark
+	long write(int reps) throws IOException {
+		Cache<Integer, String> cache = CacheBuilder.newBuilder().concurrencyLevel(concurrencyLevel)
+				.maximumSize(size).build();
+		CacheSnapshots.read(cache, new ByteArrayInputStream(snapshot), CacheSnapshotsTest.CODEC);
+		long dummy = 0;
+		for (int i = 0; i < reps; i++) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream(snapshot.length);
+			dummy += CacheSnapshots.write(cache, out, CacheSnapshotsTest.CODEC);
+		}
+		return dummy;
+	}
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2018 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.lafa.cache.lrucache;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import com.github.lafa.cache.common.testing.FakeTicker;
+
+import junit.framework.TestCase;
+
+/** Tests for {@link CacheSnapshots}. */
+public class CacheSnapshotsTest extends TestCase {
+
+	static final SnapshotCodec<Integer, String> CODEC = new SnapshotCodec<Integer, String>() {
+		@Override
+		public void writeKey(Integer key, DataOutput out) throws IOException {
+			out.writeInt(key);
+		}
+
+		@Override
+		public void writeValue(String value, DataOutput out) throws IOException {
+			out.writeUTF(value);
+		}
+
+		@Override
+		public Integer readKey(DataInput in) throws IOException {
+			return in.readInt();
+		}
+
+		@Override
+		public String readValue(DataInput in) throws IOException {
+			return in.readUTF();
+		}
+	};
+
+	private static byte[] snapshot(Cache<Integer, String> cache) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		CacheSnapshots.write(cache, out, CODEC);
+		return out.toByteArray();
+	}
+
+	private static long restore(Cache<Integer, String> cache, byte[] snapshot) throws IOException {
+		return CacheSnapshots.read(cache, new ByteArrayInputStream(snapshot), CODEC);
+	}
+
+	public void testRoundTrip() throws IOException {
+		Cache<Integer, String> cache = CacheBuilder.newBuilder().concurrencyLevel(8).build();
+		for (int i = 0; i < 5000; i++) {
+			cache.put(i, "v" + i);
+		}
+
+		Cache<Integer, String> restored = CacheBuilder.newBuilder().concurrencyLevel(4).build();
+		assertEquals(5000, restore(restored, snapshot(cache)));
+		assertEquals(5000, restored.size());
+		for (int i = 0; i < 5000; i++) {
+			assertEquals("v" + i, restored.getIfPresent(i));
+		}
+		CacheTesting.checkValidState(restored);
+	}
+
+	public void testRoundTrip_file() throws IOException {
+		Cache<Integer, String> cache = CacheBuilder.newBuilder().build();
+		cache.put(1, "one");
+		cache.put(2, "two");
+
+		Path file = Files.createTempFile("cache", ".snapshot");
+		try {
+			assertEquals(2, CacheSnapshots.write(cache, file, CODEC));
+			Cache<Integer, String> restored = CacheBuilder.newBuilder().build();
+			assertEquals(2, CacheSnapshots.read(restored, file, CODEC));
+			assertEquals("one", restored.getIfPresent(1));
+			assertEquals("two", restored.getIfPresent(2));
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	public void testAccessOrderPreserved() throws IOException {
+		Cache<Integer, String> cache = CacheBuilder.newBuilder().concurrencyLevel(1).maximumSize(3).build();
+		cache.put(1, "one");
+		cache.put(2, "two");
+		cache.put(3, "three");
+		cache.getIfPresent(1);
+
+		Cache<Integer, String> restored = CacheBuilder.newBuilder().concurrencyLevel(1).maximumSize(3).build();
+		assertEquals(3, restore(restored, snapshot(cache)));
+		restored.put(4, "four");
+		assertNull(restored.getIfPresent(2));
+		assertEquals("one", restored.getIfPresent(1));
+		assertEquals("three", restored.getIfPresent(3));
+		CacheTesting.checkValidState(restored);
+	}
+
+	public void testExpirationReevaluated() throws IOException {
+		FakeTicker ticker = new FakeTicker();
+		Cache<Integer, String> cache = CacheBuilder.newBuilder().expireAfterWrite(60, SECONDS).ticker(ticker)
+				.build();
+		cache.put(1, "one");
+		ticker.advance(50, SECONDS);
+		cache.put(2, "two");
+		byte[] snapshot = snapshot(cache);
+
+		FakeTicker newTicker = new FakeTicker();
+		Cache<Integer, String> restored = CacheBuilder.newBuilder().expireAfterWrite(60, SECONDS)
+				.ticker(newTicker).build();
+		assertEquals(2, restore(restored, snapshot));
+		assertEquals("one", restored.getIfPresent(1));
+		newTicker.advance(11, SECONDS);
+		assertNull(restored.getIfPresent(1));
+		assertEquals("two", restored.getIfPresent(2));
+	}
+
+	public void testExpiredEntriesSkipped() throws IOException {
+		FakeTicker ticker = new FakeTicker();
+		Cache<Integer, String> cache = CacheBuilder.newBuilder().expireAfterAccess(60, SECONDS).ticker(ticker)
+				.build();
+		cache.put(1, "one");
+		ticker.advance(50, SECONDS);
+		cache.put(2, "two");
+		byte[] snapshot = snapshot(cache);
+
+		Cache<Integer, String> restored = CacheBuilder.newBuilder().expireAfterAccess(30, SECONDS)
+				.ticker(new FakeTicker()).build();
+		assertEquals(1, restore(restored, snapshot));
+		assertNull(restored.getIfPresent(1));
+		assertEquals("two", restored.getIfPresent(2));
+		assertEquals(1, restored.size());
+	}
+
+	public void testExistingKeysTakePrecedence() throws IOException {
+		Cache<Integer, String> cache = CacheBuilder.newBuilder().build();
+		cache.put(1, "old");
+		cache.put(2, "two");
+
+		Cache<Integer, String> restored = CacheBuilder.newBuilder().build();
+		restored.put(1, "new");
+		assertEquals(1, restore(restored, snapshot(cache)));
+		assertEquals("new", restored.getIfPresent(1));
+		assertEquals("two", restored.getIfPresent(2));
+	}
+
+	public void testRead_notASnapshot() {
+		Cache<Integer, String> cache = CacheBuilder.newBuilder().build();
+		try {
+			restore(cache, new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 });
+			fail();
+		} catch (IOException expected) {
+		}
+	}
+}
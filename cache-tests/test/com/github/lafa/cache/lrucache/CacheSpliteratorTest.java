@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2018 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.lafa.cache.lrucache;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import java.lang.ref.Reference;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.stream.Collectors;
+
+import com.github.lafa.cache.common.testing.FakeTicker;
+import com.github.lafa.cache.lrucache.LocalCache.LocalManualCache;
+import com.github.lafa.cache.lrucache.LocalCache.Segment;
+
+import junit.framework.TestCase;
+
+/** Tests for the spliterators of the {@link Cache#asMap} views. */
+public class CacheSpliteratorTest extends TestCase {
+
+	private static final int SIZE = 10_000;
+
+	private static Cache<Integer, Integer> populate(int concurrencyLevel) {
+		Cache<Integer, Integer> cache = CacheBuilder.newBuilder().concurrencyLevel(concurrencyLevel).build();
+		for (int i = 0; i < SIZE; i++) {
+			cache.put(i, -i);
+		}
+		return cache;
+	}
+
+	public void testCharacteristics() {
+		Cache<Integer, Integer> cache = populate(4);
+		Spliterator<Integer> keys = cache.asMap().keySet().spliterator();
+		assertTrue(keys.hasCharacteristics(Spliterator.CONCURRENT));
+		assertTrue(keys.hasCharacteristics(Spliterator.NONNULL));
+		assertTrue(keys.hasCharacteristics(Spliterator.DISTINCT));
+		assertFalse(keys.hasCharacteristics(Spliterator.SIZED));
+		assertFalse(cache.asMap().values().spliterator().hasCharacteristics(Spliterator.DISTINCT));
+		assertEquals(SIZE, keys.estimateSize());
+	}
+
+	public void testParallelStreams() {
+		for (int concurrencyLevel : new int[] { 1, 4, 64 }) {
+			Cache<Integer, Integer> cache = populate(concurrencyLevel);
+			long expected = (long) SIZE * (SIZE - 1) / 2;
+			assertEquals(expected, cache.asMap().keySet().parallelStream().mapToLong(Integer::longValue).sum());
+			assertEquals(-expected, cache.asMap().values().parallelStream().mapToLong(Integer::longValue).sum());
+			assertEquals(SIZE, cache.asMap().entrySet().parallelStream()
+					.filter(e -> e.getKey() == -e.getValue()).count());
+			assertEquals(cache.asMap().keySet(), cache.asMap().keySet().parallelStream().collect(Collectors.toSet()));
+		}
+	}
+
+	public void testSplitsCoverAllEntries() {
+		for (int concurrencyLevel : new int[] { 1, 8 }) {
+			Cache<Integer, Integer> cache = populate(concurrencyLevel);
+			List<Spliterator<Integer>> leaves = new ArrayList<>();
+			split(cache.asMap().keySet().spliterator(), leaves);
+			assertTrue(leaves.size() > 8);
+
+			long estimated = 0;
+			for (Spliterator<Integer> leaf : leaves) {
+				estimated += leaf.estimateSize();
+			}
+			assertTrue(estimated > SIZE / 2 && estimated <= SIZE);
+
+			Set<Integer> seen = new HashSet<>();
+			for (Spliterator<Integer> leaf : leaves) {
+				// mix single steps with bulk traversal
+				leaf.tryAdvance(key -> assertTrue(seen.add(key)));
+				leaf.forEachRemaining(key -> assertTrue(seen.add(key)));
+				assertFalse(leaf.tryAdvance(key -> fail()));
+			}
+			assertEquals(SIZE, seen.size());
+		}
+	}
+
+	private static <T> void split(Spliterator<T> spliterator, List<Spliterator<T>> leaves) {
+		Spliterator<T> prefix = spliterator.trySplit();
+		if (prefix == null) {
+			leaves.add(spliterator);
+		} else {
+			split(prefix, leaves);
+			split(spliterator, leaves);
+		}
+	}
+
+	public void testSkipsExpired() {
+		FakeTicker ticker = new FakeTicker();
+		Cache<Integer, Integer> cache = CacheBuilder.newBuilder().expireAfterWrite(10, SECONDS).ticker(ticker)
+				.build();
+		for (int i = 0; i < 100; i++) {
+			cache.put(i, i);
+		}
+		ticker.advance(6, SECONDS);
+		for (int i = 100; i < 150; i++) {
+			cache.put(i, i);
+		}
+		ticker.advance(6, SECONDS);
+		assertEquals(50, cache.asMap().keySet().parallelStream().filter(k -> k >= 100).count());
+		assertEquals(50, cache.asMap().values().stream().count());
+	}
+
+	public void testEntriesWriteThrough() {
+		Cache<Integer, Integer> cache = populate(4);
+		cache.asMap().entrySet().parallelStream().forEach(e -> e.setValue(e.getKey()));
+		for (Entry<Integer, Integer> entry : cache.asMap().entrySet()) {
+			assertEquals(entry.getKey(), entry.getValue());
+		}
+	}
+
+	public void testSkipsClearedWeakKeys() {
+		Cache<Integer, Integer> cache = CacheBuilder.newBuilder().concurrencyLevel(4).weakKeys().build();
+		List<Integer> keys = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			Integer key = new Integer(i);
+			keys.add(key);
+			cache.put(key, i);
+		}
+		// clear the referents of the odd keys without collecting them
+		for (Segment<Integer, Integer> segment : ((LocalManualCache<Integer, Integer>) cache).localCache.segments) {
+			AtomicReferenceArray<ReferenceEntry<Integer, Integer>> table = segment.table;
+			for (int i = 0; i < table.length(); i++) {
+				for (ReferenceEntry<Integer, Integer> e = table.get(i); e != null; e = e.getNext()) {
+					if (e.getKey() % 2 == 1) {
+						((Reference<?>) e).clear();
+					}
+				}
+			}
+		}
+
+		Set<Integer> seen = new HashSet<>();
+		Spliterator<Integer> spliterator = cache.asMap().keySet().spliterator();
+		while (spliterator.tryAdvance(seen::add)) {
+		}
+		assertEquals(500, seen.size());
+		assertFalse(seen.contains(null));
+		assertEquals(500, cache.asMap().keySet().stream().filter(k -> k % 2 == 0).count());
+		AtomicInteger visited = new AtomicInteger();
+		CacheBulkOperations.forEach(cache, Long.MAX_VALUE, (k, v) -> {
+			assertEquals(v, k);
+			visited.incrementAndGet();
+		});
+		assertEquals(500, visited.get());
+		assertEquals(1000, keys.size());
+	}
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2018 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lafa.cache.lrucache;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CyclicBarrier;
+
+import com.github.lafa.cache.common.testing.FakeTicker;
+import com.github.lafa.cache.lrucache.LinearizabilityChecker.Operation;
+import com.github.lafa.cache.lrucache.LinearizabilityChecker.Recorder;
+import com.github.lafa.cache.lrucache.LinearizabilityChecker.Type;
+
+import junit.framework.TestCase;
+
+/**
+ * Concurrency stress tests of {@link LocalCache}, using {@link CacheStressTester} and
+ * {@link LinearizabilityChecker}.
+ */
+public class CacheStressTest extends TestCase {
+
+	private static final int THREADS = 4;
+	private static final int OPERATIONS = 4000;
+
+	public void testUnbounded() throws Exception {
+		stress(CacheBuilder.newBuilder().concurrencyLevel(2), null);
+	}
+
+	public void testSizeBounded() throws Exception {
+		stress(CacheBuilder.newBuilder().concurrencyLevel(1).maximumSize(20), null);
+		stress(CacheBuilder.newBuilder().concurrencyLevel(4).maximumSize(40), null);
+	}
+
+	public void testWeighted() throws Exception {
+		stress(CacheBuilder.newBuilder().maximumWeight(100)
+				.weigher((Object key, Object value) -> 1 + (int) ((Long) value % 7)), null);
+	}
+
+	public void testExpiring() throws Exception {
+		FakeTicker ticker = new FakeTicker();
+		stress(CacheBuilder.newBuilder().ticker(ticker).expireAfterWrite(1, SECONDS), ticker);
+		ticker = new FakeTicker();
+		stress(CacheBuilder.newBuilder().ticker(ticker).expireAfterAccess(1, SECONDS).maximumSize(30), ticker);
+	}
+
+	public void testWeakKeys() throws Exception {
+		stress(CacheBuilder.newBuilder().weakKeys().maximumSize(30), null);
+	}
+
+	public void testFrontCache() throws Exception {
+		stress(CacheBuilder.newBuilder().frontCacheSize(16).maximumSize(30), null);
+	}
+
+	public void testLinearizable() throws Exception {
+		for (Object[] configuration : Arrays.asList(
+				new Object[] { "unbounded", CacheBuilder.newBuilder() },
+				new Object[] { "frontCache", CacheBuilder.newBuilder().frontCacheSize(4) },
+				new Object[] { "access", CacheBuilder.newBuilder().expireAfterAccess(1, SECONDS).maximumSize(1000) })) {
+			CacheBuilder<Object, Object> builder = (CacheBuilder<Object, Object>) configuration[1];
+			for (int trial = 0; trial < 100; trial++) {
+				Cache<Integer, Integer> cache = builder.build();
+				List<Operation> history = recordHistory(cache, 3, 5, trial);
+				assertTrue(configuration[0] + " " + history, LinearizabilityChecker.isLinearizable(history));
+			}
+		}
+	}
+
+	public void testLinearizabilityCheckerRejects() {
+		// put returned before get was invoked, so get must see its value
+		List<Operation> history = Arrays.asList(
+				new Operation(Type.PUT, 0, 1, null, 1, 2),
+				new Operation(Type.GET, 0, null, null, 3, 4));
+		assertFalse(LinearizabilityChecker.isLinearizable(history));
+
+		// both removals overlap, but only one may succeed
+		history = Arrays.asList(
+				new Operation(Type.PUT, 0, 1, null, 1, 2),
+				new Operation(Type.REMOVE_VALUE, 0, 1, true, 3, 6),
+				new Operation(Type.REMOVE_VALUE, 0, 1, true, 4, 5));
+		assertFalse(LinearizabilityChecker.isLinearizable(history));
+	}
+
+	public void testLinearizabilityCheckerAccepts() {
+		// the get overlaps the put, so it may see either the old or the new value
+		for (Integer seen : Arrays.asList(1, 2)) {
+			List<Operation> history = Arrays.asList(
+					new Operation(Type.PUT, 0, 1, null, 1, 2),
+					new Operation(Type.PUT, 0, 2, 1, 3, 6),
+					new Operation(Type.GET, 0, null, seen, 4, 5));
+			assertTrue(LinearizabilityChecker.isLinearizable(history));
+		}
+	}
+
+	private static void stress(CacheBuilder<Object, Object> builder, FakeTicker ticker) throws Exception {
+		CacheStressTester tester = new CacheStressTester(builder, ticker);
+		for (int round = 0; round < 2; round++) {
+			tester.run(THREADS, OPERATIONS, round);
+			tester.checkInvariants();
+		}
+	}
+
+	/**
+	 * Runs {@code operations} random operations on two keys of {@code cache} from each of {@code
+	 * threads} threads, started together, and returns their history.
+	 */
+	private static List<Operation> recordHistory(Cache<Integer, Integer> cache, int threads, int operations,
+			long seed) throws Exception {
+		Recorder recorder = new Recorder();
+		CyclicBarrier barrier = new CyclicBarrier(threads);
+		List<Thread> workers = new ArrayList<Thread>();
+		for (int t = 0; t < threads; t++) {
+			Random random = new Random(seed * threads + t);
+			workers.add(new Thread(() -> {
+				try {
+					barrier.await();
+				} catch (Exception e) {
+					throw new AssertionError(e);
+				}
+				for (int i = 0; i < operations; i++) {
+					// reads through getIfPresent, which a front cache may answer, are a third of the operations
+					Type type = random.nextInt(3) == 0 ? Type.GET_IF_PRESENT
+							: Type.values()[random.nextInt(Type.values().length)];
+					recorder.perform(cache, type, random.nextInt(2), random.nextInt(3));
+				}
+			}));
+		}
+		for (Thread worker : workers) {
+			worker.start();
+		}
+		for (Thread worker : workers) {
+			worker.join();
+		}
+		assertEquals(threads * operations, recorder.history().size());
+		return recorder.history();
+	}
+}
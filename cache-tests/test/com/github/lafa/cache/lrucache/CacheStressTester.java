@@ -0,0 +1,283 @@
+/*
+ * Copyright (C) 2018 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lafa.cache.lrucache;
+
+import static com.github.lafa.cache.lrucache.CacheTesting.checkValidState;
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.checkerframework.checker.nullness.compatqual.NullableDecl;
+
+import com.github.lafa.cache.common.testing.FakeTicker;
+import com.github.lafa.cache.lrucache.LocalCache.LocalManualCache;
+import com.github.lafa.cache.lrucache.LocalCache.Segment;
+
+/**
+ * Runs randomized operations from several threads at once against a cache, through both the
+ * {@link Cache} API and its {@link Cache#asMap} view, and then checks the cache's internal
+ * invariants once it is quiescent:
+ *
+ * <ul>
+ * <li>the state checked by {@link CacheTesting#checkValidState}, including that every entry is
+ * in the access and write queues that the cache maintains, and only once;
+ * <li>that each segment's {@code count} and {@code totalWeight} match its live entries, and that
+ * the total weight is within the maximum;
+ * <li>that every value which was ever stored in the cache is either still in it or was passed to
+ * the removal listener, exactly once.
+ * </ul>
+ *
+ * <p>Reads, including those that may be answered by a {@linkplain CacheBuilder#frontCacheSize
+ * front cache}, are checked as they happen: a read may only return a value written to its key, and
+ * not one which an operation that returned before the read began reported as replaced or removed.
+ * (The removal listener cannot serve to date removals, as it may be notified before a removal is
+ * visible to readers.)
+ *
+ * <p>Every value written is a distinct object, so that the values removed can be told apart. Keys
+ * are drawn from a small fixed set of instances, so that operations contend for the same entries
+ * and keys may be compared by identity.
+ */
+final class CacheStressTester {
+
+	static final int KEYS = 64;
+
+	private final Cache<Integer, Long> cache;
+	@NullableDecl
+	private final FakeTicker ticker;
+	private final Integer[] keys = new Integer[KEYS];
+	private final ConcurrentLinkedQueue<RemovalNotification<Integer, Long>> notifications =
+			new ConcurrentLinkedQueue<RemovalNotification<Integer, Long>>();
+	private final ConcurrentLinkedQueue<Long> stored = new ConcurrentLinkedQueue<Long>();
+	/** The key of every value that was written, or attempted to be. */
+	private final ConcurrentMap<Long, Integer> written = new ConcurrentHashMap<Long, Integer>();
+	/** The tick of {@link #clock} after each value was reported as replaced or removed. */
+	private final ConcurrentMap<Long, Long> supersededAt = new ConcurrentHashMap<Long, Long>();
+	private final AtomicLong clock = new AtomicLong();
+	private int runs;
+
+	/**
+	 * Creates a tester of a cache built by {@code builder}, which must not have a removal listener.
+	 * If {@code ticker} is not null, it is the cache's ticker, and is advanced while the threads
+	 * run.
+	 */
+	CacheStressTester(CacheBuilder<Object, Object> builder, @NullableDecl FakeTicker ticker) {
+		this.cache = builder.removalListener(
+				(RemovalNotification<Integer, Long> notification) -> notifications.add(notification)).build();
+		this.ticker = ticker;
+		for (int i = 0; i < KEYS; i++) {
+			keys[i] = i;
+		}
+	}
+
+	Cache<Integer, Long> cache() {
+		return cache;
+	}
+
+	/**
+	 * Runs {@code operations} random operations on each of {@code threads} threads, started
+	 * together, and rethrows the first failure of any of them.
+	 */
+	void run(int threads, int operations, long seed) throws Exception {
+		long run = runs++;
+		CyclicBarrier barrier = new CyclicBarrier(threads);
+		AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		List<Thread> workers = new ArrayList<Thread>();
+		for (int t = 0; t < threads; t++) {
+			int thread = t;
+			workers.add(new Thread(() -> {
+				try {
+					barrier.await();
+					Random random = new Random(seed * 31 + thread);
+					for (int i = 0; i < operations; i++) {
+						operate(random, (run << 48) | ((long) thread << 32) | i);
+					}
+				} catch (Throwable e) {
+					failure.compareAndSet(null, e);
+				}
+			}));
+		}
+		for (Thread worker : workers) {
+			worker.start();
+		}
+		for (Thread worker : workers) {
+			worker.join(TimeUnit.MINUTES.toMillis(1));
+			assertFalse("stress thread did not finish", worker.isAlive());
+		}
+		if (failure.get() instanceof Exception) {
+			throw (Exception) failure.get();
+		} else if (failure.get() != null) {
+			throw (Error) failure.get();
+		}
+	}
+
+	/** Performs a random operation, writing {@code id} as the new value if it writes one. */
+	private void operate(Random random, long id) {
+		ConcurrentMap<Integer, Long> map = cache.asMap();
+		Integer key = keys[random.nextInt(KEYS)];
+		Long value = id;
+		written.put(value, key);
+		Long old;
+		long start;
+		switch (random.nextInt(12)) {
+		case 0:
+			start = clock.get();
+			checkRead(key, cache.getIfPresent(key), start);
+			break;
+		case 1:
+			start = clock.get();
+			checkRead(key, map.get(key), start);
+			break;
+		case 2:
+			superseded(map.put(key, value));
+			stored.add(value);
+			break;
+		case 3:
+			if (map.putIfAbsent(key, value) == null) {
+				stored.add(value);
+			}
+			break;
+		case 4:
+			old = map.replace(key, value);
+			if (old != null) {
+				stored.add(value);
+				superseded(old);
+			}
+			break;
+		case 5:
+			old = map.get(key);
+			if (old != null && map.replace(key, old, value)) {
+				stored.add(value);
+				superseded(old);
+			}
+			break;
+		case 6:
+			superseded(map.remove(key));
+			break;
+		case 7:
+			old = map.get(key);
+			if (old != null && map.remove(key, old)) {
+				superseded(old);
+			}
+			break;
+		case 8:
+			cache.invalidate(key);
+			break;
+		case 9:
+			boolean keep = random.nextBoolean();
+			Long computed = map.compute(key, (k, v) -> keep ? value : null);
+			if (computed != null) {
+				stored.add(computed);
+			}
+			break;
+		case 10:
+			if (ticker != null) {
+				ticker.advance(random.nextInt(100), TimeUnit.MILLISECONDS);
+			} else {
+				start = clock.get();
+				checkRead(key, cache.getIfPresent(key), start);
+			}
+			break;
+		default:
+			if (random.nextInt(500) == 0) {
+				cache.invalidateAll();
+			} else {
+				cache.size();
+			}
+			break;
+		}
+	}
+
+	/** Records that an operation which has returned replaced or removed {@code value}, if any. */
+	private void superseded(@NullableDecl Long value) {
+		if (value != null) {
+			supersededAt.putIfAbsent(value, clock.incrementAndGet());
+		}
+	}
+
+	/**
+	 * Checks that {@code value}, read from {@code key} by a read which began at tick {@code start},
+	 * was written to that key and had not been replaced or removed by an operation which returned
+	 * before then.
+	 */
+	private void checkRead(Integer key, @NullableDecl Long value, long start) {
+		if (value != null) {
+			assertSame("read a value of another key", key, written.get(value));
+			Long superseded = supersededAt.get(value);
+			assertTrue("read a value superseded before the read began: " + value,
+					superseded == null || superseded > start);
+		}
+	}
+
+	/** Checks the invariants of the cache, which must no longer be in use by other threads. */
+	void checkInvariants() {
+		cache.cleanUp();
+		LocalCache<Integer, Long> localCache = ((LocalManualCache<Integer, Long>) cache).localCache;
+		checkValidState(localCache);
+
+		long totalWeight = 0;
+		for (Segment<Integer, Long> segment : localCache.segments) {
+			int count = 0;
+			long weight = 0;
+			for (int i = 0; i < segment.table.length(); i++) {
+				for (ReferenceEntry<Integer, Long> e = segment.table.get(i); e != null; e = e.getNext()) {
+					if (e.getValueReference().get() != null) {
+						count++;
+						weight += e.getValueReference().getWeight();
+					}
+				}
+			}
+			assertEquals("count", count, segment.count);
+			assertEquals("totalWeight", weight, segment.totalWeight);
+			totalWeight += weight;
+		}
+		if (localCache.evictsBySize()) {
+			assertTrue(totalWeight <= localCache.maxWeight);
+		}
+
+		Set<Long> removed = new HashSet<Long>();
+		for (RemovalNotification<Integer, Long> notification : notifications) {
+			assertTrue("notified twice: " + notification, removed.add(notification.getValue()));
+		}
+		Set<Long> present = new HashSet<Long>(cache.asMap().values());
+		assertEquals(cache.size(), present.size());
+		for (Long value : present) {
+			assertFalse("notified but present: " + value, removed.contains(value));
+		}
+		Set<Long> lost = new HashSet<Long>(stored);
+		assertEquals(stored.size(), lost.size());
+		lost.removeAll(removed);
+		lost.removeAll(present);
+		assertTrue("stored but neither present nor notified: " + lost, lost.isEmpty());
+		Set<Long> unexpected = new HashSet<Long>(removed);
+		unexpected.addAll(present);
+		unexpected.removeAll(stored);
+		assertTrue("present or notified but never stored: " + unexpected, unexpected.isEmpty());
+	}
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2018 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.lafa.cache.lrucache;
+
+import static java.util.concurrent.TimeUnit.HOURS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import com.github.lafa.cache.base.Ticker;
+import com.google.caliper.BeforeExperiment;
+import com.google.caliper.Benchmark;
+import com.google.caliper.Param;
+
+/**
+ * Compares {@link Ticker#systemTicker} with {@linkplain Ticker#coarseTicker coarse tickers} as the
+ * time source of an expiring, statistics-recording cache. {@link #get} measures the read path;
+ * {@link #observeExpiration} measures how long an entry written with a one millisecond expiration
+ * takes to be observed as expired, which exceeds one millisecond by the ticker's imprecision.
+ */
+public class CoarseTickerBenchmark {
+
+	@Param({ "system", "1", "10" })
+	String resolutionMillis;
+
+	private Ticker ticker;
+	private Cache<Integer, Integer> cache;
+	private Cache<Integer, Integer> expiringCache;
+	private Integer[] keys;
+
+	@BeforeExperiment
+	void setUp() {
+		ticker = resolutionMillis.equals("system")
+				? Ticker.systemTicker()
+				: Ticker.coarseTicker(Long.parseLong(resolutionMillis), MILLISECONDS);
+		cache = CacheBuilder.newBuilder().expireAfterAccess(1, HOURS).recordStats().ticker(ticker).build();
+		expiringCache = CacheBuilder.newBuilder().expireAfterWrite(1, MILLISECONDS).ticker(ticker).build();
+		keys = new Integer[1024];
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = i;
+			cache.put(keys[i], keys[i]);
+		}
+	}
+
+	@Benchmark
+	long read(int reps) {
+		long dummy = 0;
+		for (int i = 0; i < reps; i++) {
+			dummy += ticker.read();
+		}
+		return dummy;
+	}
+
+	@Benchmark
+	int get(int reps) {
+		int dummy = 0;
+		for (int i = 0; i < reps; i++) {
+			dummy += cache.getIfPresent(keys[i & 1023]);
+		}
+		return dummy;
+	}
+
+	@Benchmark
+	int observeExpiration(int reps) {
+		int dummy = 0;
+		for (int i = 0; i < reps; i++) {
+			expiringCache.put(0, i);
+			while (expiringCache.getIfPresent(0) != null) {
+				dummy++;
+			}
+		}
+		return dummy;
+	}
+}
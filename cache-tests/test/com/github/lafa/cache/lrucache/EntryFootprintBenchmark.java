@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2018 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.lafa.cache.lrucache;
+
+import static java.util.concurrent.TimeUnit.MINUTES;
+
+import com.google.caliper.BeforeExperiment;
+import com.google.caliper.Benchmark;
+import com.google.caliper.Param;
+
+/**
+ * Measures the per-entry overhead of each entry layout. Every rep populates a fresh cache with
+ * {@code size} preallocated keys mapped to a single value, so that the allocation per rep divided by
+ * {@code size} approximates the footprint of one entry, including its table slot.
+ */
+public class EntryFootprintBenchmark {
+
+	enum Config {
+		UNBOUNDED {
+			@Override
+			CacheBuilder<Object, Object> builder(int size) {
+				return CacheBuilder.newBuilder();
+			}
+		},
+		MAXIMUM_SIZE {
+			@Override
+			CacheBuilder<Object, Object> builder(int size) {
+				return CacheBuilder.newBuilder().maximumSize(size);
+			}
+		},
+		EXPIRE_AFTER_ACCESS {
+			@Override
+			CacheBuilder<Object, Object> builder(int size) {
+				return CacheBuilder.newBuilder().expireAfterAccess(1, MINUTES);
+			}
+		},
+		EXPIRE_AFTER_WRITE {
+			@Override
+			CacheBuilder<Object, Object> builder(int size) {
+				return CacheBuilder.newBuilder().expireAfterWrite(1, MINUTES);
+			}
+		},
+		MAXIMUM_SIZE_EXPIRE_AFTER_WRITE {
+			@Override
+			CacheBuilder<Object, Object> builder(int size) {
+				return CacheBuilder.newBuilder().maximumSize(size).expireAfterWrite(1, MINUTES);
+			}
+		},
+		SOFT_VALUES {
+			@Override
+			CacheBuilder<Object, Object> builder(int size) {
+				return CacheBuilder.newBuilder().maximumSize(size).softValues();
+			}
+		};
+
+		abstract CacheBuilder<Object, Object> builder(int size);
+	}
+
+	@Param
+	Config config;
+
+	@Param({ "1000000" })
+	int size;
+
+	private Integer[] keys;
+	private final Object value = new Object();
+
+	@BeforeExperiment
+	void setUp() {
+		keys = new Integer[size];
+		for (int i = 0; i < size; i++) {
+			keys[i] = i;
+		}
+	}
+
+	@Benchmark
+	long populate(int reps) {
+		long dummy = 0;
+		for (int i = 0; i < reps; i++) {
+			Cache<Object, Object> cache = config.builder(size).initialCapacity(size).build();
+			for (Integer key : keys) {
+				cache.put(key, value);
+			}
+			dummy += cache.size();
+		}
+		return dummy;
+	}
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2018 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.lafa.cache.lrucache;
+
+import com.google.caliper.BeforeExperiment;
+import com.google.caliper.Benchmark;
+import com.google.caliper.Param;
+
+/**
+ * Measures {@link Cache#getIfPresent} of a few hot keys in a large size-bounded cache, with and
+ * without a {@linkplain CacheBuilder#frontCacheSize front cache}.
+ */
+public class FrontCacheBenchmark {
+
+	@Param({ "0", "256" })
+	int frontCacheSize;
+
+	@Param({ "100" })
+	int hotKeys;
+
+	@Param({ "1000000" })
+	int size;
+
+	private Cache<String, Integer> cache;
+	private String[] keys;
+
+	@BeforeExperiment
+	void setUp() {
+		CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder().maximumSize(size).recordStats();
+		if (frontCacheSize > 0) {
+			builder.frontCacheSize(frontCacheSize);
+		}
+		cache = builder.build();
+		for (int i = 0; i < size; i++) {
+			cache.put("key-" + i, i);
+		}
+		keys = new String[hotKeys];
+		for (int i = 0; i < hotKeys; i++) {
+			keys[i] = "key-" + (i * 7919 % size);
+		}
+	}
+
+	@Benchmark
+	int getHot(int reps) {
+		int dummy = 0;
+		for (int i = 0; i < reps; i++) {
+			dummy += cache.getIfPresent(keys[i % hotKeys]);
+		}
+		return dummy;
+	}
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2018 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.lafa.cache.lrucache;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import com.github.lafa.cache.common.testing.FakeTicker;
+
+import junit.framework.TestCase;
+
+/** Tests for caches built with {@link CacheBuilder#frontCacheSize}. */
+public class FrontCacheTest extends TestCase {
+
+	private static CacheBuilder<Object, Object> newBuilder() {
+		return CacheBuilder.newBuilder().frontCacheSize(16).recordStats();
+	}
+
+	private static LocalCache<?, ?> localCache(Cache<?, ?> cache) {
+		return ((LocalCache.LocalManualCache<?, ?>) cache).localCache;
+	}
+
+	public void testHitsAreServedAndFoldedInBatches() {
+		Cache<String, Integer> cache = newBuilder().build();
+		cache.put("a", 1);
+		assertEquals(Integer.valueOf(1), cache.getIfPresent("a"));
+		assertEquals(1, cache.stats().hitCount());
+
+		LocalCache.Segment<?, ?> segment = localCache(cache).segmentFor(localCache(cache).hash("a"));
+		int version = segment.version;
+		for (int i = 0; i < FrontCache.FOLD_HITS - 1; i++) {
+			assertEquals(Integer.valueOf(1), cache.getIfPresent(new String("a")));
+		}
+		// served from the front cache, not yet folded
+		assertEquals(1, cache.stats().hitCount());
+		assertEquals(Integer.valueOf(1), cache.getIfPresent("a"));
+		assertEquals(1 + FrontCache.FOLD_HITS, cache.stats().hitCount());
+		assertEquals(version, segment.version);
+
+		assertNull(cache.getIfPresent("b"));
+		assertEquals(1, cache.stats().missCount());
+	}
+
+	public void testWritesInvalidate() {
+		Cache<String, Integer> cache = newBuilder().build();
+		cache.put("a", 1);
+		assertEquals(Integer.valueOf(1), cache.getIfPresent("a"));
+		cache.put("a", 2);
+		assertEquals(Integer.valueOf(2), cache.getIfPresent("a"));
+		cache.asMap().replace("a", 3);
+		assertEquals(Integer.valueOf(3), cache.getIfPresent("a"));
+		cache.asMap().compute("a", (k, v) -> v + 1);
+		assertEquals(Integer.valueOf(4), cache.getIfPresent("a"));
+		cache.asMap().merge("a", 10, Integer::sum);
+		assertEquals(Integer.valueOf(14), cache.getIfPresent("a"));
+		cache.invalidate("a");
+		assertNull(cache.getIfPresent("a"));
+		cache.put("a", 5);
+		assertEquals(Integer.valueOf(5), cache.getIfPresent("a"));
+		cache.invalidateAll();
+		assertNull(cache.getIfPresent("a"));
+	}
+
+	public void testWritesFromOtherThreadsInvalidate() throws Exception {
+		Cache<String, Integer> cache = newBuilder().build();
+		cache.put("a", 1);
+		assertEquals(Integer.valueOf(1), cache.getIfPresent("a"));
+		Thread writer = new Thread(() -> cache.put("a", 2));
+		writer.start();
+		writer.join();
+		assertEquals(Integer.valueOf(2), cache.getIfPresent("a"));
+	}
+
+	public void testFastClearInvalidates() {
+		Cache<String, Integer> cache = newBuilder().fastClear(Runnable::run).build();
+		cache.put("a", 1);
+		assertEquals(Integer.valueOf(1), cache.getIfPresent("a"));
+		cache.invalidateAll();
+		assertNull(cache.getIfPresent("a"));
+	}
+
+	public void testEvictionInvalidates() {
+		Cache<Integer, Integer> cache = newBuilder().concurrencyLevel(1).maximumSize(2).build();
+		cache.put(1, 1);
+		assertEquals(Integer.valueOf(1), cache.getIfPresent(1));
+		cache.put(2, 2);
+		cache.put(3, 3);
+		cache.put(4, 4);
+		assertNull(cache.getIfPresent(1));
+	}
+
+	public void testExpiration() {
+		FakeTicker ticker = new FakeTicker();
+		Cache<String, Integer> cache = newBuilder().expireAfterWrite(10, MILLISECONDS).ticker(ticker).build();
+		cache.put("a", 1);
+		assertEquals(Integer.valueOf(1), cache.getIfPresent("a"));
+		ticker.advance(9, MILLISECONDS);
+		assertEquals(Integer.valueOf(1), cache.getIfPresent("a"));
+		ticker.advance(1, MILLISECONDS);
+		assertNull(cache.getIfPresent("a"));
+	}
+
+	public void testExpireAfterAccessKeepsHotEntries() {
+		FakeTicker ticker = new FakeTicker();
+		Cache<String, Integer> cache = newBuilder().expireAfterAccess(10, MILLISECONDS).ticker(ticker).build();
+		cache.put("a", 1);
+		for (int i = 0; i < 100; i++) {
+			assertEquals(Integer.valueOf(1), cache.getIfPresent("a"));
+			ticker.advance(3, MILLISECONDS);
+		}
+	}
+
+	public void testNamespaceInvalidation() {
+		NamespacedCache<String, String, Integer> cache = newBuilder().buildNamespacedCache();
+		Cache<String, Integer> tenant = cache.namespace("tenant");
+		tenant.put("a", 1);
+		assertEquals(Integer.valueOf(1), tenant.getIfPresent("a"));
+		cache.invalidateNamespace("tenant");
+		assertNull(tenant.getIfPresent("a"));
+	}
+
+	public void testRequiresStrongReferences() {
+		try {
+			CacheBuilder.newBuilder().frontCacheSize(16).weakValues().build();
+			fail();
+		} catch (IllegalStateException expected) {
+		}
+		try {
+			CacheBuilder.newBuilder().frontCacheSize(0);
+			fail();
+		} catch (IllegalArgumentException expected) {
+		}
+	}
+
+	public void testSizeRoundedToPowerOfTwo() {
+		assertEquals(1, CacheBuilder.newBuilder().frontCacheSize(1).getFrontCacheSize());
+		assertEquals(128, CacheBuilder.newBuilder().frontCacheSize(100).getFrontCacheSize());
+		assertEquals(128, CacheBuilder.newBuilder().frontCacheSize(128).getFrontCacheSize());
+		assertEquals(0, CacheBuilder.newBuilder().getFrontCacheSize());
+	}
+}
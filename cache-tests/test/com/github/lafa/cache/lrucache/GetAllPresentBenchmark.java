@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2018 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.lafa.cache.lrucache;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.caliper.BeforeExperiment;
+import com.google.caliper.Benchmark;
+import com.google.caliper.Param;
+
+/**
+ * Compares {@link Cache#getAllPresent(Iterable)} with the overloads which fill a caller-supplied
+ * map or arrays, for the small batches typical of a request handler. Run with Caliper's allocation
+ * instrument ({@code -i allocation}) to see the bytes allocated per call.
+ */
+public class GetAllPresentBenchmark {
+
+	@Param({ "30" })
+	int batchSize;
+
+	@Param({ "0.5", "1.0" })
+	double hitRate;
+
+	private Cache<Integer, Integer> cache;
+	private Integer[] keys;
+	private List<Integer> keyList;
+	private Integer[] values;
+	private BitSet present;
+	private Map<Integer, Integer> results;
+
+	@BeforeExperiment
+	void setUp() {
+		cache = CacheBuilder.newBuilder().recordStats().build();
+		keys = new Integer[batchSize];
+		for (int i = 0; i < batchSize; i++) {
+			keys[i] = i;
+			if (i < batchSize * hitRate) {
+				cache.put(keys[i], keys[i]);
+			}
+		}
+		keyList = Arrays.asList(keys);
+		values = new Integer[batchSize];
+		present = new BitSet(batchSize);
+		// presized so that it never resizes, although its nodes are still allocated
+		results = new HashMap<>(batchSize * 2);
+	}
+
+	@Benchmark
+	int newMap(int reps) {
+		int dummy = 0;
+		for (int i = 0; i < reps; i++) {
+			dummy += cache.getAllPresent(keyList).size();
+		}
+		return dummy;
+	}
+
+	@Benchmark
+	int intoMap(int reps) {
+		int dummy = 0;
+		for (int i = 0; i < reps; i++) {
+			results.clear();
+			dummy += cache.getAllPresent(keyList, results);
+		}
+		return dummy;
+	}
+
+	@Benchmark
+	int intoArrays(int reps) {
+		int dummy = 0;
+		for (int i = 0; i < reps; i++) {
+			dummy += cache.getAllPresent(keys, values, present);
+		}
+		return dummy;
+	}
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2018 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.lafa.cache.lrucache;
+
+import static com.github.lafa.cache.lrucache.HeapSizeEstimator.arraySize;
+import static com.github.lafa.cache.lrucache.HeapSizeEstimator.estimate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.github.lafa.cache.lrucache.LocalCache.Segment;
+
+import junit.framework.TestCase;
+
+/** Tests for {@link HeapSizeEstimator} and {@link CacheBuilder#maximumHeapBytes}. */
+public class HeapSizeEstimatorTest extends TestCase {
+
+	static class Node {
+		Node next;
+		long id;
+		int[] data;
+		TimeUnit unit = TimeUnit.SECONDS;
+	}
+
+	public void testLeaves() {
+		assertEquals(0, estimate(null));
+		assertEquals(HeapSizeEstimator.align(HeapSizeEstimator.OBJECT_HEADER_SIZE + 4), estimate(42));
+		assertEquals(arraySize(long.class, 10), estimate(new long[10]));
+		assertEquals(0, estimate(TimeUnit.SECONDS) - estimate(TimeUnit.MINUTES));
+	}
+
+	public void testStrings() {
+		long empty = estimate("");
+		char[] chars = new char[1000];
+		Arrays.fill(chars, 'x');
+		long ascii = estimate(new String(chars)) - empty;
+		Arrays.fill(chars, '€');
+		long wide = estimate(new String(chars)) - empty;
+		assertTrue(ascii >= 1000);
+		assertEquals(arraySize(char.class, 1000) - arraySize(char.class, 0), wide);
+	}
+
+	public void testGraph() {
+		Node a = new Node();
+		Node b = new Node();
+		a.next = b;
+		b.next = a;
+		a.data = new int[100];
+		long nodeSize = HeapSizeEstimator.align(
+				HeapSizeEstimator.OBJECT_HEADER_SIZE + 8 + 3 * HeapSizeEstimator.REFERENCE_SIZE);
+		assertEquals(2 * nodeSize + arraySize(int.class, 100), estimate(a));
+		assertEquals(estimate(a), estimate(b));
+
+		// shared objects are counted once
+		b.data = a.data;
+		assertEquals(2 * nodeSize + arraySize(int.class, 100), estimate(a));
+	}
+
+	public void testCollections() {
+		List<String> list = new ArrayList<>();
+		Map<Integer, String> map = new HashMap<>();
+		long emptyList = estimate(list);
+		long emptyMap = estimate(map);
+		for (int i = 0; i < 100; i++) {
+			String value = "value" + i;
+			list.add(value);
+			map.put(i, value);
+		}
+		assertTrue(estimate(list) - emptyList > 100 * estimate("value00"));
+		assertTrue(estimate(map) - emptyMap > 100 * (estimate("value00") + estimate(0)));
+		assertTrue(estimate(map) > estimate(list));
+	}
+
+	static class Holder extends AtomicReference<Node> {
+		Node node;
+	}
+
+	public void testJdkFieldsNotReflected() {
+		assertNotNull(new HeapSizeEstimator.Layout(Node.class).fields);
+		assertNull(new HeapSizeEstimator.Layout(AtomicReference.class).fields);
+		assertNull(new HeapSizeEstimator.Layout(Holder.class).fields);
+
+		// measured shallowly rather than failing
+		Holder holder = new Holder();
+		holder.node = new Node();
+		holder.set(new Node());
+		assertTrue(estimate(holder) > 0);
+		assertTrue(estimate(holder) < estimate(holder.node));
+	}
+
+	public void testMaximumHeapBytes() {
+		LocalCache<Integer, byte[]> cache = new LocalCache<>(
+				CacheBuilder.newBuilder().concurrencyLevel(1).maximumHeapBytes(100_000));
+		for (int i = 0; i < 1000; i++) {
+			cache.put(i, new byte[1000]);
+		}
+		long weight = 0;
+		for (Segment<Integer, byte[]> segment : cache.segments) {
+			weight += segment.totalWeight;
+		}
+		assertTrue(weight <= 100_000);
+		assertTrue(cache.size() > 80);
+		assertTrue(cache.size() < 100);
+		CacheTesting.checkValidState(cache);
+	}
+
+	public void testMaximumHeapBytes_conflicts() {
+		try {
+			CacheBuilder.newBuilder().maximumSize(10).maximumHeapBytes(1000);
+			fail();
+		} catch (IllegalStateException expected) {
+		}
+		try {
+			CacheBuilder.newBuilder().maximumHeapBytes(1000).weigher((k, v) -> 1);
+			fail();
+		} catch (IllegalStateException expected) {
+		}
+		try {
+			CacheBuilder.newBuilder().maximumHeapBytes(-1);
+			fail();
+		} catch (IllegalArgumentException expected) {
+		}
+	}
+}
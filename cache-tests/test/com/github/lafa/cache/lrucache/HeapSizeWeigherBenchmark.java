@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2018 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.lafa.cache.lrucache;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.caliper.BeforeExperiment;
+import com.google.caliper.Benchmark;
+import com.google.caliper.Param;
+
+/**
+ * Measures the write-path overhead of {@link CacheBuilder#maximumHeapBytes} relative to {@link
+ * CacheBuilder#maximumSize} for values of increasing structural complexity. Reads are unaffected.
+ */
+public class HeapSizeWeigherBenchmark {
+
+	enum Bound {
+		MAXIMUM_SIZE {
+			@Override
+			CacheBuilder<Object, Object> builder() {
+				return CacheBuilder.newBuilder().maximumSize(SIZE);
+			}
+		},
+		MAXIMUM_HEAP_BYTES {
+			@Override
+			CacheBuilder<Object, Object> builder() {
+				return CacheBuilder.newBuilder().maximumHeapBytes(Long.MAX_VALUE);
+			}
+		};
+
+		abstract CacheBuilder<Object, Object> builder();
+	}
+
+	enum Shape {
+		STRING {
+			@Override
+			Object value(int i) {
+				return "value-" + i;
+			}
+		},
+		BYTES {
+			@Override
+			Object value(int i) {
+				return new byte[256];
+			}
+		},
+		LIST {
+			@Override
+			Object value(int i) {
+				List<String> list = new ArrayList<>();
+				for (int j = 0; j < 16; j++) {
+					list.add("element-" + j);
+				}
+				return list;
+			}
+		},
+		NESTED_MAP {
+			@Override
+			Object value(int i) {
+				Map<String, List<Integer>> map = new HashMap<>();
+				for (int j = 0; j < 8; j++) {
+					List<Integer> list = new ArrayList<>();
+					for (int k = 0; k < 8; k++) {
+						list.add(j * 1000 + k);
+					}
+					map.put("key-" + j, list);
+				}
+				return map;
+			}
+		};
+
+		abstract Object value(int i);
+	}
+
+	static final int SIZE = 1 << 12;
+
+	@Param
+	Bound bound;
+
+	@Param
+	Shape shape;
+
+	private Cache<Object, Object> cache;
+	private Object[] values;
+
+	@BeforeExperiment
+	void setUp() {
+		cache = bound.builder().build();
+		values = new Object[SIZE];
+		for (int i = 0; i < SIZE; i++) {
+			values[i] = shape.value(i);
+		}
+	}
+
+	@Benchmark
+	int put(int reps) {
+		for (int i = 0; i < reps; i++) {
+			int index = i & (SIZE - 1);
+			cache.put(index, values[index]);
+		}
+		return (int) cache.size();
+	}
+}
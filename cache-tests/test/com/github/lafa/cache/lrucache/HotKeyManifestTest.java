@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2018 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.lafa.cache.lrucache;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.github.lafa.cache.base.Function;
+import com.github.lafa.cache.common.testing.FakeTicker;
+
+import junit.framework.TestCase;
+
+/** Tests for {@link HotKeyManifest} and {@link CacheWarmer}. */
+public class HotKeyManifestTest extends TestCase {
+
+	private static final Function<Integer, String> LOADER = new Function<Integer, String>() {
+		@Override
+		public String apply(Integer key) {
+			return "v" + key;
+		}
+	};
+
+	public void testHottestKeys_recencyOrder() {
+		Cache<Integer, String> cache = CacheBuilder.newBuilder().concurrencyLevel(1).maximumSize(10).build();
+		for (int i = 0; i < 5; i++) {
+			cache.put(i, "v" + i);
+		}
+		cache.getIfPresent(1);
+		assertEquals(Arrays.asList(1, 4, 3), HotKeyManifest.hottestKeys(cache, 3));
+		assertEquals(Arrays.asList(1, 4, 3, 2, 0), HotKeyManifest.hottestKeys(cache, 100));
+	}
+
+	public void testHottestKeys_allSegments() {
+		Cache<Integer, String> cache = CacheBuilder.newBuilder().concurrencyLevel(8).maximumSize(1000).build();
+		for (int i = 0; i < 500; i++) {
+			cache.put(i, "v" + i);
+		}
+		List<Integer> keys = HotKeyManifest.hottestKeys(cache, 200);
+		assertEquals(200, keys.size());
+		assertEquals(200, new HashSet<>(keys).size());
+		assertEquals(500, HotKeyManifest.hottestKeys(cache, 1000).size());
+		assertEquals(500, HotKeyManifest.hottestKeys(cache, Integer.MAX_VALUE).size());
+	}
+
+	public void testHottestKeys_skipsExpired() {
+		FakeTicker ticker = new FakeTicker();
+		Cache<Integer, String> cache = CacheBuilder.newBuilder().concurrencyLevel(1)
+				.expireAfterAccess(10, SECONDS).ticker(ticker).build();
+		cache.put(1, "one");
+		ticker.advance(6, SECONDS);
+		cache.put(2, "two");
+		ticker.advance(6, SECONDS);
+		assertEquals(Arrays.asList(2), HotKeyManifest.hottestKeys(cache, 10));
+	}
+
+	public void testRoundTrip_file() throws IOException {
+		Path file = Files.createTempFile("cache", ".keys");
+		try {
+			assertEquals(3, HotKeyManifest.write(Arrays.asList(3, 1, 2), file, CacheSnapshotsTest.CODEC));
+			assertEquals(Arrays.asList(3, 1, 2), HotKeyManifest.read(file, CacheSnapshotsTest.CODEC));
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	public void testWarm() throws Exception {
+		Cache<Integer, String> cache = CacheBuilder.newBuilder().build();
+		cache.put(0, "existing");
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			CacheWarmer.Progress progress = CacheWarmer.warm(cache, Arrays.asList(0, 1, 2, 3, 4, 5), LOADER,
+					executor, 3);
+			assertTrue(progress.awaitCompletion(10, SECONDS));
+			assertTrue(progress.isDone());
+			assertEquals(6, progress.requestedCount());
+			assertEquals(5, progress.loadedCount());
+			assertEquals(1, progress.skippedCount());
+			assertEquals(0, progress.failedCount());
+			assertEquals(0, progress.remainingCount());
+		} finally {
+			executor.shutdown();
+		}
+		assertEquals("existing", cache.getIfPresent(0));
+		for (int i = 1; i < 6; i++) {
+			assertEquals("v" + i, cache.getIfPresent(i));
+		}
+	}
+
+	public void testWarm_iteratesKeysOnce() throws Exception {
+		Cache<Integer, String> cache = CacheBuilder.newBuilder().build();
+		AtomicInteger iterations = new AtomicInteger();
+		Iterable<Integer> keys = () -> {
+			iterations.incrementAndGet();
+			return Arrays.asList(1, 2, 3).iterator();
+		};
+		CacheWarmer.Progress progress = CacheWarmer.warm(cache, keys, LOADER, directExecutor(), 2);
+		assertTrue(progress.isDone());
+		assertEquals(3, progress.requestedCount());
+		assertEquals(3, progress.loadedCount());
+		assertEquals(1, iterations.get());
+	}
+
+	public void testWarm_failures() throws Exception {
+		Cache<Integer, String> cache = CacheBuilder.newBuilder().build();
+		Function<Integer, String> loader = new Function<Integer, String>() {
+			@Override
+			public String apply(Integer key) {
+				if (key == 1) {
+					throw new IllegalStateException();
+				}
+				return (key == 2) ? null : "v" + key;
+			}
+		};
+		CacheWarmer.Progress progress = CacheWarmer.warm(cache, Arrays.asList(1, 2, 3), loader, directExecutor(),
+				2);
+		assertTrue(progress.isDone());
+		assertEquals(1, progress.loadedCount());
+		assertEquals(2, progress.failedCount());
+		assertEquals(1, cache.size());
+	}
+
+	public void testWarm_concurrencyLimit() throws Exception {
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger maxRunning = new AtomicInteger();
+		Function<Integer, String> loader = new Function<Integer, String>() {
+			@Override
+			public String apply(Integer key) {
+				int now = running.incrementAndGet();
+				maxRunning.accumulateAndGet(now, Math::max);
+				try {
+					Thread.sleep(2);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				running.decrementAndGet();
+				return "v" + key;
+			}
+		};
+		Integer[] keys = new Integer[100];
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = i;
+		}
+		Cache<Integer, String> cache = CacheBuilder.newBuilder().build();
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			CacheWarmer.Progress progress = CacheWarmer.warm(cache, Arrays.asList(keys), loader, executor, 3);
+			assertTrue(progress.awaitCompletion(10, SECONDS));
+			assertEquals(100, progress.loadedCount());
+		} finally {
+			executor.shutdown();
+		}
+		assertTrue(maxRunning.get() <= 3);
+	}
+
+	public void testManifestThenWarm() throws Exception {
+		Cache<Integer, String> cache = CacheBuilder.newBuilder().maximumSize(100).build();
+		for (int i = 0; i < 50; i++) {
+			cache.put(i, "v" + i);
+		}
+		Path file = Files.createTempFile("cache", ".keys");
+		try {
+			HotKeyManifest.write(HotKeyManifest.hottestKeys(cache, 20), file, CacheSnapshotsTest.CODEC);
+			Cache<Integer, String> restarted = CacheBuilder.newBuilder().maximumSize(100).build();
+			CacheWarmer.Progress progress = CacheWarmer.warm(restarted,
+					HotKeyManifest.read(file, CacheSnapshotsTest.CODEC), LOADER, directExecutor(), 4);
+			assertTrue(progress.isDone());
+			assertEquals(20, restarted.size());
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	private static Executor directExecutor() {
+		return Runnable::run;
+	}
+}
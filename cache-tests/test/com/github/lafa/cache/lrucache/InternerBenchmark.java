@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2018 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.lafa.cache.lrucache;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.caliper.BeforeExperiment;
+import com.google.caliper.Benchmark;
+import com.google.caliper.Param;
+
+/**
+ * Compares the interners of {@link Interners} with {@link String#intern} and a {@code
+ * ConcurrentHashMap}. {@code intern} measures throughput while {@code threads} threads intern
+ * strings drawn from a pool of {@code size} distinct values, each thread using its own copies;
+ * {@code populate} interns every value into a fresh interner per rep, so that its allocation
+ * figures approximate the footprint of each implementation (except for {@code String.intern},
+ * whose table is shared by the whole VM).
+ */
+public class InternerBenchmark {
+
+	enum Impl {
+		STRONG {
+			@Override
+			Interner<String> create() {
+				return Interners.newStrongInterner();
+			}
+		},
+		WEAK {
+			@Override
+			Interner<String> create() {
+				return Interners.newWeakInterner();
+			}
+		},
+		STRING_INTERN {
+			@Override
+			Interner<String> create() {
+				return String::intern;
+			}
+		},
+		CONCURRENT_HASH_MAP {
+			@Override
+			Interner<String> create() {
+				ConcurrentMap<String, String> map = new ConcurrentHashMap<>();
+				return sample -> {
+					String canonical = map.putIfAbsent(sample, sample);
+					return (canonical == null) ? sample : canonical;
+				};
+			}
+		};
+
+		abstract Interner<String> create();
+	}
+
+	@Param({ "STRONG", "WEAK", "STRING_INTERN", "CONCURRENT_HASH_MAP" })
+	Impl impl;
+
+	@Param({ "10000", "1000000" })
+	int size;
+
+	@Param({ "1", "4" })
+	int threads;
+
+	private Interner<String> interner;
+	private String[][] samples;
+
+	@BeforeExperiment
+	void setUp() {
+		samples = new String[threads][size];
+		for (int t = 0; t < threads; t++) {
+			for (int i = 0; i < size; i++) {
+				samples[t][i] = new String("value-" + i);
+			}
+		}
+		interner = impl.create();
+		for (String sample : samples[0]) {
+			interner.intern(sample);
+		}
+	}
+
+	@Benchmark
+	int intern(int reps) throws InterruptedException {
+		int[] dummies = new int[threads];
+		Thread[] workers = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			int thread = t;
+			workers[t] = new Thread(() -> {
+				String[] mine = samples[thread];
+				int dummy = 0;
+				for (int i = thread; i < reps; i += threads) {
+					dummy += interner.intern(mine[i % size]).length();
+				}
+				dummies[thread] = dummy;
+			});
+			workers[t].start();
+		}
+		int dummy = 0;
+		for (int t = 0; t < threads; t++) {
+			workers[t].join();
+			dummy += dummies[t];
+		}
+		return dummy;
+	}
+
+	@Benchmark
+	int populate(int reps) {
+		int dummy = 0;
+		for (int i = 0; i < reps; i++) {
+			Interner<String> fresh = impl.create();
+			for (String sample : samples[0]) {
+				dummy += fresh.intern(sample).length();
+			}
+		}
+		return dummy;
+	}
+}
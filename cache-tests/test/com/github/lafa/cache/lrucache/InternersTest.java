@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2018 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.lafa.cache.lrucache;
+
+import java.lang.ref.WeakReference;
+
+import com.github.lafa.cache.common.testing.GcFinalization;
+import com.github.lafa.cache.lrucache.Interners.InternerImpl;
+import com.github.lafa.cache.lrucache.LocalCache.Segment;
+
+import junit.framework.TestCase;
+
+/** Tests for {@link Interners}. */
+public class InternersTest extends TestCase {
+
+	public void testStrong_simplistic() {
+		String canonical = "a";
+		String not = new String("a");
+
+		Interner<String> pool = Interners.newStrongInterner();
+		assertSame(canonical, pool.intern(canonical));
+		assertSame(canonical, pool.intern(not));
+	}
+
+	public void testStrong_null() {
+		Interner<String> pool = Interners.newStrongInterner();
+		try {
+			pool.intern(null);
+			fail();
+		} catch (NullPointerException ok) {
+		}
+	}
+
+	public void testStrong_builder() {
+		int concurrencyLevel = 42;
+		Interner<Object> interner = Interners.newBuilder().strong().concurrencyLevel(concurrencyLevel).build();
+		InternerImpl<Object> internerImpl = (InternerImpl<Object>) interner;
+		assertFalse(internerImpl.map.usesKeyReferences());
+		assertEquals(64, internerImpl.map.segments.length);
+	}
+
+	public void testWeak_simplistic() {
+		String canonical = "a";
+		String not = new String("a");
+
+		Interner<String> pool = Interners.newWeakInterner();
+		assertSame(canonical, pool.intern(canonical));
+		assertSame(canonical, pool.intern(not));
+	}
+
+	public void testWeak_null() {
+		Interner<String> pool = Interners.newWeakInterner();
+		try {
+			pool.intern(null);
+			fail();
+		} catch (NullPointerException ok) {
+		}
+	}
+
+	public void testWeak_builder() {
+		Interner<Object> interner = Interners.newBuilder().weak().concurrencyLevel(1).build();
+		InternerImpl<Object> internerImpl = (InternerImpl<Object>) interner;
+		assertTrue(internerImpl.map.usesKeyReferences());
+		assertEquals(1, internerImpl.map.segments.length);
+	}
+
+	public void testWeak_sharesValueReference() {
+		Interner<Integer> interner = Interners.newWeakInterner();
+		for (int i = 0; i < 100; i++) {
+			interner.intern(new Integer(i * 1000));
+		}
+		LocalCache<Integer, Interners.Dummy> map = ((InternerImpl<Integer>) interner).map;
+		for (Segment<Integer, Interners.Dummy> segment : map.segments) {
+			for (int i = 0; i < segment.table.length(); i++) {
+				for (ReferenceEntry<Integer, Interners.Dummy> e = segment.table.get(i); e != null; e = e.getNext()) {
+					assertSame(Interners.DUMMY_REFERENCE, e.getValueReference());
+				}
+			}
+		}
+	}
+
+	public void testCacheOfDummy_doesNotShareValueReference() {
+		LocalCache<Object, Interners.Dummy> map = new LocalCache<>(CacheBuilder.newBuilder().weakKeys());
+		Object key = new Object();
+		map.put(key, Interners.Dummy.VALUE);
+		ReferenceEntry<Object, Interners.Dummy> entry = map.getEntry(key);
+		assertNotSame(Interners.DUMMY_REFERENCE, entry.getValueReference());
+		assertSame(Interners.Dummy.VALUE, entry.getValueReference().get());
+	}
+
+	public void testWeak_afterGC() throws InterruptedException {
+		Integer canonical = new Integer(5);
+		Integer not = new Integer(5);
+
+		Interner<Integer> pool = Interners.newWeakInterner();
+		assertSame(canonical, pool.intern(canonical));
+
+		WeakReference<Integer> signal = new WeakReference<Integer>(canonical);
+		canonical = null; // Hint to the JIT that canonical is unreachable
+
+		GcFinalization.awaitClear(signal);
+		assertSame(not, pool.intern(not));
+	}
+
+	public void testBuilder_invalidConcurrencyLevel() {
+		try {
+			Interners.newBuilder().concurrencyLevel(0);
+			fail();
+		} catch (IllegalArgumentException expected) {
+		}
+	}
+}
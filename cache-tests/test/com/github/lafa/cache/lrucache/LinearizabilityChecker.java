@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2018 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lafa.cache.lrucache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.checkerframework.checker.nullness.compatqual.NullableDecl;
+
+/**
+ * Checks that small concurrent histories of map operations are linearizable: that there is an
+ * order of the operations, consistent with the real-time order of those that did not overlap, in
+ * which applying them one at a time to a {@link java.util.HashMap} gives the results that were
+ * observed. Uses the search of Wing and Gong, memoizing the states already explored, so it is only
+ * suitable for histories of up to a few dozen operations.
+ */
+final class LinearizabilityChecker {
+
+	/** The operations of a history, which apply to any map. */
+	enum Type {
+		GET {
+			@Override
+			Object apply(Map<Integer, Integer> map, Integer key, Integer value) {
+				return map.get(key);
+			}
+		},
+		/** Like {@link #GET}, but performed through {@link Cache#getIfPresent}. */
+		GET_IF_PRESENT {
+			@Override
+			Object apply(Map<Integer, Integer> map, Integer key, Integer value) {
+				return map.get(key);
+			}
+
+			@Override
+			Object perform(Cache<Integer, Integer> cache, Integer key, Integer value) {
+				return cache.getIfPresent(key);
+			}
+		},
+		PUT {
+			@Override
+			Object apply(Map<Integer, Integer> map, Integer key, Integer value) {
+				return map.put(key, value);
+			}
+		},
+		PUT_IF_ABSENT {
+			@Override
+			Object apply(Map<Integer, Integer> map, Integer key, Integer value) {
+				return map.putIfAbsent(key, value);
+			}
+		},
+		REPLACE {
+			@Override
+			Object apply(Map<Integer, Integer> map, Integer key, Integer value) {
+				return map.replace(key, value);
+			}
+		},
+		REMOVE {
+			@Override
+			Object apply(Map<Integer, Integer> map, Integer key, Integer value) {
+				return map.remove(key);
+			}
+		},
+		/** Removes the key if it maps to the value. */
+		REMOVE_VALUE {
+			@Override
+			Object apply(Map<Integer, Integer> map, Integer key, Integer value) {
+				return map.remove(key, value);
+			}
+		};
+
+		@NullableDecl
+		abstract Object apply(Map<Integer, Integer> map, Integer key, Integer value);
+
+		/** Performs the operation on {@code cache}, through its {@link Cache#asMap} view unless noted. */
+		@NullableDecl
+		Object perform(Cache<Integer, Integer> cache, Integer key, Integer value) {
+			return apply(cache.asMap(), key, value);
+		}
+	}
+
+	/** An operation of a history, with the ticks at which it was invoked and returned. */
+	static final class Operation {
+		final Type type;
+		final Integer key;
+		final Integer value;
+		@NullableDecl
+		final Object result;
+		final long invoked;
+		final long returned;
+
+		Operation(Type type, Integer key, Integer value, @NullableDecl Object result, long invoked, long returned) {
+			this.type = type;
+			this.key = key;
+			this.value = value;
+			this.result = result;
+			this.invoked = invoked;
+			this.returned = returned;
+		}
+
+		@Override
+		public String toString() {
+			return type + "(" + key + ", " + value + ") = " + result + " [" + invoked + ", " + returned + "]";
+		}
+	}
+
+	/** Records the operations of a history as threads perform them. */
+	static final class Recorder {
+		private final AtomicLong clock = new AtomicLong();
+		private final List<Operation> history = Collections.synchronizedList(new ArrayList<Operation>());
+
+		/** Performs an operation on {@code cache} and records it. */
+		@NullableDecl
+		Object perform(Cache<Integer, Integer> cache, Type type, Integer key, Integer value) {
+			long invoked = clock.incrementAndGet();
+			Object result = type.perform(cache, key, value);
+			history.add(new Operation(type, key, value, result, invoked, clock.incrementAndGet()));
+			return result;
+		}
+
+		List<Operation> history() {
+			return new ArrayList<Operation>(history);
+		}
+	}
+
+	private LinearizabilityChecker() {}
+
+	/** Returns whether {@code history}, of at most 63 operations on an initially empty map, is linearizable. */
+	static boolean isLinearizable(List<Operation> history) {
+		if (history.size() > 63) {
+			throw new IllegalArgumentException("history too long: " + history.size());
+		}
+		long all = (history.size() == 63) ? Long.MAX_VALUE : (1L << history.size()) - 1;
+		return search(history, all, new TreeMap<Integer, Integer>(), new HashSet<String>());
+	}
+
+	/**
+	 * Returns whether the {@code remaining} operations can be linearized after those already
+	 * applied to {@code model}.
+	 */
+	private static boolean search(List<Operation> history, long remaining, TreeMap<Integer, Integer> model,
+			Set<String> explored) {
+		if (remaining == 0) {
+			return true;
+		} else if (!explored.add(remaining + "" + model)) {
+			return false;
+		}
+		long firstReturn = Long.MAX_VALUE;
+		for (int i = 0; i < history.size(); i++) {
+			if ((remaining & (1L << i)) != 0) {
+				firstReturn = Math.min(firstReturn, history.get(i).returned);
+			}
+		}
+		for (int i = 0; i < history.size(); i++) {
+			Operation operation = history.get(i);
+			// an operation may come next only if no other remaining one returned before it was invoked
+			if ((remaining & (1L << i)) == 0 || operation.invoked > firstReturn) {
+				continue;
+			}
+			TreeMap<Integer, Integer> next = new TreeMap<Integer, Integer>(model);
+			if (Objects.equals(operation.type.apply(next, operation.key, operation.value), operation.result)
+					&& search(history, remaining & ~(1L << i), next, explored)) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
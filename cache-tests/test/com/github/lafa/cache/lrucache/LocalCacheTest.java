@@ -208,7 +208,7 @@ public class LocalCacheTest extends TestCase {
 		assertEquals(0, map.refreshNanos);
 		assertEquals(CacheBuilder.UNSET_INT, map.maxWeight);
 
-		assertSame(EntryFactory.STRONG, map.entryFactory);
+		assertSame(EntryFactory.STRONG_INLINE, map.entryFactory);
 		assertSame(CacheBuilder.NullListener.INSTANCE, map.removalListener);
 		assertSame(DISCARDING_QUEUE, map.removalNotificationQueue);
 		assertSame(NULL_TICKER, map.ticker);
@@ -455,6 +455,44 @@ public class LocalCacheTest extends TestCase {
 		assertSame(EntryFactory.WEAK_ACCESS_WRITE, EntryFactory.getFactory(Strength.WEAK, true, true));
 	}
 
+	public void testEntryFactory_inline() {
+		assertSame(EntryFactory.STRONG_INLINE,
+				EntryFactory.getFactory(Strength.STRONG, Strength.STRONG, false, false, false));
+		assertSame(EntryFactory.STRONG_INLINE_ACCESS_ORDER,
+				EntryFactory.getFactory(Strength.STRONG, Strength.STRONG, true, false, false));
+		assertSame(EntryFactory.STRONG_INLINE_ACCESS,
+				EntryFactory.getFactory(Strength.STRONG, Strength.STRONG, true, true, false));
+		assertSame(EntryFactory.STRONG_INLINE_WRITE,
+				EntryFactory.getFactory(Strength.STRONG, Strength.STRONG, false, false, true));
+		assertSame(EntryFactory.STRONG_INLINE_ACCESS_ORDER_WRITE,
+				EntryFactory.getFactory(Strength.STRONG, Strength.STRONG, true, false, true));
+		assertSame(EntryFactory.STRONG_INLINE_ACCESS_WRITE,
+				EntryFactory.getFactory(Strength.STRONG, Strength.STRONG, true, true, true));
+		assertSame(EntryFactory.STRONG_ACCESS, EntryFactory.getFactory(Strength.STRONG, Strength.SOFT, true, false, false));
+		assertSame(EntryFactory.WEAK_WRITE, EntryFactory.getFactory(Strength.WEAK, Strength.STRONG, false, false, true));
+
+		assertSame(EntryFactory.STRONG_INLINE_ACCESS_ORDER,
+				makeLocalCache(createCacheBuilder().maximumSize(10)).entryFactory);
+		assertSame(EntryFactory.STRONG_INLINE_ACCESS,
+				makeLocalCache(createCacheBuilder().expireAfterAccess(1, SECONDS)).entryFactory);
+	}
+
+	public void testInlineEntry_weight() {
+		LocalCache<Object, Object> map = makeLocalCache(createCacheBuilder().concurrencyLevel(1).maximumWeight(100)
+				.weigher(TestingWeighers.constantWeigher(7)));
+		assertSame(EntryFactory.STRONG_INLINE_ACCESS_ORDER, map.entryFactory);
+		Object key = new Object();
+		Object value = new Object();
+		map.put(key, value);
+		ReferenceEntry<Object, Object> entry = map.getEntry(key);
+		assertSame(entry, entry.getValueReference());
+		assertSame(value, entry.getValueReference().get());
+		assertEquals(7, entry.getValueReference().getWeight());
+		assertEquals(7, map.segments[0].totalWeight);
+		map.remove(key);
+		assertEquals(0, map.segments[0].totalWeight);
+	}
+
 	public void testValues() {
 		LocalCache<Object, Object> map = makeLocalCache(createCacheBuilder());
 		map.put("foo", "bar");
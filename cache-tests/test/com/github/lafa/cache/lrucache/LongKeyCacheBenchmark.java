@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2018 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.lafa.cache.lrucache;
+
+import com.google.caliper.BeforeExperiment;
+import com.google.caliper.Benchmark;
+import com.google.caliper.Param;
+
+/**
+ * Compares a {@link LongKeyCache} with a {@code Cache<Long, V>}. {@code get} measures lookup
+ * throughput; {@code populate} allocates a full cache per rep, so that its allocation figures
+ * approximate the memory footprint of each representation.
+ */
+public class LongKeyCacheBenchmark {
+
+	enum Impl {
+		BOXED {
+			@Override
+			Cache<Long, Object> build(CacheBuilder<Object, Object> builder) {
+				return builder.build();
+			}
+		},
+		PRIMITIVE {
+			@Override
+			Cache<Long, Object> build(CacheBuilder<Object, Object> builder) {
+				return builder.buildLongKeyCache();
+			}
+		};
+
+		abstract Cache<Long, Object> build(CacheBuilder<Object, Object> builder);
+	}
+
+	@Param({ "BOXED", "PRIMITIVE" })
+	Impl impl;
+
+	@Param({ "100000", "1000000" })
+	int size;
+
+	private Cache<Long, Object> cache;
+	private final Object value = new Object();
+
+	@BeforeExperiment
+	void setUp() {
+		cache = populate();
+	}
+
+	private Cache<Long, Object> populate() {
+		Cache<Long, Object> cache = impl.build(CacheBuilder.newBuilder().initialCapacity(size).maximumSize(size));
+		for (int i = 0; i < size; i++) {
+			put(cache, (long) i << 20);
+		}
+		return cache;
+	}
+
+	private void put(Cache<Long, Object> cache, long key) {
+		if (cache instanceof LongKeyCache) {
+			((LongKeyCache<Object>) cache).put(key, value);
+		} else {
+			cache.put(key, value);
+		}
+	}
+
+	@Benchmark
+	int get(int reps) {
+		int dummy = 0;
+		if (cache instanceof LongKeyCache) {
+			LongKeyCache<Object> longCache = (LongKeyCache<Object>) cache;
+			for (int i = 0; i < reps; i++) {
+				if (longCache.getIfPresent((long) (i % size) << 20) != null) {
+					dummy++;
+				}
+			}
+		} else {
+			for (int i = 0; i < reps; i++) {
+				if (cache.getIfPresent((long) (i % size) << 20) != null) {
+					dummy++;
+				}
+			}
+		}
+		return dummy;
+	}
+
+	@Benchmark
+	long populate(int reps) {
+		long dummy = 0;
+		for (int i = 0; i < reps; i++) {
+			dummy += populate().size();
+		}
+		return dummy;
+	}
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2018 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.lafa.cache.lrucache;
+
+import static com.github.lafa.cache.lrucache.TestingRemovalListeners.countingRemovalListener;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import com.github.lafa.cache.common.testing.FakeTicker;
+import com.github.lafa.cache.lrucache.LocalCache.EntryFactory;
+import com.github.lafa.cache.lrucache.LocalCache.LocalLongKeyCache;
+import com.github.lafa.cache.lrucache.TestingRemovalListeners.CountingRemovalListener;
+
+import junit.framework.TestCase;
+
+/** Tests for {@link LongKeyCache}. */
+public class LongKeyCacheTest extends TestCase {
+
+	public void testPutGet() {
+		LongKeyCache<String> cache = CacheBuilder.newBuilder().buildLongKeyCache();
+		for (long i = -1000; i < 1000; i++) {
+			cache.put(i * 1000003L, "v" + i);
+		}
+		assertEquals(2000, cache.size());
+		for (long i = -1000; i < 1000; i++) {
+			assertEquals("v" + i, cache.getIfPresent(i * 1000003L));
+		}
+		assertNull(cache.getIfPresent(1L));
+		CacheTesting.checkValidState(cache);
+	}
+
+	public void testBoxedViewsShareEntries() {
+		LongKeyCache<String> cache = CacheBuilder.newBuilder().buildLongKeyCache();
+		cache.put(Long.MAX_VALUE, "max");
+		cache.put(Long.valueOf(7), "seven");
+		assertEquals("max", cache.getIfPresent((Object) Long.MAX_VALUE));
+		assertEquals("seven", cache.getIfPresent(7L));
+		assertTrue(cache.asMap().containsKey(Long.MAX_VALUE));
+		assertEquals(new HashSet<>(Arrays.asList(7L, Long.MAX_VALUE)), cache.asMap().keySet());
+
+		cache.invalidate(7L);
+		assertNull(cache.getIfPresent(7L));
+		cache.invalidate((Object) Long.MAX_VALUE);
+		assertEquals(0, cache.size());
+	}
+
+	public void testBoxedLookupsAndRemovals() {
+		CountingRemovalListener<Long, String> listener = countingRemovalListener();
+		LongKeyCache<String> cache = CacheBuilder.newBuilder().concurrencyLevel(1).initialCapacity(1)
+				.removalListener(listener).buildLongKeyCache();
+		for (long i = 0; i < 100; i++) {
+			cache.put(i << 32, "v" + i);
+		}
+		for (long i = 0; i < 100; i++) {
+			assertEquals("v" + i, cache.asMap().get(i << 32));
+		}
+		assertNull(cache.asMap().get(1L));
+		assertNull(cache.asMap().get(0));
+		assertFalse(cache.asMap().containsKey((int) 0));
+
+		cache.put(7L << 32, "w7");
+		assertEquals("w7", cache.asMap().replace(7L << 32, "x7"));
+		assertTrue(cache.asMap().replace(7L << 32, "x7", "y7"));
+		assertNull(cache.asMap().replace(1L, "x"));
+		assertEquals("y7", cache.asMap().putIfAbsent(7L << 32, "z7"));
+		assertEquals("y7", cache.getIfPresent(7L << 32));
+		assertEquals(100, cache.size());
+
+		assertNull(cache.asMap().remove(1L));
+		assertEquals("v5", cache.asMap().remove(5L << 32));
+		assertEquals(Long.valueOf(5L << 32), listener.getLastEvictedKey());
+		assertEquals(99, cache.size());
+		CacheTesting.checkValidState(cache);
+	}
+
+	public void testEntryFactory() {
+		assertSame(EntryFactory.LONG_KEY, localCache(CacheBuilder.newBuilder().buildLongKeyCache()).entryFactory);
+		assertSame(EntryFactory.LONG_KEY_ACCESS,
+				localCache(CacheBuilder.newBuilder().maximumSize(10).buildLongKeyCache()).entryFactory);
+		assertSame(EntryFactory.LONG_KEY_WRITE,
+				localCache(CacheBuilder.newBuilder().expireAfterWrite(1, SECONDS).buildLongKeyCache()).entryFactory);
+		assertSame(EntryFactory.LONG_KEY_ACCESS_WRITE, localCache(CacheBuilder.newBuilder()
+				.expireAfterAccess(1, SECONDS).expireAfterWrite(1, SECONDS).buildLongKeyCache()).entryFactory);
+	}
+
+	public void testEviction() {
+		CountingRemovalListener<Long, String> listener = countingRemovalListener();
+		LongKeyCache<String> cache = CacheBuilder.newBuilder().concurrencyLevel(1).maximumSize(3)
+				.removalListener(listener).buildLongKeyCache();
+		cache.put(1L, "one");
+		cache.put(2L, "two");
+		cache.put(3L, "three");
+		cache.getIfPresent(1L);
+		cache.put(4L, "four");
+		assertNull(cache.getIfPresent(2L));
+		assertEquals("one", cache.getIfPresent(1L));
+		assertEquals(1, listener.getCount());
+		assertEquals(Long.valueOf(2), listener.getLastEvictedKey());
+		assertEquals(RemovalCause.SIZE, listener.getLastNotification().getCause());
+		CacheTesting.checkValidState(cache);
+	}
+
+	public void testExpiration() {
+		FakeTicker ticker = new FakeTicker();
+		LongKeyCache<String> cache = CacheBuilder.newBuilder().expireAfterAccess(10, SECONDS).ticker(ticker)
+				.buildLongKeyCache();
+		cache.put(1L, "one");
+		cache.put(2L, "two");
+		ticker.advance(6, SECONDS);
+		cache.getIfPresent(1L);
+		ticker.advance(6, SECONDS);
+		assertEquals("one", cache.getIfPresent(1L));
+		assertNull(cache.getIfPresent(2L));
+	}
+
+	public void testStats() {
+		LongKeyCache<String> cache = CacheBuilder.newBuilder().recordStats().buildLongKeyCache();
+		cache.put(1L, "one");
+		cache.getIfPresent(1L);
+		cache.getIfPresent(2L);
+		cache.getIfPresent((Object) 1L);
+		CacheStats stats = cache.stats();
+		assertEquals(2, stats.hitCount());
+		assertEquals(1, stats.missCount());
+	}
+
+	public void testWeakKeysRejected() {
+		try {
+			CacheBuilder.newBuilder().weakKeys().buildLongKeyCache();
+			fail();
+		} catch (IllegalStateException expected) {
+		}
+	}
+
+	private static LocalCache<Long, ?> localCache(LongKeyCache<?> cache) {
+		return ((LocalLongKeyCache<?>) cache).localCache;
+	}
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright (C) 2018 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.lafa.cache.lrucache;
+
+import static com.github.lafa.cache.lrucache.TestingRemovalListeners.countingRemovalListener;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+
+import com.github.lafa.cache.lrucache.TestingRemovalListeners.CountingRemovalListener;
+
+import junit.framework.TestCase;
+
+/** Tests for {@link CacheBuilder#evictOnMemoryPressure} and {@link MemoryPressureMonitor}. */
+public class MemoryPressureMonitorTest extends TestCase {
+
+	private final MemoryPressureMonitor monitor = new MemoryPressureMonitor(
+			Collections.<MemoryPoolMXBean>emptyList(), Collections.<GarbageCollectorMXBean>emptyList());
+
+	public void testShrinkAndGrow() {
+		CountingRemovalListener<Integer, Integer> listener = countingRemovalListener();
+		LocalCache<Integer, Integer> cache = new LocalCache<>(CacheBuilder.newBuilder().concurrencyLevel(1)
+				.maximumSize(1000).evictOnMemoryPressure(0.8).removalListener(listener));
+		monitor.register(cache);
+		for (int i = 0; i < 1000; i++) {
+			cache.put(i, i);
+		}
+
+		monitor.adjust(0.5, true);
+		assertEquals(1000, cache.size());
+
+		monitor.adjust(0.9, true);
+		assertEquals(750, cache.size());
+		assertEquals(250, listener.getCount());
+		assertEquals(RemovalCause.SIZE, listener.getLastNotification().getCause());
+		assertNull(cache.get(0));
+		assertEquals(Integer.valueOf(999), cache.get(999));
+
+		// a measurement without an intervening collection does not shrink further
+		monitor.adjust(0.9, false);
+		assertEquals(750, cache.size());
+		monitor.adjust(0.9, true);
+		assertEquals(562, cache.size());
+
+		// new entries are admitted under the lowered limit
+		for (int i = 1000; i < 1100; i++) {
+			cache.put(i, i);
+		}
+		assertEquals(562, cache.size());
+
+		// within the hysteresis band the limit stays put
+		monitor.adjust(0.75, true);
+		assertEquals(562, cache.size());
+		monitor.adjust(0.5, false);
+		monitor.adjust(0.5, false);
+		for (int i = 2000; i < 3000; i++) {
+			cache.put(i, i);
+		}
+		assertEquals(878, cache.size());
+		monitor.adjust(0.5, false);
+		for (int i = 3000; i < 4000; i++) {
+			cache.put(i, i);
+		}
+		assertEquals(1000, cache.size());
+		CacheTesting.checkValidState(cache);
+	}
+
+	public void testMinimumFraction() {
+		LocalCache<Integer, Integer> cache = new LocalCache<>(
+				CacheBuilder.newBuilder().concurrencyLevel(1).maximumSize(100).evictOnMemoryPressure(0.5));
+		monitor.register(cache);
+		for (int i = 0; i < 100; i++) {
+			cache.put(i, i);
+		}
+		for (int i = 0; i < 20; i++) {
+			monitor.adjust(0.99, true);
+		}
+		assertEquals(10, cache.size());
+	}
+
+	public void testRequiresMaximum() {
+		try {
+			CacheBuilder.newBuilder().evictOnMemoryPressure(0.8).build();
+			fail();
+		} catch (IllegalStateException expected) {
+		}
+		CacheBuilder.newBuilder().maximumSize(10).evictOnMemoryPressure(0.8).build();
+	}
+
+	public void testInvalidThreshold() {
+		for (double threshold : new double[] { 0, 1, -0.5, Double.NaN }) {
+			try {
+				CacheBuilder.newBuilder().evictOnMemoryPressure(threshold);
+				fail();
+			} catch (IllegalArgumentException expected) {
+			}
+		}
+		try {
+			CacheBuilder.newBuilder().evictOnMemoryPressure(0.5).evictOnMemoryPressure(0.6);
+			fail();
+		} catch (IllegalStateException expected) {
+		}
+	}
+
+	public void testTenuredPool() {
+		FakePool eden = new FakePool("PS Eden Space", 100);
+		FakePool survivor = new FakePool("PS Survivor Space", 10);
+		FakePool old = new FakePool("PS Old Gen", 50);
+		assertSame(old.bean, MemoryPressureMonitor.tenuredPool(Arrays.asList(eden.bean, survivor.bean, old.bean)));
+
+		// without a recognizable name, the largest pool is taken
+		FakePool first = new FakePool("first", 100);
+		FakePool second = new FakePool("second", 1000);
+		assertSame(second.bean, MemoryPressureMonitor.tenuredPool(Arrays.asList(first.bean, second.bean)));
+
+		assertNull(MemoryPressureMonitor.tenuredPool(Collections.<MemoryPoolMXBean>emptyList()));
+	}
+
+	public void testYoungGenerationIgnored() {
+		FakePool eden = new FakePool("PS Eden Space", 100);
+		FakePool old = new FakePool("PS Old Gen", 1000);
+		FakeCollector scavenge = new FakeCollector("PS Scavenge", "PS Eden Space", "PS Survivor Space");
+		FakeCollector markSweep = new FakeCollector("PS MarkSweep", "PS Eden Space", "PS Survivor Space",
+				"PS Old Gen");
+		MemoryPressureMonitor monitor = new MemoryPressureMonitor(Arrays.asList(eden.bean, old.bean),
+				Arrays.asList(scavenge.bean, markSweep.bean));
+
+		LocalCache<Integer, Integer> cache = new LocalCache<>(
+				CacheBuilder.newBuilder().concurrencyLevel(1).maximumSize(100).evictOnMemoryPressure(0.8));
+		monitor.register(cache);
+		assertEquals(0, eden.threshold);
+		assertEquals(800, old.threshold);
+		for (int i = 0; i < 100; i++) {
+			cache.put(i, i);
+		}
+
+		// the young generation is full after each of many young collections
+		old.used = 100;
+		monitor.poll();
+		for (int i = 0; i < 10; i++) {
+			eden.used = 99;
+			scavenge.count++;
+			monitor.poll();
+		}
+		assertEquals(100, cache.size());
+
+		// the old generation is full after a young collection, which has not had a chance to reclaim it
+		old.used = 900;
+		scavenge.count++;
+		monitor.poll();
+		assertEquals(100, cache.size());
+
+		// it is still full after a full collection
+		markSweep.count++;
+		monitor.poll();
+		assertEquals(75, cache.size());
+		monitor.poll();
+		assertEquals(75, cache.size());
+	}
+
+	/** A memory pool whose usage is set by the test. */
+	private static final class FakePool {
+		final MemoryPoolMXBean bean;
+		final long max;
+		long used;
+		long threshold;
+
+		FakePool(final String name, long max) {
+			this.max = max;
+			this.bean = (MemoryPoolMXBean) Proxy.newProxyInstance(MemoryPoolMXBean.class.getClassLoader(),
+					new Class<?>[] { MemoryPoolMXBean.class }, (proxy, method, args) -> {
+						switch (method.getName()) {
+						case "getName":
+							return name;
+						case "getType":
+							return MemoryType.HEAP;
+						case "isCollectionUsageThresholdSupported":
+							return true;
+						case "getUsage":
+						case "getCollectionUsage":
+							return new MemoryUsage(0, used, FakePool.this.max, FakePool.this.max);
+						case "getCollectionUsageThreshold":
+							return threshold;
+						case "setCollectionUsageThreshold":
+							threshold = (Long) args[0];
+							return null;
+						default:
+							throw new UnsupportedOperationException(method.getName());
+						}
+					});
+		}
+	}
+
+	/** A garbage collector whose collection count is set by the test. */
+	private static final class FakeCollector {
+		final GarbageCollectorMXBean bean;
+		long count;
+
+		FakeCollector(final String name, final String... poolNames) {
+			this.bean = (GarbageCollectorMXBean) Proxy.newProxyInstance(
+					GarbageCollectorMXBean.class.getClassLoader(), new Class<?>[] { GarbageCollectorMXBean.class },
+					(proxy, method, args) -> {
+						switch (method.getName()) {
+						case "getName":
+							return name;
+						case "getMemoryPoolNames":
+							return poolNames;
+						case "getCollectionCount":
+							return count;
+						default:
+							throw new UnsupportedOperationException(method.getName());
+						}
+					});
+		}
+	}
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2018 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.lafa.cache.lrucache;
+
+import static com.github.lafa.cache.lrucache.TestingRemovalListeners.countingRemovalListener;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+
+import com.github.lafa.cache.lrucache.TestingRemovalListeners.CountingRemovalListener;
+
+import junit.framework.TestCase;
+
+/** Tests for {@link NamespacedCache}. */
+public class NamespacedCacheTest extends TestCase {
+
+	public void testInvalidateNamespace() {
+		NamespacedCache<String, Integer, String> cache = CacheBuilder.newBuilder().buildNamespacedCache();
+		Cache<Integer, String> a = cache.namespace("a");
+		Cache<Integer, String> b = cache.namespace("b");
+		for (int i = 0; i < 10; i++) {
+			a.put(i, "a" + i);
+			b.put(i, "b" + i);
+		}
+		assertEquals("a3", a.getIfPresent(3));
+		assertEquals(10, a.size());
+
+		cache.invalidateNamespace("a");
+		assertNull(a.getIfPresent(3));
+		assertNull(cache.namespace("a").getIfPresent(3));
+		assertEquals(0, a.size());
+		assertEquals("b3", b.getIfPresent(3));
+		assertEquals(10, b.size());
+
+		a.put(3, "new");
+		assertEquals("new", a.getIfPresent(3));
+		assertEquals(1, a.getAllPresent(Arrays.asList(1, 2, 3)).size());
+
+		b.invalidateAll();
+		assertNull(b.getIfPresent(3));
+		assertEquals("new", a.getIfPresent(3));
+	}
+
+	public void testAsMap() {
+		NamespacedCache<String, Integer, String> cache = CacheBuilder.newBuilder().buildNamespacedCache();
+		ConcurrentMap<Integer, String> a = cache.namespace("a").asMap();
+		ConcurrentMap<Integer, String> b = cache.namespace("b").asMap();
+		assertNull(a.put(1, "a1"));
+		assertEquals("a1", a.put(1, "a1'"));
+		assertNull(a.putIfAbsent(2, "a2"));
+		assertEquals("a2", a.putIfAbsent(2, "other"));
+		b.put(1, "b1");
+
+		assertEquals("a1'", a.get(1));
+		assertTrue(a.containsKey(2));
+		assertFalse(a.containsKey(3));
+		assertNull(a.get("wrong type"));
+		assertEquals(2, a.size());
+		assertEquals(1, b.size());
+		assertEquals("b1", b.get(1));
+
+		assertTrue(a.replace(1, "a1'", "a1"));
+		assertFalse(a.replace(1, "a1'", "other"));
+		assertEquals("a1", a.replace(1, "x"));
+		assertNull(a.replace(3, "x"));
+		assertFalse(a.remove(1, "a1"));
+		assertTrue(a.remove(1, "x"));
+		assertNull(a.remove(1));
+		a.put(1, "a1");
+
+		// the view shows only the namespace's entries, unwrapped
+		assertEquals(2, a.entrySet().size());
+		for (Map.Entry<Integer, String> entry : a.entrySet()) {
+			assertEquals("a" + entry.getKey(), entry.getValue());
+		}
+		assertEquals(1, b.keySet().size());
+		assertTrue(b.keySet().contains(1));
+
+		// entries write and remove through
+		for (Map.Entry<Integer, String> entry : a.entrySet()) {
+			if (entry.getKey() == 2) {
+				entry.setValue("two");
+			}
+		}
+		assertEquals("two", cache.namespace("a").getIfPresent(2));
+		for (Iterator<Integer> iterator = a.keySet().iterator(); iterator.hasNext();) {
+			if (iterator.next() == 1) {
+				iterator.remove();
+			}
+		}
+		assertNull(a.get(1));
+		assertEquals(1, a.size());
+
+		// earlier generations are not visible
+		cache.invalidateNamespace("a");
+		assertTrue(a.isEmpty());
+		assertFalse(a.entrySet().iterator().hasNext());
+		assertNull(a.get(2));
+		a.put(2, "new");
+		assertEquals("new", a.get(2));
+		assertEquals(1, a.size());
+
+		b.clear();
+		assertTrue(b.isEmpty());
+		assertEquals("new", a.get(2));
+	}
+
+	public void testStaleEntriesReclaimed() {
+		CountingRemovalListener<Object, Object> listener = countingRemovalListener();
+		NamespacedCache<String, Integer, Integer> cache = CacheBuilder.newBuilder().concurrencyLevel(1)
+				.removalListener(listener).buildNamespacedCache();
+		Cache<Integer, Integer> a = cache.namespace("a");
+		for (int i = 0; i < 5000; i++) {
+			a.put(i, i);
+		}
+		cache.namespace("b").put(0, 0);
+		cache.invalidateNamespace("a");
+		assertEquals(5001, cache.size());
+		assertEquals(0, listener.getCount());
+
+		// each run sweeps a bounded part of the table
+		cache.cleanUp();
+		assertTrue(cache.size() > 1);
+		for (int i = 0; i < 1000 && cache.size() > 1; i++) {
+			cache.cleanUp();
+		}
+		assertEquals(1, cache.size());
+		assertEquals(5000, listener.getCount());
+		RemovalNotification<Object, Object> notification = listener.getLastNotification();
+		assertEquals(RemovalCause.EXPIRED, notification.getCause());
+		assertEquals("a", ((NamespacedKey<?, ?>) notification.getKey()).namespace());
+		assertEquals(Integer.valueOf(0), cache.namespace("b").getIfPresent(0));
+	}
+
+	public void testStaleEntriesExpireBeforeEviction() {
+		CountingRemovalListener<Object, Object> listener = countingRemovalListener();
+		NamespacedCache<String, Integer, Integer> cache = CacheBuilder.newBuilder().concurrencyLevel(1).maximumSize(10)
+				.removalListener(listener).buildNamespacedCache();
+		for (int i = 0; i < 5; i++) {
+			cache.namespace("a").put(i, i);
+		}
+		cache.invalidateNamespace("a");
+		for (int i = 0; i < 10; i++) {
+			cache.namespace("b").put(i, i);
+		}
+		assertEquals(10, cache.size());
+		assertEquals(5, listener.getCount());
+		assertEquals(RemovalCause.EXPIRED, listener.getLastNotification().getCause());
+		assertEquals(10, cache.namespace("b").size());
+	}
+
+	public void testWeakKeysRejected() {
+		try {
+			CacheBuilder.newBuilder().weakKeys().buildNamespacedCache();
+			fail();
+		} catch (IllegalStateException expected) {
+		}
+	}
+}
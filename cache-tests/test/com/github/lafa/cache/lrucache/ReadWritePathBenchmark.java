@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2018 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.lafa.cache.lrucache;
+
+import com.google.caliper.BeforeExperiment;
+import com.google.caliper.Benchmark;
+import com.google.caliper.Param;
+
+/**
+ * Measures the table slot accesses and statistics counters which differ between the Java 8 and
+ * Java 9 variants of the multi-release jar. Run against the jar to measure the Java 9 variant, and
+ * again with {@code -Djdk.util.jar.enableMultiRelease=false} to measure the Java 8 one.
+ */
+public class ReadWritePathBenchmark {
+
+	@Param({ "1024", "1048576" })
+	int size;
+
+	@Param({ "false", "true" })
+	boolean recordStats;
+
+	private Cache<Integer, Integer> cache;
+	private Integer[] keys;
+
+	@BeforeExperiment
+	void setUp() {
+		CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder().initialCapacity(size);
+		if (recordStats) {
+			builder.recordStats();
+		}
+		cache = builder.build();
+		keys = new Integer[size];
+		for (int i = 0; i < size; i++) {
+			keys[i] = i;
+			cache.put(keys[i], keys[i]);
+		}
+	}
+
+	@Benchmark
+	int get(int reps) {
+		int dummy = 0;
+		int mask = size - 1;
+		for (int i = 0; i < reps; i++) {
+			dummy += cache.getIfPresent(keys[i & mask]);
+		}
+		return dummy;
+	}
+
+	@Benchmark
+	int put(int reps) {
+		int mask = size - 1;
+		for (int i = 0; i < reps; i++) {
+			Integer key = keys[i & mask];
+			cache.put(key, key);
+		}
+		return (int) cache.size();
+	}
+}
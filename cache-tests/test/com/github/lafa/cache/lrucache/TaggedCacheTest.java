@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2018 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.lafa.cache.lrucache;
+
+import static com.github.lafa.cache.lrucache.TestingRemovalListeners.countingRemovalListener;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import com.github.lafa.cache.common.testing.FakeTicker;
+import com.github.lafa.cache.lrucache.LocalCache.LocalTaggedCache;
+import com.github.lafa.cache.lrucache.TestingRemovalListeners.CountingRemovalListener;
+
+import junit.framework.TestCase;
+
+/** Tests for {@link TaggedCache}. */
+public class TaggedCacheTest extends TestCase {
+
+	public void testInvalidateTag() {
+		CountingRemovalListener<Integer, String> listener = countingRemovalListener();
+		TaggedCache<Integer, String> cache = CacheBuilder.newBuilder().removalListener(listener).buildTaggedCache();
+		for (int i = 0; i < 100; i++) {
+			cache.put(i, "v" + i, Arrays.asList("tenant" + (i % 3), "all"));
+		}
+		assertEquals(34, cache.invalidateTag("tenant0"));
+		assertEquals(66, cache.size());
+		assertEquals(34, listener.getCount());
+		assertEquals(RemovalCause.EXPLICIT, listener.getLastNotification().getCause());
+		assertNull(cache.getIfPresent(0));
+		assertEquals("v1", cache.getIfPresent(1));
+
+		assertEquals(0, cache.invalidateTag("tenant0"));
+		assertEquals(0, cache.invalidateTag("unknown"));
+		assertEquals(66, cache.invalidateTag("all"));
+		assertEquals(0, cache.size());
+		assertEquals(0, tagIndex(cache).tagCount());
+	}
+
+	public void testRetaggingReplacesTags() {
+		TaggedCache<Integer, String> cache = CacheBuilder.newBuilder().buildTaggedCache();
+		cache.put(1, "one", Arrays.asList("a"));
+		cache.put(1, "uno", Arrays.asList("b"));
+		assertEquals(0, cache.invalidateTag("a"));
+		assertEquals("uno", cache.getIfPresent(1));
+
+		// plain puts clear tags, writes through asMap keep them
+		cache.put(1, "eins");
+		assertEquals(0, cache.invalidateTag("b"));
+		cache.put(2, "two", Collections.singleton("c"));
+		cache.asMap().put(2, "zwei");
+		assertEquals(1, cache.invalidateTag("c"));
+		assertEquals(1, cache.size());
+	}
+
+	public void testEvictionUpdatesIndex() {
+		TaggedCache<Integer, String> cache = CacheBuilder.newBuilder().concurrencyLevel(1).maximumSize(10)
+				.buildTaggedCache();
+		for (int i = 0; i < 100; i++) {
+			cache.put(i, "v" + i, Arrays.asList("tag" + i, "all"));
+		}
+		assertEquals(10, cache.size());
+		assertEquals(10, tagIndex(cache).keys("all").size());
+		assertEquals(11, tagIndex(cache).tagCount());
+		assertEquals(0, cache.invalidateTag("tag0"));
+		assertEquals(10, cache.invalidateTag("all"));
+	}
+
+	public void testExpirationUpdatesIndex() {
+		FakeTicker ticker = new FakeTicker();
+		TaggedCache<Integer, String> cache = CacheBuilder.newBuilder().expireAfterWrite(10, SECONDS).ticker(ticker)
+				.buildTaggedCache();
+		cache.put(1, "one", Arrays.asList("a"));
+		ticker.advance(6, SECONDS);
+		cache.put(2, "two", Arrays.asList("a"));
+		ticker.advance(6, SECONDS);
+		cache.cleanUp();
+		assertEquals(1, tagIndex(cache).keys("a").size());
+		assertEquals(1, cache.invalidateTag("a"));
+	}
+
+	public void testInvalidateAllClearsIndex() {
+		TaggedCache<Integer, String> cache = CacheBuilder.newBuilder().buildTaggedCache();
+		cache.put(1, "one", Arrays.asList("a", "b"));
+		cache.invalidateAll();
+		assertEquals(0, tagIndex(cache).tagCount());
+	}
+
+	public void testWeakKeysRejected() {
+		try {
+			CacheBuilder.newBuilder().weakKeys().buildTaggedCache();
+			fail();
+		} catch (IllegalStateException expected) {
+		}
+	}
+
+	private static TagIndex<Integer> tagIndex(TaggedCache<Integer, ?> cache) {
+		return ((LocalTaggedCache<Integer, ?>) cache).localCache.tagIndex;
+	}
+}
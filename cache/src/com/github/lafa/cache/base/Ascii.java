@@ -17,6 +17,8 @@ package com.github.lafa.cache.base;
 import static com.github.lafa.cache.base.Preconditions.checkArgument;
 import static com.github.lafa.cache.base.Preconditions.checkNotNull;
 
+import java.io.Serializable;
+
 /**
  * Static methods pertaining to ASCII characters (those in the range of values {@code 0x00} through
  * {@code 0x7F}), and to strings containing such characters.
@@ -621,6 +623,51 @@ public final class Ascii {
     return true;
   }
 
+  /**
+   * Returns an equivalence that compares character sequences as {@link #equalsIgnoreCase} does, and
+   * hashes them over their characters with ASCII letters folded to lower case. Neither operation
+   * allocates, so a cache built with this {@linkplain
+   * com.github.lafa.cache.lrucache.CacheBuilder#keyEquivalence key equivalence} can be looked up
+   * with keys of any case without normalizing them first. Keys are compared by content regardless
+   * of their class, so a {@code StringBuilder} finds an entry whose key is an equal {@code String}.
+   *
+   * <p>Only ASCII letters are folded; other characters must match exactly.
+   */
+  public static Equivalence<CharSequence> caseInsensitiveEquivalence() {
+    return CaseInsensitiveEquivalence.INSTANCE;
+  }
+
+  private static final class CaseInsensitiveEquivalence extends Equivalence<CharSequence>
+      implements Serializable {
+
+    static final CaseInsensitiveEquivalence INSTANCE = new CaseInsensitiveEquivalence();
+
+    @Override
+    protected boolean doEquivalent(CharSequence a, CharSequence b) {
+      return equalsIgnoreCase(a, b);
+    }
+
+    @Override
+    protected int doHash(CharSequence chars) {
+      int h = 0;
+      for (int i = 0; i < chars.length(); i++) {
+        h = 31 * h + toLowerCase(chars.charAt(i));
+      }
+      return h;
+    }
+
+    @Override
+    public String toString() {
+      return "Ascii.caseInsensitiveEquivalence()";
+    }
+
+    private Object readResolve() {
+      return INSTANCE;
+    }
+
+    private static final long serialVersionUID = 1;
+  }
+
   /**
    * Returns the non-negative index value of the alpha character {@code c}, regardless of case. Ie,
    * 'a'/'A' returns 0 and 'z'/'Z' returns 25. Non-alpha characters return a value of 26 or greater.
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2010 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.github.lafa.cache.base;
+
+import static com.github.lafa.cache.base.Preconditions.checkPositionIndexes;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * An equivalence that compares byte arrays by content, as {@link Arrays#equals(byte[], byte[])}
+ * and {@link Arrays#hashCode(byte[])} do. Obtained from {@link Equivalence#byteArrays}.
+ *
+ * <p>In addition to whole arrays, it hashes and compares ranges of larger arrays and the remaining
+ * bytes of {@link ByteBuffer}s, neither copying them nor changing the buffer's position. The hash
+ * of a range equals that of an array holding the same bytes, so a range can be used to look up a
+ * key that was stored as an array.
+ */
+public final class ByteArrayEquivalence extends Equivalence<byte[]> implements Serializable {
+
+  static final ByteArrayEquivalence INSTANCE = new ByteArrayEquivalence();
+
+  private ByteArrayEquivalence() {}
+
+  @Override
+  protected boolean doEquivalent(byte[] a, byte[] b) {
+    return Arrays.equals(a, b);
+  }
+
+  @Override
+  protected int doHash(byte[] bytes) {
+    return Arrays.hashCode(bytes);
+  }
+
+  /** Returns the hash of the {@code len} bytes of {@code buf} starting at {@code off}. */
+  public int hash(byte[] buf, int off, int len) {
+    checkPositionIndexes(off, off + len, buf.length);
+    int h = 1;
+    for (int i = off; i < off + len; i++) {
+      h = 31 * h + buf[i];
+    }
+    return h;
+  }
+
+  /** Returns the hash of the remaining bytes of {@code buf}. */
+  public int hash(ByteBuffer buf) {
+    int h = 1;
+    for (int i = buf.position(); i < buf.limit(); i++) {
+      h = 31 * h + buf.get(i);
+    }
+    return h;
+  }
+
+  /**
+   * Returns whether {@code bytes} holds exactly the {@code len} bytes of {@code buf} starting at
+   * {@code off}.
+   */
+  public boolean equivalent(byte[] bytes, byte[] buf, int off, int len) {
+    checkPositionIndexes(off, off + len, buf.length);
+    if (bytes.length != len) {
+      return false;
+    }
+    for (int i = 0; i < len; i++) {
+      if (bytes[i] != buf[off + i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Returns whether {@code bytes} holds exactly the remaining bytes of {@code buf}. */
+  public boolean equivalent(byte[] bytes, ByteBuffer buf) {
+    int position = buf.position();
+    if (bytes.length != buf.limit() - position) {
+      return false;
+    }
+    for (int i = 0; i < bytes.length; i++) {
+      if (bytes[i] != buf.get(position + i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public String toString() {
+    return "Equivalence.byteArrays()";
+  }
+
+  private Object readResolve() {
+    return INSTANCE;
+  }
+
+  private static final long serialVersionUID = 1;
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2018 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.github.lafa.cache.base;
+
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * A ticker which returns the value of {@link System#nanoTime} as of its most recent update by a
+ * shared daemon thread, for {@link Ticker#coarseTicker}. One instance, and one periodic task, exists
+ * per resolution.
+ */
+final class CoarseTicker extends Ticker implements Runnable {
+
+  private static final ConcurrentMap<Long, CoarseTicker> instances = new ConcurrentHashMap<>();
+
+  private static final class Holder {
+    static final ScheduledExecutorService SCHEDULER =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "coarse-ticker");
+              thread.setDaemon(true);
+              return thread;
+            });
+  }
+
+  static Ticker forResolution(long resolutionNanos) {
+    return instances.computeIfAbsent(
+        resolutionNanos,
+        resolution -> {
+          CoarseTicker ticker = new CoarseTicker();
+          Holder.SCHEDULER.scheduleAtFixedRate(ticker, resolution, resolution, NANOSECONDS);
+          return ticker;
+        });
+  }
+
+  private volatile long nanos = System.nanoTime();
+
+  private CoarseTicker() {}
+
+  @Override
+  public void run() {
+    nanos = System.nanoTime();
+  }
+
+  @Override
+  public long read() {
+    return nanos;
+  }
+}
@@ -243,6 +243,14 @@ public abstract class Equivalence<T> implements BiPredicate<T, T> {
     return Identity.INSTANCE;
   }
 
+  /**
+   * Returns an equivalence that compares byte arrays by content, and that can also hash and compare
+   * ranges of arrays and buffers without copying them. See {@link ByteArrayEquivalence}.
+   */
+  public static ByteArrayEquivalence byteArrays() {
+    return ByteArrayEquivalence.INSTANCE;
+  }
+
   static final class Equals extends Equivalence<Object> implements Serializable {
 
     static final Equals INSTANCE = new Equals();
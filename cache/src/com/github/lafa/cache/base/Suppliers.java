@@ -15,7 +15,12 @@
 package com.github.lafa.cache.base;
 
 import java.io.Serializable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import org.checkerframework.checker.nullness.compatqual.NullableDecl;
 
@@ -24,7 +29,8 @@ import com.github.lafa.cache.annotations.VisibleForTesting;
 /**
  * Useful suppliers.
  *
- * <p>All methods return serializable suppliers as long as they're given serializable parameters.
+ * <p>All methods except {@code memoizeWithRefresh} return serializable suppliers as long as they're
+ * given serializable parameters.
  *
  * @author Laurence Gonsalves
  * @author Harry Heymann
@@ -255,6 +261,151 @@ public final class Suppliers {
     private static final long serialVersionUID = 0;
   }
 
+  /**
+   * Returns a supplier that caches the instance supplied by the delegate, and refreshes it in the
+   * background once the specified time has passed. Unlike {@link #memoizeWithExpiration}, only the
+   * first call to {@code get()} waits for the delegate. Once the cached value is older than {@code
+   * duration}, the next call starts a single refresh on {@code executor} and, like every call
+   * until that refresh completes, returns the stale value.
+   *
+   * <p>The returned supplier is thread-safe, and once initialized, {@code get()} takes no lock: it
+   * performs a volatile read and compares the time with the refresh deadline. If a refresh throws
+   * an exception, the exception is logged, the stale value is kept, and the next call starts
+   * another refresh. If {@code executor} rejects a refresh, the next call likewise retries. The
+   * supplier is not serializable.
+   *
+   * @param duration the length of time after a value is created that it should be refreshed
+   * @param unit the unit that {@code duration} is expressed in
+   * @param executor the executor that runs refreshes
+   * @throws IllegalArgumentException if {@code duration} is not positive
+   */
+  public static <T> Supplier<T> memoizeWithRefresh(
+      Supplier<T> delegate, long duration, TimeUnit unit, Executor executor) {
+    return memoizeWithRefresh(delegate, duration, unit, 0, executor);
+  }
+
+  /**
+   * Returns a supplier like {@link #memoizeWithRefresh(Supplier, long, TimeUnit, Executor)} whose
+   * refreshes are jittered: each value is refreshed after a random time between {@code (1 -
+   * jitter) * duration} and {@code duration}, so that many suppliers created together do not all
+   * refresh at once.
+   *
+   * @param jitter the fraction of {@code duration} by which refreshes may be early, at least 0 and
+   *     less than 1
+   * @throws IllegalArgumentException if {@code duration} is not positive, or {@code jitter} is out
+   *     of range
+   */
+  public static <T> Supplier<T> memoizeWithRefresh(
+      Supplier<T> delegate, long duration, TimeUnit unit, double jitter, Executor executor) {
+    return new RefreshingMemoizingSupplier<T>(
+        delegate, duration, unit, jitter, executor, Ticker.systemTicker());
+  }
+
+  @VisibleForTesting
+  static class RefreshingMemoizingSupplier<T> implements Supplier<T> {
+    private static final Logger logger =
+        Logger.getLogger(RefreshingMemoizingSupplier.class.getName());
+
+    @SuppressWarnings("rawtypes") // the updater is shared by all type arguments
+    private static final AtomicIntegerFieldUpdater<RefreshingMemoizingSupplier> REFRESHING =
+        AtomicIntegerFieldUpdater.newUpdater(RefreshingMemoizingSupplier.class, "refreshing");
+
+    final Supplier<T> delegate;
+    final long durationNanos;
+    final double jitter;
+    final Executor executor;
+    final Ticker ticker;
+
+    /** The current value and its refresh deadline, or null if not yet initialized. */
+    @NullableDecl volatile Snapshot<T> snapshot;
+
+    /** 1 while a refresh is pending or running. */
+    volatile int refreshing;
+
+    /** Refreshes the value; runs on the executor. Not exposed, so callers cannot force a refresh. */
+    private final Runnable refresh =
+        new Runnable() {
+          @Override
+          public void run() {
+            try {
+              load();
+            } catch (RuntimeException e) {
+              logger.log(
+                  Level.WARNING,
+                  "Exception thrown while refreshing " + RefreshingMemoizingSupplier.this,
+                  e);
+            } finally {
+              refreshing = 0;
+            }
+          }
+        };
+
+    RefreshingMemoizingSupplier(
+        Supplier<T> delegate,
+        long duration,
+        TimeUnit unit,
+        double jitter,
+        Executor executor,
+        Ticker ticker) {
+      this.delegate = Preconditions.checkNotNull(delegate);
+      this.durationNanos = unit.toNanos(duration);
+      Preconditions.checkArgument(duration > 0);
+      Preconditions.checkArgument(jitter >= 0 && jitter < 1, "jitter out of range: %s", jitter);
+      this.jitter = jitter;
+      this.executor = Preconditions.checkNotNull(executor);
+      this.ticker = Preconditions.checkNotNull(ticker);
+    }
+
+    @Override
+    public T get() {
+      Snapshot<T> current = snapshot;
+      if (current == null) {
+        synchronized (this) {
+          current = snapshot;
+          if (current == null) {
+            current = load();
+          }
+        }
+      } else if (ticker.read() - current.refreshNanos >= 0
+          && REFRESHING.compareAndSet(this, 0, 1)) {
+        try {
+          executor.execute(refresh);
+        } catch (RuntimeException e) {
+          refreshing = 0;
+          logger.log(Level.WARNING, "Exception thrown while scheduling a refresh of " + this, e);
+        }
+      }
+      return current.value;
+    }
+
+    private Snapshot<T> load() {
+      T value = delegate.get();
+      long delay = durationNanos;
+      if (jitter > 0) {
+        delay -= (long) (durationNanos * jitter * ThreadLocalRandom.current().nextDouble());
+      }
+      Snapshot<T> loaded = new Snapshot<T>(value, ticker.read() + delay);
+      snapshot = loaded;
+      return loaded;
+    }
+
+    @Override
+    public String toString() {
+      return "Suppliers.memoizeWithRefresh(" + delegate + ", " + durationNanos + ", NANOS)";
+    }
+
+    /** A value and the time at which it should be refreshed, published together. */
+    static final class Snapshot<T> {
+      @NullableDecl final T value;
+      final long refreshNanos;
+
+      Snapshot(@NullableDecl T value, long refreshNanos) {
+        this.value = value;
+        this.refreshNanos = refreshNanos;
+      }
+    }
+  }
+
   /** Returns a supplier that always supplies {@code instance}. */
   public static <T> Supplier<T> ofInstance(@NullableDecl T instance) {
     return new SupplierOfInstance<T>(instance);
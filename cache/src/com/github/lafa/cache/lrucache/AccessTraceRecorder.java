@@ -0,0 +1,352 @@
+/*
+ * Copyright (C) 2018 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.github.lafa.cache.lrucache;
+
+import static com.github.lafa.cache.base.Preconditions.checkArgument;
+import static com.github.lafa.cache.base.Preconditions.checkNotNull;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.checkerframework.checker.nullness.compatqual.MonotonicNonNullDecl;
+import org.checkerframework.checker.nullness.compatqual.NullableDecl;
+
+import com.github.lafa.cache.base.Ticker;
+import com.google.errorprone.annotations.concurrent.GuardedBy;
+
+/**
+ * Records a sampled trace of the reads and writes of a cache built with {@link
+ * CacheBuilder#traceRecorder} to a file, for replaying against other configurations offline.
+ *
+ * <p>Accesses are sampled by key: a key is either always or never recorded, according to its hash,
+ * so that the trace preserves the reuse pattern of the keys it holds and its hit rates estimate
+ * those of the whole cache. Unsampled accesses cost a multiplication and a comparison. Sampled
+ * accesses are appended to a fixed-size lock-free ring buffer, and are dropped if it is full; the
+ * buffer is written to the file by {@link #flush}, which is called periodically on the executor
+ * given to {@link Builder#flushEvery}, if any. Recording stops once the file reaches its maximum
+ * size, or the recorder is {@linkplain #close closed}.
+ *
+ * <p>The file starts with a header of the big-endian {@code int} {@link #MAGIC}, the {@code int}
+ * {@link #VERSION} and the {@code double} sampling rate. It is followed by 17-byte records of the
+ * {@code int} hash of the key, as spread by the cache; a {@code byte} {@linkplain #HIT operation};
+ * the {@code int} {@linkplain Weigher weight} of the entry, or 0 for a miss; and the {@code long}
+ * time of the access in nanoseconds, read from the recorder's ticker. Records may be slightly out
+ * of time order when accesses race.
+ *
+ * <p>Only the primitive operations of a cache's segments are recorded: lookups, including those
+ * answered by a {@linkplain CacheBuilder#frontCacheSize front cache}, and writes of a value by
+ * {@link Cache#put} or {@link Cache#putAll}. A {@code putIfAbsent} which finds a value is not
+ * recorded.
+ * A recorder may be shared by several caches, whose accesses are then interleaved in one trace.
+ */
+public final class AccessTraceRecorder implements Closeable {
+
+  private static final Logger logger = Logger.getLogger(AccessTraceRecorder.class.getName());
+
+  /** The first four bytes of a trace file, {@code "LCTR"}. */
+  public static final int MAGIC = 0x4C435452;
+
+  /** The version of the trace file format. */
+  public static final int VERSION = 1;
+
+  /** The size of the file header in bytes. */
+  public static final int HEADER_BYTES = 16;
+
+  /** The size of each record in bytes. */
+  public static final int RECORD_BYTES = 17;
+
+  /** The operation of a lookup which found a live entry. */
+  public static final byte HIT = 0;
+
+  /** The operation of a lookup which found no live entry. */
+  public static final byte MISS = 1;
+
+  /** The operation of a write. */
+  public static final byte PUT = 2;
+
+  /** The number of bits of a mixed hash compared against the sampling threshold. */
+  private static final int SAMPLE_BITS = 24;
+
+  private final Path file;
+  private final double samplingRate;
+  private final long maxFileBytes;
+  private final Ticker ticker;
+
+  /**
+   * Sampled hashes, once mixed and shifted, are below this; it is zeroed when recording stops so
+   * that every access is then skipped.
+   */
+  private volatile int sampleThreshold;
+
+  private final int mask;
+  private final int[] hashes;
+  private final byte[] operations;
+  private final int[] weights;
+  private final long[] times;
+
+  /**
+   * The sequence number of the record published in each slot plus one, so that the consumer can
+   * tell a slot that has been claimed from one that has been written.
+   */
+  private final AtomicLongArray published;
+
+  /** The sequence number of the next record to claim. */
+  private final AtomicLong tail = new AtomicLong();
+
+  /** The sequence number of the next record to flush; only advanced by {@link #flush}. */
+  private volatile long head;
+
+  private final AtomicLong dropped = new AtomicLong();
+
+  @GuardedBy("this")
+  @NullableDecl
+  private DataOutputStream out;
+
+  @GuardedBy("this")
+  private long fileBytes;
+
+  @GuardedBy("this")
+  private long recorded;
+
+  @MonotonicNonNullDecl private volatile ScheduledFuture<?> flushTask;
+
+  private AccessTraceRecorder(Builder builder) {
+    this.file = builder.file;
+    this.samplingRate = builder.samplingRate;
+    this.maxFileBytes = builder.maxFileBytes;
+    this.ticker = builder.ticker;
+    this.sampleThreshold = (int) Math.ceil(samplingRate * (1 << SAMPLE_BITS));
+    int capacity =
+        (builder.bufferSize == 1) ? 1 : Integer.highestOneBit(builder.bufferSize - 1) << 1;
+    this.mask = capacity - 1;
+    this.hashes = new int[capacity];
+    this.operations = new byte[capacity];
+    this.weights = new int[capacity];
+    this.times = new long[capacity];
+    this.published = new AtomicLongArray(capacity);
+  }
+
+  /** Returns a new builder of a recorder which writes to {@code file}. */
+  public static Builder newBuilder(Path file) {
+    return new Builder(file);
+  }
+
+  /** Configures and creates an {@link AccessTraceRecorder}. */
+  public static final class Builder {
+    private final Path file;
+    private double samplingRate = 0.01;
+    private long maxFileBytes = 64L << 20;
+    private int bufferSize = 8192;
+    private Ticker ticker = Ticker.systemTicker();
+    @NullableDecl private ScheduledExecutorService flusher;
+    private long flushPeriodNanos;
+
+    private Builder(Path file) {
+      this.file = checkNotNull(file);
+    }
+
+    /**
+     * Sets the fraction of keys whose accesses are recorded; defaults to 0.01. A rate of 1 records
+     * every access.
+     */
+    public Builder samplingRate(double samplingRate) {
+      checkArgument(
+          samplingRate > 0 && samplingRate <= 1, "sampling rate out of range: %s", samplingRate);
+      this.samplingRate = samplingRate;
+      return this;
+    }
+
+    /**
+     * Sets the size in bytes, including the header, beyond which the file will not grow; defaults
+     * to 64 MiB.
+     */
+    public Builder maxFileSize(long bytes) {
+      checkArgument(bytes >= HEADER_BYTES, "max file size too small: %s", bytes);
+      this.maxFileBytes = bytes;
+      return this;
+    }
+
+    /**
+     * Sets the number of records that may be buffered between flushes, which is rounded up to a
+     * power of two; defaults to 8192. Accesses sampled while the buffer is full are dropped.
+     */
+    public Builder bufferSize(int records) {
+      checkArgument(records > 0 && records <= 1 << 24, "buffer size out of range: %s", records);
+      this.bufferSize = records;
+      return this;
+    }
+
+    /** Sets the time source of the records; defaults to {@link Ticker#systemTicker()}. */
+    public Builder ticker(Ticker ticker) {
+      this.ticker = checkNotNull(ticker);
+      return this;
+    }
+
+    /**
+     * Flushes the recorder on {@code executor} with the given delay between flushes, until it is
+     * closed.
+     */
+    public Builder flushEvery(ScheduledExecutorService executor, long period, TimeUnit unit) {
+      checkArgument(period > 0, "flush period must be positive: %s %s", period, unit);
+      this.flusher = checkNotNull(executor);
+      this.flushPeriodNanos = unit.toNanos(period);
+      return this;
+    }
+
+    /** Creates the file, replacing any existing one, and returns a recorder writing to it. */
+    public AccessTraceRecorder build() throws IOException {
+      AccessTraceRecorder recorder = new AccessTraceRecorder(this);
+      recorder.open();
+      if (flusher != null) {
+        recorder.flushTask =
+            flusher.scheduleWithFixedDelay(
+                recorder::scheduledFlush,
+                flushPeriodNanos,
+                flushPeriodNanos,
+                TimeUnit.NANOSECONDS);
+      }
+      return recorder;
+    }
+  }
+
+  private synchronized void open() throws IOException {
+    out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16));
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+    out.writeDouble(samplingRate);
+    fileBytes = HEADER_BYTES;
+  }
+
+  /** Returns whether accesses of the key with the spread hash {@code hash} are recorded. */
+  boolean samples(int hash) {
+    return ((hash * 0x9E3779B9) >>> (32 - SAMPLE_BITS)) < sampleThreshold;
+  }
+
+  /** Records an access of the key with the spread hash {@code hash}, which must be sampled. */
+  void record(int hash, byte operation, int weight) {
+    long sequence;
+    do {
+      sequence = tail.get();
+      if (sequence - head > mask) {
+        dropped.incrementAndGet();
+        return;
+      }
+    } while (!tail.compareAndSet(sequence, sequence + 1));
+    int i = (int) sequence & mask;
+    hashes[i] = hash;
+    operations[i] = operation;
+    weights[i] = weight;
+    times[i] = ticker.read();
+    published.lazySet(i, sequence + 1);
+  }
+
+  /**
+   * Writes the buffered records to the file, up to the first that is still being written. Stops
+   * recording if the file reached its maximum size.
+   *
+   * @throws IOException if the records could not be written, in which case recording stops
+   */
+  public synchronized void flush() throws IOException {
+    if (out == null) {
+      return;
+    }
+    try {
+      long sequence = head;
+      for (; ; sequence++) {
+        int i = (int) sequence & mask;
+        if (published.get(i) != sequence + 1) {
+          break;
+        } else if (fileBytes + RECORD_BYTES > maxFileBytes) {
+          sampleThreshold = 0;
+          break;
+        }
+        out.writeInt(hashes[i]);
+        out.writeByte(operations[i]);
+        out.writeInt(weights[i]);
+        out.writeLong(times[i]);
+        fileBytes += RECORD_BYTES;
+        recorded++;
+      }
+      head = sequence;
+      out.flush();
+    } catch (IOException e) {
+      sampleThreshold = 0;
+      throw e;
+    }
+  }
+
+  private void scheduledFlush() {
+    try {
+      flush();
+    } catch (Throwable t) {
+      logger.log(Level.WARNING, "Exception thrown while flushing access trace to " + file, t);
+    }
+  }
+
+  /** Returns the number of records written to the file so far. */
+  public synchronized long recordCount() {
+    return recorded;
+  }
+
+  /** Returns the number of sampled accesses that were not recorded because the buffer was full. */
+  public long droppedCount() {
+    return dropped.get();
+  }
+
+  /** Returns whether accesses are still being recorded. */
+  public boolean isRecording() {
+    return sampleThreshold != 0;
+  }
+
+  /**
+   * Stops recording, writes the buffered records to the file and closes it. Closing a closed
+   * recorder has no effect.
+   */
+  @Override
+  public void close() throws IOException {
+    if (flushTask != null) {
+      flushTask.cancel(false);
+    }
+    sampleThreshold = 0;
+    synchronized (this) {
+      if (out == null) {
+        return;
+      }
+      try {
+        flush();
+      } finally {
+        DataOutputStream closing = out;
+        out = null;
+        closing.close();
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "AccessTraceRecorder{" + file + ", samplingRate=" + samplingRate + "}";
+  }
+}
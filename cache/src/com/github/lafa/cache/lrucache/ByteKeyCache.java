@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2018 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.github.lafa.cache.lrucache;
+
+import java.nio.ByteBuffer;
+
+import org.checkerframework.checker.nullness.compatqual.NullableDecl;
+
+/**
+ * A {@link Cache} keyed by byte arrays that are compared by content, as with {@link
+ * com.github.lafa.cache.base.Equivalence#byteArrays}. Instances are built by {@link
+ * CacheBuilder#buildByteKeyCache}.
+ *
+ * <p>Keys may be looked up as a range of a larger array, or as the remaining bytes of a {@link
+ * ByteBuffer}, such as a slice of a network buffer. Such lookups neither copy the key nor allocate.
+ * Writes through {@link #put(byte[], int, int, Object)} and {@link #put(byte[], Object)} copy the
+ * key, so the caller may reuse its buffer afterwards; keys inserted through the {@link #asMap} view
+ * are stored as given, and must not be modified while they are in the cache.
+ *
+ * <p>Eviction, expiration, removal notification and statistics behave exactly as for a cache
+ * returned by {@link CacheBuilder#build}.
+ *
+ * @param <V> the type of mapped values
+ */
+public interface ByteKeyCache<V> extends Cache<byte[], V> {
+
+  /**
+   * Returns the value associated with the {@code len} bytes of {@code buf} starting at {@code off},
+   * or {@code null} if there is no cached value for them.
+   *
+   * @throws IndexOutOfBoundsException if the range is not within {@code buf}
+   */
+  @NullableDecl
+  V getIfPresent(byte[] buf, int off, int len);
+
+  /**
+   * Returns the value associated with the remaining bytes of {@code key}, or {@code null} if there
+   * is no cached value for them. The position of {@code key} is not changed.
+   */
+  @NullableDecl
+  V getIfPresent(ByteBuffer key);
+
+  /**
+   * Associates {@code value} with a copy of {@code key} in this cache. If the cache previously
+   * contained a value associated with an equal key, the old value is replaced by {@code value}.
+   */
+  @Override
+  void put(byte[] key, V value);
+
+  /**
+   * Associates {@code value} with a copy of the {@code len} bytes of {@code buf} starting at {@code
+   * off}. If the cache previously contained a value associated with those bytes, the old value is
+   * replaced by {@code value}.
+   *
+   * @throws IndexOutOfBoundsException if the range is not within {@code buf}
+   */
+  void put(byte[] buf, int off, int len, V value);
+
+  /** Discards any cached value for the {@code len} bytes of {@code buf} starting at {@code off}. */
+  void invalidate(byte[] buf, int off, int len);
+}
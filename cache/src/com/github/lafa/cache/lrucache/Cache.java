@@ -14,6 +14,9 @@
 
 package com.github.lafa.cache.lrucache;
 
+import static com.github.lafa.cache.base.Preconditions.checkArgument;
+
+import java.util.BitSet;
 import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentMap;
@@ -53,6 +56,59 @@ public interface Cache<K, V> {
    */
     Map<K, V> getAllPresent(Iterable<?> keys);
 
+  /**
+   * Puts the values associated with {@code keys} in this cache into {@code results}, rather than
+   * into a new map, and returns how many were found. Keys without a cached value are skipped.
+   *
+   * <p>The default implementation calls {@link #getIfPresent} for each key. Caches built by {@link
+   * CacheBuilder} read their clock and record statistics once per call, and allocate nothing beyond
+   * what {@code results} itself allocates.
+   */
+  default int getAllPresent(Iterable<?> keys, Map<? super K, ? super V> results) {
+    int hits = 0;
+    for (Object key : keys) {
+      V value = (key == null) ? null : getIfPresent(key);
+      if (value != null) {
+        @SuppressWarnings("unchecked") // the value was found under this key
+        K castKey = (K) key;
+        results.put(castKey, value);
+        hits++;
+      }
+    }
+    return hits;
+  }
+
+  /**
+   * Looks up each of {@code keys} in this cache, storing the value associated with {@code keys[i]},
+   * or {@code null}, in {@code values[i]}, and setting or clearing bit {@code i} of {@code present}
+   * accordingly. Returns the number of values found.
+   *
+   * <p>The default implementation calls {@link #getIfPresent} for each key. Caches built by {@link
+   * CacheBuilder} read their clock and record statistics once per call, and allocate nothing as
+   * long as {@code present} already has room for {@code keys.length} bits.
+   *
+   * @throws IllegalArgumentException if {@code values} is shorter than {@code keys}
+   */
+  default int getAllPresent(Object[] keys, V[] values, BitSet present) {
+    checkArgument(
+        values.length >= keys.length,
+        "values has %s elements but keys has %s",
+        values.length,
+        keys.length);
+    int hits = 0;
+    for (int i = 0; i < keys.length; i++) {
+      V value = (keys[i] == null) ? null : getIfPresent(keys[i]);
+      values[i] = value;
+      if (value != null) {
+        present.set(i);
+        hits++;
+      } else {
+        present.clear(i);
+      }
+    }
+    return hits;
+  }
+
   /**
    * Associates {@code value} with {@code key} in this cache. If the cache previously contained a
    * value associated with {@code key}, the old value is replaced by {@code value}.
@@ -24,6 +24,8 @@ import java.util.ConcurrentModificationException;
 import java.util.IdentityHashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -155,6 +157,7 @@ import com.google.errorprone.annotations.CheckReturnValue;
 public final class CacheBuilder<K, V> {
   private static final int DEFAULT_INITIAL_CAPACITY = 16;
   private static final int DEFAULT_CONCURRENCY_LEVEL = 4;
+  private static final int MAX_FRONT_CACHE_SIZE = 1 << 12;
   private static final int DEFAULT_EXPIRATION_NANOS = 0;
   private static final int DEFAULT_REFRESH_NANOS = 0;
 
@@ -207,6 +210,20 @@ public final class CacheBuilder<K, V> {
     }
   }
 
+  /** Weighs entries by their estimated heap footprint, for {@link #maximumHeapBytes}. */
+  enum HeapSizeWeigher implements Weigher<Object, Object> {
+    INSTANCE;
+
+    @Override
+    public int weigh(Object key, Object value) {
+      long bytes =
+          HeapSizeEstimator.ENTRY_OVERHEAD
+              + HeapSizeEstimator.estimate(key)
+              + HeapSizeEstimator.estimate(value);
+      return (int) Math.min(bytes, Integer.MAX_VALUE);
+    }
+  }
+
   static final Ticker NULL_TICKER =
       new Ticker() {
         @Override
@@ -225,6 +242,7 @@ public final class CacheBuilder<K, V> {
   int concurrencyLevel = UNSET_INT;
   long maximumSize = UNSET_INT;
   long maximumWeight = UNSET_INT;
+  int frontCacheSize = UNSET_INT;
   @MonotonicNonNullDecl Weigher<? super K, ? super V> weigher;
 
   @MonotonicNonNullDecl Strength keyStrength;
@@ -234,11 +252,16 @@ public final class CacheBuilder<K, V> {
   long expireAfterAccessNanos = UNSET_INT;
   long refreshNanos = UNSET_INT;
 
+  double memoryPressureThreshold = UNSET_INT;
+
   @MonotonicNonNullDecl Equivalence<Object> keyEquivalence;
   @MonotonicNonNullDecl Equivalence<Object> valueEquivalence;
 
   @MonotonicNonNullDecl RemovalListener<? super K, ? super V> removalListener;
   @MonotonicNonNullDecl Ticker ticker;
+  @MonotonicNonNullDecl ScheduledExecutorService scheduler;
+  @MonotonicNonNullDecl Executor clearExecutor;
+  @MonotonicNonNullDecl AccessTraceRecorder traceRecorder;
 
   Supplier<? extends StatsCounter> statsCounterSupplier = NULL_STATS_COUNTER;
 
@@ -289,18 +312,28 @@ public final class CacheBuilder<K, V> {
   }
 
   /**
-   * Sets a custom {@code Equivalence} strategy for comparing keys.
+   * Sets a custom {@code Equivalence} strategy for comparing keys. For example, {@link
+   * com.github.lafa.cache.base.Ascii#caseInsensitiveEquivalence} lets a cache of header names or
+   * host names be looked up with keys of any case.
    *
    * <p>By default, the cache uses {@link Equivalence#identity} to determine key equality when
    * {@link #weakKeys} is specified, and {@link Equivalence#equals()} otherwise.
    *
+   * <p>The equivalence is applied to every key passed to the cache, including the keys of lookups
+   * through {@link Cache#getIfPresent} and the {@link Cache#asMap} view, which may fail with a
+   * {@link ClassCastException} if the equivalence does not accept them.
+   *
    * @return this {@code CacheBuilder} instance (for chaining)
+   * @throws IllegalStateException if a key equivalence was already set
    */
-    // To be supported
-  CacheBuilder<K, V> keyEquivalence(Equivalence<Object> equivalence) {
+  // Unchecked: the equivalence is also applied to keys of other types passed to lookups, which
+  // fail with a ClassCastException at lookup time if it does not accept them.
+  @SuppressWarnings("unchecked")
+  public <K1 extends K> CacheBuilder<K1, V> keyEquivalence(Equivalence<? super K1> equivalence) {
     checkState(keyEquivalence == null, "key equivalence was already set to %s", keyEquivalence);
-    keyEquivalence = checkNotNull(equivalence);
-    return this;
+    CacheBuilder<K1, V> me = (CacheBuilder<K1, V>) this;
+    me.keyEquivalence = (Equivalence<Object>) checkNotNull(equivalence);
+    return me;
   }
 
   Equivalence<Object> getKeyEquivalence() {
@@ -472,6 +505,36 @@ public final class CacheBuilder<K, V> {
     return this;
   }
 
+  /**
+   * Specifies the maximum number of bytes of heap the entries of the cache may retain. Each entry
+   * is weighed when it is written by estimating the size of its key and value and every object
+   * reachable from them, plus the cache's own per-entry overhead, so that the bound tracks actual
+   * memory use without a hand-written {@link Weigher}. Reads do not incur any estimation cost.
+   *
+   * <p>Estimates assume a 64-bit HotSpot virtual machine. They are exact for strings, arrays and
+   * boxed primitives, follow the fields of application classes (including records), and charge
+   * JDK collections and maps whose internals are not accessible for an equivalent {@code
+   * ArrayList} or {@code HashMap} plus their elements. If {@link HeapSizeAgent} is installed,
+   * shallow sizes are instead measured with {@link java.lang.instrument.Instrumentation}. Objects
+   * shared by several entries are counted once per entry; enum constants and classes are not
+   * counted. Entries whose graphs are large or deep make writes proportionally more expensive.
+   *
+   * <p>This is equivalent to {@link #maximumWeight} with a built-in weigher, and the same caveats
+   * apply. It cannot be combined with {@link #maximumSize}, {@link #maximumWeight} or {@link
+   * #weigher}.
+   *
+   * @param maximumHeapBytes the maximum number of bytes retained by the cache's entries
+   * @return this {@code CacheBuilder} instance (for chaining)
+   * @throws IllegalArgumentException if {@code maximumHeapBytes} is negative
+   * @throws IllegalStateException if a maximum size, maximum weight or weigher was already set
+   */
+  public CacheBuilder<K, V> maximumHeapBytes(long maximumHeapBytes) {
+    checkState(this.weigher == null, "maximum heap bytes can not be combined with weigher");
+    maximumWeight(maximumHeapBytes);
+    this.weigher = HeapSizeWeigher.INSTANCE;
+    return this;
+  }
+
   /**
    * Specifies the weigher to use in determining the weight of entries. Entry weight is taken into
    * consideration by {@link #maximumWeight(long)} when determining which entries to evict, and use
@@ -620,6 +683,41 @@ public final class CacheBuilder<K, V> {
     return MoreObjects.firstNonNull(valueStrength, Strength.STRONG);
   }
 
+  /**
+   * Specifies that the cache should shrink while the heap is under memory pressure, as a more
+   * predictable alternative to {@link #softValues}. Once the occupancy of the old generation after
+   * a garbage collection reaches {@code occupancyThreshold}, the maximum size or weight enforced by
+   * the cache is lowered step by step, evicting its least recently used entries through the normal
+   * eviction policy (with {@link RemovalCause#SIZE}). The limit grows back towards the configured
+   * maximum once occupancy has fallen sufficiently below the threshold.
+   *
+   * <p>Occupancy is observed through the platform {@link java.lang.management.MemoryPoolMXBean}s,
+   * whose collection usage thresholds may be lowered to {@code occupancyThreshold} in order to be
+   * notified promptly. Requires {@link #maximumSize} or {@link #maximumWeight}; the limit is never
+   * lowered below a tenth of that maximum.
+   *
+   * @param occupancyThreshold the fraction of the maximum heap size past which the cache shrinks
+   * @return this {@code CacheBuilder} instance (for chaining)
+   * @throws IllegalArgumentException if {@code occupancyThreshold} is not between 0 and 1
+   * @throws IllegalStateException if memory pressure eviction was already enabled
+   */
+  public CacheBuilder<K, V> evictOnMemoryPressure(double occupancyThreshold) {
+    checkState(
+        memoryPressureThreshold == UNSET_INT,
+        "memory pressure threshold was already set to %s",
+        memoryPressureThreshold);
+    checkArgument(
+        occupancyThreshold > 0 && occupancyThreshold < 1,
+        "occupancy threshold must be between 0 and 1: %s",
+        occupancyThreshold);
+    this.memoryPressureThreshold = occupancyThreshold;
+    return this;
+  }
+
+  double getMemoryPressureThreshold() {
+    return memoryPressureThreshold;
+  }
+
   /**
    * Specifies that each entry should be automatically removed from the cache once a fixed duration
    * has elapsed after the entry's creation, or the most recent replacement of its value.
@@ -735,7 +833,9 @@ public final class CacheBuilder<K, V> {
    * System#nanoTime} is used.
    *
    * <p>The primary intent of this method is to facilitate testing of caches with a fake or mock
-   * time source.
+   * time source. It can also select a {@linkplain Ticker#coarseTicker coarse ticker}, which makes
+   * reading the time on each read and write of an expiring or statistics-recording cache cheaper at
+   * the cost of precision: entries may then expire up to about one resolution early or late.
    *
    * @return this {@code CacheBuilder} instance (for chaining)
    * @throws IllegalStateException if a ticker was already set
@@ -753,6 +853,123 @@ public final class CacheBuilder<K, V> {
     return recordsTime ? Ticker.systemTicker() : NULL_TICKER;
   }
 
+  /**
+   * Specifies an executor on which expired entries, and entries whose keys or values were garbage
+   * collected, are removed proactively. By default this only happens as a side effect of reads and
+   * writes, so the entries of an idle cache are retained, and their removal notifications delayed,
+   * until it is next used.
+   *
+   * <p>With a scheduler, a cleanup task is scheduled for the time at which the earliest entry of
+   * the cache expires, and rescheduled for the next such time after each run. Caches with weak or
+   * soft references are also cleaned up once a second while they hold entries. Nothing is
+   * scheduled while a cache is empty. Removal listeners may be invoked on the scheduler's thread.
+   *
+   * <p>Cleanup tasks are short and do not block, so a single-threaded executor may be shared by any
+   * number of caches. The scheduler does not prevent a cache from being garbage collected. Delays
+   * are computed with the cache's {@linkplain #ticker ticker}.
+   *
+   * @param scheduler the executor on which to run proactive cleanup
+   * @return this {@code CacheBuilder} instance (for chaining)
+   * @throws IllegalStateException if a scheduler was already set
+   */
+  public CacheBuilder<K, V> scheduler(ScheduledExecutorService scheduler) {
+    checkState(this.scheduler == null, "scheduler was already set to %s", this.scheduler);
+    this.scheduler = checkNotNull(scheduler);
+    return this;
+  }
+
+  ScheduledExecutorService getScheduler() {
+    return scheduler;
+  }
+
+  /**
+   * Specifies that {@link Cache#invalidateAll()}, and {@code clear()} on the {@link Cache#asMap}
+   * view, should take constant time per segment rather than time proportional to the number of
+   * entries. Each segment's table and queues are replaced with empty ones under its lock, and the
+   * discarded entries are left to the garbage collector. If a {@linkplain #removalListener removal
+   * listener} is configured, the discarded tables are traversed on {@code executor} and the listener
+   * is invoked there for each of their entries, with {@link RemovalCause#EXPLICIT}; notifications
+   * for cleared entries may therefore be delivered after the clear returns and concurrently with
+   * notifications for later writes.
+   *
+   * <p>Fast clearing is not supported by {@linkplain #buildTaggedCache tagged caches}, whose index
+   * must be cleared along with the entries.
+   *
+   * @param executor the executor on which to notify the removal listener of cleared entries
+   * @return this {@code CacheBuilder} instance (for chaining)
+   * @throws IllegalStateException if fast clearing was already requested
+   */
+  public CacheBuilder<K, V> fastClear(Executor executor) {
+    checkState(
+        this.clearExecutor == null, "fast clear was already requested with %s", this.clearExecutor);
+    this.clearExecutor = checkNotNull(executor);
+    return this;
+  }
+
+  Executor getClearExecutor() {
+    return clearExecutor;
+  }
+
+  /**
+   * Gives each thread reading the cache a small direct-mapped table of the entries it read most
+   * recently, which answers {@link Cache#getIfPresent} for very hot keys without reading the
+   * cache's hash table. A slot is reused for as long as the cache segment its entry belongs to has
+   * not been written to since the entry was read, so the table never returns a value that was
+   * replaced, invalidated, evicted or expired. Hits answered from the table are added to the
+   * cache's statistics and recency order in batches rather than one by one, so they may be
+   * reported late, and a thread's last few hits may never be reported.
+   *
+   * <p>Each thread retains up to {@code size} keys and values of the cache until it reads other
+   * keys or terminates. Lookups through {@link Cache#asMap} and the other read methods do not use
+   * the table. The table requires strong keys and values.
+   *
+   * @param size the number of slots per thread, which is rounded up to a power of two
+   * @return this {@code CacheBuilder} instance (for chaining)
+   * @throws IllegalArgumentException if {@code size} is not between 1 and 4096
+   * @throws IllegalStateException if a front cache size was already set
+   */
+  public CacheBuilder<K, V> frontCacheSize(int size) {
+    checkState(
+        this.frontCacheSize == UNSET_INT,
+        "front cache size was already set to %s",
+        this.frontCacheSize);
+    checkArgument(
+        size > 0 && size <= MAX_FRONT_CACHE_SIZE, "front cache size out of range: %s", size);
+    this.frontCacheSize = size;
+    return this;
+  }
+
+  /** Returns the number of front cache slots per thread, a power of two, or 0 if there are none. */
+  int getFrontCacheSize() {
+    if (frontCacheSize == UNSET_INT) {
+      return 0;
+    }
+    return (frontCacheSize == 1) ? 1 : Integer.highestOneBit(frontCacheSize - 1) << 1;
+  }
+
+  /**
+   * Specifies that a sample of the lookups and writes of each cache created by this builder are
+   * recorded by {@code recorder}, to be replayed offline when choosing the cache's configuration.
+   * Sampling is by key, so the accesses of most keys cost only a hash comparison. See {@link
+   * AccessTraceRecorder} for what is recorded, and in what format.
+   *
+   * <p>The recorder is not closed when a cache is; close it once enough of a trace was recorded.
+   *
+   * @param recorder the recorder to which the cache's sampled accesses are appended
+   * @return this {@code CacheBuilder} instance (for chaining)
+   * @throws IllegalStateException if a trace recorder was already set
+   */
+  public CacheBuilder<K, V> traceRecorder(AccessTraceRecorder recorder) {
+    checkState(
+        this.traceRecorder == null, "trace recorder was already set to %s", this.traceRecorder);
+    this.traceRecorder = checkNotNull(recorder);
+    return this;
+  }
+
+  AccessTraceRecorder getTraceRecorder() {
+    return traceRecorder;
+  }
+
   /**
    * Specifies a listener instance that caches should notify each time an entry is removed for any
    * {@linkplain RemovalCause reason}. Each cache created by this builder will invoke this listener
@@ -829,10 +1046,117 @@ public final class CacheBuilder<K, V> {
    */
   public <K1 extends K, V1 extends V> Cache<K1, V1> build() {
     checkWeightWithWeigher();
+    checkFrontCache();
     checkNonLoadingCache();
+    checkMemoryPressureEviction();
     return new LocalCache.LocalManualCache<>(this);
   }
 
+  /**
+   * Builds a cache keyed by primitive {@code long} values, which stores its keys unboxed. See {@link
+   * LongKeyCache}. Apart from its key representation, the cache behaves exactly like one returned
+   * by {@link #build()}.
+   *
+   * <p>This method does not alter the state of this {@code CacheBuilder} instance, so it can be
+   * invoked again to create multiple independent caches.
+   *
+   * @return a cache having the requested features
+   * @throws IllegalStateException if {@link #weakKeys} was specified
+   */
+  @SuppressWarnings("unchecked") // the key type parameter is unconstrained, as for build()
+  public <V1 extends V> LongKeyCache<V1> buildLongKeyCache() {
+    checkWeightWithWeigher();
+    checkFrontCache();
+    checkNonLoadingCache();
+    checkMemoryPressureEviction();
+    checkState(getKeyStrength() == Strength.STRONG, "long keys cannot be weak");
+    checkState(keyEquivalence == null, "long keys cannot use a custom key equivalence");
+    return new LocalCache.LocalLongKeyCache<>((CacheBuilder<? super Long, ? super V1>) this);
+  }
+
+  /**
+   * Builds a cache keyed by byte arrays compared by content, which can be looked up by ranges of
+   * arrays and by buffers without copying them. See {@link ByteKeyCache}. Apart from its key
+   * equivalence, the cache behaves exactly like one returned by {@link #build()}.
+   *
+   * <p>This method does not alter the state of this {@code CacheBuilder} instance, so it can be
+   * invoked again to create multiple independent caches.
+   *
+   * @return a cache having the requested features
+   * @throws IllegalStateException if {@link #weakKeys} was specified
+   */
+  @SuppressWarnings("unchecked") // the key type parameter is unconstrained, as for build()
+  public <V1 extends V> ByteKeyCache<V1> buildByteKeyCache() {
+    checkWeightWithWeigher();
+    checkFrontCache();
+    checkNonLoadingCache();
+    checkMemoryPressureEviction();
+    checkState(getKeyStrength() == Strength.STRONG, "byte array keys cannot be weak");
+    checkState(keyEquivalence == null, "byte array keys cannot use a custom key equivalence");
+    return new LocalCache.LocalByteKeyCache<>((CacheBuilder<? super byte[], ? super V1>) this);
+  }
+
+  /**
+   * Builds a cache whose entries can be tagged, and invalidated by tag. See {@link TaggedCache}.
+   * Apart from maintaining the index of tags, the cache behaves exactly like one returned by {@link
+   * #build()}.
+   *
+   * <p>This method does not alter the state of this {@code CacheBuilder} instance, so it can be
+   * invoked again to create multiple independent caches.
+   *
+   * @return a cache having the requested features
+   * @throws IllegalStateException if {@link #weakKeys} was specified
+   */
+  public <K1 extends K, V1 extends V> TaggedCache<K1, V1> buildTaggedCache() {
+    checkWeightWithWeigher();
+    checkFrontCache();
+    checkNonLoadingCache();
+    checkMemoryPressureEviction();
+    checkState(getKeyStrength() == Strength.STRONG, "tagged caches cannot have weak keys");
+    checkState(keyEquivalence == null, "tagged caches cannot use a custom key equivalence");
+    checkState(clearExecutor == null, "tagged caches cannot use fast clear");
+    return new LocalCache.LocalTaggedCache<>(this);
+  }
+
+  /**
+   * Builds a cache partitioned into namespaces which can each be invalidated in constant time. See
+   * {@link NamespacedCache}. The cache stores its entries under {@link NamespacedKey}s, which is
+   * therefore the key type seen by any removal listener or weigher configured on this builder.
+   *
+   * <p>This method does not alter the state of this {@code CacheBuilder} instance, so it can be
+   * invoked again to create multiple independent caches.
+   *
+   * @return a cache having the requested features
+   * @throws IllegalStateException if {@link #weakKeys} was specified
+   */
+  @SuppressWarnings("unchecked") // the key type of this builder must admit NamespacedKey
+  public <N, K1, V1 extends V> NamespacedCache<N, K1, V1> buildNamespacedCache() {
+    checkWeightWithWeigher();
+    checkFrontCache();
+    checkNonLoadingCache();
+    checkMemoryPressureEviction();
+    checkState(getKeyStrength() == Strength.STRONG, "namespaced caches cannot have weak keys");
+    checkState(keyEquivalence == null, "namespaced caches cannot use a custom key equivalence");
+    return new LocalCache.LocalNamespacedCache<>(
+        (CacheBuilder<? super NamespacedKey<N, K1>, ? super V1>) (CacheBuilder<?, ?>) this);
+  }
+
+  private void checkMemoryPressureEviction() {
+    if (memoryPressureThreshold != UNSET_INT) {
+      checkState(
+          maximumSize != UNSET_INT || maximumWeight != UNSET_INT,
+          "evictOnMemoryPressure requires maximumSize or maximumWeight");
+    }
+  }
+
+  private void checkFrontCache() {
+    if (frontCacheSize != UNSET_INT) {
+      checkState(
+          getKeyStrength() == Strength.STRONG && getValueStrength() == Strength.STRONG,
+          "a front cache requires strong keys and values");
+    }
+  }
+
   private void checkNonLoadingCache() {
     checkState(refreshNanos == UNSET_INT, "refreshAfterWrite requires a LoadingCache");
   }
@@ -870,12 +1194,18 @@ public final class CacheBuilder<K, V> {
     if (maximumWeight != UNSET_INT) {
       s.add("maximumWeight", maximumWeight);
     }
+    if (frontCacheSize != UNSET_INT) {
+      s.add("frontCacheSize", frontCacheSize);
+    }
     if (expireAfterWriteNanos != UNSET_INT) {
       s.add("expireAfterWrite", expireAfterWriteNanos + "ns");
     }
     if (expireAfterAccessNanos != UNSET_INT) {
       s.add("expireAfterAccess", expireAfterAccessNanos + "ns");
     }
+    if (memoryPressureThreshold != UNSET_INT) {
+      s.add("evictOnMemoryPressure", memoryPressureThreshold);
+    }
     if (keyStrength != null) {
       s.add("keyStrength", Ascii.toLowerCase(keyStrength.toString()));
     }
@@ -891,6 +1221,9 @@ public final class CacheBuilder<K, V> {
     if (removalListener != null) {
       s.addValue("removalListener");
     }
+    if (traceRecorder != null) {
+      s.addValue("traceRecorder");
+    }
     return s.toString();
   }
 }
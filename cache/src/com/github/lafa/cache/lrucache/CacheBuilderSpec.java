@@ -29,6 +29,7 @@ import com.github.lafa.cache.annotations.VisibleForTesting;
 import com.github.lafa.cache.base.MoreObjects;
 import com.github.lafa.cache.base.Objects;
 import com.github.lafa.cache.base.Splitter;
+import com.github.lafa.cache.base.Ticker;
 import com.github.lafa.cache.lrucache.LocalCache.Strength;
 
 /**
@@ -52,14 +53,16 @@ import com.github.lafa.cache.lrucache.LocalCache.Strength;
  *   <li>{@code softValues}: sets {@link CacheBuilder#softValues}.
  *   <li>{@code weakValues}: sets {@link CacheBuilder#weakValues}.
  *   <li>{@code recordStats}: sets {@link CacheBuilder#recordStats}.
+ *   <li>{@code tickerResolution=[duration]}: sets {@link CacheBuilder#ticker} to a {@link
+ *       Ticker#coarseTicker} of that resolution.
  * </ul>
  *
  * <p>The set of supported keys will grow as {@code CacheBuilder} evolves, but existing keys will
  * never be removed.
  *
- * <p>Durations are represented by an integer, followed by one of "d", "h", "m", or "s",
- * representing days, hours, minutes, or seconds respectively. (There is currently no syntax to
- * request expiration in milliseconds, microseconds, or nanoseconds.)
+ * <p>Durations are represented by an integer, followed by one of "d", "h", "m", "s" or "ms",
+ * representing days, hours, minutes, seconds or milliseconds respectively. (There is currently no
+ * syntax to request microseconds or nanoseconds.)
  *
  * <p>Whitespace before and after commas and equal signs is ignored. Keys may not be repeated; it is
  * also illegal to use the following pairs of keys in a single value:
@@ -105,6 +108,7 @@ public final class CacheBuilderSpec {
         VALUE_PARSERS.put("expireAfterWrite", new WriteDurationParser());
         VALUE_PARSERS.put("refreshAfterWrite", new RefreshDurationParser());
         VALUE_PARSERS.put("refreshInterval", new RefreshDurationParser());
+        VALUE_PARSERS.put("tickerResolution", new TickerResolutionParser());
     }
 
   @MonotonicNonNullDecl @VisibleForTesting Integer initialCapacity;
@@ -120,6 +124,8 @@ public final class CacheBuilderSpec {
   @MonotonicNonNullDecl @VisibleForTesting TimeUnit accessExpirationTimeUnit;
   @VisibleForTesting long refreshDuration;
   @MonotonicNonNullDecl @VisibleForTesting TimeUnit refreshTimeUnit;
+  @VisibleForTesting long tickerResolution;
+  @MonotonicNonNullDecl @VisibleForTesting TimeUnit tickerResolutionTimeUnit;
   /** Specification; used for toParseableString(). */
   private final String specification;
 
@@ -206,6 +212,9 @@ public final class CacheBuilderSpec {
     if (refreshTimeUnit != null) {
       builder.refreshAfterWrite(refreshDuration, refreshTimeUnit);
     }
+    if (tickerResolutionTimeUnit != null) {
+      builder.ticker(Ticker.coarseTicker(tickerResolution, tickerResolutionTimeUnit));
+    }
 
     return builder;
   }
@@ -240,7 +249,8 @@ public final class CacheBuilderSpec {
         recordStats,
         durationInNanos(writeExpirationDuration, writeExpirationTimeUnit),
         durationInNanos(accessExpirationDuration, accessExpirationTimeUnit),
-        durationInNanos(refreshDuration, refreshTimeUnit));
+        durationInNanos(refreshDuration, refreshTimeUnit),
+        durationInNanos(tickerResolution, tickerResolutionTimeUnit));
   }
 
   @Override
@@ -267,7 +277,10 @@ public final class CacheBuilderSpec {
             durationInNanos(that.accessExpirationDuration, that.accessExpirationTimeUnit))
         && Objects.equal(
             durationInNanos(refreshDuration, refreshTimeUnit),
-            durationInNanos(that.refreshDuration, that.refreshTimeUnit));
+            durationInNanos(that.refreshDuration, that.refreshTimeUnit))
+        && Objects.equal(
+            durationInNanos(tickerResolution, tickerResolutionTimeUnit),
+            durationInNanos(that.tickerResolution, that.tickerResolutionTimeUnit));
   }
 
   /**
@@ -411,27 +424,35 @@ public final class CacheBuilderSpec {
       checkArgument(value != null && !value.isEmpty(), "value of key %s omitted", key);
       try {
         char lastChar = value.charAt(value.length() - 1);
+        int suffixLength = 1;
         TimeUnit timeUnit;
-        switch (lastChar) {
-          case 'd':
-            timeUnit = TimeUnit.DAYS;
-            break;
-          case 'h':
-            timeUnit = TimeUnit.HOURS;
-            break;
-          case 'm':
-            timeUnit = TimeUnit.MINUTES;
-            break;
-          case 's':
-            timeUnit = TimeUnit.SECONDS;
-            break;
-          default:
-            throw new IllegalArgumentException(
-                format(
-                    "key %s invalid format.  was %s, must end with one of [dDhHmMsS]", key, value));
+        if (value.endsWith("ms")) {
+          timeUnit = TimeUnit.MILLISECONDS;
+          suffixLength = 2;
+        } else {
+          switch (lastChar) {
+            case 'd':
+              timeUnit = TimeUnit.DAYS;
+              break;
+            case 'h':
+              timeUnit = TimeUnit.HOURS;
+              break;
+            case 'm':
+              timeUnit = TimeUnit.MINUTES;
+              break;
+            case 's':
+              timeUnit = TimeUnit.SECONDS;
+              break;
+            default:
+              throw new IllegalArgumentException(
+                  format(
+                      "key %s invalid format.  was %s, must end with one of [dDhHmMsS] or ms",
+                      key,
+                      value));
+          }
         }
 
-        long duration = Long.parseLong(value.substring(0, value.length() - 1));
+        long duration = Long.parseLong(value.substring(0, value.length() - suffixLength));
         parseDuration(spec, duration, timeUnit);
       } catch (NumberFormatException e) {
         throw new IllegalArgumentException(
@@ -470,6 +491,17 @@ public final class CacheBuilderSpec {
     }
   }
 
+  /** Parse tickerResolution */
+  static class TickerResolutionParser extends DurationParser {
+    @Override
+    protected void parseDuration(CacheBuilderSpec spec, long duration, TimeUnit unit) {
+      checkArgument(spec.tickerResolutionTimeUnit == null, "tickerResolution already set");
+      checkArgument(duration > 0, "tickerResolution must be positive: %s", duration);
+      spec.tickerResolution = duration;
+      spec.tickerResolutionTimeUnit = unit;
+    }
+  }
+
   private static String format(String format, Object... args) {
     return String.format(Locale.ROOT, format, args);
   }
@@ -0,0 +1,233 @@
+/*
+ * Copyright (C) 2018 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.github.lafa.cache.lrucache;
+
+import static com.github.lafa.cache.base.Preconditions.checkArgument;
+import static com.github.lafa.cache.base.Preconditions.checkNotNull;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.BiPredicate;
+
+import org.checkerframework.checker.nullness.compatqual.NullableDecl;
+
+import com.github.lafa.cache.lrucache.LocalCache.LocalManualCache;
+
+/**
+ * Static utilities for scanning every entry of a large {@link Cache}, in the style of the bulk
+ * operations of {@link java.util.concurrent.ConcurrentHashMap}.
+ *
+ * <p>Each operation takes a {@code parallelismThreshold}: the estimated number of entries needed
+ * for it to be split into subtasks on the {@linkplain ForkJoinPool#commonPool() common pool}. A
+ * threshold of {@code Long.MAX_VALUE} therefore runs an operation sequentially in the calling
+ * thread, and a threshold of {@code 1} splits it as finely as possible. Work is split first by
+ * segment and then by ranges of a segment's table.
+ *
+ * <p>Entries are read directly from the segment tables without locking or allocating {@link
+ * java.util.Map.Entry Map.Entry} objects, and with the same weakly consistent semantics as the
+ * iterators of {@link Cache#asMap}. Expired entries, and entries whose keys or values have been
+ * collected, are skipped. Operations neither count as accesses of the entries they visit nor
+ * update the cache's statistics. Supplied functions may be called concurrently, and must not
+ * modify the cache except through the operation itself.
+ */
+public final class CacheBulkOperations {
+  private CacheBulkOperations() {}
+
+  /** Performs {@code action} for each live entry of {@code cache}. */
+  public static <K, V> void forEach(
+      Cache<K, V> cache, long parallelismThreshold, BiConsumer<? super K, ? super V> action) {
+    checkNotNull(action);
+    invoke(
+        cache,
+        parallelismThreshold,
+        (LocalCache<K, V>.HashSpliterator<Void> spliterator) -> {
+          spliterator.visitRemaining(
+              (k, v) -> {
+                action.accept(k, v);
+                return true;
+              });
+          return null;
+        },
+        (a, b) -> null);
+  }
+
+  /**
+   * Returns a non-null result of applying {@code searchFunction} to some live entry of {@code
+   * cache}, or {@code null} if there is none. Once a result is found, further function invocations
+   * are suppressed.
+   */
+  @NullableDecl
+  public static <K, V, U> U search(
+      Cache<K, V> cache,
+      long parallelismThreshold,
+      BiFunction<? super K, ? super V, ? extends U> searchFunction) {
+    checkNotNull(searchFunction);
+    AtomicReference<U> result = new AtomicReference<U>();
+    invoke(
+        cache,
+        parallelismThreshold,
+        (LocalCache<K, V>.HashSpliterator<Void> spliterator) -> {
+          spliterator.visitRemaining(
+              (k, v) -> {
+                if (result.get() != null) {
+                  return false;
+                }
+                U u = searchFunction.apply(k, v);
+                if (u != null) {
+                  result.compareAndSet(null, u);
+                  return false;
+                }
+                return true;
+              });
+          return null;
+        },
+        (a, b) -> null);
+    return result.get();
+  }
+
+  /**
+   * Returns the result of accumulating the given transformation of all live entries of {@code
+   * cache} using {@code reducer} to combine values, or {@code null} if there are none. Entries for
+   * which {@code transformer} returns {@code null} are not combined.
+   */
+  @NullableDecl
+  public static <K, V, U> U reduce(
+      Cache<K, V> cache,
+      long parallelismThreshold,
+      BiFunction<? super K, ? super V, ? extends U> transformer,
+      BiFunction<? super U, ? super U, ? extends U> reducer) {
+    checkNotNull(transformer);
+    checkNotNull(reducer);
+    BiFunction<U, U, U> combiner =
+        (a, b) -> (a == null) ? b : (b == null) ? a : reducer.apply(a, b);
+    return invoke(
+        cache,
+        parallelismThreshold,
+        (LocalCache<K, V>.HashSpliterator<Void> spliterator) -> {
+          AtomicReference<U> accumulator = new AtomicReference<U>();
+          spliterator.visitRemaining(
+              (k, v) -> {
+                U u = transformer.apply(k, v);
+                if (u != null) {
+                  accumulator.set(combiner.apply(accumulator.get(), u));
+                }
+                return true;
+              });
+          return accumulator.get();
+        },
+        combiner);
+  }
+
+  /**
+   * Removes every live entry of {@code cache} which satisfies {@code filter}, and returns the
+   * number of entries removed. An entry is only removed if it still maps to the value that was
+   * tested; removal notifications carry {@link RemovalCause#EXPLICIT}.
+   */
+  public static <K, V> long removeIf(
+      Cache<K, V> cache, long parallelismThreshold, BiPredicate<? super K, ? super V> filter) {
+    checkNotNull(filter);
+    LocalCache<K, V> map = localCache(cache);
+    Long removed =
+        invoke(
+            cache,
+            parallelismThreshold,
+            (LocalCache<K, V>.HashSpliterator<Void> spliterator) -> {
+              long[] count = new long[1];
+              spliterator.visitRemaining(
+                  (k, v) -> {
+                    if (filter.test(k, v) && map.remove(k, v)) {
+                      count[0]++;
+                    }
+                    return true;
+                  });
+              return count[0];
+            },
+            Long::sum);
+    return (removed == null) ? 0 : removed;
+  }
+
+  /** Traverses the entries of one split of a cache, returning a partial result. */
+  private interface Leaf<K, V, R> {
+    @NullableDecl
+    R apply(LocalCache<K, V>.HashSpliterator<Void> spliterator);
+  }
+
+  @NullableDecl
+  private static <K, V, R> R invoke(
+      Cache<K, V> cache,
+      long parallelismThreshold,
+      Leaf<K, V, R> leaf,
+      BiFunction<R, R, R> combiner) {
+    checkArgument(
+        parallelismThreshold > 0,
+        "parallelismThreshold must be positive: %s",
+        parallelismThreshold);
+    LocalCache<K, V> map = localCache(cache);
+    LocalCache<K, V>.HashSpliterator<Void> spliterator =
+        map.new HashSpliterator<Void>(0, map.segments.length, (k, v) -> null, 0);
+    if (spliterator.estimateSize() < parallelismThreshold) {
+      return leaf.apply(spliterator);
+    }
+    return ForkJoinPool.commonPool()
+        .invoke(new BulkTask<K, V, R>(spliterator, parallelismThreshold, leaf, combiner));
+  }
+
+  /** Splits its spliterator while it holds at least the parallelism threshold of entries. */
+  private static final class BulkTask<K, V, R> extends RecursiveTask<R> {
+    final LocalCache<K, V>.HashSpliterator<Void> spliterator;
+    final long parallelismThreshold;
+    final Leaf<K, V, R> leaf;
+    final BiFunction<R, R, R> combiner;
+
+    BulkTask(
+        LocalCache<K, V>.HashSpliterator<Void> spliterator,
+        long parallelismThreshold,
+        Leaf<K, V, R> leaf,
+        BiFunction<R, R, R> combiner) {
+      this.spliterator = spliterator;
+      this.parallelismThreshold = parallelismThreshold;
+      this.leaf = leaf;
+      this.combiner = combiner;
+    }
+
+    @Override
+    protected R compute() {
+      if (spliterator.estimateSize() >= parallelismThreshold) {
+        @SuppressWarnings("unchecked") // HashSpliterator splits into HashSpliterators
+        LocalCache<K, V>.HashSpliterator<Void> split =
+            (LocalCache<K, V>.HashSpliterator<Void>) spliterator.trySplit();
+        if (split != null) {
+          BulkTask<K, V, R> forked =
+              new BulkTask<K, V, R>(split, parallelismThreshold, leaf, combiner);
+          forked.fork();
+          R result = compute();
+          return combiner.apply(result, forked.join());
+        }
+      }
+      return leaf.apply(spliterator);
+    }
+  }
+
+  private static <K, V> LocalCache<K, V> localCache(Cache<K, V> cache) {
+    checkArgument(
+        checkNotNull(cache) instanceof LocalManualCache,
+        "Bulk operations are only supported for caches built by CacheBuilder: %s",
+        cache);
+    return ((LocalManualCache<K, V>) cache).localCache;
+  }
+}
@@ -0,0 +1,332 @@
+/*
+ * Copyright (C) 2018 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.github.lafa.cache.lrucache;
+
+import static com.github.lafa.cache.base.Preconditions.checkArgument;
+import static com.github.lafa.cache.base.Preconditions.checkNotNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.github.lafa.cache.base.Throwables;
+import com.github.lafa.cache.lrucache.LocalCache.LocalManualCache;
+import com.github.lafa.cache.lrucache.LocalCache.Segment;
+
+/**
+ * Static utilities for saving the contents of a {@link Cache} and restoring them into a new cache,
+ * so that a restarted process does not begin with a cold cache.
+ *
+ * <p>A snapshot holds each live entry's key and value, encoded by a caller-supplied {@link
+ * SnapshotCodec}, together with the time elapsed since the entry was last written and accessed.
+ * Entries are stored per segment in access order (least recently used first) whenever the cache
+ * maintains one, so that restoring a snapshot into a similarly configured cache reproduces its
+ * eviction order.
+ *
+ * <p>Restoring re-evaluates expiration against the target cache's {@link
+ * CacheBuilder#ticker(com.github.lafa.cache.base.Ticker) ticker}: entry ages are carried over,
+ * extended by the wall-clock time that passed between writing and reading the snapshot, and entries
+ * which would already have expired are skipped. Keys that are already present in the target cache
+ * are left untouched. Restoration is streamed, with entries handed to their segments in batches
+ * which are inserted in parallel across segments.
+ *
+ * <p>Snapshots are only supported for caches built by {@link CacheBuilder}.
+ */
+public final class CacheSnapshots {
+  private CacheSnapshots() {}
+
+  /** Marks the beginning of a snapshot stream. */
+  static final int MAGIC = 0x4C435331; // "LCS1"
+
+  static final int FORMAT_VERSION = 1;
+
+  private static final int MORE = 1;
+  private static final int END = 0;
+
+  /** Number of decoded records handed to a segment at a time during restore. */
+  static final int RESTORE_BATCH_SIZE = 1024;
+
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  /**
+   * Writes a snapshot of {@code cache} to {@code out}, returning the number of entries written. The
+   * stream is flushed but not closed.
+   *
+   * <p>Each segment is copied under its lock and encoded after the lock has been released, so
+   * concurrent writers are blocked only for the duration of the copy. The snapshot is consistent
+   * per segment but not across segments.
+   */
+  public static <K, V> long write(Cache<K, V> cache, OutputStream out, SnapshotCodec<K, V> codec)
+      throws IOException {
+    LocalCache<K, V> map = localCache(cache);
+    checkNotNull(codec);
+    DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out, BUFFER_SIZE));
+    data.writeInt(MAGIC);
+    data.writeInt(FORMAT_VERSION);
+    data.writeLong(System.currentTimeMillis());
+
+    long written = 0;
+    List<Record<K, V>> records = new ArrayList<>();
+    for (Segment<K, V> segment : map.segments) {
+      records.clear();
+      segment.snapshot(map.ticker.read(), records);
+      for (Record<K, V> record : records) {
+        data.writeByte(MORE);
+        data.writeLong(record.writeAge);
+        data.writeLong(record.accessAge);
+        codec.writeKey(record.key, data);
+        codec.writeValue(record.value, data);
+        written++;
+      }
+    }
+    data.writeByte(END);
+    data.flush();
+    return written;
+  }
+
+  /**
+   * Writes a snapshot of {@code cache} to {@code file}, returning the number of entries written.
+   * The snapshot is first written to a sibling temporary file which then replaces {@code file}, so
+   * that a crash during writing never leaves a truncated snapshot behind.
+   */
+  public static <K, V> long write(Cache<K, V> cache, Path file, SnapshotCodec<K, V> codec)
+      throws IOException {
+    Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+    long written;
+    try (OutputStream out = Files.newOutputStream(temp)) {
+      written = write(cache, out, codec);
+    }
+    try {
+      Files.move(
+          temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+    return written;
+  }
+
+  /**
+   * Restores the snapshot read from {@code in} into {@code cache}, inserting entries in parallel
+   * on the {@linkplain ForkJoinPool#commonPool() common pool}. Returns the number of entries
+   * inserted. The stream is not closed.
+   */
+  public static <K, V> long read(Cache<K, V> cache, InputStream in, SnapshotCodec<K, V> codec)
+      throws IOException {
+    return read(cache, in, codec, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Restores the snapshot read from {@code in} into {@code cache}, inserting entries in parallel
+   * using {@code executor}. Returns the number of entries inserted, which excludes entries that had
+   * expired and keys that were already present. The stream is not closed.
+   *
+   * <p>Decoding happens on the calling thread, which blocks until every decoded entry has been
+   * inserted.
+   *
+   * @throws IOException if the stream is not a snapshot, or could not be read or decoded
+   */
+  public static <K, V> long read(
+      Cache<K, V> cache, InputStream in, SnapshotCodec<K, V> codec, Executor executor)
+      throws IOException {
+    LocalCache<K, V> map = localCache(cache);
+    checkNotNull(codec);
+    checkNotNull(executor);
+    DataInputStream data = new DataInputStream(new BufferedInputStream(in, BUFFER_SIZE));
+    if (data.readInt() != MAGIC) {
+      throw new IOException("Not a cache snapshot");
+    }
+    int version = data.readInt();
+    if (version != FORMAT_VERSION) {
+      throw new IOException("Unsupported cache snapshot version: " + version);
+    }
+    long downtimeNanos =
+        TimeUnit.MILLISECONDS.toNanos(Math.max(0, System.currentTimeMillis() - data.readLong()));
+
+    Restorer<K, V> restorer = new Restorer<>(map, executor);
+    try {
+      while (data.readByte() == MORE) {
+        long writeAge = data.readLong();
+        long accessAge = data.readLong();
+        K key = checkNotNull(codec.readKey(data));
+        V value = checkNotNull(codec.readValue(data));
+        restorer.add(
+            new Record<>(
+                key, value, map.hash(key), writeAge + downtimeNanos, accessAge + downtimeNanos));
+      }
+      return restorer.finish();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while restoring cache snapshot");
+    } finally {
+      map.processPendingNotifications();
+    }
+  }
+
+  /** Restores the snapshot read from {@code file} into {@code cache}. See {@link #read}. */
+  public static <K, V> long read(Cache<K, V> cache, Path file, SnapshotCodec<K, V> codec)
+      throws IOException {
+    try (InputStream in = Files.newInputStream(file)) {
+      return read(cache, in, codec);
+    }
+  }
+
+  static <K, V> LocalCache<K, V> localCache(Cache<K, V> cache) {
+    checkArgument(
+        checkNotNull(cache) instanceof LocalManualCache,
+        "Snapshots are only supported for caches built by CacheBuilder: %s",
+        cache);
+    return ((LocalManualCache<K, V>) cache).localCache;
+  }
+
+  /** A copy of a live entry, with times expressed as ages relative to when it was taken. */
+  static final class Record<K, V> {
+    final K key;
+    final V value;
+    final int hash;
+    final long writeAge;
+    final long accessAge;
+
+    Record(K key, V value, int hash, long writeAge, long accessAge) {
+      this.key = key;
+      this.value = value;
+      this.hash = hash;
+      this.writeAge = writeAge;
+      this.accessAge = accessAge;
+    }
+  }
+
+  /**
+   * Dispatches decoded records to their segments. Each segment has a lane which applies its batches
+   * one at a time and in stream order, so that access order is preserved while distinct segments
+   * are filled concurrently.
+   */
+  static final class Restorer<K, V> {
+    final LocalCache<K, V> map;
+    final Executor executor;
+    final Lane[] lanes;
+
+    /** Bounds the number of decoded but not yet inserted batches, and so the memory they use. */
+    final Semaphore inFlight;
+
+    final int maxInFlight;
+    final AtomicLong restored = new AtomicLong();
+    final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    @SuppressWarnings("unchecked")
+    Restorer(LocalCache<K, V> map, Executor executor) {
+      this.map = map;
+      this.executor = executor;
+      this.lanes = new Restorer.Lane[map.segments.length];
+      for (int i = 0; i < lanes.length; i++) {
+        lanes[i] = new Lane(map.segments[i]);
+      }
+      this.maxInFlight = Math.max(4, 2 * lanes.length);
+      this.inFlight = new Semaphore(maxInFlight);
+    }
+
+    void add(Record<K, V> record) throws InterruptedException {
+      Lane lane = lanes[(record.hash >>> map.segmentShift) & map.segmentMask];
+      lane.pending.add(record);
+      if (lane.pending.size() == RESTORE_BATCH_SIZE) {
+        dispatch(lane);
+      }
+    }
+
+    void dispatch(Lane lane) throws InterruptedException {
+      List<Record<K, V>> batch = lane.pending;
+      lane.pending = new ArrayList<>(RESTORE_BATCH_SIZE);
+      inFlight.acquire();
+      lane.batches.add(batch);
+      lane.schedule();
+    }
+
+    long finish() throws InterruptedException {
+      for (Lane lane : lanes) {
+        if (!lane.pending.isEmpty()) {
+          dispatch(lane);
+        }
+      }
+      inFlight.acquire(maxInFlight);
+      inFlight.release(maxInFlight);
+      Throwable t = failure.get();
+      if (t != null) {
+        Throwables.throwIfUnchecked(t);
+        throw new IllegalStateException(t);
+      }
+      return restored.get();
+    }
+
+    final class Lane implements Runnable {
+      final Segment<K, V> segment;
+      final Queue<List<Record<K, V>>> batches = new ConcurrentLinkedQueue<>();
+      final AtomicBoolean scheduled = new AtomicBoolean();
+      List<Record<K, V>> pending = new ArrayList<>(RESTORE_BATCH_SIZE);
+
+      Lane(Segment<K, V> segment) {
+        this.segment = segment;
+      }
+
+      void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+          try {
+            executor.execute(this);
+          } catch (RejectedExecutionException e) {
+            run();
+          }
+        }
+      }
+
+      @Override
+      public void run() {
+        List<Record<K, V>> batch;
+        while ((batch = batches.poll()) != null) {
+          try {
+            if (failure.get() == null) {
+              restored.addAndGet(segment.restore(batch, map.ticker.read()));
+            }
+          } catch (Throwable t) {
+            failure.compareAndSet(null, t);
+          } finally {
+            inFlight.release();
+          }
+        }
+        scheduled.set(false);
+        if (!batches.isEmpty()) {
+          schedule();
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,262 @@
+/*
+ * Copyright (C) 2018 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.github.lafa.cache.lrucache;
+
+import static com.github.lafa.cache.base.Preconditions.checkArgument;
+import static com.github.lafa.cache.base.Preconditions.checkNotNull;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.github.lafa.cache.base.Function;
+import com.github.lafa.cache.base.MoreObjects;
+import com.github.lafa.cache.base.Ticker;
+
+/**
+ * Populates a {@link Cache} with fresh values for a list of keys, typically the keys of a {@link
+ * HotKeyManifest} persisted by a previous process, so that the cache reaches its steady-state hit
+ * rate shortly after startup.
+ *
+ * <p>Keys are loaded in the given order by at most {@code maxConcurrency} tasks running on the
+ * supplied executor. Keys which are already present when their turn comes are skipped, and a loaded
+ * value never replaces one that was put into the cache while it was being loaded. Progress can be
+ * observed or awaited through the returned {@link Progress}.
+ */
+public final class CacheWarmer {
+  private CacheWarmer() {}
+
+  private static final Logger logger = Logger.getLogger(CacheWarmer.class.getName());
+
+  /**
+   * Starts loading the values of {@code keys} into {@code cache} using {@code loader}, returning
+   * immediately. A key for which {@code loader} returns null or throws is counted as failed and left
+   * absent.
+   *
+   * @param maxConcurrency the maximum number of keys loaded at the same time
+   */
+  public static <K, V> Progress warm(
+      Cache<K, V> cache,
+      Iterable<? extends K> keys,
+      Function<? super K, ? extends V> loader,
+      Executor executor,
+      int maxConcurrency) {
+    checkNotNull(cache);
+    checkNotNull(loader);
+    checkNotNull(executor);
+    checkArgument(maxConcurrency > 0, "maxConcurrency must be positive: %s", maxConcurrency);
+
+    // copied so that keys is iterated once, even if it is lazy or changes meanwhile
+    List<K> keyList = new ArrayList<>();
+    for (K key : keys) {
+      keyList.add(checkNotNull(key));
+    }
+    int requested = keyList.size();
+    Progress progress = new Progress(requested, Ticker.systemTicker());
+    Warmer<K, V> warmer = new Warmer<>(cache, keyList.iterator(), loader, progress);
+    int workers = Math.max(1, Math.min(maxConcurrency, requested));
+    progress.workers.set(workers);
+    for (int i = 0; i < workers; i++) {
+      try {
+        executor.execute(warmer);
+      } catch (RejectedExecutionException e) {
+        warmer.run();
+      }
+    }
+    return progress;
+  }
+
+  /** A task which loads keys from a shared iterator until it is exhausted. */
+  static final class Warmer<K, V> implements Runnable {
+    final Cache<K, V> cache;
+    final Iterator<? extends K> keys;
+    final Function<? super K, ? extends V> loader;
+    final Progress progress;
+
+    Warmer(
+        Cache<K, V> cache,
+        Iterator<? extends K> keys,
+        Function<? super K, ? extends V> loader,
+        Progress progress) {
+      this.cache = cache;
+      this.keys = keys;
+      this.loader = loader;
+      this.progress = progress;
+    }
+
+    K next() {
+      synchronized (keys) {
+        return keys.hasNext() ? keys.next() : null;
+      }
+    }
+
+    @Override
+    public void run() {
+      try {
+        for (K key = next(); key != null; key = next()) {
+          load(key);
+        }
+      } finally {
+        progress.workerDone();
+      }
+    }
+
+    void load(K key) {
+      if (cache.asMap().containsKey(key)) {
+        progress.skipped.incrementAndGet();
+        return;
+      }
+      long start = progress.ticker.read();
+      V value;
+      try {
+        value = loader.apply(key);
+      } catch (Throwable t) {
+        logger.log(Level.WARNING, "Exception thrown while warming key " + key, t);
+        progress.recordFailure(progress.ticker.read() - start);
+        return;
+      }
+      if (value == null) {
+        progress.recordFailure(progress.ticker.read() - start);
+      } else if (cache.asMap().putIfAbsent(key, value) == null) {
+        progress.recordLoad(progress.ticker.read() - start);
+      } else {
+        progress.skipped.incrementAndGet();
+      }
+    }
+  }
+
+  /**
+   * The progress of a warm-up started by {@link CacheWarmer#warm}. All counts are updated as keys
+   * complete and may be read at any time.
+   */
+  public static final class Progress {
+    final Ticker ticker;
+    final int requested;
+    final long startNanos;
+    final AtomicInteger loaded = new AtomicInteger();
+    final AtomicInteger skipped = new AtomicInteger();
+    final AtomicInteger failed = new AtomicInteger();
+    final AtomicLong loadNanos = new AtomicLong();
+    final AtomicInteger workers = new AtomicInteger();
+    final CountDownLatch done = new CountDownLatch(1);
+    volatile long endNanos;
+
+    Progress(int requested, Ticker ticker) {
+      this.requested = requested;
+      this.ticker = ticker;
+      this.startNanos = ticker.read();
+    }
+
+    void recordLoad(long nanos) {
+      loadNanos.addAndGet(nanos);
+      loaded.incrementAndGet();
+    }
+
+    void recordFailure(long nanos) {
+      loadNanos.addAndGet(nanos);
+      failed.incrementAndGet();
+    }
+
+    void workerDone() {
+      if (workers.decrementAndGet() == 0) {
+        endNanos = ticker.read();
+        done.countDown();
+      }
+    }
+
+    /** Returns the number of keys to be warmed. */
+    public int requestedCount() {
+      return requested;
+    }
+
+    /** Returns the number of keys whose loaded value was inserted into the cache. */
+    public int loadedCount() {
+      return loaded.get();
+    }
+
+    /** Returns the number of keys which were already present and so were not inserted. */
+    public int skippedCount() {
+      return skipped.get();
+    }
+
+    /** Returns the number of keys for which the loader returned null or threw. */
+    public int failedCount() {
+      return failed.get();
+    }
+
+    /** Returns the number of keys which have not yet been processed. */
+    public int remainingCount() {
+      return Math.max(0, requested - loaded.get() - skipped.get() - failed.get());
+    }
+
+    /** Returns true once every key has been processed. */
+    public boolean isDone() {
+      return done.getCount() == 0;
+    }
+
+    /**
+     * Returns the time elapsed since the warm-up started, or its total duration once it is {@linkplain
+     * #isDone done}, in the given unit.
+     */
+    public long elapsed(TimeUnit unit) {
+      long end = isDone() ? endNanos : ticker.read();
+      return unit.convert(end - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /** Returns the total time spent in the loader, summed over all keys, in nanoseconds. */
+    public long totalLoadTime() {
+      return loadNanos.get();
+    }
+
+    /** Returns the average time spent in the loader per loaded or failed key, in nanoseconds. */
+    public double averageLoadPenalty() {
+      long count = (long) loaded.get() + failed.get();
+      return (count == 0) ? 0.0 : (double) loadNanos.get() / count;
+    }
+
+    /** Waits until every key has been processed. */
+    public void awaitCompletion() throws InterruptedException {
+      done.await();
+    }
+
+    /**
+     * Waits until every key has been processed or the timeout elapses, returning true if the warm-up
+     * completed.
+     */
+    public boolean awaitCompletion(long timeout, TimeUnit unit) throws InterruptedException {
+      return done.await(timeout, unit);
+    }
+
+    @Override
+    public String toString() {
+      return MoreObjects.toStringHelper(this)
+          .add("requested", requested)
+          .add("loaded", loaded.get())
+          .add("skipped", skipped.get())
+          .add("failed", failed.get())
+          .add("elapsedMillis", elapsed(TimeUnit.MILLISECONDS))
+          .add("totalLoadTime", loadNanos.get())
+          .toString();
+    }
+  }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2018 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.github.lafa.cache.lrucache;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.checkerframework.checker.nullness.compatqual.NullableDecl;
+
+import com.google.errorprone.annotations.concurrent.GuardedBy;
+
+/**
+ * Runs the cleanup of a cache built with {@link CacheBuilder#scheduler} on that scheduler, at the
+ * time its next entry expires. At most one task per cache is pending at a time; a write only
+ * schedules one if none is, and each run schedules the next. The cache is referenced weakly so that
+ * pending tasks do not keep it alive.
+ */
+final class CleanupPacer implements Runnable {
+
+  private static final Logger logger = Logger.getLogger(CleanupPacer.class.getName());
+
+  /** How often caches with weak or soft references are cleaned up while non-empty. */
+  static final long REFERENCE_CLEANUP_NANOS = SECONDS.toNanos(1);
+
+  /** How much later than requested a pending run may be kept rather than rescheduled. */
+  static final long TOLERANCE_NANOS = MILLISECONDS.toNanos(10);
+
+  private final WeakReference<LocalCache<?, ?>> cacheReference;
+  private final ScheduledExecutorService scheduler;
+
+  /** The earliest delay after a write at which an entry may need to be cleaned up. */
+  private final long writeDelayNanos;
+
+  private volatile boolean scheduled;
+
+  @GuardedBy("this")
+  @NullableDecl
+  private ScheduledFuture<?> future;
+
+  @GuardedBy("this")
+  private long scheduledTime;
+
+  CleanupPacer(LocalCache<?, ?> cache, ScheduledExecutorService scheduler) {
+    this.cacheReference = new WeakReference<LocalCache<?, ?>>(cache);
+    this.scheduler = scheduler;
+    long delay = Long.MAX_VALUE;
+    if (cache.expiresAfterWrite()) {
+      delay = Math.min(delay, cache.expireAfterWriteNanos);
+    }
+    if (cache.expiresAfterAccess()) {
+      delay = Math.min(delay, cache.expireAfterAccessNanos);
+    }
+    if (cache.usesKeyReferences() || cache.usesValueReferences()) {
+      delay = Math.min(delay, REFERENCE_CLEANUP_NANOS);
+    }
+    this.writeDelayNanos = delay;
+  }
+
+  /** Returns whether the cache needs any scheduled cleanup at all. */
+  boolean isNeeded() {
+    return writeDelayNanos != Long.MAX_VALUE;
+  }
+
+  /** Ensures that a cleanup is scheduled after an entry was written to {@code cache}. */
+  void onWrite(LocalCache<?, ?> cache) {
+    if (!scheduled) {
+      long now = cache.ticker.read();
+      schedule(now, now + writeDelayNanos);
+    }
+  }
+
+  @Override
+  public void run() {
+    LocalCache<?, ?> cache = cacheReference.get();
+    if (cache == null) {
+      return;
+    }
+    synchronized (this) {
+      scheduled = false;
+      future = null;
+    }
+    try {
+      long now = cache.ticker.read();
+      long next = cache.runScheduledCleanup(now);
+      if ((cache.usesKeyReferences() || cache.usesValueReferences()) && !cache.isEmpty()) {
+        next = Math.min(next, now + REFERENCE_CLEANUP_NANOS);
+      }
+      if (next != Long.MAX_VALUE) {
+        schedule(now, next);
+      }
+    } catch (Throwable t) {
+      logger.log(Level.WARNING, "Exception thrown during scheduled cache cleanup", t);
+    }
+  }
+
+  private synchronized void schedule(long now, long time) {
+    if (scheduled && scheduledTime <= time + TOLERANCE_NANOS) {
+      return;
+    }
+    if (future != null) {
+      future.cancel(false);
+    }
+    try {
+      future = scheduler.schedule(this, Math.max(0, time - now), NANOSECONDS);
+      scheduledTime = time;
+      scheduled = true;
+    } catch (RejectedExecutionException e) {
+      // the scheduler was shut down; stop trying rather than failing every write
+      future = null;
+      scheduledTime = Long.MIN_VALUE;
+      scheduled = true;
+      logger.log(Level.WARNING, "Scheduler rejected cache cleanup", e);
+    }
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2018 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.github.lafa.cache.lrucache;
+
+import org.checkerframework.checker.nullness.compatqual.NullableDecl;
+
+import com.github.lafa.cache.lrucache.LocalCache.Segment;
+
+/**
+ * A small direct-mapped table of recently read entries, kept per thread by caches built with
+ * {@link CacheBuilder#frontCacheSize}, which answers {@link Cache#getIfPresent} for hot keys
+ * without reading the segment table or recording the read.
+ *
+ * <p>Each slot remembers the {@linkplain Segment#version version} of the entry's segment from
+ * before the entry was read. Every write, removal, eviction or expiration releases the segment
+ * lock with a new version, so a slot is only used while its segment has not changed since. Entries
+ * that may have expired, or fallen into an invalidated generation, are still checked against the
+ * time on each hit.
+ *
+ * <p>Hits are folded into the cache in batches: every {@link #FOLD_HITS} hits on a slot, or when
+ * the slot is replaced, they are added to the cache's statistics and recorded as a single read of
+ * the entry for its eviction order. Caches that expire entries after access also fold once half
+ * the expiration time has passed since the entry's last recorded read, so that hot entries do not
+ * expire. Up to {@code FOLD_HITS - 1} hits per slot are never counted if the thread terminates.
+ *
+ * <p>The table holds no reference to the cache itself, so that it does not keep the cache's
+ * thread-local, and hence the cache, reachable from the thread.
+ */
+final class FrontCache<K, V> {
+
+  /** The number of hits on a slot after which they are folded into the cache. */
+  static final int FOLD_HITS = 64;
+
+  private final int mask;
+  private final Object[] keys;
+  private final Object[] values;
+  private final ReferenceEntry<?, ?>[] entries;
+  private final int[] hashes;
+  private final int[] versions;
+  private final int[] hits;
+
+  FrontCache(int size) {
+    this.mask = size - 1;
+    this.keys = new Object[size];
+    this.values = new Object[size];
+    this.entries = new ReferenceEntry<?, ?>[size];
+    this.hashes = new int[size];
+    this.versions = new int[size];
+    this.hits = new int[size];
+  }
+
+  /** Like {@link LocalCache#getIfPresent}, answering from this table when it can. */
+  @NullableDecl
+  @SuppressWarnings("unchecked") // slots only hold keys, values and entries of map
+  V getIfPresent(LocalCache<K, V> map, Object key, int hash) {
+    int i = hash & mask;
+    Object cachedKey = keys[i];
+    if (cachedKey != null
+        && hashes[i] == hash
+        && map.segmentFor(hash).version == versions[i]
+        && (cachedKey == key || map.keyEquivalence.equivalent(cachedKey, key))) {
+      ReferenceEntry<K, V> entry = (ReferenceEntry<K, V>) entries[i];
+      AccessTraceRecorder recorder = map.traceRecorder;
+      if (recorder != null && recorder.samples(hash)) {
+        recorder.record(hash, AccessTraceRecorder.HIT, entry.getValueReference().getWeight());
+      }
+      if (!map.frontCacheChecksTime) {
+        if (++hits[i] >= FOLD_HITS) {
+          fold(map, i, map.ticker.read());
+        }
+        return (V) values[i];
+      }
+      long now = map.ticker.read();
+      if (!map.isExpired(entry, now)) {
+        if (++hits[i] >= FOLD_HITS
+            || (map.expiresAfterAccess()
+                && now - entry.getAccessTime() >= map.expireAfterAccessNanos >> 1)) {
+          fold(map, i, now);
+        }
+        return (V) values[i];
+      }
+    }
+    return load(map, key, hash, i);
+  }
+
+  @NullableDecl
+  private V load(LocalCache<K, V> map, Object key, int hash, int i) {
+    if (hits[i] > 0) {
+      fold(map, i, map.ticker.read());
+    }
+    Segment<K, V> segment = map.segmentFor(hash);
+    // read before the entry, so that any change made meanwhile invalidates the slot
+    int version = segment.version;
+    ReferenceEntry<K, V> entry = segment.readLiveEntry(key, hash);
+    // a weak or soft value may have been collected since
+    V value = (entry == null) ? null : entry.getValueReference().get();
+    if (value == null) {
+      map.globalStatsCounter.recordMisses(1);
+      return null;
+    }
+    map.globalStatsCounter.recordHits(1);
+    keys[i] = entry.getKey();
+    values[i] = value;
+    entries[i] = entry;
+    hashes[i] = hash;
+    versions[i] = version;
+    return value;
+  }
+
+  /** Adds the pending hits on slot {@code i} to the statistics and eviction order of {@code map}. */
+  @SuppressWarnings("unchecked") // slots only hold entries of map
+  private void fold(LocalCache<K, V> map, int i, long now) {
+    int count = hits[i];
+    hits[i] = 0;
+    map.globalStatsCounter.recordHits(count);
+    map.segmentFor(hashes[i]).recordUntracedRead((ReferenceEntry<K, V>) entries[i], now);
+  }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2018 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.github.lafa.cache.lrucache;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The current generation of each namespace of a {@link NamespacedCache}. Namespaces start at
+ * generation zero and are only recorded once advanced. The epoch counts advances across all
+ * namespaces, so that segments can tell whether they may hold entries that have become stale since
+ * they were last swept.
+ */
+final class Generations {
+  private final ConcurrentHashMap<Object, AtomicInteger> generations = new ConcurrentHashMap<>();
+  private final AtomicLong epoch = new AtomicLong();
+
+  int current(Object namespace) {
+    AtomicInteger generation = generations.get(namespace);
+    return (generation == null) ? 0 : generation.get();
+  }
+
+  void advance(Object namespace) {
+    generations.computeIfAbsent(namespace, n -> new AtomicInteger()).incrementAndGet();
+    // after the generation, so that a sweep started at the new epoch sees it
+    epoch.incrementAndGet();
+  }
+
+  long epoch() {
+    return epoch.get();
+  }
+
+  /** Returns whether {@code key}, a {@link NamespacedKey}, belongs to an earlier generation. */
+  boolean isStale(Object key) {
+    NamespacedKey<?, ?> namespacedKey = (NamespacedKey<?, ?>) key;
+    return namespacedKey.generation != current(namespacedKey.namespace());
+  }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2018 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.github.lafa.cache.lrucache;
+
+import java.lang.instrument.Instrumentation;
+
+import org.checkerframework.checker.nullness.compatqual.NullableDecl;
+
+/**
+ * A Java agent which lets caches built with {@link CacheBuilder#maximumHeapBytes} measure shallow
+ * object sizes with {@link Instrumentation#getObjectSize}, rather than estimating them from field
+ * layouts. The library's {@code agent} jar holds only this class, declared as both its {@code
+ * Premain-Class} and {@code Agent-Class}, so it can be installed with {@code
+ * -javaagent:path/to/cache-<version>-agent.jar} while the library jar itself is on the class path.
+ * Applications that already run their own agent may pass its {@link Instrumentation} to {@link
+ * #install} instead.
+ */
+public final class HeapSizeAgent {
+  private HeapSizeAgent() {}
+
+  @NullableDecl static volatile Instrumentation instrumentation;
+
+  /** Makes {@code instrumentation} available to heap size estimation. */
+  public static void install(Instrumentation instrumentation) {
+    // not Preconditions, so that the agent jar loads nothing else before the application does
+    if (instrumentation == null) {
+      throw new NullPointerException();
+    }
+    HeapSizeAgent.instrumentation = instrumentation;
+  }
+
+  /** Returns whether an {@link Instrumentation} instance has been installed. */
+  public static boolean isInstalled() {
+    return instrumentation != null;
+  }
+
+  /** Entry point when loaded with {@code -javaagent}. */
+  public static void premain(String args, Instrumentation instrumentation) {
+    install(instrumentation);
+  }
+
+  /** Entry point when attached to a running virtual machine. */
+  public static void agentmain(String args, Instrumentation instrumentation) {
+    install(instrumentation);
+  }
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright (C) 2018 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.github.lafa.cache.lrucache;
+
+import java.lang.instrument.Instrumentation;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.checkerframework.checker.nullness.compatqual.NullableDecl;
+
+/**
+ * Estimates the number of heap bytes reachable from an object, for {@link
+ * CacheBuilder#maximumHeapBytes}.
+ *
+ * <p>The object graph is walked through every non-static reference field, counting each object
+ * once. Shallow sizes come from {@link Instrumentation#getObjectSize} when {@link HeapSizeAgent} is
+ * installed, and are otherwise computed from per-class field layouts assuming a 64-bit HotSpot VM,
+ * with compressed references whenever the maximum heap is below 32GB. Strings, boxed primitives
+ * and arrays are measured directly. Fields of JDK classes are never made accessible, as that is
+ * reported as illegal access on JDK 9 and later, and fails on JDK 16 and later; objects with such
+ * fields, or with fields which otherwise cannot be made accessible, are measured shallowly, except
+ * that collections and maps are charged for the backing array and nodes of an {@code ArrayList} or
+ * {@code HashMap} and have their elements traversed.
+ *
+ * <p>Enum constants, classes and class loaders are treated as shared and contribute nothing. Other
+ * objects shared between cache entries are counted in full for each entry that reaches them.
+ */
+final class HeapSizeEstimator {
+  private HeapSizeEstimator() {}
+
+  static final boolean COMPRESSED_REFERENCES = Runtime.getRuntime().maxMemory() < (32L << 30);
+  static final int REFERENCE_SIZE = COMPRESSED_REFERENCES ? 4 : 8;
+  static final int OBJECT_HEADER_SIZE = COMPRESSED_REFERENCES ? 12 : 16;
+  static final int ARRAY_HEADER_SIZE = COMPRESSED_REFERENCES ? 16 : 24;
+
+  /**
+   * The approximate size of a cache entry and its table slot, excluding its key and value: an
+   * object holding the key, hash, next, value, weight, access time and two queue links.
+   */
+  static final int ENTRY_OVERHEAD =
+      (int) align(OBJECT_HEADER_SIZE + 4 + 4 + 8 + 5 * REFERENCE_SIZE) + REFERENCE_SIZE;
+
+  /** The approximate size of a {@code HashMap.Node}. */
+  static final int HASH_NODE_SIZE = (int) align(OBJECT_HEADER_SIZE + 4 + 3 * REFERENCE_SIZE);
+
+  private static final ClassValue<Layout> layouts =
+      new ClassValue<Layout>() {
+        @Override
+        protected Layout computeValue(Class<?> type) {
+          return new Layout(type);
+        }
+      };
+
+  /** Returns the estimated size in bytes of {@code root} and every object reachable from it. */
+  static long estimate(@NullableDecl Object root) {
+    if (root == null) {
+      return 0;
+    }
+    Instrumentation instrumentation = HeapSizeAgent.instrumentation;
+    Set<Object> visited = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+    Deque<Object> pending = new ArrayDeque<>();
+    pending.push(root);
+    long size = 0;
+    while (!pending.isEmpty()) {
+      Object o = pending.pop();
+      if (!visited.add(o)) {
+        continue;
+      }
+      Class<?> type = o.getClass();
+      if (instrumentation != null) {
+        size += instrumentation.getObjectSize(o);
+      }
+      if (type.isArray()) {
+        int length = Array.getLength(o);
+        Class<?> componentType = type.getComponentType();
+        if (instrumentation == null) {
+          size += arraySize(componentType, length);
+        }
+        if (!componentType.isPrimitive()) {
+          for (Object element : (Object[]) o) {
+            push(pending, element);
+          }
+        }
+        continue;
+      }
+      Layout layout = layouts.get(type);
+      if (instrumentation == null) {
+        size += layout.shallowSize;
+      }
+      if (layout.leaf) {
+        if (o instanceof String) {
+          size += stringValueSize((String) o);
+        }
+      } else if (layout.fields != null) {
+        for (Field field : layout.fields) {
+          try {
+            push(pending, field.get(o));
+          } catch (IllegalAccessException e) {
+            throw new AssertionError(e);
+          }
+        }
+      } else if (o instanceof Map) {
+        Map<?, ?> map = (Map<?, ?>) o;
+        size += hashTableSize(map.size());
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+          push(pending, entry.getKey());
+          push(pending, entry.getValue());
+        }
+      } else if (o instanceof Collection) {
+        Collection<?> collection = (Collection<?>) o;
+        size +=
+            (o instanceof Set)
+                ? hashTableSize(collection.size())
+                : arraySize(Object.class, collection.size());
+        for (Object element : collection) {
+          push(pending, element);
+        }
+      }
+    }
+    return size;
+  }
+
+  private static void push(Deque<Object> pending, @NullableDecl Object o) {
+    if (o != null && !isShared(o)) {
+      pending.push(o);
+    }
+  }
+
+  private static boolean isShared(Object o) {
+    return o instanceof Enum || o instanceof Class || o instanceof ClassLoader;
+  }
+
+  /** Returns the size of the array backing a string, which its shallow size does not include. */
+  private static long stringValueSize(String s) {
+    int length = s.length();
+    int bytesPerChar = 2;
+    if (COMPACT_STRINGS) {
+      bytesPerChar = 1;
+      for (int i = 0; i < length; i++) {
+        if (s.charAt(i) > 0xFF) {
+          bytesPerChar = 2;
+          break;
+        }
+      }
+    }
+    return arraySize(byte.class, length * bytesPerChar);
+  }
+
+  /** Whether strings of Latin-1 characters are stored with one byte per character (JDK 9+). */
+  private static final boolean COMPACT_STRINGS = isCompactStrings();
+
+  private static boolean isCompactStrings() {
+    for (Field field : String.class.getDeclaredFields()) {
+      if (field.getName().equals("coder")) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Returns the size of a hash table's bucket array and nodes, excluding the map object itself. */
+  private static long hashTableSize(int size) {
+    int buckets = Math.max(16, Integer.highestOneBit(Math.max(1, (int) (size / 0.75f))) << 1);
+    return arraySize(Object.class, buckets) + (long) size * HASH_NODE_SIZE;
+  }
+
+  static long arraySize(Class<?> componentType, int length) {
+    return align(ARRAY_HEADER_SIZE + (long) length * fieldSize(componentType));
+  }
+
+  static int fieldSize(Class<?> type) {
+    if (!type.isPrimitive()) {
+      return REFERENCE_SIZE;
+    } else if (type == long.class || type == double.class) {
+      return 8;
+    } else if (type == int.class || type == float.class) {
+      return 4;
+    } else if (type == short.class || type == char.class) {
+      return 2;
+    } else {
+      return 1;
+    }
+  }
+
+  static long align(long size) {
+    return (size + 7) & ~7L;
+  }
+
+  /** The cached shape of the instances of a class. */
+  static final class Layout {
+    /** The size of an instance, excluding anything it references. */
+    final int shallowSize;
+
+    /** Whether instances reference nothing that should be traversed. */
+    final boolean leaf;
+
+    /** The reference fields to traverse, or null if they could not all be made accessible. */
+    @NullableDecl final Field[] fields;
+
+    Layout(Class<?> type) {
+      long size = OBJECT_HEADER_SIZE;
+      List<Field> references = new ArrayList<>();
+      for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+        for (Field field : c.getDeclaredFields()) {
+          if (!Modifier.isStatic(field.getModifiers())) {
+            size += fieldSize(field.getType());
+            if (!field.getType().isPrimitive()) {
+              references.add(field);
+            }
+          }
+        }
+      }
+      this.shallowSize = (int) align(size);
+      this.leaf = references.isEmpty() || type == String.class;
+      this.fields = leaf ? null : accessible(references);
+    }
+
+    @NullableDecl
+    private static Field[] accessible(List<Field> fields) {
+      for (Field field : fields) {
+        if (isJdkClass(field.getDeclaringClass())) {
+          return null;
+        }
+      }
+      try {
+        for (Field field : fields) {
+          field.setAccessible(true);
+        }
+      } catch (RuntimeException e) {
+        // InaccessibleObjectException from another module, or SecurityException
+        return null;
+      }
+      return fields.toArray(new Field[0]);
+    }
+
+    private static boolean isJdkClass(Class<?> type) {
+      if (type.getClassLoader() == null) {
+        return true;
+      }
+      String name = type.getName();
+      return name.startsWith("java.")
+          || name.startsWith("javax.")
+          || name.startsWith("jdk.")
+          || name.startsWith("sun.")
+          || name.startsWith("com.sun.");
+    }
+  }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2018 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.github.lafa.cache.lrucache;
+
+import static com.github.lafa.cache.base.Preconditions.checkArgument;
+import static com.github.lafa.cache.base.Preconditions.checkNotNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.github.lafa.cache.lrucache.LocalCache.Segment;
+
+/**
+ * Static utilities for persisting the most recently used keys of a {@link Cache}, as a lighter
+ * alternative to a full {@linkplain CacheSnapshots snapshot}. On startup the manifest can be fed to
+ * a {@link CacheWarmer}, which re-fetches fresh values for those keys.
+ *
+ * <p>Keys are taken from each segment's eviction order, most recently used first, and interleaved
+ * across segments. Caches which are neither size-bounded nor expire after access keep no recency
+ * information, in which case an arbitrary subset of keys is persisted.
+ *
+ * <p>Only the key methods of the supplied {@link SnapshotCodec} are used.
+ */
+public final class HotKeyManifest {
+  private HotKeyManifest() {}
+
+  private static final Logger logger = Logger.getLogger(HotKeyManifest.class.getName());
+
+  /** Marks the beginning of a manifest stream. */
+  static final int MAGIC = 0x4C434B31; // "LCK1"
+
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  /**
+   * Returns up to {@code limit} keys of {@code cache}, hottest first. Each segment contributes in
+   * proportion to its size, and the per-segment lists are interleaved so that the front of the
+   * result holds the most recently used keys of every segment.
+   */
+  public static <K> List<K> hottestKeys(Cache<K, ?> cache, int limit) {
+    checkArgument(limit >= 0, "limit cannot be negative: %s", limit);
+    return hottestKeys(CacheSnapshots.localCache(cache), limit);
+  }
+
+  private static <K, V> List<K> hottestKeys(LocalCache<K, V> map, int limit) {
+    Segment<K, V>[] segments = map.segments;
+    long total = Math.max(1, map.longSize());
+    List<List<K>> perSegment = new ArrayList<>(segments.length);
+    int available = 0;
+    for (Segment<K, V> segment : segments) {
+      int count = Math.max(0, segment.count);
+      int quota = (int) Math.min(limit, (long) limit * count / total + 1);
+      // the limit may be far larger than the cache
+      List<K> keys = new ArrayList<>(Math.min(quota, count));
+      segment.hottestKeys(quota, map.ticker.read(), keys);
+      perSegment.add(keys);
+      available += keys.size();
+    }
+
+    List<K> result = new ArrayList<>(Math.min(limit, available));
+    for (int rank = 0; result.size() < limit; rank++) {
+      boolean found = false;
+      for (List<K> keys : perSegment) {
+        if (rank < keys.size() && result.size() < limit) {
+          result.add(keys.get(rank));
+          found = true;
+        }
+      }
+      if (!found) {
+        break;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Writes {@code keys} to {@code out} in iteration order, returning the number written. The stream
+   * is flushed but not closed.
+   */
+  public static <K> int write(Iterable<? extends K> keys, OutputStream out, SnapshotCodec<K, ?> codec)
+      throws IOException {
+    checkNotNull(codec);
+    DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out, BUFFER_SIZE));
+    data.writeInt(MAGIC);
+    int written = 0;
+    for (K key : keys) {
+      data.writeBoolean(true);
+      codec.writeKey(key, data);
+      written++;
+    }
+    data.writeBoolean(false);
+    data.flush();
+    return written;
+  }
+
+  /**
+   * Writes {@code keys} to {@code file} through a sibling temporary file, so that readers never
+   * observe a truncated manifest. Returns the number of keys written.
+   */
+  public static <K> int write(Iterable<? extends K> keys, Path file, SnapshotCodec<K, ?> codec)
+      throws IOException {
+    Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+    int written;
+    try (OutputStream out = Files.newOutputStream(temp)) {
+      written = write(keys, out, codec);
+    }
+    try {
+      Files.move(
+          temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+    return written;
+  }
+
+  /** Reads the keys of a manifest from {@code in}, hottest first. The stream is not closed. */
+  public static <K> List<K> read(InputStream in, SnapshotCodec<K, ?> codec) throws IOException {
+    checkNotNull(codec);
+    DataInputStream data = new DataInputStream(new BufferedInputStream(in, BUFFER_SIZE));
+    if (data.readInt() != MAGIC) {
+      throw new IOException("Not a hot key manifest");
+    }
+    List<K> keys = new ArrayList<>();
+    while (data.readBoolean()) {
+      keys.add(checkNotNull(codec.readKey(data)));
+    }
+    return keys;
+  }
+
+  /** Reads the keys of the manifest stored in {@code file}, hottest first. */
+  public static <K> List<K> read(Path file, SnapshotCodec<K, ?> codec) throws IOException {
+    try (InputStream in = Files.newInputStream(file)) {
+      return read(in, codec);
+    }
+  }
+
+  /**
+   * Periodically writes the {@linkplain #hottestKeys hottest} {@code limit} keys of {@code cache}
+   * to {@code file} using {@code scheduler}, until the returned future is cancelled. Failures are
+   * logged and do not stop later writes.
+   */
+  public static <K> ScheduledFuture<?> schedulePeriodicWrite(
+      final Cache<K, ?> cache,
+      final int limit,
+      final Path file,
+      final SnapshotCodec<K, ?> codec,
+      ScheduledExecutorService scheduler,
+      long period,
+      TimeUnit unit) {
+    CacheSnapshots.localCache(cache);
+    checkArgument(limit >= 0, "limit cannot be negative: %s", limit);
+    checkNotNull(file);
+    checkNotNull(codec);
+    checkArgument(period > 0, "period must be positive: %s %s", period, unit);
+    return scheduler.scheduleWithFixedDelay(
+        new Runnable() {
+          @Override
+          public void run() {
+            try {
+              write(hottestKeys(cache, limit), file, codec);
+            } catch (Throwable t) {
+              logger.log(Level.WARNING, "Exception thrown while writing hot key manifest", t);
+            }
+          }
+        },
+        period,
+        period,
+        unit);
+  }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2018 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.github.lafa.cache.lrucache;
+
+import static com.github.lafa.cache.base.Preconditions.checkArgument;
+import static com.github.lafa.cache.base.Preconditions.checkNotNull;
+
+import com.github.lafa.cache.base.Equivalence;
+import com.github.lafa.cache.lrucache.LocalCache.Segment;
+import com.github.lafa.cache.lrucache.LocalCache.StrongValueReference;
+import com.github.lafa.cache.lrucache.LocalCache.ValueReference;
+
+/**
+ * Contains static methods pertaining to instances of {@link Interner}.
+ *
+ * <p>Interners are backed by a {@link LocalCache} holding only keys. In a strong interner each
+ * entry stores its key and placeholder value inline, as in any strong cache. In a weak interner
+ * each entry is a weak reference to its key, and all entries share a single reference to the
+ * placeholder value, so neither allocates anything per entry beyond the entry itself.
+ */
+public final class Interners {
+  private Interners() {}
+
+  /**
+   * Builder for {@link Interner} instances.
+   */
+  public static class InternerBuilder {
+    private boolean strong = true;
+    private int concurrencyLevel = CacheBuilder.UNSET_INT;
+
+    private InternerBuilder() {}
+
+    /**
+     * Instructs the {@link InternerBuilder} to build a strong interner.
+     *
+     * @see Interners#newStrongInterner()
+     */
+    public InternerBuilder strong() {
+      this.strong = true;
+      return this;
+    }
+
+    /**
+     * Instructs the {@link InternerBuilder} to build a weak interner.
+     *
+     * @see Interners#newWeakInterner()
+     */
+    public InternerBuilder weak() {
+      this.strong = false;
+      return this;
+    }
+
+    /**
+     * Sets the concurrency level that will be used by the to-be-built {@link Interner}.
+     *
+     * @see CacheBuilder#concurrencyLevel(int)
+     */
+    public InternerBuilder concurrencyLevel(int concurrencyLevel) {
+      checkArgument(concurrencyLevel > 0);
+      this.concurrencyLevel = concurrencyLevel;
+      return this;
+    }
+
+    public <E> Interner<E> build() {
+      CacheBuilder<Object, Object> cacheBuilder = CacheBuilder.newBuilder();
+      if (concurrencyLevel != CacheBuilder.UNSET_INT) {
+        cacheBuilder.concurrencyLevel(concurrencyLevel);
+      }
+      if (!strong) {
+        cacheBuilder.weakKeys();
+      }
+      return new InternerImpl<E>(cacheBuilder);
+    }
+  }
+
+  /** Returns a fresh {@link InternerBuilder} instance. */
+  public static InternerBuilder newBuilder() {
+    return new InternerBuilder();
+  }
+
+  /**
+   * Returns a new thread-safe interner which retains a strong reference to each instance it has
+   * interned, thus preventing these instances from being garbage-collected. This may have better
+   * performance than {@link #newWeakInterner}.
+   */
+  public static <E> Interner<E> newStrongInterner() {
+    return newBuilder().strong().build();
+  }
+
+  /**
+   * Returns a new thread-safe interner which retains a weak reference to each instance it has
+   * interned, and so does not prevent these instances from being garbage-collected. This most
+   * likely does not perform as well as {@link #newStrongInterner}, but is the best alternative
+   * when the memory usage of that implementation is unacceptable.
+   */
+  public static <E> Interner<E> newWeakInterner() {
+    return newBuilder().weak().build();
+  }
+
+  /** The placeholder value of every interner entry. */
+  enum Dummy {
+    VALUE
+  }
+
+  /** The reference to {@link Dummy#VALUE} shared by the entries of every weak interner. */
+  static final ValueReference<Object, Dummy> DUMMY_REFERENCE =
+      new StrongValueReference<Object, Dummy>(Dummy.VALUE);
+
+  /**
+   * The map backing an interner. Entries which do not hold their value inline, those of weak
+   * interners, all share {@link #DUMMY_REFERENCE}.
+   */
+  private static final class InternerMap<E> extends LocalCache<E, Dummy> {
+    InternerMap(CacheBuilder<? super E, ? super Dummy> builder) {
+      super(builder);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked") // the reference is never handed out with its key type
+    ValueReference<E, Dummy> referenceValue(
+        Segment<E, Dummy> segment, ReferenceEntry<E, Dummy> entry, Dummy value, int weight) {
+      return (ValueReference<E, Dummy>) (ValueReference<?, Dummy>) DUMMY_REFERENCE;
+    }
+  }
+
+  static final class InternerImpl<E> implements Interner<E> {
+    final LocalCache<E, Dummy> map;
+
+    InternerImpl(CacheBuilder<Object, Object> cacheBuilder) {
+      // weak keys would otherwise be compared by identity
+      this.map = new InternerMap<E>(cacheBuilder.keyEquivalence(Equivalence.equals()));
+    }
+
+    @Override
+    public E intern(E sample) {
+      checkNotNull(sample);
+      while (true) {
+        // trying to read the canonical...
+        ReferenceEntry<E, Dummy> entry = map.getEntry(sample);
+        if (entry != null) {
+          E canonical = entry.getKey();
+          if (canonical != null) { // only matters if weak/soft keys are used
+            return canonical;
+          }
+        }
+
+        // didn't see it, trying to put it instead...
+        Dummy sneaky = map.putIfAbsent(sample, Dummy.VALUE);
+        if (sneaky == null) {
+          return sample;
+        } else {
+          /* Someone beat us to it! Trying again...
+           *
+           * Technically this loop not guaranteed to terminate, so theoretically (extremely
+           * unlikely) this thread might starve, but even then, there is always going to be another
+           * thread doing progress here.
+           */
+        }
+      }
+    }
+  }
+}
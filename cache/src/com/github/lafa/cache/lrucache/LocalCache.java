@@ -14,35 +14,47 @@
 
 package com.github.lafa.cache.lrucache;
 
+import static com.github.lafa.cache.base.Preconditions.checkArgument;
 import static com.github.lafa.cache.base.Preconditions.checkNotNull;
 import static com.github.lafa.cache.base.Preconditions.checkState;
 import static com.github.lafa.cache.lrucache.CacheBuilder.UNSET_INT;
+import static com.github.lafa.cache.lrucache.TableAccess.getAcquire;
+import static com.github.lafa.cache.lrucache.TableAccess.setRelease;
 
 import java.lang.ref.Reference;
 import java.lang.ref.ReferenceQueue;
 import java.lang.ref.SoftReference;
 import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
 import java.util.AbstractCollection;
 import java.util.AbstractMap;
 import java.util.AbstractQueue;
 import java.util.AbstractSet;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Queue;
 import java.util.Set;
+import java.util.Spliterator;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
 import java.util.function.BiPredicate;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
+import java.util.stream.IntStream;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -132,6 +144,18 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
   // TODO(fry): empirically optimize this
   static final int DRAIN_MAX = 16;
 
+  /**
+   * Maximum number of table buckets of a {@link NamespacedCache} swept for entries of invalidated
+   * generations in a single cleanup run.
+   */
+  static final int SWEEP_MAX = 64;
+
+  /**
+   * Minimum number of keys in a batch operation for the segments it touches to be processed in
+   * parallel rather than one after another.
+   */
+  static final int PARALLEL_BATCH_THRESHOLD = 1 << 14;
+
   // Fields
 
   static final Logger logger = Logger.getLogger(LocalCache.class.getName());
@@ -172,6 +196,12 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
   /** Weigher to weigh cache entries. */
   final Weigher<K, V> weigher;
 
+  /**
+   * The heap occupancy past which eviction limits are lowered, or UNSET_INT if the map does not
+   * react to memory pressure. See {@link MemoryPressureMonitor}.
+   */
+  final double memoryPressureThreshold;
+
   /** How long after the last access to an entry the map will retain that entry. */
   final long expireAfterAccessNanos;
 
@@ -197,6 +227,36 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
   /** Factory used to create new entries. */
   final EntryFactory entryFactory;
 
+  /** Whether every entry is a {@link LongKeyEntry}; see {@link LongKeyCache}. */
+  final boolean longKeys;
+
+  /** The tags of the map's entries, or null if it is not a {@link TaggedCache}. */
+  @NullableDecl final TagIndex<K> tagIndex;
+
+  /** The namespace generations, or null if the map does not back a {@link NamespacedCache}. */
+  @NullableDecl final Generations generations;
+
+  /**
+   * Notifies the removal listener of entries discarded by a fast clear, or null if clearing the map
+   * removes its entries one by one; see {@link CacheBuilder#fastClear}.
+   */
+  @NullableDecl final Executor clearExecutor;
+
+  /** Schedules proactive cleanup, or null if the map is only cleaned up as it is used. */
+  @NullableDecl final CleanupPacer cleanupPacer;
+
+  /**
+   * The per-thread tables answering {@link #getIfPresent} for hot keys, or null if the map has
+   * none; see {@link CacheBuilder#frontCacheSize}.
+   */
+  @NullableDecl final ThreadLocal<FrontCache<K, V>> frontCaches;
+
+  /** Whether hits in a front cache must check that the entry has not expired. */
+  final boolean frontCacheChecksTime;
+
+  /** Records sampled accesses, or null if they are not; see {@link CacheBuilder#traceRecorder}. */
+  @NullableDecl final AccessTraceRecorder traceRecorder;
+
   /**
    * Accumulates global cache statistics. Note that there are also per-segments stats counters which
    * must be aggregated to obtain a global stats view.
@@ -208,16 +268,34 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
    */
   LocalCache(
             CacheBuilder<? super K, ? super V> builder) {
+    this(builder, false, false, false, false);
+  }
+
+  /**
+   * Creates a new, empty map as above. If {@code longKeys} is true, keys must be {@link Long}s and
+   * are stored unboxed; see {@link LongKeyCache}. If {@code tagged} is true, the map maintains a
+   * {@link TagIndex}; see {@link TaggedCache}. If {@code namespaced} is true, keys must be {@link
+   * NamespacedKey}s, and those of earlier generations are treated as expired; see {@link
+   * NamespacedCache}. If {@code byteKeys} is true, keys must be byte arrays and are compared by
+   * content; see {@link ByteKeyCache}.
+   */
+  LocalCache(
+      CacheBuilder<? super K, ? super V> builder,
+      boolean longKeys,
+      boolean tagged,
+      boolean namespaced,
+      boolean byteKeys) {
     concurrencyLevel = Math.min(builder.getConcurrencyLevel(), MAX_SEGMENTS);
 
     keyStrength = builder.getKeyStrength();
     valueStrength = builder.getValueStrength();
 
-    keyEquivalence = builder.getKeyEquivalence();
+    keyEquivalence = byteKeys ? byteArrayEquivalence() : builder.getKeyEquivalence();
     valueEquivalence = builder.getValueEquivalence();
 
     maxWeight = builder.getMaximumWeight();
     weigher = builder.getWeigher();
+    memoryPressureThreshold = builder.getMemoryPressureThreshold();
     expireAfterAccessNanos = builder.getExpireAfterAccessNanos();
     expireAfterWriteNanos = builder.getExpireAfterWriteNanos();
     refreshNanos = builder.getRefreshNanos();
@@ -229,7 +307,16 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
             : new ConcurrentLinkedQueue<RemovalNotification<K, V>>();
 
     ticker = builder.getTicker(recordsTime());
-    entryFactory = EntryFactory.getFactory(keyStrength, usesAccessEntries(), usesWriteEntries());
+    this.longKeys = longKeys;
+    entryFactory =
+        longKeys
+            ? EntryFactory.getLongKeyFactory(usesAccessEntries(), usesWriteEntries())
+            : EntryFactory.getFactory(
+                keyStrength,
+                valueStrength,
+                usesAccessEntries(),
+                recordsAccess(),
+                usesWriteEntries());
     globalStatsCounter = builder.getStatsCounterSupplier().get();
 
     int initialCapacity = Math.min(builder.getInitialCapacity(), MAXIMUM_CAPACITY);
@@ -280,12 +367,41 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
             createSegment(segmentSize, UNSET_INT, builder.getStatsCounterSupplier().get());
       }
     }
+
+    CleanupPacer pacer = null;
+    if (builder.getScheduler() != null) {
+      pacer = new CleanupPacer(this, builder.getScheduler());
+    }
+    cleanupPacer = (pacer != null && pacer.isNeeded()) ? pacer : null;
+    clearExecutor = builder.getClearExecutor();
+    tagIndex = tagged ? new TagIndex<K>() : null;
+    generations = namespaced ? new Generations() : null;
+    int frontCacheSize = builder.getFrontCacheSize();
+    frontCaches =
+        (frontCacheSize == 0) ? null : ThreadLocal.withInitial(() -> new FrontCache<>(frontCacheSize));
+    frontCacheChecksTime = expires() || generations != null;
+    traceRecorder = builder.getTraceRecorder();
   }
 
   boolean evictsBySize() {
     return maxWeight >= 0;
   }
 
+  boolean evictsOnMemoryPressure() {
+    return memoryPressureThreshold != UNSET_INT;
+  }
+
+  /**
+   * Lowers or restores the maximum weight enforced by every segment to {@code fraction} of its
+   * configured maximum, evicting entries as needed.
+   */
+  void scaleMaximumWeight(double fraction) {
+    checkState(evictsBySize());
+    for (Segment<K, V> segment : segments) {
+      segment.setEvictionWeightLimit((long) (segment.maxSegmentWeight * fraction));
+    }
+  }
+
   boolean customWeigher() {
     return weigher != OneWeigher.INSTANCE;
   }
@@ -344,8 +460,7 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
 
   enum Strength {
     /*
-     * TODO(kevinb): If we strongly reference the value and aren't loading, we needn't wrap the
-     * value. This could save ~8 bytes per entry.
+     * Strong values held by strong-keyed entries are not wrapped at all; see StrongInlineEntry.
      */
 
     STRONG {
@@ -504,6 +619,143 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
         return new WeakAccessWriteEntry<>(segment.keyReferenceQueue, key, hash, next);
       }
 
+      @Override
+      <K, V> ReferenceEntry<K, V> copyEntry(
+          Segment<K, V> segment, ReferenceEntry<K, V> original, ReferenceEntry<K, V> newNext) {
+        ReferenceEntry<K, V> newEntry = super.copyEntry(segment, original, newNext);
+        copyAccessEntry(original, newEntry);
+        copyWriteEntry(original, newEntry);
+        return newEntry;
+      }
+    },
+    STRONG_INLINE {
+      @Override
+      <K, V> ReferenceEntry<K, V> newEntry(
+          Segment<K, V> segment, K key, int hash, @NullableDecl ReferenceEntry<K, V> next) {
+        return new StrongInlineEntry<>(key, hash, next);
+      }
+    },
+    STRONG_INLINE_ACCESS_ORDER {
+      @Override
+      <K, V> ReferenceEntry<K, V> newEntry(
+          Segment<K, V> segment, K key, int hash, @NullableDecl ReferenceEntry<K, V> next) {
+        return new StrongInlineAccessOrderEntry<>(key, hash, next);
+      }
+
+      @Override
+      <K, V> ReferenceEntry<K, V> copyEntry(
+          Segment<K, V> segment, ReferenceEntry<K, V> original, ReferenceEntry<K, V> newNext) {
+        ReferenceEntry<K, V> newEntry = super.copyEntry(segment, original, newNext);
+        copyAccessEntry(original, newEntry);
+        return newEntry;
+      }
+    },
+    STRONG_INLINE_ACCESS {
+      @Override
+      <K, V> ReferenceEntry<K, V> newEntry(
+          Segment<K, V> segment, K key, int hash, @NullableDecl ReferenceEntry<K, V> next) {
+        return new StrongInlineAccessEntry<>(key, hash, next);
+      }
+
+      @Override
+      <K, V> ReferenceEntry<K, V> copyEntry(
+          Segment<K, V> segment, ReferenceEntry<K, V> original, ReferenceEntry<K, V> newNext) {
+        ReferenceEntry<K, V> newEntry = super.copyEntry(segment, original, newNext);
+        copyAccessEntry(original, newEntry);
+        return newEntry;
+      }
+    },
+    STRONG_INLINE_WRITE {
+      @Override
+      <K, V> ReferenceEntry<K, V> newEntry(
+          Segment<K, V> segment, K key, int hash, @NullableDecl ReferenceEntry<K, V> next) {
+        return new StrongInlineWriteEntry<>(key, hash, next);
+      }
+
+      @Override
+      <K, V> ReferenceEntry<K, V> copyEntry(
+          Segment<K, V> segment, ReferenceEntry<K, V> original, ReferenceEntry<K, V> newNext) {
+        ReferenceEntry<K, V> newEntry = super.copyEntry(segment, original, newNext);
+        copyWriteEntry(original, newEntry);
+        return newEntry;
+      }
+    },
+    STRONG_INLINE_ACCESS_ORDER_WRITE {
+      @Override
+      <K, V> ReferenceEntry<K, V> newEntry(
+          Segment<K, V> segment, K key, int hash, @NullableDecl ReferenceEntry<K, V> next) {
+        return new StrongInlineAccessOrderWriteEntry<>(key, hash, next);
+      }
+
+      @Override
+      <K, V> ReferenceEntry<K, V> copyEntry(
+          Segment<K, V> segment, ReferenceEntry<K, V> original, ReferenceEntry<K, V> newNext) {
+        ReferenceEntry<K, V> newEntry = super.copyEntry(segment, original, newNext);
+        copyAccessEntry(original, newEntry);
+        copyWriteEntry(original, newEntry);
+        return newEntry;
+      }
+    },
+    STRONG_INLINE_ACCESS_WRITE {
+      @Override
+      <K, V> ReferenceEntry<K, V> newEntry(
+          Segment<K, V> segment, K key, int hash, @NullableDecl ReferenceEntry<K, V> next) {
+        return new StrongInlineAccessWriteEntry<>(key, hash, next);
+      }
+
+      @Override
+      <K, V> ReferenceEntry<K, V> copyEntry(
+          Segment<K, V> segment, ReferenceEntry<K, V> original, ReferenceEntry<K, V> newNext) {
+        ReferenceEntry<K, V> newEntry = super.copyEntry(segment, original, newNext);
+        copyAccessEntry(original, newEntry);
+        copyWriteEntry(original, newEntry);
+        return newEntry;
+      }
+    },
+    LONG_KEY {
+      @Override
+      <K, V> ReferenceEntry<K, V> newEntry(
+          Segment<K, V> segment, K key, int hash, @NullableDecl ReferenceEntry<K, V> next) {
+        return new LongKeyEntry<>((Long) key, hash, next);
+      }
+    },
+    LONG_KEY_ACCESS {
+      @Override
+      <K, V> ReferenceEntry<K, V> newEntry(
+          Segment<K, V> segment, K key, int hash, @NullableDecl ReferenceEntry<K, V> next) {
+        return new LongKeyAccessEntry<>((Long) key, hash, next);
+      }
+
+      @Override
+      <K, V> ReferenceEntry<K, V> copyEntry(
+          Segment<K, V> segment, ReferenceEntry<K, V> original, ReferenceEntry<K, V> newNext) {
+        ReferenceEntry<K, V> newEntry = super.copyEntry(segment, original, newNext);
+        copyAccessEntry(original, newEntry);
+        return newEntry;
+      }
+    },
+    LONG_KEY_WRITE {
+      @Override
+      <K, V> ReferenceEntry<K, V> newEntry(
+          Segment<K, V> segment, K key, int hash, @NullableDecl ReferenceEntry<K, V> next) {
+        return new LongKeyWriteEntry<>((Long) key, hash, next);
+      }
+
+      @Override
+      <K, V> ReferenceEntry<K, V> copyEntry(
+          Segment<K, V> segment, ReferenceEntry<K, V> original, ReferenceEntry<K, V> newNext) {
+        ReferenceEntry<K, V> newEntry = super.copyEntry(segment, original, newNext);
+        copyWriteEntry(original, newEntry);
+        return newEntry;
+      }
+    },
+    LONG_KEY_ACCESS_WRITE {
+      @Override
+      <K, V> ReferenceEntry<K, V> newEntry(
+          Segment<K, V> segment, K key, int hash, @NullableDecl ReferenceEntry<K, V> next) {
+        return new LongKeyAccessWriteEntry<>((Long) key, hash, next);
+      }
+
       @Override
       <K, V> ReferenceEntry<K, V> copyEntry(
           Segment<K, V> segment, ReferenceEntry<K, V> original, ReferenceEntry<K, V> newNext) {
@@ -541,6 +793,56 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
       return factories[flags];
     }
 
+    static final int ACCESS_TIME_MASK = 4;
+
+    /**
+     * Look-up table for factories of entries with inlined strong values, indexed by {@link
+     * #ACCESS_MASK}, {@link #WRITE_MASK} and {@link #ACCESS_TIME_MASK}. Entries which record access
+     * times are always linked in access order.
+     */
+    static final EntryFactory[] inlineFactories = {
+      STRONG_INLINE,
+      STRONG_INLINE_ACCESS_ORDER,
+      STRONG_INLINE_WRITE,
+      STRONG_INLINE_ACCESS_ORDER_WRITE,
+      STRONG_INLINE_ACCESS,
+      STRONG_INLINE_ACCESS,
+      STRONG_INLINE_ACCESS_WRITE,
+      STRONG_INLINE_ACCESS_WRITE,
+    };
+
+    /**
+     * Returns the most compact factory for the given configuration. Strong keys with strong values
+     * use entries which hold their value inline, and which only carry an access time if {@code
+     * recordsAccess}; other combinations fall back to {@link #getFactory(Strength, boolean,
+     * boolean)}.
+     */
+    static EntryFactory getFactory(
+        Strength keyStrength,
+        Strength valueStrength,
+        boolean usesAccessQueue,
+        boolean recordsAccess,
+        boolean usesWriteQueue) {
+      if (keyStrength != Strength.STRONG || valueStrength != Strength.STRONG) {
+        return getFactory(keyStrength, usesAccessQueue, usesWriteQueue);
+      }
+      int flags =
+          (usesAccessQueue ? ACCESS_MASK : 0)
+              | (usesWriteQueue ? WRITE_MASK : 0)
+              | (recordsAccess ? ACCESS_TIME_MASK : 0);
+      return inlineFactories[flags];
+    }
+
+    /** Look-up table for {@link LongKeyCache} entry factories, indexed like {@link #factories}. */
+    static final EntryFactory[] longKeyFactories = {
+      LONG_KEY, LONG_KEY_ACCESS, LONG_KEY_WRITE, LONG_KEY_ACCESS_WRITE,
+    };
+
+    static EntryFactory getLongKeyFactory(boolean usesAccessQueue, boolean usesWriteQueue) {
+      int flags = (usesAccessQueue ? ACCESS_MASK : 0) | (usesWriteQueue ? WRITE_MASK : 0);
+      return longKeyFactories[flags];
+    }
+
     /**
      * Creates a new entry.
      *
@@ -1105,101 +1407,748 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
     }
   }
 
-  /** Used for weakly-referenced keys. */
-  static class WeakEntry<K, V> extends WeakReference<K> implements ReferenceEntry<K, V> {
-    WeakEntry(ReferenceQueue<K> queue, K key, int hash, @NullableDecl ReferenceEntry<K, V> next) {
-      super(key, queue);
+  /**
+   * Used for strongly-referenced keys with strongly-referenced values. Rather than pointing to a
+   * separate {@link StrongValueReference}, the entry holds the value and its weight itself and acts
+   * as its own {@link ValueReference}, saving an object per entry. Until a value is set it behaves
+   * like {@link #unset()}.
+   *
+   * <p>Values are stored through {@link #setInlineValue}. A reference passed to {@link
+   * #setValueReference} is kept as is, so that the usual identity semantics of value references
+   * still hold, except that the inline state of another such entry is simply copied.
+   */
+  static class StrongInlineEntry<K, V> extends AbstractReferenceEntry<K, V>
+      implements ValueReference<K, V> {
+    final K key;
+    final int hash;
+    @NullableDecl final ReferenceEntry<K, V> next;
+
+    /** The value, or a {@link SeparateValueReference} if one was set explicitly. */
+    @NullableDecl volatile Object value;
+
+    // Guarded By Segment.this; published by the write to value
+    int weight;
+
+    StrongInlineEntry(K key, int hash, @NullableDecl ReferenceEntry<K, V> next) {
+      this.key = key;
       this.hash = hash;
       this.next = next;
     }
 
     @Override
     public K getKey() {
-      return get();
-    }
-
-    /*
-     * It'd be nice to get these for free from AbstractReferenceEntry, but we're already extending
-     * WeakReference<K>.
-     */
-
-    // null access
-
-    @Override
-    public long getAccessTime() {
-      throw new UnsupportedOperationException();
+      return this.key;
     }
 
     @Override
-    public void setAccessTime(long time) {
-      throw new UnsupportedOperationException();
+    public int getHash() {
+      return hash;
     }
 
     @Override
-    public ReferenceEntry<K, V> getNextInAccessQueue() {
-      throw new UnsupportedOperationException();
+    public ReferenceEntry<K, V> getNext() {
+      return next;
     }
 
     @Override
-    public void setNextInAccessQueue(ReferenceEntry<K, V> next) {
-      throw new UnsupportedOperationException();
+    @SuppressWarnings("unchecked") // only ever holds a reference to this entry's types
+    public ValueReference<K, V> getValueReference() {
+      Object value = this.value;
+      return (value instanceof SeparateValueReference)
+          ? ((SeparateValueReference<K, V>) value).reference
+          : this;
     }
 
     @Override
-    public ReferenceEntry<K, V> getPreviousInAccessQueue() {
-      throw new UnsupportedOperationException();
+    public void setValueReference(ValueReference<K, V> valueReference) {
+      if (valueReference instanceof StrongInlineEntry) {
+        StrongInlineEntry<K, V> other = (StrongInlineEntry<K, V>) valueReference;
+        this.weight = other.weight;
+        this.value = other.value;
+      } else {
+        this.value = new SeparateValueReference<>(valueReference);
+      }
     }
 
-    @Override
-    public void setPreviousInAccessQueue(ReferenceEntry<K, V> previous) {
-      throw new UnsupportedOperationException();
+    // Guarded By Segment.this
+    void setInlineValue(V value, int weight) {
+      this.weight = weight;
+      this.value = value;
     }
 
-    // null write
+    // ValueReference methods, describing the inline value
 
     @Override
-    public long getWriteTime() {
-      throw new UnsupportedOperationException();
+    @SuppressWarnings("unchecked") // value is a V unless it is a SeparateValueReference
+    public V get() {
+      Object value = this.value;
+      return (value instanceof SeparateValueReference)
+          ? ((SeparateValueReference<K, V>) value).reference.get()
+          : (V) value;
     }
 
     @Override
-    public void setWriteTime(long time) {
-      throw new UnsupportedOperationException();
+    public int getWeight() {
+      return weight;
     }
 
     @Override
-    public ReferenceEntry<K, V> getNextInWriteQueue() {
-      throw new UnsupportedOperationException();
+    public ReferenceEntry<K, V> getEntry() {
+      return this;
     }
 
     @Override
-    public void setNextInWriteQueue(ReferenceEntry<K, V> next) {
-      throw new UnsupportedOperationException();
+    public ValueReference<K, V> copyFor(
+        ReferenceQueue<V> queue, @NullableDecl V value, ReferenceEntry<K, V> entry) {
+      return this;
     }
 
     @Override
-    public ReferenceEntry<K, V> getPreviousInWriteQueue() {
-      throw new UnsupportedOperationException();
+    public boolean isActive() {
+      return value != null;
     }
 
     @Override
-    public void setPreviousInWriteQueue(ReferenceEntry<K, V> previous) {
-      throw new UnsupportedOperationException();
+    public V waitForValue() {
+      return get();
     }
+  }
 
-    // The code below is exactly the same for each entry type.
+  /** Wraps a value reference explicitly set on a {@link StrongInlineEntry}. */
+  static final class SeparateValueReference<K, V> {
+    final ValueReference<K, V> reference;
 
-    final int hash;
-    @NullableDecl final ReferenceEntry<K, V> next;
-    volatile ValueReference<K, V> valueReference = unset();
+    SeparateValueReference(ValueReference<K, V> reference) {
+      this.reference = reference;
+    }
+  }
 
-    @Override
-    public ValueReference<K, V> getValueReference() {
-      return valueReference;
+  /**
+   * An inline entry which is linked in access order, but records no access time because entries
+   * do not expire after access. Used for caches which are only bounded by size or weight.
+   */
+  static final class StrongInlineAccessOrderEntry<K, V> extends StrongInlineEntry<K, V> {
+    StrongInlineAccessOrderEntry(K key, int hash, @NullableDecl ReferenceEntry<K, V> next) {
+      super(key, hash, next);
     }
 
     @Override
-    public void setValueReference(ValueReference<K, V> valueReference) {
+    public long getAccessTime() {
+      return 0;
+    }
+
+    @Override
+    public void setAccessTime(long time) {}
+
+    // The code below is exactly the same for each access entry type.
+
+    // Guarded By Segment.this
+    ReferenceEntry<K, V> nextAccess = nullEntry();
+
+    @Override
+    public ReferenceEntry<K, V> getNextInAccessQueue() {
+      return nextAccess;
+    }
+
+    @Override
+    public void setNextInAccessQueue(ReferenceEntry<K, V> next) {
+      this.nextAccess = next;
+    }
+
+    // Guarded By Segment.this
+    ReferenceEntry<K, V> previousAccess = nullEntry();
+
+    @Override
+    public ReferenceEntry<K, V> getPreviousInAccessQueue() {
+      return previousAccess;
+    }
+
+    @Override
+    public void setPreviousInAccessQueue(ReferenceEntry<K, V> previous) {
+      this.previousAccess = previous;
+    }
+  }
+
+  static final class StrongInlineAccessEntry<K, V> extends StrongInlineEntry<K, V> {
+    StrongInlineAccessEntry(K key, int hash, @NullableDecl ReferenceEntry<K, V> next) {
+      super(key, hash, next);
+    }
+
+    // The code below is exactly the same for each access entry type.
+
+    volatile long accessTime = Long.MAX_VALUE;
+
+    @Override
+    public long getAccessTime() {
+      return accessTime;
+    }
+
+    @Override
+    public void setAccessTime(long time) {
+      this.accessTime = time;
+    }
+
+    // Guarded By Segment.this
+    ReferenceEntry<K, V> nextAccess = nullEntry();
+
+    @Override
+    public ReferenceEntry<K, V> getNextInAccessQueue() {
+      return nextAccess;
+    }
+
+    @Override
+    public void setNextInAccessQueue(ReferenceEntry<K, V> next) {
+      this.nextAccess = next;
+    }
+
+    // Guarded By Segment.this
+    ReferenceEntry<K, V> previousAccess = nullEntry();
+
+    @Override
+    public ReferenceEntry<K, V> getPreviousInAccessQueue() {
+      return previousAccess;
+    }
+
+    @Override
+    public void setPreviousInAccessQueue(ReferenceEntry<K, V> previous) {
+      this.previousAccess = previous;
+    }
+  }
+
+  static final class StrongInlineWriteEntry<K, V> extends StrongInlineEntry<K, V> {
+    StrongInlineWriteEntry(K key, int hash, @NullableDecl ReferenceEntry<K, V> next) {
+      super(key, hash, next);
+    }
+
+    // The code below is exactly the same for each write entry type.
+
+    volatile long writeTime = Long.MAX_VALUE;
+
+    @Override
+    public long getWriteTime() {
+      return writeTime;
+    }
+
+    @Override
+    public void setWriteTime(long time) {
+      this.writeTime = time;
+    }
+
+    // Guarded By Segment.this
+    ReferenceEntry<K, V> nextWrite = nullEntry();
+
+    @Override
+    public ReferenceEntry<K, V> getNextInWriteQueue() {
+      return nextWrite;
+    }
+
+    @Override
+    public void setNextInWriteQueue(ReferenceEntry<K, V> next) {
+      this.nextWrite = next;
+    }
+
+    // Guarded By Segment.this
+    ReferenceEntry<K, V> previousWrite = nullEntry();
+
+    @Override
+    public ReferenceEntry<K, V> getPreviousInWriteQueue() {
+      return previousWrite;
+    }
+
+    @Override
+    public void setPreviousInWriteQueue(ReferenceEntry<K, V> previous) {
+      this.previousWrite = previous;
+    }
+  }
+
+  static final class StrongInlineAccessWriteEntry<K, V> extends StrongInlineEntry<K, V> {
+    StrongInlineAccessWriteEntry(K key, int hash, @NullableDecl ReferenceEntry<K, V> next) {
+      super(key, hash, next);
+    }
+
+    // The code below is exactly the same for each access entry type.
+
+    volatile long accessTime = Long.MAX_VALUE;
+
+    @Override
+    public long getAccessTime() {
+      return accessTime;
+    }
+
+    @Override
+    public void setAccessTime(long time) {
+      this.accessTime = time;
+    }
+
+    // Guarded By Segment.this
+    ReferenceEntry<K, V> nextAccess = nullEntry();
+
+    @Override
+    public ReferenceEntry<K, V> getNextInAccessQueue() {
+      return nextAccess;
+    }
+
+    @Override
+    public void setNextInAccessQueue(ReferenceEntry<K, V> next) {
+      this.nextAccess = next;
+    }
+
+    // Guarded By Segment.this
+    ReferenceEntry<K, V> previousAccess = nullEntry();
+
+    @Override
+    public ReferenceEntry<K, V> getPreviousInAccessQueue() {
+      return previousAccess;
+    }
+
+    @Override
+    public void setPreviousInAccessQueue(ReferenceEntry<K, V> previous) {
+      this.previousAccess = previous;
+    }
+
+    // The code below is exactly the same for each write entry type.
+
+    volatile long writeTime = Long.MAX_VALUE;
+
+    @Override
+    public long getWriteTime() {
+      return writeTime;
+    }
+
+    @Override
+    public void setWriteTime(long time) {
+      this.writeTime = time;
+    }
+
+    // Guarded By Segment.this
+    ReferenceEntry<K, V> nextWrite = nullEntry();
+
+    @Override
+    public ReferenceEntry<K, V> getNextInWriteQueue() {
+      return nextWrite;
+    }
+
+    @Override
+    public void setNextInWriteQueue(ReferenceEntry<K, V> next) {
+      this.nextWrite = next;
+    }
+
+    // Guarded By Segment.this
+    ReferenceEntry<K, V> previousWrite = nullEntry();
+
+    @Override
+    public ReferenceEntry<K, V> getPreviousInWriteQueue() {
+      return previousWrite;
+    }
+
+    @Override
+    public void setPreviousInWriteQueue(ReferenceEntry<K, V> previous) {
+      this.previousWrite = previous;
+    }
+  }
+
+  static final class StrongInlineAccessOrderWriteEntry<K, V> extends StrongInlineEntry<K, V> {
+    StrongInlineAccessOrderWriteEntry(K key, int hash, @NullableDecl ReferenceEntry<K, V> next) {
+      super(key, hash, next);
+    }
+
+    @Override
+    public long getAccessTime() {
+      return 0;
+    }
+
+    @Override
+    public void setAccessTime(long time) {}
+
+    // The code below is exactly the same for each access entry type.
+
+    // Guarded By Segment.this
+    ReferenceEntry<K, V> nextAccess = nullEntry();
+
+    @Override
+    public ReferenceEntry<K, V> getNextInAccessQueue() {
+      return nextAccess;
+    }
+
+    @Override
+    public void setNextInAccessQueue(ReferenceEntry<K, V> next) {
+      this.nextAccess = next;
+    }
+
+    // Guarded By Segment.this
+    ReferenceEntry<K, V> previousAccess = nullEntry();
+
+    @Override
+    public ReferenceEntry<K, V> getPreviousInAccessQueue() {
+      return previousAccess;
+    }
+
+    @Override
+    public void setPreviousInAccessQueue(ReferenceEntry<K, V> previous) {
+      this.previousAccess = previous;
+    }
+
+    // The code below is exactly the same for each write entry type.
+
+    volatile long writeTime = Long.MAX_VALUE;
+
+    @Override
+    public long getWriteTime() {
+      return writeTime;
+    }
+
+    @Override
+    public void setWriteTime(long time) {
+      this.writeTime = time;
+    }
+
+    // Guarded By Segment.this
+    ReferenceEntry<K, V> nextWrite = nullEntry();
+
+    @Override
+    public ReferenceEntry<K, V> getNextInWriteQueue() {
+      return nextWrite;
+    }
+
+    @Override
+    public void setNextInWriteQueue(ReferenceEntry<K, V> next) {
+      this.nextWrite = next;
+    }
+
+    // Guarded By Segment.this
+    ReferenceEntry<K, V> previousWrite = nullEntry();
+
+    @Override
+    public ReferenceEntry<K, V> getPreviousInWriteQueue() {
+      return previousWrite;
+    }
+
+    @Override
+    public void setPreviousInWriteQueue(ReferenceEntry<K, V> previous) {
+      this.previousWrite = previous;
+    }
+  }
+
+  /**
+   * Used for the keys of a {@link LongKeyCache}, which are stored as a primitive {@code long}
+   * rather than as a {@link Long}. Lookups through {@link Segment#getLong} compare the primitive
+   * directly; {@link #getKey} boxes on demand.
+   */
+  static class LongKeyEntry<K, V> extends AbstractReferenceEntry<K, V> {
+    final long key;
+
+    LongKeyEntry(long key, int hash, @NullableDecl ReferenceEntry<K, V> next) {
+      this.key = key;
+      this.hash = hash;
+      this.next = next;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked") // only created for caches whose keys are Longs
+    public K getKey() {
+      return (K) Long.valueOf(key);
+    }
+
+    // The code below is exactly the same for each entry type.
+
+    final int hash;
+    @NullableDecl final ReferenceEntry<K, V> next;
+    volatile ValueReference<K, V> valueReference = unset();
+
+    @Override
+    public ValueReference<K, V> getValueReference() {
+      return valueReference;
+    }
+
+    @Override
+    public void setValueReference(ValueReference<K, V> valueReference) {
+      this.valueReference = valueReference;
+    }
+
+    @Override
+    public int getHash() {
+      return hash;
+    }
+
+    @Override
+    public ReferenceEntry<K, V> getNext() {
+      return next;
+    }
+  }
+
+  static final class LongKeyAccessEntry<K, V> extends LongKeyEntry<K, V> {
+    LongKeyAccessEntry(long key, int hash, @NullableDecl ReferenceEntry<K, V> next) {
+      super(key, hash, next);
+    }
+
+    // The code below is exactly the same for each access entry type.
+
+    volatile long accessTime = Long.MAX_VALUE;
+
+    @Override
+    public long getAccessTime() {
+      return accessTime;
+    }
+
+    @Override
+    public void setAccessTime(long time) {
+      this.accessTime = time;
+    }
+
+    // Guarded By Segment.this
+    ReferenceEntry<K, V> nextAccess = nullEntry();
+
+    @Override
+    public ReferenceEntry<K, V> getNextInAccessQueue() {
+      return nextAccess;
+    }
+
+    @Override
+    public void setNextInAccessQueue(ReferenceEntry<K, V> next) {
+      this.nextAccess = next;
+    }
+
+    // Guarded By Segment.this
+    ReferenceEntry<K, V> previousAccess = nullEntry();
+
+    @Override
+    public ReferenceEntry<K, V> getPreviousInAccessQueue() {
+      return previousAccess;
+    }
+
+    @Override
+    public void setPreviousInAccessQueue(ReferenceEntry<K, V> previous) {
+      this.previousAccess = previous;
+    }
+  }
+
+  static final class LongKeyWriteEntry<K, V> extends LongKeyEntry<K, V> {
+    LongKeyWriteEntry(long key, int hash, @NullableDecl ReferenceEntry<K, V> next) {
+      super(key, hash, next);
+    }
+
+    // The code below is exactly the same for each write entry type.
+
+    volatile long writeTime = Long.MAX_VALUE;
+
+    @Override
+    public long getWriteTime() {
+      return writeTime;
+    }
+
+    @Override
+    public void setWriteTime(long time) {
+      this.writeTime = time;
+    }
+
+    // Guarded By Segment.this
+    ReferenceEntry<K, V> nextWrite = nullEntry();
+
+    @Override
+    public ReferenceEntry<K, V> getNextInWriteQueue() {
+      return nextWrite;
+    }
+
+    @Override
+    public void setNextInWriteQueue(ReferenceEntry<K, V> next) {
+      this.nextWrite = next;
+    }
+
+    // Guarded By Segment.this
+    ReferenceEntry<K, V> previousWrite = nullEntry();
+
+    @Override
+    public ReferenceEntry<K, V> getPreviousInWriteQueue() {
+      return previousWrite;
+    }
+
+    @Override
+    public void setPreviousInWriteQueue(ReferenceEntry<K, V> previous) {
+      this.previousWrite = previous;
+    }
+  }
+
+  static final class LongKeyAccessWriteEntry<K, V> extends LongKeyEntry<K, V> {
+    LongKeyAccessWriteEntry(long key, int hash, @NullableDecl ReferenceEntry<K, V> next) {
+      super(key, hash, next);
+    }
+
+    // The code below is exactly the same for each access entry type.
+
+    volatile long accessTime = Long.MAX_VALUE;
+
+    @Override
+    public long getAccessTime() {
+      return accessTime;
+    }
+
+    @Override
+    public void setAccessTime(long time) {
+      this.accessTime = time;
+    }
+
+    // Guarded By Segment.this
+    ReferenceEntry<K, V> nextAccess = nullEntry();
+
+    @Override
+    public ReferenceEntry<K, V> getNextInAccessQueue() {
+      return nextAccess;
+    }
+
+    @Override
+    public void setNextInAccessQueue(ReferenceEntry<K, V> next) {
+      this.nextAccess = next;
+    }
+
+    // Guarded By Segment.this
+    ReferenceEntry<K, V> previousAccess = nullEntry();
+
+    @Override
+    public ReferenceEntry<K, V> getPreviousInAccessQueue() {
+      return previousAccess;
+    }
+
+    @Override
+    public void setPreviousInAccessQueue(ReferenceEntry<K, V> previous) {
+      this.previousAccess = previous;
+    }
+
+    // The code below is exactly the same for each write entry type.
+
+    volatile long writeTime = Long.MAX_VALUE;
+
+    @Override
+    public long getWriteTime() {
+      return writeTime;
+    }
+
+    @Override
+    public void setWriteTime(long time) {
+      this.writeTime = time;
+    }
+
+    // Guarded By Segment.this
+    ReferenceEntry<K, V> nextWrite = nullEntry();
+
+    @Override
+    public ReferenceEntry<K, V> getNextInWriteQueue() {
+      return nextWrite;
+    }
+
+    @Override
+    public void setNextInWriteQueue(ReferenceEntry<K, V> next) {
+      this.nextWrite = next;
+    }
+
+    // Guarded By Segment.this
+    ReferenceEntry<K, V> previousWrite = nullEntry();
+
+    @Override
+    public ReferenceEntry<K, V> getPreviousInWriteQueue() {
+      return previousWrite;
+    }
+
+    @Override
+    public void setPreviousInWriteQueue(ReferenceEntry<K, V> previous) {
+      this.previousWrite = previous;
+    }
+  }
+
+  /** Used for weakly-referenced keys. */
+  static class WeakEntry<K, V> extends WeakReference<K> implements ReferenceEntry<K, V> {
+    WeakEntry(ReferenceQueue<K> queue, K key, int hash, @NullableDecl ReferenceEntry<K, V> next) {
+      super(key, queue);
+      this.hash = hash;
+      this.next = next;
+    }
+
+    @Override
+    public K getKey() {
+      return get();
+    }
+
+    /*
+     * It'd be nice to get these for free from AbstractReferenceEntry, but we're already extending
+     * WeakReference<K>.
+     */
+
+    // null access
+
+    @Override
+    public long getAccessTime() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void setAccessTime(long time) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ReferenceEntry<K, V> getNextInAccessQueue() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void setNextInAccessQueue(ReferenceEntry<K, V> next) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ReferenceEntry<K, V> getPreviousInAccessQueue() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void setPreviousInAccessQueue(ReferenceEntry<K, V> previous) {
+      throw new UnsupportedOperationException();
+    }
+
+    // null write
+
+    @Override
+    public long getWriteTime() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void setWriteTime(long time) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ReferenceEntry<K, V> getNextInWriteQueue() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void setNextInWriteQueue(ReferenceEntry<K, V> next) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ReferenceEntry<K, V> getPreviousInWriteQueue() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void setPreviousInWriteQueue(ReferenceEntry<K, V> previous) {
+      throw new UnsupportedOperationException();
+    }
+
+    // The code below is exactly the same for each entry type.
+
+    final int hash;
+    @NullableDecl final ReferenceEntry<K, V> next;
+    volatile ValueReference<K, V> valueReference = unset();
+
+    @Override
+    public ValueReference<K, V> getValueReference() {
+      return valueReference;
+    }
+
+    @Override
+    public void setValueReference(ValueReference<K, V> valueReference) {
       this.valueReference = valueReference;
     }
 
@@ -1618,7 +2567,17 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
   @VisibleForTesting
   ValueReference<K, V> newValueReference(ReferenceEntry<K, V> entry, V value, int weight) {
     int hash = entry.getHash();
-    return valueStrength.referenceValue(segmentFor(hash), entry, checkNotNull(value), weight);
+    return referenceValue(segmentFor(hash), entry, checkNotNull(value), weight);
+  }
+
+  /**
+   * Creates the reference to a value of an entry which does not hold its value inline. By default
+   * this is a reference of {@link #valueStrength}; subclasses may share references between entries.
+   */
+  // Guarded By Segment.this
+  ValueReference<K, V> referenceValue(
+      Segment<K, V> segment, ReferenceEntry<K, V> entry, V value, int weight) {
+    return valueStrength.referenceValue(segment, entry, value, weight);
   }
 
   int hash(@NullableDecl Object key) {
@@ -1626,6 +2585,26 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
     return rehash(h);
   }
 
+  /** Returns the hash of a {@link Long} key without boxing it. Assumes equals-based equivalence. */
+  static int hash(long key) {
+    return rehash(Long.hashCode(key));
+  }
+
+  /** Returns the hash of a {@link ByteKeyCache} key given as a range of {@code buf}. */
+  static int hash(byte[] buf, int off, int len) {
+    return rehash(Equivalence.byteArrays().hash(buf, off, len));
+  }
+
+  /** Returns the hash of a {@link ByteKeyCache} key given as the remaining bytes of {@code buf}. */
+  static int hash(ByteBuffer buf) {
+    return rehash(Equivalence.byteArrays().hash(buf));
+  }
+
+  @SuppressWarnings("unchecked") // only used for the byte[] keys of a ByteKeyCache
+  private static Equivalence<Object> byteArrayEquivalence() {
+    return (Equivalence<Object>) (Equivalence<?>) Equivalence.byteArrays();
+  }
+
   void reclaimValue(ValueReference<K, V> valueReference) {
     ReferenceEntry<K, V> entry = valueReference.getEntry();
     int hash = entry.getHash();
@@ -1686,9 +2665,15 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
 
   // expiration
 
-  /** Returns true if the entry has expired. */
+  /**
+   * Returns true if the entry has expired, or belongs to an invalidated generation of a {@link
+   * NamespacedCache}.
+   */
   boolean isExpired(ReferenceEntry<K, V> entry, long now) {
     checkNotNull(entry);
+    if (generations != null && generations.isStale(entry.getKey())) {
+      return true;
+    }
     if (expiresAfterAccess() && (now - entry.getAccessTime() >= expireAfterAccessNanos)) {
       return true;
     }
@@ -1698,6 +2683,20 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
     return false;
   }
 
+  /**
+   * Returns true if an entry last accessed at {@code accessTime} and last written at {@code
+   * writeTime} would have expired by {@code now}.
+   */
+  boolean isExpired(long accessTime, long writeTime, long now) {
+    if (expiresAfterAccess() && (now - accessTime >= expireAfterAccessNanos)) {
+      return true;
+    }
+    if (expiresAfterWrite() && (now - writeTime >= expireAfterWriteNanos)) {
+      return true;
+    }
+    return false;
+  }
+
   // queues
 
   // Guarded By Segment.this
@@ -1794,6 +2793,20 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
     /** The number of live elements in this segment's region. */
     volatile int count;
 
+    /**
+     * Incremented as the lock is released after entries were written or removed, when the map has
+     * {@linkplain FrontCache front caches}. Only changes made while holding the lock are counted.
+     */
+    volatile int version;
+
+    /** The modCount when the version was last incremented. */
+    @GuardedBy("this")
+    int versionedModCount;
+
+    /** Whether a value was written, or the table replaced, since the version was incremented. */
+    @GuardedBy("this")
+    boolean versionChanged;
+
     /** The weight of the live elements in this segment's region. */
     @GuardedBy("this")
     long totalWeight;
@@ -1818,6 +2831,20 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
     /** The maximum weight of this segment. UNSET_INT if there is no maximum. */
     final long maxSegmentWeight;
 
+    /**
+     * The maximum weight currently enforced by eviction, which is lower than {@link
+     * #maxSegmentWeight} while the heap is under memory pressure.
+     */
+    volatile long evictionWeightLimit;
+
+    /** The next table index to be swept for entries of invalidated generations. */
+    @GuardedBy("this")
+    int sweepIndex;
+
+    /** The {@linkplain Generations#epoch epoch} at which the current or last sweep started. */
+    @GuardedBy("this")
+    long sweepEpoch;
+
     /**
      * The key reference queue contains entries whose keys have been garbage collected, and which
      * need to be cleaned up internally.
@@ -1848,14 +2875,14 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
      * tail of the queue on write.
      */
     @GuardedBy("this")
-    final Queue<ReferenceEntry<K, V>> writeQueue;
+    Queue<ReferenceEntry<K, V>> writeQueue;
 
     /**
      * A queue of elements currently in the map, ordered by access time. Elements are added to the
      * tail of the queue on access (note that writes count as accesses).
      */
     @GuardedBy("this")
-    final Queue<ReferenceEntry<K, V>> accessQueue;
+    Queue<ReferenceEntry<K, V>> accessQueue;
 
     /** Accumulates cache statistics. */
     final StatsCounter statsCounter;
@@ -1867,6 +2894,7 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
         StatsCounter statsCounter) {
       this.map = map;
       this.maxSegmentWeight = maxSegmentWeight;
+      this.evictionWeightLimit = maxSegmentWeight;
       this.statsCounter = checkNotNull(statsCounter);
       initTable(newEntryArray(initialCapacity));
 
@@ -1879,6 +2907,11 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
               ? new ConcurrentLinkedQueue<ReferenceEntry<K, V>>()
               : LocalCache.<ReferenceEntry<K, V>>discardingQueue();
 
+      initQueues();
+    }
+
+    @GuardedBy("this")
+    void initQueues() {
       writeQueue =
           map.usesWriteQueue()
               ? new WriteQueue<K, V>()
@@ -1903,6 +2936,17 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
       this.table = newTable;
     }
 
+    /** Releases the lock, first publishing a new version if entries changed while it was held. */
+    @Override
+    public void unlock() {
+      if (map.frontCaches != null && (versionChanged || versionedModCount != modCount)) {
+        versionChanged = false;
+        versionedModCount = modCount;
+        version++; // write-volatile
+      }
+      super.unlock();
+    }
+
     @GuardedBy("this")
     ReferenceEntry<K, V> newEntry(K key, int hash, @NullableDecl ReferenceEntry<K, V> next) {
       return map.entryFactory.newEntry(this, checkNotNull(key), hash, next);
@@ -1935,12 +2979,16 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
     @GuardedBy("this")
     void setValue(ReferenceEntry<K, V> entry, K key, V value, long now) {
       ValueReference<K, V> previous = entry.getValueReference();
+      versionChanged = true;
       int weight = map.weigher.weigh(key, value);
       checkState(weight >= 0, "Weights must be non-negative");
 
-      ValueReference<K, V> valueReference =
-          map.valueStrength.referenceValue(this, entry, value, weight);
-      entry.setValueReference(valueReference);
+      if (entry instanceof StrongInlineEntry) {
+        ((StrongInlineEntry<K, V>) entry).setInlineValue(value, weight);
+      } else {
+        ValueReference<K, V> valueReference = map.referenceValue(this, entry, value, weight);
+        entry.setValueReference(valueReference);
+      }
       recordWrite(entry, weight, now);
     }
 
@@ -1951,7 +2999,7 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
                     long now = map.ticker.read();
                     ReferenceEntry<K, V> e = getLiveEntry(key, hash, now);
                     if (e == null) {
-                        return null;
+                        return traceMiss(hash);
                     }
 
                     V value = e.getValueReference().get();
@@ -1961,7 +3009,7 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
                     }
                     tryDrainReferenceQueues();
                 }
-                return null;
+                return traceMiss(hash);
             } finally {
                 postReadCleanup();
             }
@@ -1969,6 +3017,144 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
 
 
 
+    /**
+     * Like {@link #get(Object, int)}, but returns the live entry whose value was read, for callers
+     * which also keep the entry. The read is recorded as by {@code get}.
+     */
+    @NullableDecl
+    ReferenceEntry<K, V> readLiveEntry(Object key, int hash) {
+      try {
+        if (count != 0) { // read-volatile
+          long now = map.ticker.read();
+          ReferenceEntry<K, V> e = getLiveEntry(key, hash, now);
+          if (e == null) {
+            traceMiss(hash);
+            return null;
+          }
+
+          if (e.getValueReference().get() != null) {
+            recordRead(e, now);
+            return e;
+          }
+          tryDrainReferenceQueues();
+        }
+        traceMiss(hash);
+        return null;
+      } finally {
+        postReadCleanup();
+      }
+    }
+
+    /** Like {@link #get(Object, int)}, at a time read once by the caller for a batch of lookups. */
+    @NullableDecl
+    V get(Object key, int hash, long now) {
+      try {
+        if (count != 0) { // read-volatile
+          return readValue(key, hash, now);
+        }
+        return traceMiss(hash);
+      } finally {
+        postReadCleanup();
+      }
+    }
+
+    /**
+     * The lookup of {@link #get(Object, int, long)} and {@link #getAll}: returns the live value of
+     * {@code key}, recording the read or tracing the miss. The caller accounts for the cleanup.
+     */
+    @NullableDecl
+    private V readValue(Object key, int hash, long now) {
+      ReferenceEntry<K, V> e = getLiveEntry(key, hash, now);
+      if (e != null) {
+        V value = e.getValueReference().get();
+        if (value != null) {
+          recordRead(e, now);
+          return value;
+        }
+        tryDrainReferenceQueues();
+      }
+      return traceMiss(hash);
+    }
+
+    /** Like {@link #get(Object, int)}, for the unboxed key of a {@link LongKeyCache}. */
+    @NullableDecl
+    V getLong(long key, int hash) {
+      try {
+        if (count != 0) { // read-volatile
+          long now = map.ticker.read();
+          ReferenceEntry<K, V> e = getLongEntry(key, hash);
+          if (e == null) {
+            return traceMiss(hash);
+          } else if (map.isExpired(e, now)) {
+            tryExpireEntries(now);
+            return traceMiss(hash);
+          }
+
+          V value = e.getValueReference().get();
+          if (value != null) {
+            recordRead(e, now);
+            return value;
+          }
+          tryDrainReferenceQueues();
+        }
+        return traceMiss(hash);
+      } finally {
+        postReadCleanup();
+      }
+    }
+
+    /** Like {@link #get(Object, int)}, for a {@link ByteKeyCache} key given as a range of bytes. */
+    @NullableDecl
+    V getBytes(byte[] buf, int off, int len, int hash) {
+      try {
+        if (count != 0) { // read-volatile
+          V value = getLiveBytesValue(getBytesEntry(buf, off, len, hash));
+          if (value != null) {
+            return value;
+          }
+        }
+        return traceMiss(hash);
+      } finally {
+        postReadCleanup();
+      }
+    }
+
+    /** Like {@link #get(Object, int)}, for a {@link ByteKeyCache} key given as a buffer. */
+    @NullableDecl
+    V getBytes(ByteBuffer buf, int hash) {
+      try {
+        if (count != 0) { // read-volatile
+          V value = getLiveBytesValue(getBytesEntry(buf, hash));
+          if (value != null) {
+            return value;
+          }
+        }
+        return traceMiss(hash);
+      } finally {
+        postReadCleanup();
+      }
+    }
+
+    @NullableDecl
+    private V getLiveBytesValue(@NullableDecl ReferenceEntry<K, V> e) {
+      if (e == null) {
+        return null;
+      }
+      long now = map.ticker.read();
+      if (map.isExpired(e, now)) {
+        tryExpireEntries(now);
+        return null;
+      }
+
+      V value = e.getValueReference().get();
+      if (value != null) {
+        recordRead(e, now);
+        return value;
+      }
+      tryDrainReferenceQueues();
+      return null;
+    }
+
     /** Cleanup collected entries when the lock is available. */
     void tryDrainReferenceQueues() {
       if (tryLock()) {
@@ -2050,12 +3236,45 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
      * <p>Note: locked reads should use {@link #recordLockedRead}.
      */
     void recordRead(ReferenceEntry<K, V> entry, long now) {
+      AccessTraceRecorder recorder = map.traceRecorder;
+      if (recorder != null && recorder.samples(entry.getHash())) {
+        recorder.record(
+            entry.getHash(), AccessTraceRecorder.HIT, entry.getValueReference().getWeight());
+      }
+      recordUntracedRead(entry, now);
+    }
+
+    /**
+     * Like {@link #recordRead}, for reads which were already passed to the cache's {@linkplain
+     * CacheBuilder#traceRecorder trace recorder}, if any, such as the hits of a front cache.
+     */
+    void recordUntracedRead(ReferenceEntry<K, V> entry, long now) {
       if (map.recordsAccess()) {
         entry.setAccessTime(now);
       }
       recencyQueue.add(entry);
     }
 
+    /** Passes a lookup of {@code hash} which found no live entry to the trace recorder, if any. */
+    @NullableDecl
+    V traceMiss(int hash) {
+      AccessTraceRecorder recorder = map.traceRecorder;
+      if (recorder != null && recorder.samples(hash)) {
+        recorder.record(hash, AccessTraceRecorder.MISS, 0);
+      }
+      return null;
+    }
+
+    /** Passes a write of {@code entry}'s current value to the trace recorder, if any. */
+    @GuardedBy("this")
+    void tracePut(ReferenceEntry<K, V> entry) {
+      AccessTraceRecorder recorder = map.traceRecorder;
+      if (recorder != null && recorder.samples(entry.getHash())) {
+        recorder.record(
+            entry.getHash(), AccessTraceRecorder.PUT, entry.getValueReference().getWeight());
+      }
+    }
+
     /**
      * Updates the eviction metadata that {@code entry} was just read. This currently amounts to
      * adding {@code entry} to relevant eviction lists.
@@ -2104,8 +3323,9 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
         // An entry may be in the recency queue despite it being removed from
         // the map . This can occur when the entry was concurrently read while a
         // writer is removing it from the segment or after a clear has removed
-        // all of the segment's entries.
-        if (accessQueue.contains(e)) {
+        // all of the segment's entries. A fast clear leaves the queue links of the
+        // discarded entries intact, so they must also be looked up in the table.
+        if (accessQueue.contains(e) && (map.clearExecutor == null || isInTable(e))) {
           accessQueue.add(e);
         }
       }
@@ -2140,6 +3360,38 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
           throw new AssertionError();
         }
       }
+      if (map.generations != null) {
+        sweepStaleGenerations();
+      }
+    }
+
+    /**
+     * Removes the entries of invalidated generations from up to {@link #SWEEP_MAX} buckets,
+     * continuing from where the previous call left off. A pass over the whole table starts whenever
+     * a namespace was invalidated since the previous pass started.
+     */
+    @GuardedBy("this")
+    void sweepStaleGenerations() {
+      if (sweepIndex == 0) {
+        long epoch = map.generations.epoch();
+        if (sweepEpoch == epoch) {
+          return;
+        }
+        sweepEpoch = epoch;
+      }
+      AtomicReferenceArray<ReferenceEntry<K, V>> table = this.table;
+      int end = Math.min(table.length(), sweepIndex + SWEEP_MAX);
+      for (int i = sweepIndex; i < end; i++) {
+        for (ReferenceEntry<K, V> e = getAcquire(table, i); e != null; ) {
+          // entries after a removed one are left in place, so the successor is still current
+          ReferenceEntry<K, V> next = e.getNext();
+          if (map.generations.isStale(e.getKey())) {
+            removeEntry(e, e.getHash(), RemovalCause.EXPIRED);
+          }
+          e = next;
+        }
+      }
+      sweepIndex = (end == table.length()) ? 0 : end;
     }
 
     // eviction
@@ -2151,6 +3403,9 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
       if (cause.wasEvicted()) {
         statsCounter.recordEviction();
       }
+      if (map.tagIndex != null && key != null && cause != RemovalCause.REPLACED) {
+        map.tagIndex.remove(key);
+      }
       if (map.removalNotificationQueue != DISCARDING_QUEUE) {
         RemovalNotification<K, V> notification = RemovalNotification.create(key, value, cause);
         map.removalNotificationQueue.offer(notification);
@@ -2171,15 +3426,17 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
 
       drainRecencyQueue();
 
+      long limit = evictionWeightLimit;
+
       // If the newest entry by itself is too heavy for the segment, don't bother evicting
       // anything else, just that
-      if (newest.getValueReference().getWeight() > maxSegmentWeight) {
+      if (newest.getValueReference().getWeight() > limit) {
         if (!removeEntry(newest, newest.getHash(), RemovalCause.SIZE)) {
           throw new AssertionError();
         }
       }
 
-      while (totalWeight > maxSegmentWeight) {
+      while (totalWeight > limit) {
         ReferenceEntry<K, V> e = getNextEvictable();
         if (!removeEntry(e, e.getHash(), RemovalCause.SIZE)) {
           throw new AssertionError();
@@ -2187,6 +3444,25 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
       }
     }
 
+    /** Sets the weight enforced by eviction, evicting entries until it is satisfied. */
+    void setEvictionWeightLimit(long limit) {
+      lock();
+      try {
+        preWriteCleanup(map.ticker.read());
+        evictionWeightLimit = limit;
+        drainRecencyQueue();
+        while (totalWeight > limit) {
+          ReferenceEntry<K, V> e = getNextEvictable();
+          if (!removeEntry(e, e.getHash(), RemovalCause.SIZE)) {
+            throw new AssertionError();
+          }
+        }
+      } finally {
+        unlock();
+        postWriteCleanup();
+      }
+    }
+
     // TODO(fry): instead implement this with an eviction head
     @GuardedBy("this")
     ReferenceEntry<K, V> getNextEvictable() {
@@ -2203,13 +3479,17 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
     ReferenceEntry<K, V> getFirst(int hash) {
       // read this volatile field only once
       AtomicReferenceArray<ReferenceEntry<K, V>> table = this.table;
-      return table.get(hash & (table.length() - 1));
+      return getAcquire(table, hash & (table.length() - 1));
     }
 
     // Specialized implementations of map methods
 
     @NullableDecl
     ReferenceEntry<K, V> getEntry(Object key, int hash) {
+      if (map.longKeys && key instanceof Long) {
+        // compare unboxed, rather than boxing the key of each entry
+        return getLongEntry((Long) key, hash);
+      }
       for (ReferenceEntry<K, V> e = getFirst(hash); e != null; e = e.getNext()) {
         if (e.getHash() != hash) {
           continue;
@@ -2229,6 +3509,57 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
       return null;
     }
 
+    /**
+     * Returns the key of {@code e} if it is live and equivalent to {@code key}, or null otherwise.
+     * The keys of a {@link LongKeyCache} are compared unboxed, so that only a matching entry's key
+     * is boxed.
+     */
+    @NullableDecl
+    K matchingKey(ReferenceEntry<K, V> e, Object key, int hash) {
+      if (e.getHash() != hash) {
+        return null;
+      }
+      if (map.longKeys && key instanceof Long) {
+        return (((LongKeyEntry<K, V>) e).key == (Long) key) ? e.getKey() : null;
+      }
+      K entryKey = e.getKey();
+      return (entryKey != null && map.keyEquivalence.equivalent(key, entryKey)) ? entryKey : null;
+    }
+
+    /** Like {@link #getEntry}, for the unboxed key of a {@link LongKeyCache}. */
+    @NullableDecl
+    ReferenceEntry<K, V> getLongEntry(long key, int hash) {
+      for (ReferenceEntry<K, V> e = getFirst(hash); e != null; e = e.getNext()) {
+        if (e.getHash() == hash && ((LongKeyEntry<K, V>) e).key == key) {
+          return e;
+        }
+      }
+      return null;
+    }
+
+    /** Like {@link #getEntry}, for a {@link ByteKeyCache} key given as a range of bytes. */
+    @NullableDecl
+    ReferenceEntry<K, V> getBytesEntry(byte[] buf, int off, int len, int hash) {
+      for (ReferenceEntry<K, V> e = getFirst(hash); e != null; e = e.getNext()) {
+        if (e.getHash() == hash
+            && Equivalence.byteArrays().equivalent((byte[]) e.getKey(), buf, off, len)) {
+          return e;
+        }
+      }
+      return null;
+    }
+
+    /** Like {@link #getEntry}, for a {@link ByteKeyCache} key given as a buffer. */
+    @NullableDecl
+    ReferenceEntry<K, V> getBytesEntry(ByteBuffer buf, int hash) {
+      for (ReferenceEntry<K, V> e = getFirst(hash); e != null; e = e.getNext()) {
+        if (e.getHash() == hash && Equivalence.byteArrays().equivalent((byte[]) e.getKey(), buf)) {
+          return e;
+        }
+      }
+      return null;
+    }
+
     @NullableDecl
     ReferenceEntry<K, V> getLiveEntry(Object key, int hash, long now) {
       ReferenceEntry<K, V> e = getEntry(key, hash);
@@ -2292,7 +3623,7 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
           AtomicReferenceArray<ReferenceEntry<K, V>> table = this.table;
           int length = table.length();
           for (int i = 0; i < length; ++i) {
-            for (ReferenceEntry<K, V> e = table.get(i); e != null; e = e.getNext()) {
+            for (ReferenceEntry<K, V> e = getAcquire(table, i); e != null; e = e.getNext()) {
               V entryValue = getLiveValue(e, now);
               if (entryValue == null) {
                 continue;
@@ -2316,73 +3647,81 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
       try {
         long now = map.ticker.read();
         preWriteCleanup(now);
+        return putLocked(key, hash, value, onlyIfAbsent, now);
+      } finally {
+        unlock();
+        postWriteCleanup();
+      }
+    }
 
-        int newCount = this.count + 1;
-        if (newCount > this.threshold) { // ensure capacity
-          expand();
-          newCount = this.count + 1;
-        }
+    /** The body of {@link #put}, for a caller which holds the lock and has cleaned up. */
+    @GuardedBy("this")
+    @NullableDecl
+    V putLocked(K key, int hash, V value, boolean onlyIfAbsent, long now) {
+      int newCount = this.count + 1;
+      if (newCount > this.threshold) { // ensure capacity
+        expand();
+        newCount = this.count + 1;
+      }
 
-        AtomicReferenceArray<ReferenceEntry<K, V>> table = this.table;
-        int index = hash & (table.length() - 1);
-        ReferenceEntry<K, V> first = table.get(index);
+      AtomicReferenceArray<ReferenceEntry<K, V>> table = this.table;
+      int index = hash & (table.length() - 1);
+      ReferenceEntry<K, V> first = getAcquire(table, index);
 
-        // Look for an existing entry.
-        for (ReferenceEntry<K, V> e = first; e != null; e = e.getNext()) {
-          K entryKey = e.getKey();
-          if (e.getHash() == hash
-              && entryKey != null
-              && map.keyEquivalence.equivalent(key, entryKey)) {
-            // We found an existing entry.
+      // Look for an existing entry.
+      for (ReferenceEntry<K, V> e = first; e != null; e = e.getNext()) {
+        K entryKey = matchingKey(e, key, hash);
+        if (entryKey != null) {
+          // We found an existing entry.
 
-            ValueReference<K, V> valueReference = e.getValueReference();
-            V entryValue = valueReference.get();
+          ValueReference<K, V> valueReference = e.getValueReference();
+          V entryValue = valueReference.get();
 
-            if (entryValue == null) {
-              ++modCount;
-              if (valueReference.isActive()) {
-                enqueueNotification(
-                    key, hash, entryValue, valueReference.getWeight(), RemovalCause.COLLECTED);
-                setValue(e, key, value, now);
-                newCount = this.count; // count remains unchanged
-              } else {
-                setValue(e, key, value, now);
-                newCount = this.count + 1;
-              }
-              this.count = newCount; // write-volatile
-              evictEntries(e);
-              return null;
-            } else if (onlyIfAbsent) {
-              // Mimic
-              // "if (!map.containsKey(key)) ...
-              // else return map.get(key);
-              recordLockedRead(e, now);
-              return entryValue;
-            } else {
-              // clobber existing entry, count remains unchanged
-              ++modCount;
+          if (entryValue == null) {
+            ++modCount;
+            if (valueReference.isActive()) {
               enqueueNotification(
-                  key, hash, entryValue, valueReference.getWeight(), RemovalCause.REPLACED);
+                  key, hash, entryValue, valueReference.getWeight(), RemovalCause.COLLECTED);
               setValue(e, key, value, now);
-              evictEntries(e);
-              return entryValue;
+              tracePut(e);
+              newCount = this.count; // count remains unchanged
+            } else {
+              setValue(e, key, value, now);
+              tracePut(e);
+              newCount = this.count + 1;
             }
+            this.count = newCount; // write-volatile
+            evictEntries(e);
+            return null;
+          } else if (onlyIfAbsent) {
+            // Mimic
+            // "if (!map.containsKey(key)) ...
+            // else return map.get(key);
+            recordLockedRead(e, now);
+            return entryValue;
+          } else {
+            // clobber existing entry, count remains unchanged
+            ++modCount;
+            enqueueNotification(
+                key, hash, entryValue, valueReference.getWeight(), RemovalCause.REPLACED);
+            setValue(e, key, value, now);
+            tracePut(e);
+            evictEntries(e);
+            return entryValue;
           }
         }
-
-        // Create a new entry.
-        ++modCount;
-        ReferenceEntry<K, V> newEntry = newEntry(key, hash, first);
-        setValue(newEntry, key, value, now);
-        table.set(index, newEntry);
-        newCount = this.count + 1;
-        this.count = newCount; // write-volatile
-        evictEntries(newEntry);
-        return null;
-      } finally {
-        unlock();
-        postWriteCleanup();
       }
+
+      // Create a new entry.
+      ++modCount;
+      ReferenceEntry<K, V> newEntry = newEntry(key, hash, first);
+      setValue(newEntry, key, value, now);
+      tracePut(newEntry);
+      setRelease(table, index, newEntry);
+      newCount = this.count + 1;
+      this.count = newCount; // write-volatile
+      evictEntries(newEntry);
+      return null;
     }
 
     /** Expands the table if possible. */
@@ -2419,7 +3758,7 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
 
           // Single node on list
           if (next == null) {
-            newTable.set(headIndex, head);
+            setRelease(newTable, headIndex, head);
           } else {
             // Reuse the consecutive sequence of nodes with the same target
             // index from the end of the list. tail points to the first
@@ -2434,15 +3773,15 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
                 tail = e;
               }
             }
-            newTable.set(tailIndex, tail);
+            setRelease(newTable, tailIndex, tail);
 
             // Clone nodes leading up to the tail.
             for (ReferenceEntry<K, V> e = head; e != tail; e = e.getNext()) {
               int newIndex = e.getHash() & newMask;
-              ReferenceEntry<K, V> newNext = newTable.get(newIndex);
+              ReferenceEntry<K, V> newNext = getAcquire(newTable, newIndex);
               ReferenceEntry<K, V> newFirst = copyEntry(e, newNext);
               if (newFirst != null) {
-                newTable.set(newIndex, newFirst);
+                setRelease(newTable, newIndex, newFirst);
               } else {
                 removeCollectedEntry(e);
                 newCount--;
@@ -2452,6 +3791,7 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
         }
       }
       table = newTable;
+      versionChanged = true;
       this.count = newCount;
     }
 
@@ -2463,13 +3803,11 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
 
         AtomicReferenceArray<ReferenceEntry<K, V>> table = this.table;
         int index = hash & (table.length() - 1);
-        ReferenceEntry<K, V> first = table.get(index);
+        ReferenceEntry<K, V> first = getAcquire(table, index);
 
         for (ReferenceEntry<K, V> e = first; e != null; e = e.getNext()) {
-          K entryKey = e.getKey();
-          if (e.getHash() == hash
-              && entryKey != null
-              && map.keyEquivalence.equivalent(key, entryKey)) {
+          K entryKey = matchingKey(e, key, hash);
+          if (entryKey != null) {
             ValueReference<K, V> valueReference = e.getValueReference();
             V entryValue = valueReference.get();
             if (entryValue == null) {
@@ -2487,7 +3825,7 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
                         valueReference,
                         RemovalCause.COLLECTED);
                 newCount = this.count - 1;
-                table.set(index, newFirst);
+                setRelease(table, index, newFirst);
                 this.count = newCount; // write-volatile
               }
               return false;
@@ -2525,13 +3863,11 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
 
         AtomicReferenceArray<ReferenceEntry<K, V>> table = this.table;
         int index = hash & (table.length() - 1);
-        ReferenceEntry<K, V> first = table.get(index);
+        ReferenceEntry<K, V> first = getAcquire(table, index);
 
         for (ReferenceEntry<K, V> e = first; e != null; e = e.getNext()) {
-          K entryKey = e.getKey();
-          if (e.getHash() == hash
-              && entryKey != null
-              && map.keyEquivalence.equivalent(key, entryKey)) {
+          K entryKey = matchingKey(e, key, hash);
+          if (entryKey != null) {
             ValueReference<K, V> valueReference = e.getValueReference();
             V entryValue = valueReference.get();
             if (entryValue == null) {
@@ -2549,7 +3885,7 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
                         valueReference,
                         RemovalCause.COLLECTED);
                 newCount = this.count - 1;
-                table.set(index, newFirst);
+                setRelease(table, index, newFirst);
                 this.count = newCount; // write-volatile
               }
               return null;
@@ -2577,47 +3913,143 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
       try {
         long now = map.ticker.read();
         preWriteCleanup(now);
+        return removeLocked(key, hash);
+      } finally {
+        unlock();
+        postWriteCleanup();
+      }
+    }
 
-        int newCount = this.count - 1;
-        AtomicReferenceArray<ReferenceEntry<K, V>> table = this.table;
-        int index = hash & (table.length() - 1);
-        ReferenceEntry<K, V> first = table.get(index);
+    /**
+     * Puts the entries {@code from} to {@code to} of a {@link SegmentBatch}, all of which belong to
+     * this segment, under a single acquisition of the lock.
+     */
+    @SuppressWarnings("unchecked") // the batch was built from a Map<? extends K, ? extends V>
+    void putAll(SegmentBatch batch, int from, int to) {
+      lock();
+      try {
+        long now = map.ticker.read();
+        preWriteCleanup(now);
+        for (int i = from; i < to; i++) {
+          putLocked((K) batch.keys[i], batch.hashes[i], (V) batch.values[i], false, now);
+        }
+      } finally {
+        unlock();
+        postWriteCleanup();
+      }
+    }
 
-        for (ReferenceEntry<K, V> e = first; e != null; e = e.getNext()) {
-          K entryKey = e.getKey();
-          if (e.getHash() == hash
-              && entryKey != null
-              && map.keyEquivalence.equivalent(key, entryKey)) {
-            ValueReference<K, V> valueReference = e.getValueReference();
-            V entryValue = valueReference.get();
+    /** Like {@link #putAll(SegmentBatch, int, int)}, removing the keys of the batch. */
+    void removeAll(SegmentBatch batch, int from, int to) {
+      lock();
+      try {
+        long now = map.ticker.read();
+        preWriteCleanup(now);
+        for (int i = from; i < to; i++) {
+          removeLocked(batch.keys[i], batch.hashes[i]);
+        }
+      } finally {
+        unlock();
+        postWriteCleanup();
+      }
+    }
 
-            RemovalCause cause;
-            if (entryValue != null) {
-              cause = RemovalCause.EXPLICIT;
-            } else if (valueReference.isActive()) {
-              cause = RemovalCause.COLLECTED;
-            } else {
-              // currently loading
-              return null;
+    /**
+     * Looks up the keys {@code from} to {@code to} of a {@link SegmentBatch} as {@link #get(Object,
+     * int)} does, storing their live values in the batch, with a single clock read.
+     */
+    void getAll(SegmentBatch batch, int from, int to) {
+      try {
+        if (count != 0) { // read-volatile
+          long now = map.ticker.read();
+          for (int i = from; i < to; i++) {
+            V value = readValue(batch.keys[i], batch.hashes[i], now);
+            if (value != null) {
+              batch.values[i] = value;
             }
-
-            ++modCount;
-            ReferenceEntry<K, V> newFirst =
-                removeValueFromChain(first, e, entryKey, hash, entryValue, valueReference, cause);
-            newCount = this.count - 1;
-            table.set(index, newFirst);
-            this.count = newCount; // write-volatile
-            return entryValue;
           }
         }
+      } finally {
+        if (readCount.addAndGet(to - from) > DRAIN_THRESHOLD) {
+          cleanUp();
+        }
+      }
+    }
 
-        return null;
+    /** The body of {@link #remove(Object, int)}, for a caller which holds the lock. */
+    @GuardedBy("this")
+    @NullableDecl
+    V removeLocked(Object key, int hash) {
+      AtomicReferenceArray<ReferenceEntry<K, V>> table = this.table;
+      int index = hash & (table.length() - 1);
+      ReferenceEntry<K, V> first = getAcquire(table, index);
+
+      for (ReferenceEntry<K, V> e = first; e != null; e = e.getNext()) {
+        K entryKey = matchingKey(e, key, hash);
+        if (entryKey != null) {
+          return removeEntryLocked(table, index, first, e, entryKey, hash);
+        }
+      }
+
+      return null;
+    }
+
+    /**
+     * Like {@link #remove(Object, int)}, for a {@link ByteKeyCache} key given as a range of bytes,
+     * which is not copied.
+     */
+    @NullableDecl
+    V removeBytes(byte[] buf, int off, int len, int hash) {
+      lock();
+      try {
+        long now = map.ticker.read();
+        preWriteCleanup(now);
+
+        ReferenceEntry<K, V> e = getBytesEntry(buf, off, len, hash);
+        if (e == null) {
+          return null;
+        }
+        AtomicReferenceArray<ReferenceEntry<K, V>> table = this.table;
+        int index = hash & (table.length() - 1);
+        return removeEntryLocked(table, index, getAcquire(table, index), e, e.getKey(), hash);
       } finally {
         unlock();
         postWriteCleanup();
       }
     }
 
+    /** Removes the entry {@code e}, found in the chain {@code first} at {@code index}. */
+    @GuardedBy("this")
+    @NullableDecl
+    private V removeEntryLocked(
+        AtomicReferenceArray<ReferenceEntry<K, V>> table,
+        int index,
+        ReferenceEntry<K, V> first,
+        ReferenceEntry<K, V> e,
+        K entryKey,
+        int hash) {
+      ValueReference<K, V> valueReference = e.getValueReference();
+      V entryValue = valueReference.get();
+
+      RemovalCause cause;
+      if (entryValue != null) {
+        cause = RemovalCause.EXPLICIT;
+      } else if (valueReference.isActive()) {
+        cause = RemovalCause.COLLECTED;
+      } else {
+        // currently loading
+        return null;
+      }
+
+      ++modCount;
+      ReferenceEntry<K, V> newFirst =
+          removeValueFromChain(first, e, entryKey, hash, entryValue, valueReference, cause);
+      int newCount = this.count - 1;
+      setRelease(table, index, newFirst);
+      this.count = newCount; // write-volatile
+      return entryValue;
+    }
+
     boolean remove(Object key, int hash, Object value) {
       lock();
       try {
@@ -2627,13 +4059,11 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
         int newCount = this.count - 1;
         AtomicReferenceArray<ReferenceEntry<K, V>> table = this.table;
         int index = hash & (table.length() - 1);
-        ReferenceEntry<K, V> first = table.get(index);
+        ReferenceEntry<K, V> first = getAcquire(table, index);
 
         for (ReferenceEntry<K, V> e = first; e != null; e = e.getNext()) {
-          K entryKey = e.getKey();
-          if (e.getHash() == hash
-              && entryKey != null
-              && map.keyEquivalence.equivalent(key, entryKey)) {
+          K entryKey = matchingKey(e, key, hash);
+          if (entryKey != null) {
             ValueReference<K, V> valueReference = e.getValueReference();
             V entryValue = valueReference.get();
 
@@ -2651,7 +4081,7 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
             ReferenceEntry<K, V> newFirst =
                 removeValueFromChain(first, e, entryKey, hash, entryValue, valueReference, cause);
             newCount = this.count - 1;
-            table.set(index, newFirst);
+            setRelease(table, index, newFirst);
             this.count = newCount; // write-volatile
             return (cause == RemovalCause.EXPLICIT);
           }
@@ -2679,13 +4109,11 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
 
         AtomicReferenceArray<ReferenceEntry<K, V>> table = this.table;
         int index = hash & (table.length() - 1);
-        ReferenceEntry<K, V> first = table.get(index);
+        ReferenceEntry<K, V> first = getAcquire(table, index);
 
         for (ReferenceEntry<K, V> e = first; e != null; e = e.getNext()) {
-          K entryKey = e.getKey();
-          if (e.getHash() == hash
-              && entryKey != null
-              && map.keyEquivalence.equivalent(key, entryKey)) {
+          K entryKey = matchingKey(e, key, hash);
+          if (entryKey != null) {
             ValueReference<K, V> valueReference = e.getValueReference();
             V entryValue = valueReference.get();
             // replace the old LoadingValueReference if it's live, otherwise
@@ -2710,56 +4138,264 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
             return false;
           }
         }
-
-        ++modCount;
-        ReferenceEntry<K, V> newEntry = newEntry(key, hash, first);
-        setValue(newEntry, key, newValue, now);
-        table.set(index, newEntry);
-        this.count = newCount; // write-volatile
-        evictEntries(newEntry);
-        return true;
+
+        ++modCount;
+        ReferenceEntry<K, V> newEntry = newEntry(key, hash, first);
+        setValue(newEntry, key, newValue, now);
+        setRelease(table, index, newEntry);
+        this.count = newCount; // write-volatile
+        evictEntries(newEntry);
+        return true;
+      } finally {
+        unlock();
+        postWriteCleanup();
+      }
+    }
+
+    void clear() {
+      if (map.clearExecutor != null) {
+        fastClear();
+        return;
+      }
+      if (count != 0) { // read-volatile
+        lock();
+        try {
+          long now = map.ticker.read();
+          preWriteCleanup(now);
+
+          AtomicReferenceArray<ReferenceEntry<K, V>> table = this.table;
+          for (int i = 0; i < table.length(); ++i) {
+            for (ReferenceEntry<K, V> e = getAcquire(table, i); e != null; e = e.getNext()) {
+              // Loading references aren't actually in the map yet.
+              if (e.getValueReference().isActive()) {
+                K key = e.getKey();
+                V value = e.getValueReference().get();
+                RemovalCause cause =
+                    (key == null || value == null) ? RemovalCause.COLLECTED : RemovalCause.EXPLICIT;
+                enqueueNotification(
+                    key, e.getHash(), value, e.getValueReference().getWeight(), cause);
+              }
+            }
+          }
+          for (int i = 0; i < table.length(); ++i) {
+            setRelease(table, i, null);
+          }
+          clearReferenceQueues();
+          writeQueue.clear();
+          accessQueue.clear();
+          readCount.set(0);
+
+          ++modCount;
+          count = 0; // write-volatile
+        } finally {
+          unlock();
+          postWriteCleanup();
+        }
+      }
+    }
+
+    /**
+     * Clears this segment by replacing its table and queues with empty ones, then has the clear
+     * executor notify the removal listener of the entries of the discarded table. Unlike {@link
+     * #clear}, expired entries are not reported as such.
+     */
+    void fastClear() {
+      if (count == 0) { // read-volatile
+        return;
+      }
+      AtomicReferenceArray<ReferenceEntry<K, V>> discarded;
+      lock();
+      try {
+        discarded = table;
+        initTable(newEntryArray(discarded.length()));
+        initQueues();
+        recencyQueue.clear();
+        clearReferenceQueues();
+        readCount.set(0);
+        totalWeight = 0;
+
+        ++modCount;
+        count = 0; // write-volatile
+      } finally {
+        unlock();
+        postWriteCleanup();
+      }
+      if (map.removalListener != NullListener.INSTANCE) {
+        map.clearExecutor.execute(() -> notifyCleared(discarded));
+      }
+    }
+
+    /** Notifies the removal listener of every entry of a table discarded by {@link #fastClear}. */
+    void notifyCleared(AtomicReferenceArray<ReferenceEntry<K, V>> discarded) {
+      for (int i = 0; i < discarded.length(); ++i) {
+        for (ReferenceEntry<K, V> e = getAcquire(discarded, i); e != null; e = e.getNext()) {
+          // Loading references aren't actually in the map yet.
+          if (e.getValueReference().isActive()) {
+            K key = e.getKey();
+            V value = e.getValueReference().get();
+            RemovalCause cause =
+                (key == null || value == null) ? RemovalCause.COLLECTED : RemovalCause.EXPLICIT;
+            try {
+              map.removalListener.onRemoval(RemovalNotification.create(key, value, cause));
+            } catch (Throwable t) {
+              logger.log(Level.WARNING, "Exception thrown by removal listener", t);
+            }
+          }
+        }
+      }
+    }
+
+    /** Returns whether {@code entry} is in the current table, and not one discarded by a clear. */
+    @GuardedBy("this")
+    boolean isInTable(ReferenceEntry<K, V> entry) {
+      for (ReferenceEntry<K, V> e = getFirst(entry.getHash()); e != null; e = e.getNext()) {
+        if (e == entry) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    /**
+     * Copies the live entries of this segment into {@code sink}, least recently accessed first if
+     * the access queue is maintained and in table order otherwise. Times are recorded as ages
+     * relative to {@code now}.
+     */
+    void snapshot(long now, List<CacheSnapshots.Record<K, V>> sink) {
+      lock();
+      try {
+        drainRecencyQueue();
+        if (map.usesAccessQueue()) {
+          for (ReferenceEntry<K, V> e : accessQueue) {
+            addSnapshotRecord(e, now, sink);
+          }
+        } else {
+          AtomicReferenceArray<ReferenceEntry<K, V>> table = this.table;
+          for (int i = 0; i < table.length(); ++i) {
+            for (ReferenceEntry<K, V> e = getAcquire(table, i); e != null; e = e.getNext()) {
+              addSnapshotRecord(e, now, sink);
+            }
+          }
+        }
+      } finally {
+        unlock();
+      }
+    }
+
+    @GuardedBy("this")
+    void addSnapshotRecord(
+        ReferenceEntry<K, V> entry, long now, List<CacheSnapshots.Record<K, V>> sink) {
+      // map.getLiveValue has no side effects, unlike our own, so the queues stay intact
+      V value = map.getLiveValue(entry, now);
+      if (value != null) {
+        long writeAge = map.recordsWrite() ? now - entry.getWriteTime() : 0;
+        long accessAge = map.recordsAccess() ? now - entry.getAccessTime() : 0;
+        sink.add(
+            new CacheSnapshots.Record<>(
+                entry.getKey(), value, entry.getHash(), writeAge, accessAge));
+      }
+    }
+
+    /**
+     * Copies up to {@code limit} keys of live entries into {@code sink}, most recently accessed
+     * first. Without an access queue there is no recency information, and keys are copied in table
+     * order instead.
+     */
+    @SuppressWarnings("unchecked") // accessQueue is an AccessQueue whenever usesAccessQueue()
+    void hottestKeys(int limit, long now, List<K> sink) {
+      lock();
+      try {
+        drainRecencyQueue();
+        int added = 0;
+        if (map.usesAccessQueue()) {
+          ReferenceEntry<K, V> head = ((AccessQueue<K, V>) accessQueue).head;
+          for (ReferenceEntry<K, V> e = head.getPreviousInAccessQueue();
+              e != head && added < limit;
+              e = e.getPreviousInAccessQueue()) {
+            if (map.getLiveValue(e, now) != null) {
+              sink.add(e.getKey());
+              added++;
+            }
+          }
+        } else {
+          AtomicReferenceArray<ReferenceEntry<K, V>> table = this.table;
+          for (int i = 0; i < table.length() && added < limit; ++i) {
+            for (ReferenceEntry<K, V> e = getAcquire(table, i);
+                e != null && added < limit;
+                e = e.getNext()) {
+              if (map.getLiveValue(e, now) != null) {
+                sink.add(e.getKey());
+                added++;
+              }
+            }
+          }
+        }
+      } finally {
+        unlock();
+      }
+    }
+
+    /**
+     * Inserts restored entries in the given order, skipping entries which would already have
+     * expired at {@code now} and keys which are already present. Returns the number of entries
+     * inserted.
+     *
+     * <p>Restored entries are appended to the write queue in snapshot order rather than write
+     * order, so one may outlive an older neighbor until it is next read.
+     */
+    int restore(List<CacheSnapshots.Record<K, V>> records, long now) {
+      lock();
+      try {
+        preWriteCleanup(now);
+        int restored = 0;
+        for (CacheSnapshots.Record<K, V> record : records) {
+          long writeTime = now - record.writeAge;
+          long accessTime = now - record.accessAge;
+          if (!map.isExpired(accessTime, writeTime, now)
+              && restoreEntry(record.key, record.hash, record.value, writeTime, accessTime, now)) {
+            restored++;
+          }
+        }
+        return restored;
       } finally {
         unlock();
         postWriteCleanup();
       }
     }
 
-    void clear() {
-      if (count != 0) { // read-volatile
-        lock();
-        try {
-          long now = map.ticker.read();
-          preWriteCleanup(now);
+    @GuardedBy("this")
+    boolean restoreEntry(K key, int hash, V value, long writeTime, long accessTime, long now) {
+      int newCount = this.count + 1;
+      if (newCount > this.threshold) { // ensure capacity
+        expand();
+        newCount = this.count + 1;
+      }
 
-          AtomicReferenceArray<ReferenceEntry<K, V>> table = this.table;
-          for (int i = 0; i < table.length(); ++i) {
-            for (ReferenceEntry<K, V> e = table.get(i); e != null; e = e.getNext()) {
-              // Loading references aren't actually in the map yet.
-              if (e.getValueReference().isActive()) {
-                K key = e.getKey();
-                V value = e.getValueReference().get();
-                RemovalCause cause =
-                    (key == null || value == null) ? RemovalCause.COLLECTED : RemovalCause.EXPLICIT;
-                enqueueNotification(
-                    key, e.getHash(), value, e.getValueReference().getWeight(), cause);
-              }
-            }
-          }
-          for (int i = 0; i < table.length(); ++i) {
-            table.set(i, null);
-          }
-          clearReferenceQueues();
-          writeQueue.clear();
-          accessQueue.clear();
-          readCount.set(0);
+      AtomicReferenceArray<ReferenceEntry<K, V>> table = this.table;
+      int index = hash & (table.length() - 1);
+      ReferenceEntry<K, V> first = getAcquire(table, index);
 
-          ++modCount;
-          count = 0; // write-volatile
-        } finally {
-          unlock();
-          postWriteCleanup();
+      for (ReferenceEntry<K, V> e = first; e != null; e = e.getNext()) {
+        K entryKey = matchingKey(e, key, hash);
+        if (entryKey != null) {
+          // written since startup, which takes precedence over the snapshot
+          return false;
         }
       }
+
+      ++modCount;
+      ReferenceEntry<K, V> newEntry = newEntry(key, hash, first);
+      setValue(newEntry, key, value, now);
+      if (map.recordsAccess()) {
+        newEntry.setAccessTime(accessTime);
+      }
+      if (map.recordsWrite()) {
+        newEntry.setWriteTime(writeTime);
+      }
+      setRelease(table, index, newEntry);
+      this.count = newCount; // write-volatile
+      evictEntries(newEntry);
+      return true;
     }
 
     @GuardedBy("this")
@@ -2817,7 +4453,7 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
         int newCount = count - 1;
         AtomicReferenceArray<ReferenceEntry<K, V>> table = this.table;
         int index = hash & (table.length() - 1);
-        ReferenceEntry<K, V> first = table.get(index);
+        ReferenceEntry<K, V> first = getAcquire(table, index);
 
         for (ReferenceEntry<K, V> e = first; e != null; e = e.getNext()) {
           if (e == entry) {
@@ -2832,7 +4468,7 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
                     e.getValueReference(),
                     RemovalCause.COLLECTED);
             newCount = this.count - 1;
-            table.set(index, newFirst);
+            setRelease(table, index, newFirst);
             this.count = newCount; // write-volatile
             return true;
           }
@@ -2852,13 +4488,11 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
         int newCount = this.count - 1;
         AtomicReferenceArray<ReferenceEntry<K, V>> table = this.table;
         int index = hash & (table.length() - 1);
-        ReferenceEntry<K, V> first = table.get(index);
+        ReferenceEntry<K, V> first = getAcquire(table, index);
 
         for (ReferenceEntry<K, V> e = first; e != null; e = e.getNext()) {
-          K entryKey = e.getKey();
-          if (e.getHash() == hash
-              && entryKey != null
-              && map.keyEquivalence.equivalent(key, entryKey)) {
+          K entryKey = matchingKey(e, key, hash);
+          if (entryKey != null) {
             ValueReference<K, V> v = e.getValueReference();
             if (v == valueReference) {
               ++modCount;
@@ -2872,7 +4506,7 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
                       valueReference,
                       RemovalCause.COLLECTED);
               newCount = this.count - 1;
-              table.set(index, newFirst);
+              setRelease(table, index, newFirst);
               this.count = newCount; // write-volatile
               return true;
             }
@@ -2895,7 +4529,7 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
       int newCount = this.count - 1;
       AtomicReferenceArray<ReferenceEntry<K, V>> table = this.table;
       int index = hash & (table.length() - 1);
-      ReferenceEntry<K, V> first = table.get(index);
+      ReferenceEntry<K, V> first = getAcquire(table, index);
 
       for (ReferenceEntry<K, V> e = first; e != null; e = e.getNext()) {
         if (e == entry) {
@@ -2910,7 +4544,7 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
                   e.getValueReference(),
                   cause);
           newCount = this.count - 1;
-          table.set(index, newFirst);
+          setRelease(table, index, newFirst);
           this.count = newCount; // write-volatile
           return true;
         }
@@ -2943,6 +4577,9 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
     /** Performs routine cleanup following a write. */
     void postWriteCleanup() {
       runUnlockedCleanup();
+      if (map.cleanupPacer != null) {
+        map.cleanupPacer.onWrite(map);
+      }
     }
 
     void cleanUp() {
@@ -2963,6 +4600,36 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
       }
     }
 
+    /**
+     * Cleans up this segment, waiting for the lock if necessary, and returns the earliest time at
+     * which one of its entries will expire, or {@code Long.MAX_VALUE} if none will.
+     */
+    long runScheduledCleanup(long now) {
+      lock();
+      try {
+        drainReferenceQueues();
+        expireEntries(now); // calls drainRecencyQueue
+        readCount.set(0);
+        return nextExpirationTime();
+      } finally {
+        unlock();
+        runUnlockedCleanup();
+      }
+    }
+
+    @GuardedBy("this")
+    long nextExpirationTime() {
+      long next = Long.MAX_VALUE;
+      ReferenceEntry<K, V> e;
+      if (map.expiresAfterWrite() && (e = writeQueue.peek()) != null) {
+        next = Math.min(next, e.getWriteTime() + map.expireAfterWriteNanos);
+      }
+      if (map.expiresAfterAccess() && (e = accessQueue.peek()) != null) {
+        next = Math.min(next, e.getAccessTime() + map.expireAfterAccessNanos);
+      }
+      return next;
+    }
+
     void runUnlockedCleanup() {
       // locked cleanup may generate notifications we can send unlocked
       if (!isHeldByCurrentThread()) {
@@ -3259,6 +4926,63 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
     }
   }
 
+  /**
+   * Associates {@code value} with {@code key} and replaces the tags of its entry with {@code tags}.
+   * The index is updated under the segment lock, after the write, so that it never records tags for
+   * an entry which the write itself removed.
+   */
+  @NullableDecl
+  V putTagged(K key, V value, Object[] tags) {
+    checkNotNull(key);
+    checkNotNull(value);
+    int hash = hash(key);
+    Segment<K, V> segment = segmentFor(hash);
+    segment.lock();
+    try {
+      V oldValue = segment.put(key, hash, value, false);
+      if (segment.getEntry(key, hash) != null) {
+        tagIndex.setTags(key, tags);
+      }
+      return oldValue;
+    } finally {
+      segment.unlock();
+      segment.postWriteCleanup();
+    }
+  }
+
+  /** Removes every entry tagged with {@code tag}, and returns the number removed. */
+  long invalidateTag(Object tag) {
+    checkNotNull(tag);
+    long removed = 0;
+    for (K key : tagIndex.keys(tag)) {
+      int hash = hash(key);
+      Segment<K, V> segment = segmentFor(hash);
+      segment.lock();
+      try {
+        // the key may have been rewritten with other tags since it was listed
+        if (tagIndex.hasTag(key, tag) && segment.remove(key, hash) != null) {
+          removed++;
+        }
+      } finally {
+        segment.unlock();
+        segment.postWriteCleanup();
+      }
+    }
+    return removed;
+  }
+
+  /**
+   * Cleans up every segment on behalf of the {@link CleanupPacer}, and returns the earliest time
+   * at which an entry will expire, or {@code Long.MAX_VALUE} if none will.
+   */
+  long runScheduledCleanup(long now) {
+    long next = Long.MAX_VALUE;
+    for (Segment<?, ?> segment : segments) {
+      next = Math.min(next, segment.runScheduledCleanup(now));
+    }
+    return next;
+  }
+
   // ConcurrentMap methods
 
   @Override
@@ -3338,6 +5062,9 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
   @NullableDecl
   public V getIfPresent(Object key) {
     int hash = hash(checkNotNull(key));
+    if (frontCaches != null) {
+      return frontCaches.get().getIfPresent(this, key, hash);
+    }
     V value = segmentFor(hash).get(key, hash);
     if (value == null) {
       globalStatsCounter.recordMisses(1);
@@ -3357,26 +5084,41 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
   }
 
 
-    Map<K, V> getAllPresent(Iterable<?> keys) {
-    int hits = 0;
+  Map<K, V> getAllPresent(Iterable<?> keys) {
+    List<Object> keyList = new ArrayList<>();
     int misses = 0;
-
-        Map<K, V> result = new LinkedHashMap();
     for (Object key : keys) {
-      V value = get(key);
-      if (value == null) {
+      if (key == null) {
+        misses++;
+      } else {
+        keyList.add(key);
+      }
+    }
+    SegmentBatch batch = new SegmentBatch(this, keyList.toArray(), null);
+    forEachSegment(batch, Segment::getAll);
+
+    Object[] found = new Object[batch.size()];
+    for (int i = 0; i < found.length; i++) {
+      found[batch.positions[i]] = batch.values[i];
+    }
+    int hits = 0;
+    Map<K, V> result = new LinkedHashMap<>();
+    for (int i = 0; i < found.length; i++) {
+      if (found[i] == null) {
         misses++;
       } else {
         // TODO(fry): store entry key instead of query key
         @SuppressWarnings("unchecked")
-        K castKey = (K) key;
+        K castKey = (K) keyList.get(i);
+        @SuppressWarnings("unchecked")
+        V value = (V) found[i];
         result.put(castKey, value);
         hits++;
       }
     }
     globalStatsCounter.recordHits(hits);
     globalStatsCounter.recordMisses(misses);
-        return result;
+    return result;
   }
 
     Map<K, V> getAll(Iterable<? extends K> keys) throws ExecutionException {
@@ -3447,7 +5189,7 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
 
         AtomicReferenceArray<ReferenceEntry<K, V>> table = segment.table;
         for (int j = 0; j < table.length(); j++) {
-          for (ReferenceEntry<K, V> e = table.get(j); e != null; e = e.getNext()) {
+          for (ReferenceEntry<K, V> e = getAcquire(table, j); e != null; e = e.getNext()) {
             V v = segment.getLiveValue(e, now);
             if (v != null && valueEquivalence.equivalent(value, v)) {
               return true;
@@ -3482,9 +5224,21 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
 
   @Override
   public void putAll(Map<? extends K, ? extends V> m) {
+    Object[] keys = new Object[m.size()];
+    Object[] values = new Object[m.size()];
+    int size = 0;
     for (Entry<? extends K, ? extends V> e : m.entrySet()) {
-      put(e.getKey(), e.getValue());
+      if (size == keys.length) { // m grew concurrently
+        keys = Arrays.copyOf(keys, size * 2 + 1);
+        values = Arrays.copyOf(values, size * 2 + 1);
+      }
+      keys[size] = checkNotNull(e.getKey());
+      values[size] = checkNotNull(e.getValue());
+      size++;
     }
+    SegmentBatch batch =
+        new SegmentBatch(this, Arrays.copyOf(keys, size), Arrays.copyOf(values, size));
+    forEachSegment(batch, Segment::putAll);
   }
 
   @Override
@@ -3532,9 +5286,145 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
   }
 
   void invalidateAll(Iterable<?> keys) {
-    // TODO(fry): batch by segment
+    List<Object> keyList = new ArrayList<>();
+    for (Object key : keys) {
+      if (key != null) {
+        keyList.add(key);
+      }
+    }
+    forEachSegment(new SegmentBatch(this, keyList.toArray(), null), Segment::removeAll);
+  }
+
+  /**
+   * Puts the live values of {@code keys} into {@code results}, with a single clock read and a
+   * single update of the statistics, and returns how many were found.
+   */
+  int getAllPresent(Iterable<?> keys, Map<? super K, ? super V> results) {
+    long now = ticker.read();
+    int hits = 0;
+    int misses = 0;
     for (Object key : keys) {
-      remove(key);
+      V value = (key == null) ? null : getPresent(key, now);
+      if (value == null) {
+        misses++;
+      } else {
+        @SuppressWarnings("unchecked") // the value was found under this key
+        K castKey = (K) key;
+        results.put(castKey, value);
+        hits++;
+      }
+    }
+    globalStatsCounter.recordHits(hits);
+    globalStatsCounter.recordMisses(misses);
+    return hits;
+  }
+
+  /** Like {@link #getAllPresent(Iterable, Map)}, storing values in an array; see {@link Cache}. */
+  int getAllPresent(Object[] keys, V[] values, BitSet present) {
+    checkArgument(
+        values.length >= keys.length,
+        "values has %s elements but keys has %s",
+        values.length,
+        keys.length);
+    long now = ticker.read();
+    int hits = 0;
+    for (int i = 0; i < keys.length; i++) {
+      V value = (keys[i] == null) ? null : getPresent(keys[i], now);
+      values[i] = value;
+      if (value != null) {
+        present.set(i);
+        hits++;
+      } else {
+        present.clear(i);
+      }
+    }
+    globalStatsCounter.recordHits(hits);
+    globalStatsCounter.recordMisses(keys.length - hits);
+    return hits;
+  }
+
+  @NullableDecl
+  V getPresent(Object key, long now) {
+    int hash = hash(key);
+    return segmentFor(hash).get(key, hash, now);
+  }
+
+  /**
+   * Applies {@code action} to the keys of {@code batch} belonging to each segment, in parallel if
+   * the batch holds at least {@link #PARALLEL_BATCH_THRESHOLD} keys.
+   */
+  void forEachSegment(SegmentBatch batch, SegmentAction<K, V> action) {
+    IntStream indexes = IntStream.range(0, segments.length);
+    if (batch.size() >= PARALLEL_BATCH_THRESHOLD && segments.length > 1) {
+      indexes = indexes.parallel();
+    }
+    indexes.forEach(
+        i -> {
+          int from = batch.offsets[i];
+          int to = batch.offsets[i + 1];
+          if (from < to) {
+            action.apply(segments[i], batch, from, to);
+          }
+        });
+  }
+
+  /** An operation on the keys of a {@link SegmentBatch} which belong to one segment. */
+  interface SegmentAction<K, V> {
+    void apply(Segment<K, V> segment, SegmentBatch batch, int from, int to);
+  }
+
+  /**
+   * The keys, and values, of a batch operation sorted by segment, so that each segment can process
+   * all of its keys under a single acquisition of its lock.
+   */
+  static final class SegmentBatch {
+    final Object[] keys;
+    final int[] hashes;
+
+    /** The values to put, or the values found by a lookup. */
+    final Object[] values;
+
+    /** The index of each key in the order in which the keys were given. */
+    final int[] positions;
+
+    /** The keys of segment {@code i} are those from {@code offsets[i]} to {@code offsets[i + 1]}. */
+    final int[] offsets;
+
+    SegmentBatch(LocalCache<?, ?> map, Object[] keys, @NullableDecl Object[] values) {
+      int size = keys.length;
+      int[] hashes = new int[size];
+      int[] segmentIndexes = new int[size];
+      int[] offsets = new int[map.segments.length + 1];
+      for (int i = 0; i < size; i++) {
+        int hash = map.hash(keys[i]);
+        int segmentIndex = (hash >>> map.segmentShift) & map.segmentMask;
+        hashes[i] = hash;
+        segmentIndexes[i] = segmentIndex;
+        offsets[segmentIndex + 1]++;
+      }
+      for (int i = 1; i < offsets.length; i++) {
+        offsets[i] += offsets[i - 1];
+      }
+
+      this.keys = new Object[size];
+      this.hashes = new int[size];
+      this.values = new Object[size];
+      this.positions = new int[size];
+      this.offsets = offsets;
+      int[] next = Arrays.copyOf(offsets, map.segments.length);
+      for (int i = 0; i < size; i++) {
+        int j = next[segmentIndexes[i]]++;
+        this.keys[j] = keys[i];
+        this.hashes[j] = hashes[i];
+        this.positions[j] = i;
+        if (values != null) {
+          this.values[j] = values[i];
+        }
+      }
+    }
+
+    int size() {
+      return keys.length;
     }
   }
 
@@ -3716,40 +5606,242 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
       return value;
     }
 
-    @Override
-    public boolean equals(@NullableDecl Object object) {
-      // Cannot use key and value equivalence
-      if (object instanceof Entry) {
-        Entry<?, ?> that = (Entry<?, ?>) object;
-        return key.equals(that.getKey()) && value.equals(that.getValue());
+    @Override
+    public boolean equals(@NullableDecl Object object) {
+      // Cannot use key and value equivalence
+      if (object instanceof Entry) {
+        Entry<?, ?> that = (Entry<?, ?>) object;
+        return key.equals(that.getKey()) && value.equals(that.getValue());
+      }
+      return false;
+    }
+
+    @Override
+    public int hashCode() {
+      // Cannot use key and value equivalence
+      return key.hashCode() ^ value.hashCode();
+    }
+
+    @Override
+    public V setValue(V newValue) {
+      V oldValue = put(key, newValue);
+      value = newValue; // only if put succeeds
+      return oldValue;
+    }
+
+    @Override
+    public String toString() {
+      return getKey() + "=" + getValue();
+    }
+  }
+
+  final class EntryIterator extends HashIterator<Entry<K, V>> {
+
+    @Override
+    public Entry<K, V> next() {
+      return nextEntry();
+    }
+  }
+
+  /**
+   * A weakly consistent spliterator over the live entries of this map. It first splits the range of
+   * segments it covers and then, once a single segment remains, the buckets of a snapshot of that
+   * segment's table, which is shared with the spliterators split from it. Like the segment's own
+   * readers, traversal does not lock.
+   */
+  final class HashSpliterator<T> implements Spliterator<T> {
+    /** Table ranges smaller than this are not split further. */
+    static final int MIN_SPLIT_BUCKETS = 16;
+
+    final BiFunction<? super K, ? super V, ? extends T> elementFactory;
+    final int characteristics;
+
+    /** The whole segments not yet traversed. */
+    int segmentIndex;
+
+    final int segmentLimit;
+
+    /** The segment being traversed, if any, with a snapshot of its table. */
+    @NullableDecl Segment<K, V> segment;
+
+    @NullableDecl AtomicReferenceArray<ReferenceEntry<K, V>> table;
+    int tableIndex;
+    int tableLimit;
+
+    /** The rest of the chain of the last bucket read by {@link #tryAdvance}. */
+    @NullableDecl ReferenceEntry<K, V> nextInChain;
+
+    HashSpliterator(
+        int segmentIndex,
+        int segmentLimit,
+        BiFunction<? super K, ? super V, ? extends T> elementFactory,
+        int characteristics) {
+      this.segmentIndex = segmentIndex;
+      this.segmentLimit = segmentLimit;
+      this.elementFactory = elementFactory;
+      this.characteristics = characteristics | CONCURRENT | NONNULL;
+    }
+
+    /** Starts traversing the next whole segment. Returns false if there is none. */
+    private boolean enterSegment() {
+      if (segmentIndex >= segmentLimit) {
+        return false;
+      }
+      segment = segments[segmentIndex++];
+      table = segment.table;
+      tableIndex = 0;
+      tableLimit = table.length();
+      return true;
+    }
+
+    private boolean hasTableRange() {
+      return segment != null && tableIndex < tableLimit;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action) {
+      checkNotNull(action);
+      do {
+        while (nextInChain != null || hasTableRange()) {
+          ReferenceEntry<K, V> e = nextInChain;
+          if (e == null) {
+            e = getAcquire(table, tableIndex++);
+            if (e == null) {
+              continue;
+            }
+          }
+          nextInChain = e.getNext();
+          // read the key once, as a weak key may be cleared after the value was found live
+          K key = e.getKey();
+          V value = (key == null) ? null : getLiveValue(e, ticker.read());
+          if (nextInChain == null) {
+            segment.postReadCleanup();
+          }
+          if (value != null) {
+            action.accept(elementFactory.apply(key, value));
+            return true;
+          }
+        }
+      } while (enterSegment());
+      return false;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super T> action) {
+      checkNotNull(action);
+      long now = ticker.read();
+      for (ReferenceEntry<K, V> e = nextInChain; e != null; e = e.getNext()) {
+        accept(e, now, action);
+      }
+      nextInChain = null;
+      do {
+        if (segment == null) {
+          continue;
+        }
+        AtomicReferenceArray<ReferenceEntry<K, V>> table = this.table;
+        int limit = tableLimit;
+        now = ticker.read();
+        for (int i = tableIndex; i < limit; i++) {
+          for (ReferenceEntry<K, V> e = getAcquire(table, i); e != null; e = e.getNext()) {
+            accept(e, now, action);
+          }
+        }
+        tableIndex = limit;
+        segment.postReadCleanup();
+      } while (enterSegment());
+    }
+
+    /**
+     * Passes each remaining live mapping to {@code visitor}, without creating elements, until it
+     * returns false. Returns whether every mapping was visited.
+     */
+    boolean visitRemaining(BiPredicate<? super K, ? super V> visitor) {
+      ReferenceEntry<K, V> e = nextInChain;
+      nextInChain = null;
+      do {
+        if (segment == null) {
+          continue;
+        }
+        AtomicReferenceArray<ReferenceEntry<K, V>> table = this.table;
+        long now = ticker.read();
+        try {
+          while (e != null || tableIndex < tableLimit) {
+            if (e == null) {
+              e = getAcquire(table, tableIndex++);
+              continue;
+            }
+            K key = e.getKey();
+            V value = (key == null) ? null : getLiveValue(e, now);
+            ReferenceEntry<K, V> next = e.getNext();
+            if (value != null && !visitor.test(key, value)) {
+              nextInChain = next;
+              return false;
+            }
+            e = next;
+          }
+        } finally {
+          segment.postReadCleanup();
+        }
+      } while (enterSegment());
+      return true;
+    }
+
+    private void accept(ReferenceEntry<K, V> e, long now, Consumer<? super T> action) {
+      K key = e.getKey();
+      V value = (key == null) ? null : getLiveValue(e, now);
+      if (value != null) {
+        action.accept(elementFactory.apply(key, value));
       }
-      return false;
-    }
-
-    @Override
-    public int hashCode() {
-      // Cannot use key and value equivalence
-      return key.hashCode() ^ value.hashCode();
     }
 
     @Override
-    public V setValue(V newValue) {
-      V oldValue = put(key, newValue);
-      value = newValue; // only if put succeeds
-      return oldValue;
+    @NullableDecl
+    public Spliterator<T> trySplit() {
+      int remainingSegments = segmentLimit - segmentIndex;
+      if (hasTableRange() && remainingSegments > 0) {
+        // hand off the untouched segments, keep the one in progress
+        HashSpliterator<T> split =
+            new HashSpliterator<T>(segmentIndex, segmentLimit, elementFactory, characteristics);
+        segmentIndex = segmentLimit;
+        return split;
+      } else if (!hasTableRange() && remainingSegments > 1) {
+        int mid = (segmentIndex + segmentLimit) >>> 1;
+        HashSpliterator<T> split =
+            new HashSpliterator<T>(segmentIndex, mid, elementFactory, characteristics);
+        segmentIndex = mid;
+        return split;
+      } else if (!hasTableRange() && remainingSegments == 1) {
+        enterSegment();
+      }
+      if (hasTableRange() && tableLimit - tableIndex >= MIN_SPLIT_BUCKETS) {
+        int mid = (tableIndex + tableLimit) >>> 1;
+        HashSpliterator<T> split =
+            new HashSpliterator<T>(segmentLimit, segmentLimit, elementFactory, characteristics);
+        split.segment = segment;
+        split.table = table;
+        split.tableIndex = tableIndex;
+        split.tableLimit = mid;
+        tableIndex = mid;
+        return split;
+      }
+      return null;
     }
 
     @Override
-    public String toString() {
-      return getKey() + "=" + getValue();
+    public long estimateSize() {
+      long size = 0;
+      if (hasTableRange()) {
+        size += (long) segment.count * (tableLimit - tableIndex) / table.length();
+      }
+      for (int i = segmentIndex; i < segmentLimit; i++) {
+        size += segments[i].count;
+      }
+      return size;
     }
-  }
-
-  final class EntryIterator extends HashIterator<Entry<K, V>> {
 
     @Override
-    public Entry<K, V> next() {
-      return nextEntry();
+    public int characteristics() {
+      return characteristics;
     }
   }
 
@@ -3828,6 +5920,11 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
       return new KeyIterator();
     }
 
+    @Override
+    public Spliterator<K> spliterator() {
+      return new HashSpliterator<K>(0, segments.length, (k, v) -> k, Spliterator.DISTINCT);
+    }
+
     @Override
     public boolean contains(Object o) {
       return map.containsKey(o);
@@ -3867,6 +5964,11 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
       return new ValueIterator();
     }
 
+    @Override
+    public Spliterator<V> spliterator() {
+      return new HashSpliterator<V>(0, segments.length, (k, v) -> v, 0);
+    }
+
     @Override
     public boolean removeIf(Predicate<? super V> filter) {
       checkNotNull(filter);
@@ -3904,6 +6006,12 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
       return new EntryIterator();
     }
 
+    @Override
+    public Spliterator<Entry<K, V>> spliterator() {
+      return new HashSpliterator<Entry<K, V>>(
+          0, segments.length, WriteThroughEntry::new, Spliterator.DISTINCT);
+    }
+
     @Override
     public boolean removeIf(Predicate<? super Entry<K, V>> filter) {
       checkNotNull(filter);
@@ -3947,6 +6055,9 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
 
     private LocalManualCache(LocalCache<K, V> localCache) {
       this.localCache = localCache;
+      if (localCache.evictsOnMemoryPressure()) {
+        MemoryPressureMonitor.getInstance().register(localCache);
+      }
     }
 
     // Cache methods
@@ -3962,6 +6073,16 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
       return localCache.getAllPresent(keys);
     }
 
+    @Override
+    public int getAllPresent(Iterable<?> keys, Map<? super K, ? super V> results) {
+      return localCache.getAllPresent(keys, results);
+    }
+
+    @Override
+    public int getAllPresent(Object[] keys, V[] values, BitSet present) {
+      return localCache.getAllPresent(keys, values, present);
+    }
+
     @Override
     public void put(K key, V value) {
       localCache.put(key, value);
@@ -4015,5 +6136,398 @@ class LocalCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
 
   }
 
+  static final class LocalTaggedCache<K, V> extends LocalManualCache<K, V>
+      implements TaggedCache<K, V> {
+    private static final Object[] NO_TAGS = {};
+
+    LocalTaggedCache(CacheBuilder<? super K, ? super V> builder) {
+      super(new LocalCache<K, V>(builder, false, true, false, false));
+    }
+
+    @Override
+    public void put(K key, V value) {
+      localCache.putTagged(key, value, NO_TAGS);
+    }
+
+    @Override
+    public void put(K key, V value, Iterable<?> tags) {
+      List<Object> list = new ArrayList<>();
+      for (Object tag : tags) {
+        list.add(checkNotNull(tag));
+      }
+      localCache.putTagged(key, value, list.toArray());
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> m) {
+      for (Entry<? extends K, ? extends V> entry : m.entrySet()) {
+        put(entry.getKey(), entry.getValue());
+      }
+    }
+
+    @Override
+    public long invalidateTag(Object tag) {
+      return localCache.invalidateTag(tag);
+    }
+  }
+
+  static final class LocalNamespacedCache<N, K, V> implements NamespacedCache<N, K, V> {
+    final LocalManualCache<NamespacedKey<N, K>, V> manualCache;
+    final LocalCache<NamespacedKey<N, K>, V> localCache;
+
+    LocalNamespacedCache(CacheBuilder<? super NamespacedKey<N, K>, ? super V> builder) {
+      manualCache =
+          new LocalManualCache<>(
+              new LocalCache<NamespacedKey<N, K>, V>(builder, false, false, true, false));
+      localCache = manualCache.localCache;
+    }
+
+    @Override
+    public Cache<K, V> namespace(N namespace) {
+      return new NamespaceView(checkNotNull(namespace));
+    }
+
+    @Override
+    public void invalidateNamespace(N namespace) {
+      localCache.generations.advance(checkNotNull(namespace));
+    }
+
+    @Override
+    public void invalidateAll() {
+      manualCache.invalidateAll();
+    }
+
+    @Override
+    public long size() {
+      return manualCache.size();
+    }
+
+    @Override
+    public CacheStats stats() {
+      return manualCache.stats();
+    }
+
+    @Override
+    public void cleanUp() {
+      manualCache.cleanUp();
+    }
+
+    /** The entries of one namespace, looked up in its current generation. */
+    final class NamespaceView implements Cache<K, V> {
+      final N namespace;
+
+      NamespaceView(N namespace) {
+        this.namespace = namespace;
+      }
+
+      NamespacedKey<N, K> key(K key) {
+        return new NamespacedKey<N, K>(namespace, key, localCache.generations.current(namespace));
+      }
+
+      @Override
+      @NullableDecl
+      public V getIfPresent(Object key) {
+        @SuppressWarnings("unchecked") // only used for equality
+        K castKey = (K) key;
+        return localCache.getIfPresent(key(castKey));
+      }
+
+      @Override
+      public Map<K, V> getAllPresent(Iterable<?> keys) {
+        Map<K, V> result = new LinkedHashMap<>();
+        for (Object key : keys) {
+          V value = getIfPresent(key);
+          if (value != null) {
+            @SuppressWarnings("unchecked")
+            K castKey = (K) key;
+            result.put(castKey, value);
+          }
+        }
+        return result;
+      }
+
+      @Override
+      public void put(K key, V value) {
+        localCache.put(key(key), value);
+      }
+
+      @Override
+      public void putAll(Map<? extends K, ? extends V> m) {
+        for (Entry<? extends K, ? extends V> entry : m.entrySet()) {
+          put(entry.getKey(), entry.getValue());
+        }
+      }
+
+      @Override
+      public void invalidate(Object key) {
+        @SuppressWarnings("unchecked") // only used for equality
+        K castKey = (K) key;
+        localCache.remove(key(castKey));
+      }
+
+      @Override
+      public void invalidateAll(Iterable<?> keys) {
+        for (Object key : keys) {
+          invalidate(key);
+        }
+      }
+
+      @Override
+      public void invalidateAll() {
+        invalidateNamespace(namespace);
+      }
+
+      @Override
+      public long size() {
+        long size = 0;
+        for (NamespacedKey<N, K> key : localCache.keySet()) {
+          if (key.namespace().equals(namespace)) {
+            size++;
+          }
+        }
+        return size;
+      }
+
+      @Override
+      public CacheStats stats() {
+        return manualCache.stats();
+      }
+
+      @Override
+      public ConcurrentMap<K, V> asMap() {
+        NamespaceMap result = asMap;
+        return (result != null) ? result : (asMap = new NamespaceMap());
+      }
+
+      @Override
+      public void cleanUp() {
+        manualCache.cleanUp();
+      }
+
+      @MonotonicNonNullDecl NamespaceMap asMap;
+
+      /**
+       * The entries of the namespace as a map, in its current generation. Iteration traverses the
+       * whole cache and skips the entries of other namespaces and of earlier generations.
+       */
+      final class NamespaceMap extends AbstractMap<K, V> implements ConcurrentMap<K, V> {
+        @MonotonicNonNullDecl Set<Entry<K, V>> entrySet;
+
+        @SuppressWarnings("unchecked") // only used for equality
+        NamespacedKey<N, K> castKey(Object key) {
+          return key((K) key);
+        }
+
+        @Override
+        public boolean containsKey(@NullableDecl Object key) {
+          return (key != null) && localCache.containsKey(castKey(key));
+        }
+
+        @Override
+        @NullableDecl
+        public V get(@NullableDecl Object key) {
+          return (key == null) ? null : localCache.get(castKey(key));
+        }
+
+        @Override
+        public V put(K key, V value) {
+          return localCache.put(key(key), value);
+        }
+
+        @Override
+        public V putIfAbsent(K key, V value) {
+          return localCache.putIfAbsent(key(key), value);
+        }
+
+        @Override
+        @NullableDecl
+        public V remove(@NullableDecl Object key) {
+          return (key == null) ? null : localCache.remove(castKey(key));
+        }
+
+        @Override
+        public boolean remove(@NullableDecl Object key, @NullableDecl Object value) {
+          return (key != null) && localCache.remove(castKey(key), value);
+        }
+
+        @Override
+        public boolean replace(K key, V oldValue, V newValue) {
+          return localCache.replace(key(key), oldValue, newValue);
+        }
+
+        @Override
+        public V replace(K key, V value) {
+          return localCache.replace(key(key), value);
+        }
+
+        @Override
+        public int size() {
+          return saturatedCast(NamespaceView.this.size());
+        }
+
+        @Override
+        public void clear() {
+          invalidateNamespace(namespace);
+        }
+
+        @Override
+        public Set<Entry<K, V>> entrySet() {
+          Set<Entry<K, V>> result = entrySet;
+          return (result != null) ? result : (entrySet = new NamespaceEntrySet());
+        }
+
+        final class NamespaceEntrySet extends AbstractSet<Entry<K, V>> {
+          @Override
+          public int size() {
+            return NamespaceMap.this.size();
+          }
+
+          @Override
+          public void clear() {
+            NamespaceMap.this.clear();
+          }
+
+          @Override
+          public Iterator<Entry<K, V>> iterator() {
+            return new Iterator<Entry<K, V>>() {
+              final Iterator<Entry<NamespacedKey<N, K>, V>> delegate =
+                  localCache.entrySet().iterator();
+              @NullableDecl NamespaceEntry next;
+              @NullableDecl NamespaceEntry last;
+
+              @Override
+              public boolean hasNext() {
+                while (next == null && delegate.hasNext()) {
+                  Entry<NamespacedKey<N, K>, V> entry = delegate.next();
+                  NamespacedKey<N, K> key = entry.getKey();
+                  if (key.namespace().equals(namespace) && !localCache.generations.isStale(key)) {
+                    next = new NamespaceEntry(key, entry.getValue());
+                  }
+                }
+                return next != null;
+              }
+
+              @Override
+              public Entry<K, V> next() {
+                if (!hasNext()) {
+                  throw new NoSuchElementException();
+                }
+                last = next;
+                next = null;
+                return last;
+              }
+
+              @Override
+              public void remove() {
+                checkState(last != null, "no calls to next() since the last call to remove()");
+                localCache.remove(last.namespacedKey, last.getValue());
+                last = null;
+              }
+
+              final class NamespaceEntry extends AbstractMap.SimpleEntry<K, V> {
+                final NamespacedKey<N, K> namespacedKey;
+
+                NamespaceEntry(NamespacedKey<N, K> namespacedKey, V value) {
+                  super(namespacedKey.key(), value);
+                  this.namespacedKey = namespacedKey;
+                }
+
+                @Override
+                public V setValue(V value) {
+                  localCache.put(namespacedKey, value);
+                  return super.setValue(value);
+                }
+              }
+            };
+          }
+        }
+      }
+    }
+  }
+
+  static final class LocalLongKeyCache<V> extends LocalManualCache<Long, V>
+      implements LongKeyCache<V> {
+
+    LocalLongKeyCache(CacheBuilder<? super Long, ? super V> builder) {
+      super(new LocalCache<Long, V>(builder, true, false, false, false));
+    }
+
+    @Override
+    @NullableDecl
+    public V getIfPresent(long key) {
+      int hash = hash(key);
+      V value = localCache.segmentFor(hash).getLong(key, hash);
+      if (value == null) {
+        localCache.globalStatsCounter.recordMisses(1);
+      } else {
+        localCache.globalStatsCounter.recordHits(1);
+      }
+      return value;
+    }
+
+    @Override
+    public void put(long key, V value) {
+      checkNotNull(value);
+      int hash = hash(key);
+      localCache.segmentFor(hash).put(key, hash, value, false);
+    }
+
+    @Override
+    public void invalidate(long key) {
+      int hash = hash(key);
+      localCache.segmentFor(hash).remove(key, hash);
+    }
+  }
+
+  static final class LocalByteKeyCache<V> extends LocalManualCache<byte[], V>
+      implements ByteKeyCache<V> {
+
+    LocalByteKeyCache(CacheBuilder<? super byte[], ? super V> builder) {
+      super(new LocalCache<byte[], V>(builder, false, false, false, true));
+    }
+
+    @Override
+    @NullableDecl
+    public V getIfPresent(byte[] buf, int off, int len) {
+      int hash = hash(buf, off, len);
+      return recordHitOrMiss(localCache.segmentFor(hash).getBytes(buf, off, len, hash));
+    }
+
+    @Override
+    @NullableDecl
+    public V getIfPresent(ByteBuffer key) {
+      int hash = hash(key);
+      return recordHitOrMiss(localCache.segmentFor(hash).getBytes(key, hash));
+    }
+
+    @NullableDecl
+    private V recordHitOrMiss(@NullableDecl V value) {
+      if (value == null) {
+        localCache.globalStatsCounter.recordMisses(1);
+      } else {
+        localCache.globalStatsCounter.recordHits(1);
+      }
+      return value;
+    }
+
+    @Override
+    public void put(byte[] key, V value) {
+      put(key, 0, key.length, value);
+    }
+
+    @Override
+    public void put(byte[] buf, int off, int len, V value) {
+      checkNotNull(value);
+      int hash = hash(buf, off, len);
+      localCache.segmentFor(hash).put(Arrays.copyOfRange(buf, off, off + len), hash, value, false);
+    }
+
+    @Override
+    public void invalidate(byte[] buf, int off, int len) {
+      int hash = hash(buf, off, len);
+      localCache.segmentFor(hash).removeBytes(buf, off, len, hash);
+    }
+  }
+
 
 }
@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2018 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.github.lafa.cache.lrucache;
+
+import org.checkerframework.checker.nullness.compatqual.NullableDecl;
+
+/**
+ * A {@link Cache} keyed by {@code long} values, such as numeric identifiers. Instances are built
+ * by {@link CacheBuilder#buildLongKeyCache}.
+ *
+ * <p>Keys are stored as primitive {@code long}s inside the cache's entries rather than as {@link
+ * Long} objects, and {@link #getIfPresent(long)} hashes and compares them without boxing. Writes
+ * through {@link #put(long, Object)} and {@link #invalidate(long)} may box the key transiently.
+ * The {@code Long}-keyed methods inherited from {@link Cache}, including the {@link #asMap} view,
+ * remain available and operate on the same entries, boxing keys as they are returned.
+ *
+ * <p>Eviction, expiration, removal notification and statistics behave exactly as for a cache
+ * returned by {@link CacheBuilder#build}. Keys of type {@code int} may be widened to {@code long}.
+ *
+ * @param <V> the type of mapped values
+ */
+public interface LongKeyCache<V> extends Cache<Long, V> {
+
+  /**
+   * Returns the value associated with {@code key} in this cache, or {@code null} if there is no
+   * cached value for {@code key}.
+   */
+  @NullableDecl
+  V getIfPresent(long key);
+
+  /**
+   * Associates {@code value} with {@code key} in this cache. If the cache previously contained a
+   * value associated with {@code key}, the old value is replaced by {@code value}.
+   */
+  void put(long key, V value);
+
+  /** Discards any cached value for key {@code key}. */
+  void invalidate(long key);
+}
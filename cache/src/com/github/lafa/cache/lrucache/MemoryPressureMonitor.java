@@ -0,0 +1,264 @@
+/*
+ * Copyright (C) 2018 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.github.lafa.cache.lrucache;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+
+import org.checkerframework.checker.nullness.compatqual.NullableDecl;
+
+/**
+ * Lowers the eviction limits of caches built with {@link CacheBuilder#evictOnMemoryPressure} while
+ * the heap is nearly full, and restores them once it is not.
+ *
+ * <p>Occupancy is the fraction of the tenured heap pool still in use after the most recent
+ * collection of that pool. The tenured pool is the one named as the old or tenured generation, or
+ * failing that the heap pool with the largest maximum; young generation pools are ignored, since
+ * they fill up and are emptied as a matter of course. Occupancy is polled once a second by a daemon
+ * thread, and additionally whenever the JVM reports that the tenured pool's collection usage
+ * threshold was exceeded. A cache's limit shrinks by {@link #SHRINK_FACTOR} only on a measurement
+ * taken after a collection of the tenured pool the monitor has not seen yet, so that a single full
+ * heap does not cascade into evicting everything before the collector had a chance to reclaim what
+ * was already evicted. Caches are held weakly and dropped from the monitor once collected.
+ */
+final class MemoryPressureMonitor {
+
+  private static final Logger logger = Logger.getLogger(MemoryPressureMonitor.class.getName());
+
+  /** The factor applied to the limit of a cache each time the heap is found under pressure. */
+  static final double SHRINK_FACTOR = 0.75;
+
+  /** The factor applied to the limit of a cache each time the heap is found relieved. */
+  static final double GROW_FACTOR = 1.25;
+
+  /** The lowest fraction of its configured maximum a cache will be shrunk to. */
+  static final double MIN_FRACTION = 0.1;
+
+  /** How far below its threshold occupancy must fall before a cache grows again. */
+  static final double HYSTERESIS = 0.1;
+
+  private static final long POLL_INTERVAL_MILLIS = 1000;
+
+  private static final class Holder {
+    static final MemoryPressureMonitor INSTANCE = createInstance();
+  }
+
+  static MemoryPressureMonitor getInstance() {
+    return Holder.INSTANCE;
+  }
+
+  private static MemoryPressureMonitor createInstance() {
+    final MemoryPressureMonitor monitor =
+        new MemoryPressureMonitor(
+            ManagementFactory.getMemoryPoolMXBeans(),
+            ManagementFactory.getGarbageCollectorMXBeans());
+    if (ManagementFactory.getMemoryMXBean() instanceof NotificationEmitter) {
+      ((NotificationEmitter) ManagementFactory.getMemoryMXBean())
+          .addNotificationListener(
+              new NotificationListener() {
+                @Override
+                public void handleNotification(Notification notification, Object handback) {
+                  if (MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(
+                      notification.getType())) {
+                    monitor.poll();
+                  }
+                }
+              },
+              null,
+              null);
+    }
+    ScheduledExecutorService scheduler =
+        Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactory() {
+              @Override
+              public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "cache-memory-pressure-monitor");
+                thread.setDaemon(true);
+                return thread;
+              }
+            });
+    scheduler.scheduleWithFixedDelay(
+        new Runnable() {
+          @Override
+          public void run() {
+            monitor.poll();
+          }
+        },
+        POLL_INTERVAL_MILLIS,
+        POLL_INTERVAL_MILLIS,
+        TimeUnit.MILLISECONDS);
+    return monitor;
+  }
+
+  /** The tenured heap pool, or null if the JVM has none that reports its collection usage. */
+  @NullableDecl private final MemoryPoolMXBean pool;
+
+  /** The collectors that manage {@link #pool}. */
+  private final List<GarbageCollectorMXBean> collectors;
+
+  private final List<Registration> registrations = new CopyOnWriteArrayList<>();
+
+  /** The number of collections that had completed when occupancy was last acted upon. */
+  private long lastCollectionCount = -1;
+
+  MemoryPressureMonitor(
+      List<MemoryPoolMXBean> pools, List<GarbageCollectorMXBean> garbageCollectors) {
+    this.pool = tenuredPool(pools);
+    this.collectors = new ArrayList<>();
+    if (pool != null) {
+      for (GarbageCollectorMXBean collector : garbageCollectors) {
+        if (Arrays.asList(collector.getMemoryPoolNames()).contains(pool.getName())) {
+          collectors.add(collector);
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the heap pool holding long-lived objects: the one named as the old or tenured
+   * generation if there is one, or else the one with the largest maximum size.
+   */
+  @NullableDecl
+  static MemoryPoolMXBean tenuredPool(List<MemoryPoolMXBean> pools) {
+    MemoryPoolMXBean largest = null;
+    for (MemoryPoolMXBean pool : pools) {
+      if (pool.getType() != MemoryType.HEAP || !pool.isCollectionUsageThresholdSupported()) {
+        continue;
+      }
+      String name = pool.getName();
+      if (name.contains("Old") || name.contains("Tenured")) {
+        return pool;
+      }
+      if (largest == null || pool.getUsage().getMax() > largest.getUsage().getMax()) {
+        largest = pool;
+      }
+    }
+    return largest;
+  }
+
+  /**
+   * Starts adjusting the limits of {@code cache}, and lowers the collection usage threshold of the
+   * tenured pool to its occupancy threshold so that crossing it is reported promptly.
+   */
+  void register(LocalCache<?, ?> cache) {
+    registrations.add(new Registration(cache));
+    if (pool == null) {
+      return;
+    }
+    try {
+      long max = pool.getUsage().getMax();
+      if (max > 0) {
+        long threshold = (long) (max * cache.memoryPressureThreshold);
+        long current = pool.getCollectionUsageThreshold();
+        if (current == 0 || threshold < current) {
+          pool.setCollectionUsageThreshold(threshold);
+        }
+      }
+    } catch (RuntimeException e) {
+      logger.log(Level.WARNING, "Unable to set collection usage threshold of " + pool.getName(), e);
+    }
+  }
+
+  /** Measures heap occupancy and adjusts every registered cache accordingly. */
+  synchronized void poll() {
+    try {
+      long collectionCount = collectionCount();
+      boolean fresh = (collectionCount != lastCollectionCount);
+      lastCollectionCount = collectionCount;
+      adjust(occupancy(), fresh);
+    } catch (Throwable t) {
+      logger.log(Level.WARNING, "Exception thrown while reacting to memory pressure", t);
+    }
+  }
+
+  /**
+   * Adjusts every registered cache to {@code occupancy}. Caches only shrink if the measurement is
+   * {@code fresh}, meaning that a garbage collection completed since the previous one.
+   */
+  void adjust(double occupancy, boolean fresh) {
+    for (Registration registration : registrations) {
+      LocalCache<?, ?> cache = registration.get();
+      if (cache == null) {
+        registrations.remove(registration);
+      } else {
+        registration.adjust(cache, occupancy, fresh);
+      }
+    }
+  }
+
+  private double occupancy() {
+    if (pool == null) {
+      return 0;
+    }
+    MemoryUsage usage = pool.getCollectionUsage();
+    if (usage == null || usage.getMax() <= 0) {
+      usage = pool.getUsage();
+    }
+    return (usage.getMax() > 0) ? (double) usage.getUsed() / usage.getMax() : 0;
+  }
+
+  private long collectionCount() {
+    long count = 0;
+    for (GarbageCollectorMXBean collector : collectors) {
+      count += Math.max(0, collector.getCollectionCount());
+    }
+    return count;
+  }
+
+  /** Tracks the fraction of its configured maximum weight that a cache currently enforces. */
+  private static final class Registration extends WeakReference<LocalCache<?, ?>> {
+    final double threshold;
+    double fraction = 1.0;
+
+    Registration(LocalCache<?, ?> cache) {
+      super(cache);
+      this.threshold = cache.memoryPressureThreshold;
+    }
+
+    synchronized void adjust(LocalCache<?, ?> cache, double occupancy, boolean fresh) {
+      double target = fraction;
+      if (occupancy >= threshold) {
+        if (fresh) {
+          target = Math.max(MIN_FRACTION, fraction * SHRINK_FACTOR);
+        }
+      } else if (occupancy < threshold - HYSTERESIS) {
+        target = Math.min(1.0, fraction * GROW_FACTOR);
+      }
+      if (target != fraction) {
+        fraction = target;
+        cache.scaleMaximumWeight(target);
+      }
+    }
+  }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2018 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.github.lafa.cache.lrucache;
+
+/**
+ * A cache partitioned into namespaces, each of which can be invalidated in constant time.
+ * Instances are built by {@link CacheBuilder#buildNamespacedCache}.
+ *
+ * <p>Every namespace has a generation number, which is recorded in the {@link NamespacedKey} of
+ * each entry written to it. {@link #invalidateNamespace} only advances the generation: entries of
+ * older generations can no longer be read, and are reclaimed lazily, either as they reach the head
+ * of the cache's expiration or eviction order or by an incremental sweep performed during the
+ * cache's routine maintenance. Until then they still count towards the cache's {@link #size} and
+ * maximum size or weight, and are reported to the removal listener as {@link
+ * RemovalCause#EXPIRED} once removed.
+ *
+ * <p>Each namespace whose generation has been advanced is remembered for the lifetime of the
+ * cache, so namespaces should be drawn from a bounded set.
+ *
+ * @param <N> the type of namespaces
+ * @param <K> the type of keys within a namespace
+ * @param <V> the type of mapped values
+ */
+public interface NamespacedCache<N, K, V> {
+
+  /**
+   * Returns a view of the entries of {@code namespace}. Its {@link Cache#invalidateAll()} is
+   * equivalent to {@link #invalidateNamespace}, and its {@link Cache#size} counts the live entries
+   * of the namespace by traversing the whole cache. Its {@link Cache#stats} are those of the whole
+   * cache. Its {@link Cache#asMap} reads and writes the current generation of the namespace; its
+   * size and iteration also traverse the whole cache.
+   */
+  Cache<K, V> namespace(N namespace);
+
+  /** Discards all entries of {@code namespace}, in constant time. */
+  void invalidateNamespace(N namespace);
+
+  /** Discards all entries in the cache, from every namespace. */
+  void invalidateAll();
+
+  /**
+   * Returns the approximate number of entries in the cache, including entries of invalidated
+   * namespaces which have not been reclaimed yet.
+   */
+  long size();
+
+  /** Returns a current snapshot of the statistics of the whole cache; see {@link Cache#stats}. */
+  CacheStats stats();
+
+  /** Performs any pending maintenance operations needed by the cache; see {@link Cache#cleanUp}. */
+  void cleanUp();
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2018 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.github.lafa.cache.lrucache;
+
+import static com.github.lafa.cache.base.Preconditions.checkNotNull;
+
+/**
+ * The key under which a {@link NamespacedCache} stores an entry: the namespace and key it was
+ * written with, and the generation of the namespace at the time. Instances are created by the cache
+ * and seen by its {@linkplain CacheBuilder#removalListener removal listener} and {@linkplain
+ * CacheBuilder#weigher weigher}.
+ *
+ * <p>Two keys are equal only if their namespaces, keys and generations are all equal, so entries
+ * written before a namespace was invalidated can never be found by lookups made after.
+ *
+ * @param <N> the type of namespaces
+ * @param <K> the type of keys within a namespace
+ */
+public final class NamespacedKey<N, K> {
+  private final N namespace;
+  private final K key;
+  final int generation;
+
+  NamespacedKey(N namespace, K key, int generation) {
+    this.namespace = checkNotNull(namespace);
+    this.key = checkNotNull(key);
+    this.generation = generation;
+  }
+
+  /** Returns the namespace of this key. */
+  public N namespace() {
+    return namespace;
+  }
+
+  /** Returns the key within its namespace. */
+  public K key() {
+    return key;
+  }
+
+  @Override
+  public boolean equals(Object object) {
+    if (object instanceof NamespacedKey) {
+      NamespacedKey<?, ?> that = (NamespacedKey<?, ?>) object;
+      return generation == that.generation
+          && key.equals(that.key)
+          && namespace.equals(that.namespace);
+    }
+    return false;
+  }
+
+  @Override
+  public int hashCode() {
+    return (namespace.hashCode() * 31 + key.hashCode()) * 31 + generation;
+  }
+
+  @Override
+  public String toString() {
+    return namespace + "/" + key + "@" + generation;
+  }
+}
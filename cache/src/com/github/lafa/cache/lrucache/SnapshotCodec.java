@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2018 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.github.lafa.cache.lrucache;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Encodes and decodes the keys and values of a cache snapshot. See {@link CacheSnapshots}.
+ *
+ * <p>Each {@code read} method must consume exactly the bytes written by the corresponding {@code
+ * write} method, as records are stored back to back in a single stream.
+ *
+ * @param <K> the type of keys in the snapshot
+ * @param <V> the type of values in the snapshot
+ */
+public interface SnapshotCodec<K, V> {
+
+  /** Writes {@code key} to {@code out}. */
+  void writeKey(K key, DataOutput out) throws IOException;
+
+  /** Writes {@code value} to {@code out}. */
+  void writeValue(V value, DataOutput out) throws IOException;
+
+  /** Reads a key previously written by {@link #writeKey}. Must not return null. */
+  K readKey(DataInput in) throws IOException;
+
+  /** Reads a value previously written by {@link #writeValue}. Must not return null. */
+  V readValue(DataInput in) throws IOException;
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) 2018 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.github.lafa.cache.lrucache;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Accesses the slots of a segment's table. Readers traverse chains without locking, so a slot read
+ * must observe the fields of the entries published by the corresponding write, which always
+ * happens under the segment lock; neither needs to be sequentially consistent.
+ *
+ * <p>This is the Java 8 implementation, which uses volatile accesses. The multi-release jar
+ * contains a Java 9 implementation under {@code src9}, which uses acquire and release accesses.
+ */
+final class TableAccess {
+  private TableAccess() {}
+
+  static <E> E getAcquire(AtomicReferenceArray<E> table, int index) {
+    return table.get(index);
+  }
+
+  static <E> void setRelease(AtomicReferenceArray<E> table, int index, E value) {
+    table.set(index, value);
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2018 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.github.lafa.cache.lrucache;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The secondary index of a {@link TaggedCache}, mapping each tag to the keys of the entries tagged
+ * with it, and each tagged key to its tags.
+ *
+ * <p>All updates for a given key are made while holding the lock of the key's segment, either by
+ * a tagged write or by the segment's removal of the entry, so the tags recorded for a key always
+ * match its current entry. Lookups by tag do not lock.
+ */
+final class TagIndex<K> {
+  private static final Object[] NO_TAGS = {};
+
+  private final ConcurrentHashMap<K, Object[]> tagsByKey = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<Object, Set<K>> keysByTag = new ConcurrentHashMap<>();
+
+  /** Replaces the tags of {@code key} with {@code tags}, which may be empty. */
+  void setTags(K key, Object[] tags) {
+    Object[] old = (tags.length == 0) ? tagsByKey.remove(key) : tagsByKey.put(key, tags);
+    unlink(key, old);
+    for (Object tag : tags) {
+      keysByTag.compute(
+          tag,
+          (t, keys) -> {
+            if (keys == null) {
+              keys = ConcurrentHashMap.newKeySet();
+            }
+            keys.add(key);
+            return keys;
+          });
+    }
+  }
+
+  /** Forgets the tags of {@code key}, whose entry was removed. */
+  void remove(K key) {
+    unlink(key, tagsByKey.remove(key));
+  }
+
+  private void unlink(K key, Object[] tags) {
+    if (tags == null) {
+      return;
+    }
+    for (Object tag : tags) {
+      keysByTag.computeIfPresent(
+          tag,
+          (t, keys) -> {
+            keys.remove(key);
+            return keys.isEmpty() ? null : keys;
+          });
+    }
+  }
+
+  /** Returns whether {@code key} is currently tagged with {@code tag}. */
+  boolean hasTag(K key, Object tag) {
+    for (Object t : tagsByKey.getOrDefault(key, NO_TAGS)) {
+      if (t.equals(tag)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Returns a live view of the keys tagged with {@code tag}. */
+  Set<K> keys(Object tag) {
+    Set<K> keys = keysByTag.get(tag);
+    return (keys == null) ? Collections.<K>emptySet() : keys;
+  }
+
+  /** Returns the number of distinct tags in use. */
+  int tagCount() {
+    return keysByTag.size();
+  }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2018 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.github.lafa.cache.lrucache;
+
+/**
+ * A {@link Cache} whose entries can be labelled with tags, such as a tenant or the document a value
+ * was derived from, so that every entry with a given tag can be invalidated at once. Instances are
+ * built by {@link CacheBuilder#buildTaggedCache}.
+ *
+ * <p>Tags are arbitrary non-null objects compared by {@link Object#equals}. They belong to an
+ * entry: {@link #put(Object, Object, Iterable)} replaces the tags of any entry it overwrites, and
+ * {@link #put(Object, Object)} clears them. Values written through the {@link #asMap} view keep
+ * the tags of the entry they replace. Tags are forgotten as soon as their entry is removed for any
+ * reason, including eviction and expiration.
+ *
+ * @param <K> the type of keys maintained by this cache
+ * @param <V> the type of mapped values
+ */
+public interface TaggedCache<K, V> extends Cache<K, V> {
+
+  /**
+   * Associates {@code value} with {@code key} in this cache, and tags the entry with each of {@code
+   * tags}. If the cache previously contained a value associated with {@code key}, the old value and
+   * its tags are replaced.
+   */
+  void put(K key, V value, Iterable<?> tags);
+
+  /**
+   * Discards every entry currently tagged with {@code tag}, with {@link RemovalCause#EXPLICIT}, in
+   * time proportional to the number of such entries. Returns the number of entries discarded.
+   */
+  long invalidateTag(Object tag);
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright (C) 2018 The Guava Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.github.lafa.cache.lrucache;
+
+/**
+ * Source of {@link LongAddable} objects.
+ *
+ * <p>This is the Java 9 implementation, which uses the JDK's {@link
+ * java.util.concurrent.atomic.LongAdder} rather than the copy in this package, so that {@code
+ * sun.misc.Unsafe} is never used.
+ */
+final class LongAddables {
+  private LongAddables() {}
+
+  public static LongAddable create() {
+    return new JdkLongAddable();
+  }
+
+  static final class JdkLongAddable extends java.util.concurrent.atomic.LongAdder
+      implements LongAddable {}
+}